@@ -2,10 +2,10 @@
 
 package jminusminus;
 
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.DataInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import static jminusminus.CLConstants.*;
 
@@ -13,11 +13,19 @@ import static jminusminus.CLConstants.*;
  * CLAbsorber is for reading a Java class into an in-memory {@link CLFile}
  * representation and printing it out to STDOUT in a format similar to that of
  * javap.
+ * <p>
+ * The class file is read from its bytes in a {@code ByteBuffer} (mapped into
+ * memory, where it is a file in a directory), and decoded on demand. Reading a
+ * class only indexes the offsets of its constant pool items, and walks the
+ * headers of its members and attributes; the class' name, super class,
+ * interfaces and members (with their names and descriptors) are then decoded
+ * from the bytes as they are asked for, and the full {@code CLFile}, with the
+ * attributes, only if {@link #classFile} is called.
  */
 
 public class CLAbsorber {
 
-    /** CLFile representation of the class that is read. */
+    /** CLFile representation of the class that is read, once decoded. */
     private CLFile classFile;
 
     /** Whether or not an error occurred in reading the class. */
@@ -26,6 +34,30 @@ public class CLAbsorber {
     /** Name of the class that is read. */
     private String className;
 
+    /** The bytes of the class file. */
+    private ByteBuffer bytes;
+
+    /**
+     * The offset into the class file of each constant pool item (of its tag),
+     * by index; 0 for the unusable indices.
+     */
+    private int[] cpOffsets;
+
+    /** The CONSTANT_Utf8_info items decoded so far, by index. */
+    private String[] utf8s;
+
+    /** Offset into the class file of ClassFile.access_flags. */
+    private int classOffset;
+
+    /** Offset into the class file of ClassFile.fields_count. */
+    private int fieldsOffset;
+
+    /** Offset into the class file of ClassFile.methods_count. */
+    private int methodsOffset;
+
+    /** Offset into the class file of ClassFile.attributes_count. */
+    private int attributesOffset;
+
     /**
      * Print the specified warning to STDERR.
      * 
@@ -55,71 +87,275 @@ public class CLAbsorber {
     }
 
     /**
-     * Read the constant pool information from the specified stream, and return
-     * the information as a CLConstantPool object.
+     * Returns the unsigned byte at the specified offset into the class file.
+     * 
+     * @param offset
+     *            offset into the class file.
+     * @return the unsigned byte.
+     */
+
+    int u1(int offset) {
+        return bytes.get(offset) & 0xFF;
+    }
+
+    /**
+     * Returns the unsigned 16-bit value at the specified offset into the class
+     * file.
+     * 
+     * @param offset
+     *            offset into the class file.
+     * @return the unsigned 16-bit value.
+     */
+
+    int u2(int offset) {
+        return bytes.getShort(offset) & 0xFFFF;
+    }
+
+    /**
+     * Returns the unsigned 32-bit value at the specified offset into the class
+     * file.
+     * 
+     * @param offset
+     *            offset into the class file.
+     * @return the unsigned 32-bit value.
+     */
+
+    long u4(int offset) {
+        return bytes.getInt(offset) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the string of the CONSTANT_Utf8_info item at the specified
+     * constant pool index, decoding it (from modified UTF-8) the first time it
+     * is asked for.
+     * 
+     * @param index
+     *            constant pool index.
+     * @return the string.
+     */
+
+    String utf8(int index) {
+        String s = utf8s[index];
+        if (s == null) {
+            int offset = cpOffsets[index] + 3;
+            int end = offset + u2(offset - 2);
+            char[] chars = new char[end - offset];
+            int length = 0;
+            while (offset < end) {
+                int c = u1(offset++);
+                if (c >= 0xE0) {
+                    c = ((c & 0x0F) << 12) | ((u1(offset++) & 0x3F) << 6);
+                    c |= u1(offset++) & 0x3F;
+                } else if (c >= 0xC0) {
+                    c = ((c & 0x1F) << 6) | (u1(offset++) & 0x3F);
+                }
+                chars[length++] = (char) c;
+            }
+            s = utf8s[index] = new String(chars, 0, length);
+        }
+        return s;
+    }
+
+    /**
+     * Returns the name (in internal form) of the class referred to by the
+     * CONSTANT_Class_info item at the specified constant pool index, or
+     * {@code null} if the index is 0.
+     * 
+     * @param index
+     *            constant pool index.
+     * @return the class name, or {@code null}.
+     */
+
+    String classAt(int index) {
+        return index == 0 ? null : utf8(u2(cpOffsets[index] + 1));
+    }
+
+    /**
+     * Returns the bytes of the specified length at the specified offset into
+     * the class file.
+     * 
+     * @param offset
+     *            offset into the class file.
+     * @param length
+     *            number of bytes.
+     * @return the bytes.
+     */
+
+    private byte[] bytesAt(int offset, int length) {
+        byte[] b = new byte[length];
+        ByteBuffer buffer = bytes.duplicate();
+        buffer.position(offset);
+        buffer.get(b);
+        return b;
+    }
+
+    /**
+     * Returns an input stream over the class file from the specified offset.
+     * 
+     * @param offset
+     *            offset into the class file.
+     * @return the input stream.
+     */
+
+    CLInputStream streamAt(int offset) {
+        ByteBuffer buffer = bytes.duplicate();
+        buffer.position(offset);
+        return new CLInputStream(new CLBufferInputStream(buffer));
+    }
+
+    /**
+     * Index the offsets of the items of the constant pool, which starts at the
+     * specified offset with its count, and return the offset just past it.
+     * 
+     * @param offset
+     *            offset of ClassFile.constant_pool_count.
+     * @return offset of ClassFile.access_flags, or -1 if the pool has an item
+     *         of unknown kind.
+     */
+
+    private int indexConstantPool(int offset) {
+        int count = u2(offset);
+        cpOffsets = new int[count];
+        utf8s = new String[count];
+        offset += 2;
+        for (int i = 1; i < count; i++) {
+            cpOffsets[i] = offset;
+            int tag = u1(offset);
+            switch (tag) {
+            case CONSTANT_Utf8:
+                offset += 3 + u2(offset + 1);
+                break;
+            case CONSTANT_Class:
+            case CONSTANT_String:
+            case CONSTANT_MethodType:
+            case CONSTANT_Module:
+            case CONSTANT_Package:
+                offset += 3;
+                break;
+            case CONSTANT_MethodHandle:
+                offset += 4;
+                break;
+            case CONSTANT_Integer:
+            case CONSTANT_Float:
+            case CONSTANT_Fieldref:
+            case CONSTANT_Methodref:
+            case CONSTANT_InterfaceMethodref:
+            case CONSTANT_NameAndType:
+            case CONSTANT_Dynamic:
+            case CONSTANT_InvokeDynamic:
+                offset += 5;
+                break;
+            case CONSTANT_Long:
+            case CONSTANT_Double:
+                offset += 9;
+                i++;
+                break;
+            default:
+                reportError("Unknown cp_info tag '%d'", tag);
+                return -1;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Skip the members (fields or methods) that start at the specified offset
+     * with their count, and return the offset just past them. Only the
+     * attributes' lengths are read.
+     * 
+     * @param offset
+     *            offset of the members count.
+     * @return offset just past the members.
+     */
+
+    private int skipMembers(int offset) {
+        int count = u2(offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            offset = skipAttributes(offset + 6);
+        }
+        return offset;
+    }
+
+    /**
+     * Skip the attributes that start at the specified offset with their count,
+     * and return the offset just past them.
+     * 
+     * @param offset
+     *            offset of the attributes count.
+     * @return offset just past the attributes.
+     */
+
+    private int skipAttributes(int offset) {
+        int count = u2(offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            offset += 6 + (int) u4(offset + 2);
+        }
+        return offset;
+    }
+
+    /**
+     * Decode the constant pool item at the specified index, and return it.
+     * 
+     * @param index
+     *            constant pool index.
+     * @return the constant pool item.
+     */
+
+    private CLCPInfo cpItem(int index) {
+        int offset = cpOffsets[index] + 1;
+        switch (u1(offset - 1)) {
+        case CONSTANT_Class:
+            return new CLConstantClassInfo(u2(offset));
+        case CONSTANT_Fieldref:
+            return new CLConstantFieldRefInfo(u2(offset), u2(offset + 2));
+        case CONSTANT_Methodref:
+            return new CLConstantMethodRefInfo(u2(offset), u2(offset + 2));
+        case CONSTANT_InterfaceMethodref:
+            return new CLConstantInterfaceMethodRefInfo(u2(offset),
+                    u2(offset + 2));
+        case CONSTANT_String:
+            return new CLConstantStringInfo(u2(offset));
+        case CONSTANT_Integer:
+            return new CLConstantIntegerInfo(bytes.getInt(offset));
+        case CONSTANT_Float:
+            return new CLConstantFloatInfo(bytes.getFloat(offset));
+        case CONSTANT_Long:
+            return new CLConstantLongInfo(bytes.getLong(offset));
+        case CONSTANT_Double:
+            return new CLConstantDoubleInfo(bytes.getDouble(offset));
+        case CONSTANT_NameAndType:
+            return new CLConstantNameAndTypeInfo(u2(offset), u2(offset + 2));
+        case CONSTANT_MethodHandle:
+            return new CLConstantMethodHandleInfo(u1(offset), u2(offset + 1));
+        case CONSTANT_MethodType:
+            return new CLConstantMethodTypeInfo(u2(offset));
+        case CONSTANT_Dynamic:
+            return new CLConstantDynamicInfo(u2(offset), u2(offset + 2));
+        case CONSTANT_InvokeDynamic:
+            return new CLConstantInvokeDynamicInfo(u2(offset), u2(offset + 2));
+        case CONSTANT_Module:
+            return new CLConstantModuleInfo(u2(offset));
+        case CONSTANT_Package:
+            return new CLConstantPackageInfo(u2(offset));
+        default:
+            return new CLConstantUtf8Info(bytesAt(offset + 2, u2(offset)));
+        }
+    }
+
+    /**
+     * Decode the constant pool, and return it as a CLConstantPool object.
      * 
-     * @param in
-     *            input stream.
      * @return the constant pool.
      */
 
-    private CLConstantPool readConstantPool(CLInputStream in) {
+    private CLConstantPool readConstantPool() {
         CLConstantPool cp = new CLConstantPool();
-        try {
-            for (int i = 1; i < classFile.constantPoolCount; i++) {
-                int tag = in.readUnsignedByte();
-                switch (tag) {
-                case CONSTANT_Class:
-                    cp.addCPItem(new CLConstantClassInfo(in
-                                    .readUnsignedShort()));
-                    break;
-                case CONSTANT_Fieldref:
-                    cp.addCPItem(new CLConstantFieldRefInfo(in
-                            .readUnsignedShort(), in.readUnsignedShort()));
-                    break;
-                case CONSTANT_Methodref:
-                    cp.addCPItem(new CLConstantMethodRefInfo(in
-                            .readUnsignedShort(), in.readUnsignedShort()));
-                    break;
-                case CONSTANT_InterfaceMethodref:
-                    cp.addCPItem(new CLConstantInterfaceMethodRefInfo(in
-                            .readUnsignedShort(), in.readUnsignedShort()));
-                    break;
-                case CONSTANT_String:
-                    cp.addCPItem(new CLConstantStringInfo(in
-                            .readUnsignedShort()));
-                    break;
-                case CONSTANT_Integer:
-                    cp.addCPItem(new CLConstantIntegerInfo(in.readInt()));
-                    break;
-                case CONSTANT_Float:
-                    cp.addCPItem(new CLConstantFloatInfo(in.readFloat()));
-                    break;
-                case CONSTANT_Long:
-                    cp.addCPItem(new CLConstantLongInfo(in.readLong()));
-                    i++;
-                    break;
-                case CONSTANT_Double:
-                    cp.addCPItem(new CLConstantDoubleInfo(in.readDouble()));
-                    i++;
-                    break;
-                case CONSTANT_NameAndType:
-                    cp.addCPItem(new CLConstantNameAndTypeInfo(in
-                            .readUnsignedShort(), in.readUnsignedShort()));
-                    break;
-                case CONSTANT_Utf8:
-                    int length = in.readUnsignedShort();
-                    byte[] b = new byte[length];
-                    in.read(b);
-                    cp.addCPItem(new CLConstantUtf8Info(b));
-                    break;
-                default:
-                    reportError("Unknown cp_info tag '%d'", tag);
-                    return cp;
-                }
+        for (int i = 1; i < cpOffsets.length; i++) {
+            if (cpOffsets[i] != 0) {
+                cp.addCPItem(cpItem(i));
             }
-        } catch (IOException e) {
-            reportError("Error reading constant pool from file %s", className);
         }
         return cp;
     }
@@ -201,14 +437,12 @@ public class CLAbsorber {
             int attributesCount) {
         ArrayList<CLAttributeInfo> attributes = new ArrayList<CLAttributeInfo>();
         try {
-            CLConstantPool cp = classFile.constantPool;
             for (int i = 0; i < attributesCount; i++) {
                 int attributeNameIndex = in.readUnsignedShort();
                 long attributeLength   = in.readUnsignedInt();
                 CLAttributeInfo attributeInfo = null;
 
-                String attributeName = new String(((CLConstantUtf8Info) cp
-                        .cpItem(attributeNameIndex)).b);
+                String attributeName = utf8(attributeNameIndex);
                 if (attributeName.equals(ATT_CONSTANT_VALUE)) {
                     attributeInfo = readConstantValueAttribute(in,
                             attributeNameIndex, attributeLength);
@@ -267,12 +501,13 @@ public class CLAbsorber {
                 } else if (attributeName.equals(ATT_ANNOTATION_DEFAULT)) {
                     attributeInfo = readAnnotationDefaultAttribute(in,
                             attributeNameIndex, attributeLength);
+                } else if (attributeName.equals(ATT_STACK_MAP_TABLE)) {
+                    attributeInfo = readStackMapTableAttribute(in,
+                            attributeNameIndex, attributeLength);
                 } else {
                     reportWarning("Unknown attribute '%s'", attributeName,
                             className);
-                    for (long j = 0; j < attributeLength; j++) {
-                        in.readUnsignedByte();
-                    }
+                    in.skipBytes((int) attributeLength);
                 }
                 if (attributeInfo != null) {
                     attributes.add(attributeInfo);
@@ -330,11 +565,9 @@ public class CLAbsorber {
         try {
             int maxStack  = in.readUnsignedShort();
             int maxLocals = in.readUnsignedShort();
-            ArrayList<Integer> code = new ArrayList<Integer>();
             long codeLength = in.readUnsignedInt();
-            for (long l = 0; l < codeLength; l++) {
-                code.add(in.readUnsignedByte());
-            }
+            byte[] code = new byte[(int) codeLength];
+            in.readFully(code);
             int exceptionTableLength = in.readUnsignedShort();
             ArrayList<CLExceptionInfo> exceptionTable = new ArrayList<CLExceptionInfo>();
             for (int l = 0; l < exceptionTableLength; l++) {
@@ -856,6 +1089,88 @@ public class CLAbsorber {
                 attributeLength, readElementValue(in));
     }
 
+    /**
+     * Read a StackMapTable attribute from the specified input stream, and
+     * return it.
+     * 
+     * @param in
+     *            input stream.
+     * @param attributeNameIndex
+     *            constant pool index of the attribute name.
+     * @param attributeLength
+     *            length of attribute.
+     * @return a StackMapTable attribute.
+     */
+
+    private CLStackMapTableAttribute readStackMapTableAttribute(
+            CLInputStream in, int attributeNameIndex, long attributeLength) {
+        CLStackMapTableAttribute attribute = null;
+        try {
+            int numberOfEntries = in.readUnsignedShort();
+            ArrayList<CLStackMapFrame> entries = new ArrayList<CLStackMapFrame>();
+            for (int m = 0; m < numberOfEntries; m++) {
+                int frameType = in.readUnsignedByte();
+                int offsetDelta = 0;
+                ArrayList<CLVerificationTypeInfo> locals = new ArrayList<CLVerificationTypeInfo>();
+                ArrayList<CLVerificationTypeInfo> stack = new ArrayList<CLVerificationTypeInfo>();
+                if (frameType <= SAME_FRAME_MAX) {
+                    offsetDelta = frameType;
+                } else if (frameType <= SAME_LOCALS_1_STACK_ITEM_MAX) {
+                    offsetDelta = frameType - SAME_LOCALS_1_STACK_ITEM;
+                    stack.add(readVerificationTypeInfo(in));
+                } else {
+                    offsetDelta = in.readUnsignedShort();
+                    if (frameType == SAME_LOCALS_1_STACK_ITEM_EXTENDED) {
+                        stack.add(readVerificationTypeInfo(in));
+                    } else if (frameType >= APPEND_FRAME
+                            && frameType < FULL_FRAME) {
+                        for (int k = SAME_FRAME_EXTENDED; k < frameType; k++) {
+                            locals.add(readVerificationTypeInfo(in));
+                        }
+                    } else if (frameType == FULL_FRAME) {
+                        int numberOfLocals = in.readUnsignedShort();
+                        for (int k = 0; k < numberOfLocals; k++) {
+                            locals.add(readVerificationTypeInfo(in));
+                        }
+                        int numberOfStackItems = in.readUnsignedShort();
+                        for (int k = 0; k < numberOfStackItems; k++) {
+                            stack.add(readVerificationTypeInfo(in));
+                        }
+                    }
+                }
+                entries.add(new CLStackMapFrame(frameType, offsetDelta,
+                        locals, stack));
+            }
+            attribute = new CLStackMapTableAttribute(attributeNameIndex,
+                    attributeLength, numberOfEntries, entries);
+        } catch (IOException e) {
+            reportError("Error reading StackMapTable_attribute from file %s",
+                    className);
+        }
+        return attribute;
+    }
+
+    /**
+     * Read a verification_type_info from the specified input stream, and
+     * return it.
+     * 
+     * @param in
+     *            input stream.
+     * @return a verification_type_info.
+     * @throws IOException
+     *             if an error occurs while reading.
+     */
+
+    private CLVerificationTypeInfo readVerificationTypeInfo(CLInputStream in)
+            throws IOException {
+        short tag = (short) in.readUnsignedByte();
+        int index = 0;
+        if (tag == ITEM_Object || tag == ITEM_Uninitialized) {
+            index = in.readUnsignedShort();
+        }
+        return new CLVerificationTypeInfo(tag, index);
+    }
+
     /**
      * Read an ElementValue from the specified input stream, and return it.
      * 
@@ -943,88 +1258,202 @@ public class CLAbsorber {
      */
 
     public CLAbsorber(String className) {
-        try {
-            this.className = className;
-            CLPath classPath = new CLPath();
-            CLInputStream in = classPath.loadClass(className);
-            errorHasOccurred = false;
-            if (in == null) {
-                reportError("Error loading %s", className);
-                return;
-            }
-            classFile = new CLFile();
+        this(className, CLPath.system().classBytes(className));
+    }
+
+    /**
+     * Construct a CLAbsorber object given the (fully-qualified) name of a
+     * class and the bytes of its class file.
+     * 
+     * @param className
+     *            fully qualified name of the class.
+     * @param bytes
+     *            the bytes of the class file, or {@code null} if it could not
+     *            be found.
+     */
 
-            // Read magic number (0xCAFEBABE)
-            long magic = in.readUnsignedInt();
-            if (magic != MAGIC) {
+    public CLAbsorber(String className, ByteBuffer bytes) {
+        this.className = className;
+        this.bytes = bytes;
+        errorHasOccurred = false;
+        if (bytes == null) {
+            reportError("Error loading %s", className);
+            return;
+        }
+        try {
+            // Check magic number (0xCAFEBABE)
+            if (u4(0) != MAGIC) {
                 reportWarning("%s has an invalid magic number", className);
+                errorHasOccurred = true;
                 return;
             }
-            classFile.magic = magic;
-
-            // Read minor version, major version
-            classFile.minorVersion = in.readUnsignedShort();
-            classFile.majorVersion = in.readUnsignedShort();
 
-            // Read constant pool count, constant pool
-            classFile.constantPoolCount = in.readUnsignedShort();
-            classFile.constantPool = readConstantPool(in);
+            // Index the constant pool, which follows the minor and
+            // major versions
+            classOffset = indexConstantPool(8);
             if (errorHasOccurred()) {
                 return;
             }
 
-            // Read access flags for the class
-            classFile.accessFlags = in.readUnsignedShort();
+            // Find the fields, methods and class attributes, which
+            // follow the access flags, this and super class, and
+            // interfaces
+            fieldsOffset = classOffset + 8 + 2 * u2(classOffset + 6);
+            methodsOffset = skipMembers(fieldsOffset);
+            attributesOffset = skipMembers(methodsOffset);
+            if (skipAttributes(attributesOffset) > bytes.limit()) {
+                reportError("Unexpected end of file %s", className);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            reportError("Unexpected end of file %s", className);
+        }
+    }
 
-            // Read this class' constant pool index
-            classFile.thisClass = in.readUnsignedShort();
+    /**
+     * Returns the {@code CLFile} representation of the class that was read,
+     * decoding it in full the first time it is asked for.
+     * 
+     * @return the CLFile representation of the class.
+     */
 
-            // Read super class' constant pool index
-            classFile.superClass = in.readUnsignedShort();
+    public CLFile classFile() {
+        if (classFile != null || errorHasOccurred()) {
+            return classFile;
+        }
+        classFile = new CLFile();
+        classFile.magic = MAGIC;
+        classFile.minorVersion = u2(4);
+        classFile.majorVersion = u2(6);
+        classFile.constantPoolCount = cpOffsets.length;
+        classFile.constantPool = readConstantPool();
+        classFile.accessFlags = accessFlags();
+        classFile.thisClass = u2(classOffset + 2);
+        classFile.superClass = u2(classOffset + 4);
+        classFile.interfacesCount = u2(classOffset + 6);
+        classFile.interfaces = new ArrayList<Integer>();
+        for (int i = 0; i < classFile.interfacesCount; i++) {
+            classFile.interfaces.add(u2(classOffset + 8 + 2 * i));
+        }
+        classFile.fieldsCount = u2(fieldsOffset);
+        classFile.fields = readFields(streamAt(fieldsOffset + 2),
+                classFile.fieldsCount);
+        classFile.methodsCount = u2(methodsOffset);
+        classFile.methods = readMethods(streamAt(methodsOffset + 2),
+                classFile.methodsCount);
+        classFile.attributesCount = u2(attributesOffset);
+        classFile.attributes = readAttributes(streamAt(attributesOffset + 2),
+                classFile.attributesCount);
+        return classFile;
+    }
 
-            // Read interfaces (implemented by the class being
-            // read) count and interfaces (constant pool
-            // indices)
-            int interfacesCount = in.readUnsignedShort();
-            ArrayList<Integer> interfaces = new ArrayList<Integer>();
-            classFile.interfacesCount = interfacesCount;
-            for (int i = 0; i < interfacesCount; i++) {
-                interfaces.add(in.readUnsignedShort());
-            }
-            classFile.interfaces = interfaces;
+    /**
+     * Returns the access flags of the class that was read.
+     * 
+     * @return the access flags.
+     */
 
-            // Read fields count and fields
-            classFile.fieldsCount = in.readUnsignedShort();
-            classFile.fields = readFields(in, classFile.fieldsCount);
-            if (errorHasOccurred()) {
-                return;
-            }
+    public int accessFlags() {
+        return u2(classOffset);
+    }
 
-            // Read methods count and methods
-            classFile.methodsCount = in.readUnsignedShort();
-            classFile.methods = readMethods(in, classFile.methodsCount);
-            if (errorHasOccurred()) {
-                return;
-            }
+    /**
+     * Returns the name (in internal form) of the class that was read.
+     * 
+     * @return the class name.
+     */
 
-            // Read class attributes
-            classFile.attributesCount = in.readUnsignedShort();
-            classFile.attributes = readAttributes(in, classFile.attributesCount);
-        } catch (EOFException e) {
-            reportError("Unexpected end of file %s", className);
-        } catch (IOException e) {
-            reportError("Error reading file %s", className);
+    public String thisClassName() {
+        return classAt(u2(classOffset + 2));
+    }
+
+    /**
+     * Returns the name (in internal form) of the super class of the class that
+     * was read, or {@code null} if it has none (it is java/lang/Object).
+     * 
+     * @return the super class name, or {@code null}.
+     */
+
+    public String superClassName() {
+        return classAt(u2(classOffset + 4));
+    }
+
+    /**
+     * Returns the names (in internal form) of the interfaces directly
+     * implemented by the class that was read.
+     * 
+     * @return the interface names.
+     */
+
+    public ArrayList<String> interfaceNames() {
+        ArrayList<String> names = new ArrayList<String>();
+        int count = u2(classOffset + 6);
+        for (int i = 0; i < count; i++) {
+            names.add(classAt(u2(classOffset + 8 + 2 * i)));
         }
+        return names;
     }
 
     /**
-     * Returns the {@code CLFile} representation of the class that was read.
+     * Returns the fields of the class that was read.
      * 
-     * @return the CLFile representation of the class.
+     * @return the fields.
      */
 
-    public CLFile classFile() {
-        return classFile;
+    public ArrayList<CLMemberView> fields() {
+        return members(fieldsOffset, true);
+    }
+
+    /**
+     * Returns the methods (and constructors) of the class that was read.
+     * 
+     * @return the methods.
+     */
+
+    public ArrayList<CLMemberView> methods() {
+        return members(methodsOffset, false);
+    }
+
+    /**
+     * Returns views onto the members (fields or methods) that start at the
+     * specified offset with their count.
+     * 
+     * @param offset
+     *            offset of the members count.
+     * @param isField
+     *            whether the members are fields.
+     * @return the members.
+     */
+
+    private ArrayList<CLMemberView> members(int offset, boolean isField) {
+        ArrayList<CLMemberView> members = new ArrayList<CLMemberView>();
+        int count = u2(offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            members.add(new CLMemberView(this, offset, isField));
+            offset = skipAttributes(offset + 6);
+        }
+        return members;
+    }
+
+    /**
+     * Decode the member (field or method) at the specified offset in full,
+     * with its attributes, and return it.
+     * 
+     * @param offset
+     *            offset of the member_info structure.
+     * @param isField
+     *            whether the member is a field.
+     * @return the member.
+     */
+
+    CLMemberInfo memberInfo(int offset, boolean isField) {
+        int attributesCount = u2(offset + 6);
+        ArrayList<CLAttributeInfo> attributes = readAttributes(
+                streamAt(offset + 8), attributesCount);
+        return isField ? new CLFieldInfo(u2(offset), u2(offset + 2),
+                u2(offset + 4), attributesCount, attributes)
+                : new CLMethodInfo(u2(offset), u2(offset + 2), u2(offset + 4),
+                        attributesCount, attributes);
     }
 
     /**
@@ -1060,8 +1489,8 @@ public class CLAbsorber {
             System.exit(0);
         }
         CLAbsorber r = new CLAbsorber(classFile);
+        CLFile c = r.classFile();
         if (!r.errorHasOccurred()) {
-            CLFile c = r.classFile();
             c.writeToStdOut();
         }
     }
@@ -1117,3 +1546,146 @@ class CLInputStream extends DataInputStream {
     }
 
 }
+
+/**
+ * An input stream over the bytes of a {@code ByteBuffer}, from its position up
+ * to its limit. The bytes are not copied.
+ */
+
+class CLBufferInputStream extends InputStream {
+
+    /** The bytes. */
+    private ByteBuffer buffer;
+
+    /**
+     * Constructs a CLBufferInputStream object over the remaining bytes of the
+     * specified buffer.
+     * 
+     * @param buffer
+     *            the bytes.
+     */
+
+    public CLBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        len = Math.min(len, buffer.remaining());
+        buffer.get(b, off, len);
+        return len;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public long skip(long n) {
+        n = Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + (int) n);
+        return n;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int available() {
+        return buffer.remaining();
+    }
+
+}
+
+/**
+ * A field or method of a class read by a {@link CLAbsorber}: a view onto its
+ * field_info or method_info structure in the class file, from which its name
+ * and descriptor are decoded when asked for, and its attributes only if the
+ * member is asked for in full.
+ */
+
+class CLMemberView {
+
+    /** The reader of the class file. */
+    private CLAbsorber absorber;
+
+    /** Offset of the member_info structure into the class file. */
+    private int offset;
+
+    /** Whether this is a field. */
+    private boolean isField;
+
+    /**
+     * Constructs a CLMemberView object.
+     * 
+     * @param absorber
+     *            the reader of the class file.
+     * @param offset
+     *            offset of the member_info structure into the class file.
+     * @param isField
+     *            whether this is a field.
+     */
+
+    public CLMemberView(CLAbsorber absorber, int offset, boolean isField) {
+        this.absorber = absorber;
+        this.offset = offset;
+        this.isField = isField;
+    }
+
+    /**
+     * Returns the access flags of this member.
+     * 
+     * @return the access flags.
+     */
+
+    public int accessFlags() {
+        return absorber.u2(offset);
+    }
+
+    /**
+     * Returns the name of this member.
+     * 
+     * @return the name.
+     */
+
+    public String name() {
+        return absorber.utf8(absorber.u2(offset + 2));
+    }
+
+    /**
+     * Returns the descriptor of this member.
+     * 
+     * @return the descriptor.
+     */
+
+    public String descriptor() {
+        return absorber.utf8(absorber.u2(offset + 4));
+    }
+
+    /**
+     * Returns this member in full, with its attributes.
+     * 
+     * @return the member_info structure.
+     */
+
+    public CLMemberInfo memberInfo() {
+        return absorber.memberInfo(offset, isField);
+    }
+
+}
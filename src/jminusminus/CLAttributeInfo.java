@@ -11,7 +11,8 @@ import static jminusminus.CLConstants.*;
  * The abstract base class for the representation of attribute_info structure 
  * (JVM Spec Section 4.8). Classes representing individual attributes inherit
  * this class. This file has representations for all attributes specified in
- * JVM Spec Second Edition, including the ones that were added for JDK 1.5.
+ * JVM Spec Second Edition, including the ones that were added for JDK 1.5,
+ * and for the StackMapTable attribute that was added for Java 6.
  * <p>
  * Attributes are used in the ClassFile ({@link CLFile}), field_info (
  * {@link CLFieldInfo}), method_info ({@link CLMethodInfo}), and Code_attribute 
@@ -235,7 +236,7 @@ class CLCodeAttribute extends CLAttributeInfo {
     /**
      * Code_attribute.code item.
      */
-    public ArrayList<Integer> code;
+    public byte[] code;
 
     /** Code_attribute.exception_table_length item. */
     public int exceptionTableLength;
@@ -267,6 +268,18 @@ class CLCodeAttribute extends CLAttributeInfo {
         return (a << 24) | (b << 16) | (c << 8) | d;
     }
 
+    /**
+     * Returns the (unsigned) byte of code at the specified pc.
+     * 
+     * @param pc
+     *            the pc.
+     * @return the byte at pc.
+     */
+
+    public int codeAt(int pc) {
+        return code[pc] & 0xFF;
+    }
+
     /**
      * Construct a CLCodeAttribute object.
      * 
@@ -294,7 +307,7 @@ class CLCodeAttribute extends CLAttributeInfo {
 
     public CLCodeAttribute(int attributeNameIndex, long attributeLength,
             int maxStack, int maxLocals, long codeLength,
-            ArrayList<Integer> code, int exceptionTableLength,
+            byte[] code, int exceptionTableLength,
             ArrayList<CLExceptionInfo> exceptionTable, int attributesCount,
             ArrayList<CLAttributeInfo> attributes) {
         super(attributeNameIndex, attributeLength);
@@ -317,9 +330,7 @@ class CLCodeAttribute extends CLAttributeInfo {
         out.writeShort(maxStack);
         out.writeShort(maxLocals);
         out.writeInt(codeLength);
-        for (int i = 0; i < code.size(); i++) {
-            out.writeByte(code.get(i));
-        }
+        out.write(code);
         out.writeShort(exceptionTableLength);
         for (int i = 0; i < exceptionTable.size(); i++) {
             exceptionTable.get(i).write(out);
@@ -343,9 +354,9 @@ class CLCodeAttribute extends CLAttributeInfo {
         p.printf("Code Length: %s\n", codeLength);
         p.printf("%-10s%-17s%s\n", "PC", "Opcode", "Operands");
         p.printf("%-10s%-17s%s\n", "--", "------", "--------");
-        for (int i = 0; i < code.size(); i++) {
+        for (int i = 0; i < code.length; i++) {
             int pc = i;
-            int opcode = code.get(i);
+            int opcode = codeAt(i);
             String mnemonic = CLInstruction.instructionInfo[opcode].mnemonic;
             int operandBytes = CLInstruction.instructionInfo[opcode].operandCount;
             short operandByte1, operandByte2, operandByte3, operandByte4;
@@ -355,64 +366,64 @@ class CLCodeAttribute extends CLAttributeInfo {
                 p.printf("%-10s%-17s\n", pc, mnemonic);
                 break;
             case 1:
-                operandByte1 = code.get(++i).shortValue();
+                operandByte1 = (short) codeAt(++i);
                 p.printf("%-10s%-17s%-5s\n", pc, mnemonic, operandByte1);
                 break;
             case 2:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
+                operandByte1 = (short) codeAt(++i);
+                operandByte2 = (short) codeAt(++i);
                 p.printf("%-10s%-17s%-5s%-5s\n", pc, mnemonic, operandByte1,
                         operandByte2);
                 break;
             case 3:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
-                operandByte3 = code.get(++i).shortValue();
+                operandByte1 = (short) codeAt(++i);
+                operandByte2 = (short) codeAt(++i);
+                operandByte3 = (short) codeAt(++i);
                 p.printf("%-10s%-17s%-5s%-5s%-5s\n", pc, mnemonic,
                         operandByte1, operandByte2, operandByte3);
                 break;
             case 4:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
-                operandByte3 = code.get(++i).shortValue();
-                operandByte4 = code.get(++i).shortValue();
+                operandByte1 = (short) codeAt(++i);
+                operandByte2 = (short) codeAt(++i);
+                operandByte3 = (short) codeAt(++i);
+                operandByte4 = (short) codeAt(++i);
                 p.printf("%-10s%-17s%-5s%-5s%-5s%-5s\n", pc, mnemonic,
                         operandByte1, operandByte2, operandByte3, operandByte4);
                 break;
             case DYNAMIC: // Variable length instructions
                 if (opcode == TABLESWITCH) {
                     int low, high;
-                    pad = 4 - ((i + 1) % 4);
+                    pad = (4 - ((i + 1) % 4)) % 4;
                     i = i + pad + 1;
-                    deflt = intValue(code.get(i++), code.get(i++), code
-                            .get(i++), code.get(i++));
-                    low = intValue(code.get(i++), code.get(i++), code.get(i++),
-                            code.get(i++));
-                    high = intValue(code.get(i++), code.get(i++),
-                            code.get(i++), code.get(i));
+                    deflt = intValue(codeAt(i++), codeAt(i++), codeAt(i++),
+                            codeAt(i++));
+                    low = intValue(codeAt(i++), codeAt(i++), codeAt(i++),
+                            codeAt(i++));
+                    high = intValue(codeAt(i++), codeAt(i++),
+                            codeAt(i++), codeAt(i));
                     p.printf("%-10s%s { // %s to %s \n", pc, mnemonic, low,
                             high);
                     for (int idx = low; idx <= high; idx++) {
-                        int offset = intValue(code.get(++i), code.get(++i),
-                                code.get(++i), code.get(++i));
+                        int offset = intValue(codeAt(++i), codeAt(++i),
+                                codeAt(++i), codeAt(++i));
                         p.printf("%-10s    %s:%s\n", "", idx, offset);
                     }
                     p.printf("%-10s    default: %s\n", "", deflt);
                     p.printf("%-10s}\n", "");
                 } else { // LOOKUPSWITCH
                     int nPairs;
-                    pad = 4 - ((i + 1) % 4);
+                    pad = (4 - ((i + 1) % 4)) % 4;
                     i = i + pad + 1;
-                    deflt = intValue(code.get(i++), code.get(i++), code
-                            .get(i++), code.get(i++));
-                    nPairs = intValue(code.get(i++), code.get(i++), code
-                            .get(i++), code.get(i));
+                    deflt = intValue(codeAt(i++), codeAt(i++), codeAt(i++),
+                            codeAt(i++));
+                    nPairs = intValue(codeAt(i++), codeAt(i++), codeAt(i++),
+                            codeAt(i));
                     p.printf("%-10s%s { \n", pc, mnemonic);
                     for (int idx = 0; idx < nPairs; idx++) {
-                        int match = intValue(code.get(++i), code.get(++i), code
-                                .get(++i), code.get(++i));
-                        int offset = intValue(code.get(++i), code.get(++i),
-                                code.get(++i), code.get(++i));
+                        int match = intValue(codeAt(++i), codeAt(++i),
+                                codeAt(++i), codeAt(++i));
+                        int offset = intValue(codeAt(++i), codeAt(++i),
+                                codeAt(++i), codeAt(++i));
                         p.printf("%-10s    %s:%s\n", "", match, offset);
                     }
                     p.printf("%-10s    default: %s\n", "", deflt);
@@ -2095,3 +2106,304 @@ class CLAnnotationDefaultAttribute extends CLAttributeInfo {
     }
 
 }
+
+/**
+ * Representation of verification_type_info structure (JVM Spec Section
+ * 4.7.4).
+ */
+
+class CLVerificationTypeInfo {
+
+    /** verification_type_info.tag item. */
+    public short tag;
+
+    /**
+     * Object_variable_info.cpool_index item, or Uninitialized_variable_info.
+     * offset item; not used by the other verification types.
+     */
+    public int index;
+
+    /**
+     * Construct a CLVerificationTypeInfo object.
+     * 
+     * @param tag
+     *            verification_type_info.tag item.
+     * @param index
+     *            Object_variable_info.cpool_index item or
+     *            Uninitialized_variable_info.offset item; 0 for the other
+     *            verification types.
+     */
+
+    public CLVerificationTypeInfo(short tag, int index) {
+        this.tag = tag;
+        this.index = index;
+    }
+
+    /**
+     * Return the number of bytes this object takes up in the class file.
+     * 
+     * @return the number of bytes.
+     */
+
+    public int length() {
+        return tag == ITEM_Object || tag == ITEM_Uninitialized ? 3 : 1;
+    }
+
+    /**
+     * Write the contents of this object to the specified output stream.
+     * 
+     * @param out
+     *            output stream.
+     * @throws IOException
+     *             if an error occurs while writing.
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        out.writeByte(tag);
+        if (tag == ITEM_Object || tag == ITEM_Uninitialized) {
+            out.writeShort(index);
+        }
+    }
+
+    /**
+     * Return true if this verification_type_info object is "equal to" the
+     * specified verification_type_info object, false otherwise.
+     * 
+     * @param obj
+     *            the reference verification_type_info object with which to
+     *            compare.
+     * @return true if this verification_type_info object is "equal to" the
+     *         specified verification_type_info object, false otherwise.
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLVerificationTypeInfo) {
+            CLVerificationTypeInfo c = (CLVerificationTypeInfo) obj;
+            return c.tag == tag && c.index == index;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return tag * 31 + index;
+    }
+
+    /**
+     * Return the contents of this object in a format similar to that of
+     * javap.
+     * 
+     * @return this verification type as a string.
+     */
+
+    public String toString() {
+        switch (tag) {
+        case ITEM_Top:
+            return "top";
+        case ITEM_Integer:
+            return "int";
+        case ITEM_Float:
+            return "float";
+        case ITEM_Double:
+            return "double";
+        case ITEM_Long:
+            return "long";
+        case ITEM_Null:
+            return "null";
+        case ITEM_UninitializedThis:
+            return "uninitializedThis";
+        case ITEM_Object:
+            return "class #" + index;
+        default:
+            return "uninitialized " + index;
+        }
+    }
+
+}
+
+/**
+ * Representation of stack_map_frame structure (JVM Spec Section 4.7.4). The
+ * one class stands for all the kinds of frame; which members apply depends
+ * on the frame type.
+ */
+
+class CLStackMapFrame {
+
+    /** stack_map_frame.frame_type item. */
+    public int frameType;
+
+    /**
+     * stack_map_frame.offset_delta item; implicit in the frame type of a
+     * same_frame or same_locals_1_stack_item_frame.
+     */
+    public int offsetDelta;
+
+    /**
+     * The locals appended by an append_frame, or all the locals of a
+     * full_frame; empty for the other frame types.
+     */
+    public ArrayList<CLVerificationTypeInfo> locals;
+
+    /**
+     * The stack item of a same_locals_1_stack_item_frame (or its extended
+     * form), or all the stack items of a full_frame; empty for the other
+     * frame types.
+     */
+    public ArrayList<CLVerificationTypeInfo> stack;
+
+    /**
+     * Construct a CLStackMapFrame object.
+     * 
+     * @param frameType
+     *            stack_map_frame.frame_type item.
+     * @param offsetDelta
+     *            stack_map_frame.offset_delta item.
+     * @param locals
+     *            the locals appended or (for a full_frame) given.
+     * @param stack
+     *            the stack items given.
+     */
+
+    public CLStackMapFrame(int frameType, int offsetDelta,
+            ArrayList<CLVerificationTypeInfo> locals,
+            ArrayList<CLVerificationTypeInfo> stack) {
+        this.frameType = frameType;
+        this.offsetDelta = offsetDelta;
+        this.locals = locals;
+        this.stack = stack;
+    }
+
+    /**
+     * Return the number of bytes this object takes up in the class file.
+     * 
+     * @return the number of bytes.
+     */
+
+    public int length() {
+        int length = frameType <= SAME_LOCALS_1_STACK_ITEM_MAX ? 1 : 3;
+        if (frameType == FULL_FRAME) {
+            length += 4;
+        }
+        for (int i = 0; i < locals.size(); i++) {
+            length += locals.get(i).length();
+        }
+        for (int i = 0; i < stack.size(); i++) {
+            length += stack.get(i).length();
+        }
+        return length;
+    }
+
+    /**
+     * Write the contents of this object to the specified output stream.
+     * 
+     * @param out
+     *            output stream.
+     * @throws IOException
+     *             if an error occurs while writing.
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        out.writeByte(frameType);
+        if (frameType > SAME_LOCALS_1_STACK_ITEM_MAX) {
+            out.writeShort(offsetDelta);
+        }
+        if (frameType == FULL_FRAME) {
+            out.writeShort(locals.size());
+        }
+        for (int i = 0; i < locals.size(); i++) {
+            locals.get(i).write(out);
+        }
+        if (frameType == FULL_FRAME) {
+            out.writeShort(stack.size());
+        }
+        for (int i = 0; i < stack.size(); i++) {
+            stack.get(i).write(out);
+        }
+    }
+
+    /**
+     * Write the contents of this object to STDOUT in a format similar to that
+     * of javap.
+     * 
+     * @param p
+     *            for pretty printing with indentation.
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        p.printf("%-10s    %-12s    %s    %s\n", frameType, offsetDelta,
+                locals, stack);
+    }
+
+}
+
+/**
+ * Representation of StackMapTable_attribute structure (JVM Spec Section
+ * 4.7.4). {@link CLEmitter} adds one to the code of each method that needs
+ * it, when the class file version calls for it.
+ */
+
+class CLStackMapTableAttribute extends CLAttributeInfo {
+
+    /** StackMapTable_attribute.number_of_entries item. */
+    public int numberOfEntries;
+
+    /** StackMapTable_attribute.entries item. */
+    public ArrayList<CLStackMapFrame> entries;
+
+    /**
+     * Construct a CLStackMapTableAttribute object.
+     * 
+     * @param attributeNameIndex
+     *            StackMapTable_attribute.attribute_name_index item.
+     * @param attributeLength
+     *            StackMapTable_attribute.attribute_length item.
+     * @param numberOfEntries
+     *            StackMapTable_attribute.number_of_entries item.
+     * @param entries
+     *            StackMapTable_attribute.entries item.
+     */
+
+    public CLStackMapTableAttribute(int attributeNameIndex,
+            long attributeLength, int numberOfEntries,
+            ArrayList<CLStackMapFrame> entries) {
+        super(attributeNameIndex, attributeLength);
+        this.numberOfEntries = numberOfEntries;
+        this.entries = entries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(numberOfEntries);
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).write(out);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        p.printf("StackMapTable {\n");
+        p.indentRight();
+        super.writeToStdOut(p);
+        p.printf("Number of Entries: %s\n", numberOfEntries);
+        p.printf("%s    %s    %s\n", "Frame Type", "Offset Delta",
+                "Locals / Stack");
+        p.printf("%s    %s    %s\n", "----------", "------------",
+                "--------------");
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).writeToStdOut(p);
+        }
+        p.indentLeft();
+        p.printf("}\n");
+    }
+
+}
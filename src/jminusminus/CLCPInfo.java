@@ -4,6 +4,7 @@ package jminusminus;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import static jminusminus.CLConstants.*;
 
 /**
@@ -12,6 +13,10 @@ import static jminusminus.CLConstants.*;
  * these classes are created and populated into the constant pool table when a
  * class is read using {@link CLAbsorber} or constructed using 
  * {@link CLEmitter}.
+ * <p>
+ * Items are equal if they have the same contents (their constant pool indices
+ * aside), and hash accordingly; {@link CLConstantPool} indexes its items by 
+ * them.
  */
 
 abstract class CLCPInfo {
@@ -100,6 +105,14 @@ class CLConstantClassInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return tag * 31 + nameIndex;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -167,6 +180,14 @@ abstract class CLConstantMemberRefInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return (tag * 31 + classIndex) * 31 + nameAndTypeIndex;
+    }
+
 }
 
 /**
@@ -305,6 +326,14 @@ class CLConstantStringInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return tag * 31 + stringIndex;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -381,6 +410,14 @@ class CLConstantIntegerInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return tag * 31 + i;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -446,13 +483,21 @@ class CLConstantFloatInfo extends CLCPInfo {
     public boolean equals(Object obj) {
         if (obj instanceof CLConstantFloatInfo) {
             CLConstantFloatInfo c = (CLConstantFloatInfo) obj;
-            if (c.f == f) {
+            if (Float.floatToIntBits(c.f) == Float.floatToIntBits(f)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return tag * 31 + Float.floatToIntBits(f);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -557,6 +602,14 @@ class CLConstantLongInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return tag * 31 + (int) (l ^ (l >>> 32));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -654,13 +707,22 @@ class CLConstantDoubleInfo extends CLCPInfo {
     public boolean equals(Object obj) {
         if (obj instanceof CLConstantDoubleInfo) {
             CLConstantDoubleInfo c = (CLConstantDoubleInfo) obj;
-            if (c.d == d) {
+            if (Double.doubleToLongBits(c.d) == Double.doubleToLongBits(d)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(d);
+        return tag * 31 + (int) (bits ^ (bits >>> 32));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -725,6 +787,14 @@ class CLConstantNameAndTypeInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return (tag * 31 + nameIndex) * 31 + descriptorIndex;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -736,6 +806,416 @@ class CLConstantNameAndTypeInfo extends CLCPInfo {
 
 }
 
+/**
+ * Representation of CONSTANT_MethodHandle_info structure (JVM Spec
+ * Section 4.4.8).
+ */
+
+class CLConstantMethodHandleInfo extends CLCPInfo {
+
+    /** CONSTANT_MethodHandle_info.reference_kind item. */
+    public int referenceKind;
+
+    /** CONSTANT_MethodHandle_info.reference_index item. */
+    public int referenceIndex;
+
+    /**
+     * Constructs a CLConstantMethodHandleInfo object.
+     * 
+     * @param referenceKind
+     *            CONSTANT_MethodHandle_info.reference_kind item.
+     * @param referenceIndex
+     *            CONSTANT_MethodHandle_info.reference_index item.
+     */
+
+    public CLConstantMethodHandleInfo(int referenceKind, int referenceIndex) {
+        super.tag = CONSTANT_MethodHandle;
+        this.referenceKind = referenceKind;
+        this.referenceIndex = referenceIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeByte(referenceKind);
+        out.writeShort(referenceIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantMethodHandleInfo) {
+            CLConstantMethodHandleInfo c = (CLConstantMethodHandleInfo) obj;
+            if ((c.referenceKind == referenceKind)
+                    && (c.referenceIndex == referenceIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return (tag * 31 + referenceKind) * 31 + referenceIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%-8s%-8s\n", "MethodHandle", referenceKind,
+                referenceIndex);
+    }
+
+}
+
+/**
+ * Representation of CONSTANT_MethodType_info structure (JVM Spec
+ * Section 4.4.9).
+ */
+
+class CLConstantMethodTypeInfo extends CLCPInfo {
+
+    /** CONSTANT_MethodType_info.descriptor_index item. */
+    public int descriptorIndex;
+
+    /**
+     * Constructs a CLConstantMethodTypeInfo object.
+     * 
+     * @param descriptorIndex
+     *            CONSTANT_MethodType_info.descriptor_index item.
+     */
+
+    public CLConstantMethodTypeInfo(int descriptorIndex) {
+        super.tag = CONSTANT_MethodType;
+        this.descriptorIndex = descriptorIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(descriptorIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantMethodTypeInfo) {
+            CLConstantMethodTypeInfo c = (CLConstantMethodTypeInfo) obj;
+            if (c.descriptorIndex == descriptorIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return tag * 31 + descriptorIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%s\n", "MethodType", descriptorIndex);
+    }
+
+}
+
+/**
+ * Representation of CONSTANT_Dynamic_info structure (JVM Spec Section 4.4.10).
+ */
+
+class CLConstantDynamicInfo extends CLCPInfo {
+
+    /** CONSTANT_Dynamic_info.bootstrap_method_attr_index item. */
+    public int bootstrapMethodAttrIndex;
+
+    /** CONSTANT_Dynamic_info.name_and_type_index item. */
+    public int nameAndTypeIndex;
+
+    /**
+     * Constructs a CLConstantDynamicInfo object.
+     * 
+     * @param bootstrapMethodAttrIndex
+     *            CONSTANT_Dynamic_info.bootstrap_method_attr_index item.
+     * @param nameAndTypeIndex
+     *            CONSTANT_Dynamic_info.name_and_type_index item.
+     */
+
+    public CLConstantDynamicInfo(int bootstrapMethodAttrIndex,
+            int nameAndTypeIndex) {
+        super.tag = CONSTANT_Dynamic;
+        this.bootstrapMethodAttrIndex = bootstrapMethodAttrIndex;
+        this.nameAndTypeIndex = nameAndTypeIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(bootstrapMethodAttrIndex);
+        out.writeShort(nameAndTypeIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantDynamicInfo) {
+            CLConstantDynamicInfo c = (CLConstantDynamicInfo) obj;
+            if ((c.bootstrapMethodAttrIndex == bootstrapMethodAttrIndex)
+                    && (c.nameAndTypeIndex == nameAndTypeIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return (tag * 31 + bootstrapMethodAttrIndex) * 31 + nameAndTypeIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%-8s%-8s\n", "Dynamic", bootstrapMethodAttrIndex,
+                nameAndTypeIndex);
+    }
+
+}
+
+/**
+ * Representation of CONSTANT_InvokeDynamic_info structure (JVM Spec
+ * Section 4.4.10).
+ */
+
+class CLConstantInvokeDynamicInfo extends CLCPInfo {
+
+    /** CONSTANT_InvokeDynamic_info.bootstrap_method_attr_index item. */
+    public int bootstrapMethodAttrIndex;
+
+    /** CONSTANT_InvokeDynamic_info.name_and_type_index item. */
+    public int nameAndTypeIndex;
+
+    /**
+     * Constructs a CLConstantInvokeDynamicInfo object.
+     * 
+     * @param bootstrapMethodAttrIndex
+     *            CONSTANT_InvokeDynamic_info.bootstrap_method_attr_index item.
+     * @param nameAndTypeIndex
+     *            CONSTANT_InvokeDynamic_info.name_and_type_index item.
+     */
+
+    public CLConstantInvokeDynamicInfo(int bootstrapMethodAttrIndex,
+            int nameAndTypeIndex) {
+        super.tag = CONSTANT_InvokeDynamic;
+        this.bootstrapMethodAttrIndex = bootstrapMethodAttrIndex;
+        this.nameAndTypeIndex = nameAndTypeIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(bootstrapMethodAttrIndex);
+        out.writeShort(nameAndTypeIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantInvokeDynamicInfo) {
+            CLConstantInvokeDynamicInfo c = (CLConstantInvokeDynamicInfo) obj;
+            if ((c.bootstrapMethodAttrIndex == bootstrapMethodAttrIndex)
+                    && (c.nameAndTypeIndex == nameAndTypeIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return (tag * 31 + bootstrapMethodAttrIndex) * 31 + nameAndTypeIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%-8s%-8s\n", "InvokeDynamic", bootstrapMethodAttrIndex,
+                nameAndTypeIndex);
+    }
+
+}
+
+/**
+ * Representation of CONSTANT_Module_info structure (JVM Spec Section 4.4.11).
+ */
+
+class CLConstantModuleInfo extends CLCPInfo {
+
+    /** CONSTANT_Module_info.name_index item. */
+    public int nameIndex;
+
+    /**
+     * Constructs a CLConstantModuleInfo object.
+     * 
+     * @param nameIndex
+     *            CONSTANT_Module_info.name_index item.
+     */
+
+    public CLConstantModuleInfo(int nameIndex) {
+        super.tag = CONSTANT_Module;
+        this.nameIndex = nameIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(nameIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantModuleInfo) {
+            CLConstantModuleInfo c = (CLConstantModuleInfo) obj;
+            if (c.nameIndex == nameIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return tag * 31 + nameIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%s\n", "Module", nameIndex);
+    }
+
+}
+
+/**
+ * Representation of CONSTANT_Package_info structure (JVM Spec Section 4.4.12).
+ */
+
+class CLConstantPackageInfo extends CLCPInfo {
+
+    /** CONSTANT_Package_info.name_index item. */
+    public int nameIndex;
+
+    /**
+     * Constructs a CLConstantPackageInfo object.
+     * 
+     * @param nameIndex
+     *            CONSTANT_Package_info.name_index item.
+     */
+
+    public CLConstantPackageInfo(int nameIndex) {
+        super.tag = CONSTANT_Package;
+        this.nameIndex = nameIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(nameIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantPackageInfo) {
+            CLConstantPackageInfo c = (CLConstantPackageInfo) obj;
+            if (c.nameIndex == nameIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return tag * 31 + nameIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%s\n", "Package", nameIndex);
+    }
+
+}
+
 /**
  * Representation of CONSTANT_Utf8_info structure (JVM Spec Section 4.5.7).
  */
@@ -745,6 +1225,9 @@ class CLConstantUtf8Info extends CLCPInfo {
     /** CONSTANT_Utf8_info.bytes item. */
     public byte[] b;
 
+    /** Hash code of the bytes, computed on demand. */
+    private int hash;
+
     /**
      * Constructs a CLConstantUtf8Info object.
      * 
@@ -783,13 +1266,24 @@ class CLConstantUtf8Info extends CLCPInfo {
     public boolean equals(Object obj) {
         if (obj instanceof CLConstantUtf8Info) {
             CLConstantUtf8Info c = (CLConstantUtf8Info) obj;
-            if ((new String(b)).equals(new String(c.b))) {
+            if (Arrays.equals(b, c.b)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        if (hash == 0) {
+            hash = tag * 31 + Arrays.hashCode(b);
+        }
+        return hash;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -4,11 +4,16 @@ package jminusminus;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Representation of a class' constant_pool table (JVM Spec Section 4.5). An
  * instance of {@code CLConstantPool} is created when a class is read using 
  * {@link CLAbsorber} or constructed using {@link CLEmitter}.
+ * <p>
+ * Besides the list of items (in constant pool order), the pool keeps a hash 
+ * index from each item to its constant pool index, so that finding an item,
+ * and so adding a singleton item, takes constant time however large the pool.
  */
 
 class CLConstantPool {
@@ -22,6 +27,9 @@ class CLConstantPool {
     /** List of constant pool items. */
     private ArrayList<CLCPInfo> cpItems;
 
+    /** Maps each (distinct) constant pool item to its index. */
+    private HashMap<CLCPInfo, Integer> cpIndices;
+
     /**
      * Look for the specified item in the constant pool. If it exists, return
      * its index. Otherwise, add the item to the constant pool and return its
@@ -47,6 +55,7 @@ class CLConstantPool {
     public CLConstantPool() {
         cpIndex = 1;
         cpItems = new ArrayList<CLCPInfo>();
+        cpIndices = new HashMap<CLCPInfo, Integer>();
     }
 
     /**
@@ -69,12 +78,8 @@ class CLConstantPool {
      */
 
     public int find(CLCPInfo cpInfo) {
-        int index = cpItems.indexOf(cpInfo);
-        if (index != -1) {
-            CLCPInfo c = cpItems.get(index);
-            index = c.cpIndex;
-        }
-        return index;
+        Integer index = cpIndices.get(cpInfo);
+        return index == null ? -1 : index;
     }
 
     /**
@@ -107,6 +112,12 @@ class CLConstantPool {
         cpInfo.cpIndex = i;
         cpItems.add(cpInfo);
 
+        // A pool read from a class file may hold duplicates; find()
+        // answers with the first, as a search of the list would
+        if (!cpIndices.containsKey(cpInfo)) {
+            cpIndices.put(cpInfo, i);
+        }
+
         // long and double, with their lower and higher words,
         // are treated by JVM as two items in the constant pool. We
         // have a single representation for each, so we add a null as
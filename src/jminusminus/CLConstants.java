@@ -19,6 +19,12 @@ public class CLConstants {
     /** Minor version for the class files that j-- compiles. */
     public static final int MINOR_VERSION = 0;
 
+    /**
+     * The first major version whose methods carry StackMapTable attributes,
+     * for the type-checking verifier.
+     */
+    public static final int STACK_MAP_MAJOR_VERSION = 50;
+
     /** public access flag. */
     public static final int ACC_PUBLIC = 0x0001;
 
@@ -112,6 +118,24 @@ public class CLConstants {
      */
     public static final short CONSTANT_NameAndType = 12;
 
+    /** Identifies CONSTANT_MethodHandle_info constant pool structure. */
+    public static final short CONSTANT_MethodHandle = 15;
+
+    /** Identifies CONSTANT_MethodType_info constant pool structure. */
+    public static final short CONSTANT_MethodType = 16;
+
+    /** Identifies CONSTANT_Dynamic_info constant pool structure. */
+    public static final short CONSTANT_Dynamic = 17;
+
+    /** Identifies CONSTANT_InvokeDynamic_info constant pool structure. */
+    public static final short CONSTANT_InvokeDynamic = 18;
+
+    /** Identifies CONSTANT_Module_info constant pool structure. */
+    public static final short CONSTANT_Module = 19;
+
+    /** Identifies CONSTANT_Package_info constant pool structure. */
+    public static final short CONSTANT_Package = 20;
+
     /** Identifies ConstantValue attribute. */
     public static final String ATT_CONSTANT_VALUE = "ConstantValue";
 
@@ -166,6 +190,9 @@ public class CLConstants {
     /** Identifies AnnotationDefault attribute. */
     public static final String ATT_ANNOTATION_DEFAULT = "AnnotationDefault";
 
+    /** Identifies StackMapTable attribute. */
+    public static final String ATT_STACK_MAP_TABLE = "StackMapTable";
+
     /** Identifies boolean type of annotation element value. */
     public static final short ELT_B = 'B';
 
@@ -205,6 +232,63 @@ public class CLConstants {
     /** Identifies enum type of annotation element value. */
     public static final short ELT_e = 'e';
 
+    /** Identifies Top_variable_info verification type. */
+    public static final short ITEM_Top = 0;
+
+    /** Identifies Integer_variable_info verification type. */
+    public static final short ITEM_Integer = 1;
+
+    /** Identifies Float_variable_info verification type. */
+    public static final short ITEM_Float = 2;
+
+    /** Identifies Double_variable_info verification type. */
+    public static final short ITEM_Double = 3;
+
+    /** Identifies Long_variable_info verification type. */
+    public static final short ITEM_Long = 4;
+
+    /** Identifies Null_variable_info verification type. */
+    public static final short ITEM_Null = 5;
+
+    /** Identifies UninitializedThis_variable_info verification type. */
+    public static final short ITEM_UninitializedThis = 6;
+
+    /** Identifies Object_variable_info verification type. */
+    public static final short ITEM_Object = 7;
+
+    /** Identifies Uninitialized_variable_info verification type. */
+    public static final short ITEM_Uninitialized = 8;
+
+    /** Largest frame type of same_frame stack map frames. */
+    public static final int SAME_FRAME_MAX = 63;
+
+    /** Smallest frame type of same_locals_1_stack_item_frame frames. */
+    public static final int SAME_LOCALS_1_STACK_ITEM = 64;
+
+    /** Largest frame type of same_locals_1_stack_item_frame frames. */
+    public static final int SAME_LOCALS_1_STACK_ITEM_MAX = 127;
+
+    /** Frame type of same_locals_1_stack_item_frame_extended frames. */
+    public static final int SAME_LOCALS_1_STACK_ITEM_EXTENDED = 247;
+
+    /**
+     * Smallest frame type of chop_frame frames; chop_frame 251 - k chops k
+     * locals.
+     */
+    public static final int CHOP_FRAME = 248;
+
+    /** Frame type of same_frame_extended frames. */
+    public static final int SAME_FRAME_EXTENDED = 251;
+
+    /**
+     * Smallest frame type of append_frame frames; append_frame 251 + k
+     * appends k locals.
+     */
+    public static final int APPEND_FRAME = 252;
+
+    /** Frame type of full_frame frames. */
+    public static final int FULL_FRAME = 255;
+
     // JVM instructions begin here
 
     /** NOP instruction. */
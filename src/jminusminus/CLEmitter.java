@@ -3,7 +3,6 @@
 package jminusminus;
 
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -12,8 +11,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Hashtable;
-import java.util.Stack;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
 
@@ -25,10 +25,9 @@ import static jminusminus.CLConstants.Category.*;
  * based) representation of Java classes.
  * <p>
  * j-- uses this interface to produce target JVM bytecode from a j-- source
- * program. During the pre-analysis and analysis phases, j-- produces partial
- * (in-memory) classes for the type declarations within the compilation unit,
- * and during the code generation phase, it produces file-based classes for the
- * declarations.
+ * program. During the code generation phase, it produces file-based classes
+ * for the type declarations within the compilation unit (or, for SPIM output,
+ * in-memory classes, which are translated further).
  */
 
 public class CLEmitter {
@@ -36,6 +35,9 @@ public class CLEmitter {
     /** Name of the class. */
     private String name;
 
+    /** Name of the superclass. */
+    private String superClass;
+
     /**
      * If true, the in-memory representation of the class will be written to the
      * file system. Otherwise, it won't be saved as a file.
@@ -139,11 +141,26 @@ public class CLEmitter {
      */
     private boolean errorHasOccurred;
 
+    /** Major version of the class files emitted. */
+    private int majorVersion;
+
     /**
-     * Class loader to use for creating in-memory representation of classes from
-     * byte streams.
+     * The compilation the class is part of, for looking up the superclasses
+     * of the types in the code; {@code null} if there is none.
      */
-    private static ByteClassLoader byteClassLoader;
+    private CompilationSession session;
+
+    /**
+     * Computes the stack map frames of the methods of the class, if its
+     * version calls for them; created when first needed.
+     */
+    private CLStackMap stackMap;
+
+    /**
+     * Optimizes the code of each method as it is closed; {@code null} if the
+     * code is to be left as it is.
+     */
+    private CLPeephole peephole;
 
     /**
      * Initialize all variables used for adding a method to the ClassFile
@@ -176,6 +193,11 @@ public class CLEmitter {
     private void endOpenMethodIfAny() {
         if (isMethodOpen) {
             isMethodOpen = false;
+            if (peephole != null) {
+                mPC = peephole.optimize(mCode, mLabels, mExceptionHandlers,
+                        mPC);
+                mInstructionAfterLabel = !mLabels.containsValue(mPC);
+            }
             if (!mInstructionAfterLabel) {
                 // Must jump to an instruction
                 addNoArgInstruction(NOP);
@@ -201,8 +223,8 @@ public class CLEmitter {
                 exceptionTable.add(c);
             }
 
-            // Convert Instruction objects to bytes
-            ArrayList<Integer> byteCode = new ArrayList<Integer>();
+            // Assemble the Instruction objects into bytes
+            CLCodeBuffer byteCode = new CLCodeBuffer(mPC);
             int maxLocals = mArgumentCount;
             for (int i = 0; i < mCode.size(); i++) {
                 CLInstruction instr = mCode.get(i);
@@ -246,14 +268,20 @@ public class CLEmitter {
                     }
                 }
 
-                byteCode.addAll(instr.toBytes());
+                instr.toBytes(byteCode);
             }
 
             // Code attribute; add only if method is neither native nor abstract
             if (!((mAccessFlags & ACC_NATIVE) == ACC_NATIVE ||
                   (mAccessFlags & ACC_ABSTRACT) == ACC_ABSTRACT)) {
-                addMethodAttribute(codeAttribute(byteCode, exceptionTable,
-                        stackDepth(), maxLocals));
+                byte[] code = byteCode.toByteArray();
+                int maxStack = stackDepth();
+                if (clFile.majorVersion >= STACK_MAP_MAJOR_VERSION) {
+                    maxStack = addStackMapTableAttribute(code, exceptionTable,
+                            maxStack, maxLocals);
+                }
+                addMethodAttribute(codeAttribute(code, exceptionTable,
+                        maxStack, maxLocals));
             }
 
             methods.add(new CLMethodInfo(mAccessFlags, mNameIndex,
@@ -587,66 +615,54 @@ public class CLEmitter {
         return false;
     }
 
-    /**
-     * Return the instruction with the specified pc within the code array of the
-     * current method being added.
-     * 
-     * @param pc
-     *            pc of the instruction.
-     * @return the instruction with the specified pc, or null.
-     */
-
-    private CLInstruction instruction(int pc) {
-        for (int j = 0; j < mCode.size(); j++) {
-            CLInstruction i = mCode.get(j);
-            if (i.pc() == pc) {
-                return i;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Return the index of the instruction with the specified pc, within the
-     * code array of the current method being added.
-     * 
-     * @param pc
-     *            pc of the instruction.
-     * @return index of the instruction with the specified pc.
-     */
-
-    private int instructionIndex(int pc) {
-        int j = 0;
-        for (; j < mCode.size(); j++) {
-            CLInstruction i = mCode.get(j);
-            if (i.pc() == pc) {
-                return j;
-            }
-        }
-        return j;
-    }
-
     /**
      * Compute the maximum depth of the operand stack for the method last added,
      * and return the value.
+     * <p>
+     * Straight-line runs of instructions are followed from the start of the
+     * method, and from each exception handler and branch target, each target
+     * being taken up (from a worklist) only the first time it is reached. An
+     * array maps each pc to the index of its instruction, so branch targets
+     * are resolved in constant time, and which targets have been reached is
+     * kept in a bit set.
      * 
      * @return maximum depth of operand stack.
      */
 
     private int stackDepth() {
-        CLBranchStack branchTargets = new CLBranchStack();
+        int n = mCode.size();
+        if (n == 0) {
+            return 0;
+        }
+        int[] indexOf = new int[mPC + 1];
+        Arrays.fill(indexOf, -1);
+        for (int j = 0; j < n; j++) {
+            indexOf[mCode.get(j).pc()] = j;
+        }
+
+        // The worklist: indices of branch targets, and the depth of the
+        // stack before each is executed
+        int[] targets = new int[16];
+        int[] depths = new int[16];
+        int pending = 0;
+        BitSet reached = new BitSet(n);
         for (int i = 0; i < mExceptionHandlers.size(); i++) {
-            CLException e = mExceptionHandlers.get(i);
-            CLInstruction h = instruction(e.handlerPC);
-            if (h != null) {
+            int h = indexAt(indexOf, mExceptionHandlers.get(i).handlerPC);
+            if (h != -1 && !reached.get(h)) {
                 // 1 because the exception that is thrown is
                 //   pushed on top of the operand stack
-                branchTargets.push(h, 1);
+                reached.set(h);
+                if (pending == targets.length) {
+                    targets = Arrays.copyOf(targets, pending * 2);
+                    depths = Arrays.copyOf(depths, pending * 2);
+                }
+                targets[pending] = h;
+                depths[pending++] = 1;
             }
         }
         int stackDepth = 0, maxStackDepth = 0, c = 0;
-        CLInstruction instr = (mCode.size() == 0) ? null : mCode.get(c);
-        while (instr != null) {
+        while (c != -1) {
+            CLInstruction instr = mCode.get(c);
             int opcode = instr.opcode();
             int stackUnits = instr.stackUnits();
             if (stackUnits == EMPTY_STACK) {
@@ -665,47 +681,58 @@ public class CLEmitter {
             // stackUnits + ", " +
             // stackDepth + ", " + maxStackDepth );
 
+            boolean fallsThrough = true;
             if (instr instanceof CLFlowControlInstruction) {
                 CLFlowControlInstruction b = (CLFlowControlInstruction) instr;
-                int jumpToIndex = b.pc() + b.jumpToOffset();
-                CLInstruction instrAt = null;
                 switch (opcode) {
                 case JSR:
                 case JSR_W:
                 case RET:
-                    instr = null;
+                    fallsThrough = false;
                     break;
                 case GOTO:
                 case GOTO_W:
-                    instr = null;
+                    fallsThrough = false;
                 default:
-                    instrAt = instruction(jumpToIndex);
-                    if (instrAt != null) {
-                        branchTargets.push(instrAt, stackDepth);
+                    int t = indexAt(indexOf, b.pc() + b.jumpToOffset());
+                    if (t != -1 && !reached.get(t)) {
+                        reached.set(t);
+                        if (pending == targets.length) {
+                            targets = Arrays.copyOf(targets, pending * 2);
+                            depths = Arrays.copyOf(depths, pending * 2);
+                        }
+                        targets[pending] = t;
+                        depths[pending++] = stackDepth;
                     }
                 }
-            } else {
-                if ((opcode == ATHROW) ||
-                    ((opcode >= IRETURN) && (opcode <= RETURN))) {
-                    instr = null;
-                }
-            }
-            if (instr != null) {
-                c++;
-                instr = (c >= mCode.size()) ? null : mCode.get(c);
+            } else if ((opcode == ATHROW) ||
+                       ((opcode >= IRETURN) && (opcode <= RETURN))) {
+                fallsThrough = false;
             }
-            if (instr == null) {
-                CLBranchTarget bt = branchTargets.pop();
-                if (bt != null) {
-                    instr = bt.target;
-                    stackDepth = bt.stackDepth;
-                    c = instructionIndex(instr.pc());
-                }
+            c = fallsThrough && c + 1 < n ? c + 1 : -1;
+            if (c == -1 && pending > 0) {
+                c = targets[--pending];
+                stackDepth = depths[pending];
             }
         }
         return maxStackDepth;
     }
 
+    /**
+     * Returns the index, within the code array of the method last added, of
+     * the instruction at the specified pc.
+     * 
+     * @param indexOf
+     *            maps each pc to the index of its instruction, or -1.
+     * @param pc
+     *            the pc.
+     * @return index of the instruction, or -1 if no instruction starts at pc.
+     */
+
+    private static int indexAt(int[] indexOf, int pc) {
+        return pc >= 0 && pc < indexOf.length ? indexOf[pc] : -1;
+    }
+
     /**
      * Add LDC (LDC_W if index is wide) instruction.
      * 
@@ -762,13 +789,12 @@ public class CLEmitter {
     }
 
     /**
-     * Construct and return a Code attribute given the list of bytes that make
-     * up the instructions and their operands, exception table, maximum depth of
+     * Construct and return a Code attribute given the bytes that make up the
+     * instructions and their operands, exception table, maximum depth of
      * operand stack, and maximum number of local variables.
      * 
      * @param byteCode
-     *            list of bytes that make up the instructions and their
-     *            operands.
+     *            bytes that make up the instructions and their operands.
      * @param exceptionTable
      *            exception table.
      * @param stackDepth
@@ -778,10 +804,10 @@ public class CLEmitter {
      * @return a Code attribute.
      */
 
-    private CLCodeAttribute codeAttribute(ArrayList<Integer> byteCode,
+    private CLCodeAttribute codeAttribute(byte[] byteCode,
             ArrayList<CLExceptionInfo> exceptionTable, int stackDepth,
             int maxLocals) {
-        int codeLength = byteCode.size();
+        int codeLength = byteCode.length;
         int attributeNameIndex = constantPool.constantUtf8Info(ATT_CODE);
         int attributeLength = codeLength + 8 * exceptionTable.size() + 12;
         for (int i = 0; i < mCodeAttributes.size(); i++) {
@@ -793,6 +819,56 @@ public class CLEmitter {
                 mCodeAttributes);
     }
 
+    /**
+     * Compute the stack map frames of the method last added, and add them, as
+     * a StackMapTable attribute, to its code; no attribute is added if the
+     * method needs no frames. Any unreachable code is replaced in the code and
+     * removed from the exception table, as described in {@link CLStackMap}.
+     * 
+     * @param code
+     *            bytes that make up the instructions and their operands.
+     * @param exceptionTable
+     *            exception table.
+     * @param maxStack
+     *            maximum depth of operand stack.
+     * @param maxLocals
+     *            maximum number of local variables.
+     * @return maximum depth of operand stack, allowing for the code that
+     *         replaces any unreachable code.
+     */
+
+    private int addStackMapTableAttribute(byte[] code,
+            ArrayList<CLExceptionInfo> exceptionTable, int maxStack,
+            int maxLocals) {
+        if (stackMap == null) {
+            stackMap = new CLStackMap(constantPool, name, superClass,
+                    (clFile.accessFlags & ACC_INTERFACE) != 0, session);
+        }
+        String methodName = new String(((CLConstantUtf8Info) constantPool
+                .cpItem(mNameIndex)).b);
+        String descriptor = new String(((CLConstantUtf8Info) constantPool
+                .cpItem(mDescriptorIndex)).b);
+        ArrayList<CLStackMapFrame> frames = stackMap.frames(methodName,
+                descriptor, (mAccessFlags & ACC_STATIC) != 0, code,
+                exceptionTable, maxLocals);
+        if (frames == null) {
+            reportEmitterError("%s: %s", eCurrentMethod, stackMap.error());
+            return maxStack;
+        }
+        if (frames.size() > 0) {
+            int attributeNameIndex = constantPool
+                    .constantUtf8Info(ATT_STACK_MAP_TABLE);
+            long attributeLength = 2;
+            for (int i = 0; i < frames.size(); i++) {
+                attributeLength += frames.get(i).length();
+            }
+            addCodeAttribute(new CLStackMapTableAttribute(attributeNameIndex,
+                    attributeLength, frames.size(), frames));
+        }
+        return stackMap.hasUnreachableCode() ? Math.max(maxStack, 1)
+                : maxStack;
+    }
+
     /**
      * Construct and return an ExceptionsAttribute given the list of exceptions.
      * 
@@ -894,6 +970,7 @@ public class CLEmitter {
     public CLEmitter(boolean toFile) {
         destDir = ".";
         this.toFile = toFile;
+        majorVersion = MAJOR_VERSION;
     }
 
     /**
@@ -907,6 +984,46 @@ public class CLEmitter {
         this.destDir = destDir;
     }
 
+    /**
+     * Sets the major version of the class files emitted from now on; the
+     * default is {@link CLConstants#MAJOR_VERSION MAJOR_VERSION}. From 
+     * {@link CLConstants#STACK_MAP_MAJOR_VERSION STACK_MAP_MAJOR_VERSION} on,
+     * the code of each method carries the stack map frames that the
+     * type-checking verifier needs.
+     * 
+     * @param majorVersion
+     *            the major version.
+     */
+
+    public void targetVersion(int majorVersion) {
+        this.majorVersion = majorVersion;
+    }
+
+    /**
+     * Sets the compilation that the emitted classes are part of; the stack map
+     * frames need the superclasses of the types in the code. Without one, only
+     * the classes of the platform (and the class being emitted) are known.
+     * 
+     * @param session
+     *            the compilation.
+     */
+
+    public void session(CompilationSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Sets the peephole optimizer that the code of each method is run through
+     * as the method is closed. By default, the code is left as it is emitted.
+     * 
+     * @param peephole
+     *            the optimizer, or {@code null} for none.
+     */
+
+    public void peephole(CLPeephole peephole) {
+        this.peephole = peephole;
+    }
+
     /**
      * Has an emitter error occurred up to now?
      * 
@@ -951,7 +1068,7 @@ public class CLEmitter {
 
         errorHasOccurred = false;
         clFile.magic = MAGIC;
-        clFile.majorVersion = MAJOR_VERSION;
+        clFile.majorVersion = majorVersion;
         clFile.minorVersion = MINOR_VERSION;
         if (!validInternalForm(thisClass)) {
             reportEmitterError("'%s' is not in internal form", thisClass);
@@ -966,6 +1083,8 @@ public class CLEmitter {
             }
         }
         name = thisClass;
+        this.superClass = superClass;
+        stackMap = null;
         clFile.thisClass = constantPool.constantClassInfo(thisClass);
         clFile.superClass = constantPool.constantClassInfo(superClass);
         for (int i = 0; superInterfaces != null && i < superInterfaces.size(); i++) {
@@ -1298,45 +1417,17 @@ public class CLEmitter {
      */
 
     public void addNoArgInstruction(int opcode) {
-        CLInstruction instr = null;
-        switch (CLInstruction.instructionInfo[opcode].category) {
-        case ARITHMETIC1:
-            instr = new CLArithmeticInstruction(opcode, mPC++);
-            break;
-        case ARRAY2:
-            instr = new CLArrayInstruction(opcode, mPC++);
-            break;
-        case BIT:
-            instr = new CLBitInstruction(opcode, mPC++);
-            break;
-        case COMPARISON:
-            instr = new CLComparisonInstruction(opcode, mPC++);
-            break;
-        case CONVERSION:
-            instr = new CLConversionInstruction(opcode, mPC++);
-            break;
-        case LOAD_STORE1:
-            instr = new CLLoadStoreInstruction(opcode, mPC++);
-            break;
-        case METHOD2:
-            instr = new CLMethodInstruction(opcode, mPC++);
-            break;
-        case MISC:
-            instr = new CLMiscInstruction(opcode, mPC++);
-            break;
-        case STACK:
-            instr = new CLStackInstruction(opcode, mPC++);
-            break;
-        default:
+        CLInstruction instr = CLInstruction.noArgInstruction(opcode, mPC);
+        if (instr == null) {
             reportOpcodeError(opcode);
-        }
-        if (instr != null) {
-            mPC += instr.operandCount();
+        } else {
+            mPC += 1 + instr.operandCount();
             mCode.add(instr);
             mInstructionAfterLabel = true;
         }
     }
 
+
     /**
      * Adds a one argument instruction. Wideable instructions are widened if
      * necessary by adding a {@code WIDE} instruction before the instruction. 
@@ -1886,14 +1977,6 @@ public class CLEmitter {
         return constantPool;
     }
 
-    /**
-     * Sets a new ByteClassLoader for loading classes from byte streams.
-     */
-
-    public static void initializeByteClassLoader() {
-        byteClassLoader = new ByteClassLoader();
-    }
-
     /**
      * Returns the {@code CLFile} instance corresponding to the class built by 
      * this emitter.
@@ -1905,37 +1988,6 @@ public class CLEmitter {
         return clFile;
     }
 
-    /**
-     * Returns the class being constructed as a Java {@code Class} instance.
-     * 
-     * @return Java Class instance.
-     */
-    public Class toClass() {
-        endOpenMethodIfAny();
-        Class theClass = null;
-        try {
-            // Extract the bytes from the class representation in
-            // memory into an array of bytes
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            CLOutputStream out = new CLOutputStream(new BufferedOutputStream(
-                    byteStream));
-            clFile.write(out);
-            out.close();
-            byte[] classBytes = byteStream.toByteArray();
-            byteStream.close();
-
-            // Load a Java Class instance from its byte
-            // representation
-            byteClassLoader.setClassBytes(classBytes);
-            theClass = byteClassLoader.loadClass(name, true);
-        } catch (IOException e) {
-            reportEmitterError("Cannot write class to byte stream");
-        } catch (ClassNotFoundException e) {
-            reportEmitterError("Cannot load class from byte stream");
-        }
-        return theClass;
-    }
-
     /**
      * Writes out the class to the file system as a .class file if 
      * {@code toFile} is {@code true}. The destination directory for the file 
@@ -2064,188 +2116,6 @@ class CLException {
 
 }
 
-/**
- * Instances of this class form the elements of the {@link CLBranchStack} which
- * is used for control flow analysis to compute maximum depth of operand stack 
- * for a method.
- */
-
-class CLBranchTarget {
-
-    /** Target instruction. */
-    public CLInstruction target;
-
-    /** Depth of stack before the target instruction is executed. */
-    public int stackDepth;
-
-    /**
-     * Constructs a CLBranchTarget object.
-     * 
-     * @param target
-     *            the target instruction.
-     * @param stackDepth
-     *            depth of stack before the target instruction is executed.
-     */
-
-    public CLBranchTarget(CLInstruction target, int stackDepth) {
-        this.target = target;
-        this.stackDepth = stackDepth;
-    }
-
-}
-
-/**
- * This class is used for control flow analysis to compute maximum depth of
- * operand stack for a method.
- */
-
-class CLBranchStack {
-
-    /** Branch targets yet to visit. */
-    private Stack<CLBranchTarget> branchTargets;
-
-    /** Branch targets already visited. */
-    private Hashtable<CLInstruction, CLBranchTarget> visitedTargets;
-
-    /**
-     * Returns an instance of CLBranchTarget with the specified information and
-     * records the target as visited.
-     * 
-     * @param target
-     *            the target instruction.
-     * @param stackDepth
-     *            depth of stack before the target instruction is executed.
-     * @return an instance of CLBranchTarget.
-     */
-
-    private CLBranchTarget visit(CLInstruction target, int stackDepth) {
-        CLBranchTarget bt = new CLBranchTarget(target, stackDepth);
-        visitedTargets.put(target, bt);
-        return bt;
-    }
-
-    /**
-     * Returns {@code true} if the specified instruction has been visited;
-     * {@code false} otherwise.
-     * 
-     * @param target
-     *            the target instruction.
-     * @return true if the specified instruction has been visited, false
-     *         otherwise.
-     */
-
-    private boolean visited(CLInstruction target) {
-        return (visitedTargets.get(target) != null);
-    }
-
-    /**
-     * Constructs a CLBranchStack object.
-     */
-
-    public CLBranchStack() {
-        this.branchTargets = new Stack<CLBranchTarget>();
-        this.visitedTargets = new Hashtable<CLInstruction, CLBranchTarget>();
-    }
-
-    /**
-     * Pushes the specified information into the stack as a CLBranchTarget
-     * instance if the target has not been visited yet.
-     * 
-     * @param target
-     *            the target instruction.
-     * @param stackDepth
-     *            depth of stack before the target instruction is executed.
-     */
-
-    public void push(CLInstruction target, int stackDepth) {
-        if (visited(target)) {
-            return;
-        }
-        branchTargets.push(visit(target, stackDepth));
-    }
-
-    /**
-     * Pops and returns an element from the stack. {@code null} is returned if 
-     * the stack is empty.
-     * 
-     * @return an element from the stack. {@code null} if stack is empty.
-     */
-
-    public CLBranchTarget pop() {
-        if (!branchTargets.empty()) {
-            CLBranchTarget bt = (CLBranchTarget) branchTargets.pop();
-            return bt;
-        }
-        return null;
-    }
-
-}
-
-/**
- * A class loader to be able to load a class from a byte stream.
- */
-
-class ByteClassLoader extends ClassLoader {
-
-    /** Bytes representing the class. */
-    private byte[] bytes;
-
-    /** Has a package been defined for this class loader? */
-    private boolean pkgDefined = false;
-
-    /**
-     * Sets the bytes representing the class.
-     * 
-     * @param bytes
-     *            bytes representing the class.
-     */
-
-    public void setClassBytes(byte[] bytes) {
-        this.bytes = bytes;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-
-    public Class<?> loadClass(String name, boolean resolve)
-            throws ClassNotFoundException {
-        Class cls = findLoadedClass(name);
-        if (cls == null) {
-            try {
-                cls = findSystemClass(name);
-            } catch (Exception e) {
-                // Ignore these
-            } catch (NoClassDefFoundError e) {
-                // If we get here we know the class exists, 
-                // so change the name to its binary name as defined
-                // in the Java Language Specifications
-                cls = findSystemClass(name.replace("/", "."));
-            }
-        }
-        if (cls == null) {
-            name = name.replace("/", ".");
-            String pkg = name.lastIndexOf('.') == -1 ? "" : name.substring(0,
-                    name.lastIndexOf('.'));
-            if (!pkgDefined) {
-                // Packages must be created before the class is
-                // defined, and package names must be unique
-                // within
-                // a class loader and cannot be redefined or
-                // changed once created
-                definePackage(pkg, "", "", "", "", "", "", null);
-                pkgDefined = true;
-            }
-            cls = defineClass(name, bytes, 0, bytes.length);
-            if (resolve && cls != null) {
-                resolveClass(cls);
-            }
-        }
-        return cls;
-    }
-
-}
-
 /**
  * Inherits from java.out.DataOutputStream and provides an extra function for
  * writing unsigned int to the output stream, which is required for writing Java
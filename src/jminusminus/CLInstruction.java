@@ -267,7 +267,7 @@ abstract class CLInstruction {
                     METHOD1),
             new CLInsInfo(INVOKEINTERFACE, "invokeinterface", 4, IRRELEVANT,
                     DYNAMIC, METHOD1),
-            new CLInsInfo(INVOKEDYNAMIC, "invokedynamic", 2, IRRELEVANT,
+            new CLInsInfo(INVOKEDYNAMIC, "invokedynamic", 4, IRRELEVANT,
                     DYNAMIC, METHOD1),
             new CLInsInfo(NEW, "new", 2, IRRELEVANT, 1, OBJECT),
             new CLInsInfo(NEWARRAY, "newarray", 1, IRRELEVANT, 0, ARRAY1),
@@ -361,12 +361,62 @@ abstract class CLInstruction {
     }
 
     /**
-     * Returns the bytecode for this instruction.
+     * Moves this instruction to the specified pc; used when instructions
+     * before it have been added or taken away.
      * 
-     * @return bytecode.
+     * @param pc
+     *            the new pc.
+     */
+
+    public void relocate(int pc) {
+        this.pc = pc;
+    }
+
+    /**
+     * Constructs and returns an instruction that takes no arguments, of the
+     * class that goes with its category; {@code null} if there are
+     * instructions with the opcode that take arguments.
+     * 
+     * @param opcode
+     *            opcode of the instruction.
+     * @param pc
+     *            index of the instruction within the code array of a method.
+     * @return the instruction, or {@code null}.
+     */
+
+    public static CLInstruction noArgInstruction(int opcode, int pc) {
+        switch (instructionInfo[opcode].category) {
+        case ARITHMETIC1:
+            return new CLArithmeticInstruction(opcode, pc);
+        case ARRAY2:
+            return new CLArrayInstruction(opcode, pc);
+        case BIT:
+            return new CLBitInstruction(opcode, pc);
+        case COMPARISON:
+            return new CLComparisonInstruction(opcode, pc);
+        case CONVERSION:
+            return new CLConversionInstruction(opcode, pc);
+        case LOAD_STORE1:
+            return new CLLoadStoreInstruction(opcode, pc);
+        case METHOD2:
+            return new CLMethodInstruction(opcode, pc);
+        case MISC:
+            return new CLMiscInstruction(opcode, pc);
+        case STACK:
+            return new CLStackInstruction(opcode, pc);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Appends the bytecode for this instruction to the specified code buffer.
+     * 
+     * @param code
+     *            the code buffer.
      */
 
-    public abstract ArrayList<Integer> toBytes();
+    public abstract void toBytes(CLCodeBuffer code);
 
     /**
      * Returns the byte from i at position byteNum.
@@ -437,12 +487,10 @@ class CLObjectInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        bytes.add(byteAt(index, 2));
-        bytes.add(byteAt(index, 1));
-        return bytes;
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
+        code.add(byteAt(index, 2));
+        code.add(byteAt(index, 1));
     }
 
 }
@@ -488,12 +536,10 @@ class CLFieldInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        bytes.add(byteAt(index, 2));
-        bytes.add(byteAt(index, 1));
-        return bytes;
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
+        code.add(byteAt(index, 2));
+        code.add(byteAt(index, 1));
     }
 
 }
@@ -574,22 +620,27 @@ class CLMethodInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
         if (instructionInfo[opcode].category == METHOD1) {
-            bytes.add(byteAt(index, 2));
-            bytes.add(byteAt(index, 1));
+            code.add(byteAt(index, 2));
+            code.add(byteAt(index, 1));
 
             // INVOKEINTERFACE expects the number of arguments of
             // the method as the third operand and a fourth
             // argument which must always be 0.
             if (opcode == INVOKEINTERFACE) {
-                bytes.add(byteAt(nArgs, 1));
-                bytes.add(0);
+                code.add(byteAt(nArgs, 1));
+                code.add(0);
+            }
+
+            // INVOKEDYNAMIC has two more operands, which must always
+            // be 0.
+            if (opcode == INVOKEDYNAMIC) {
+                code.add(0);
+                code.add(0);
             }
         }
-        return bytes;
     }
 
 }
@@ -677,24 +728,22 @@ class CLArrayInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
         switch (opcode) {
         case NEWARRAY:
-            bytes.add(byteAt(type, 1));
+            code.add(byteAt(type, 1));
             break;
         case ANEWARRAY:
-            bytes.add(byteAt(type, 2));
-            bytes.add(byteAt(type, 1));
+            code.add(byteAt(type, 2));
+            code.add(byteAt(type, 1));
             break;
         case MULTIANEWARRAY:
-            bytes.add(byteAt(type, 2));
-            bytes.add(byteAt(type, 1));
-            bytes.add(byteAt(dim, 1));
+            code.add(byteAt(type, 2));
+            code.add(byteAt(type, 1));
+            code.add(byteAt(dim, 1));
             break;
         }
-        return bytes;
     }
 
 }
@@ -764,21 +813,19 @@ class CLArithmeticInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
         if (opcode == IINC) {
             if (isWidened) {
-                bytes.add(byteAt(localVariableIndex, 2));
-                bytes.add(byteAt(localVariableIndex, 1));
-                bytes.add(byteAt(constVal, 2));
-                bytes.add(byteAt(constVal, 1));
+                code.add(byteAt(localVariableIndex, 2));
+                code.add(byteAt(localVariableIndex, 1));
+                code.add(byteAt(constVal, 2));
+                code.add(byteAt(constVal, 1));
             } else {
-                bytes.add(byteAt(localVariableIndex, 1));
-                bytes.add(byteAt(constVal, 1));
+                code.add(byteAt(localVariableIndex, 1));
+                code.add(byteAt(constVal, 1));
             }
         }
-        return bytes;
     }
 
 }
@@ -811,10 +858,8 @@ class CLBitInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
     }
 
 }
@@ -847,10 +892,8 @@ class CLComparisonInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
     }
 
 }
@@ -883,10 +926,8 @@ class CLConversionInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
     }
 
 }
@@ -1150,86 +1191,134 @@ class CLFlowControlInstruction extends CLInstruction {
         return jumpToOffset;
     }
 
+    /**
+     * Returns the label this instruction jumps to; applies only to
+     * FLOW_CONTROL1 instructions.
+     * 
+     * @return the jump label.
+     */
+
+    public String jumpToLabel() {
+        return jumpToLabel;
+    }
+
+    /**
+     * Returns the labels this instruction may jump to: none for RET, the
+     * default label followed by the others for TABLESWITCH and LOOKUPSWITCH,
+     * and the jump label for the rest.
+     * 
+     * @return the jump labels.
+     */
+
+    public ArrayList<String> jumpLabels() {
+        ArrayList<String> jumpLabels = new ArrayList<String>();
+        if (instructionInfo[opcode].category == FLOW_CONTROL1) {
+            jumpLabels.add(jumpToLabel);
+        } else if (opcode == LOOKUPSWITCH) {
+            jumpLabels.add(defaultLabel);
+            jumpLabels.addAll(matchLabelPairs.values());
+        } else if (opcode == TABLESWITCH) {
+            jumpLabels.add(defaultLabel);
+            jumpLabels.addAll(labels);
+        }
+        return jumpLabels;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void relocate(int pc) {
+        super.relocate(pc);
+        if (opcode == TABLESWITCH || opcode == LOOKUPSWITCH) {
+            // The padding, and so the size, depends on the pc
+            int oldPad = pad;
+            pad = 4 - ((pc + 1) % 4);
+            if (pad == 4) {
+                pad = 0;
+            }
+            operandCount += pad - oldPad;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
         switch (opcode) {
         case RET:
             if (isWidened) {
-                bytes.add(byteAt(index, 2));
-                bytes.add(byteAt(index, 1));
+                code.add(byteAt(index, 2));
+                code.add(byteAt(index, 1));
             } else {
-                bytes.add(byteAt(index, 1));
+                code.add(byteAt(index, 1));
             }
             break;
         case TABLESWITCH:
             for (int i = 0; i < pad; i++) {
-                bytes.add(0);
+                code.add(0);
             }
-            bytes.add(byteAt(defaultOffset, 4));
-            bytes.add(byteAt(defaultOffset, 3));
-            bytes.add(byteAt(defaultOffset, 2));
-            bytes.add(byteAt(defaultOffset, 1));
-            bytes.add(byteAt(low, 4));
-            bytes.add(byteAt(low, 3));
-            bytes.add(byteAt(low, 2));
-            bytes.add(byteAt(low, 1));
-            bytes.add(byteAt(high, 4));
-            bytes.add(byteAt(high, 3));
-            bytes.add(byteAt(high, 2));
-            bytes.add(byteAt(high, 1));
+            code.add(byteAt(defaultOffset, 4));
+            code.add(byteAt(defaultOffset, 3));
+            code.add(byteAt(defaultOffset, 2));
+            code.add(byteAt(defaultOffset, 1));
+            code.add(byteAt(low, 4));
+            code.add(byteAt(low, 3));
+            code.add(byteAt(low, 2));
+            code.add(byteAt(low, 1));
+            code.add(byteAt(high, 4));
+            code.add(byteAt(high, 3));
+            code.add(byteAt(high, 2));
+            code.add(byteAt(high, 1));
             for (int i = 0; i < offsets.size(); i++) {
                 int jumpOffset = offsets.get(i);
-                bytes.add(byteAt(jumpOffset, 4));
-                bytes.add(byteAt(jumpOffset, 3));
-                bytes.add(byteAt(jumpOffset, 2));
-                bytes.add(byteAt(jumpOffset, 1));
+                code.add(byteAt(jumpOffset, 4));
+                code.add(byteAt(jumpOffset, 3));
+                code.add(byteAt(jumpOffset, 2));
+                code.add(byteAt(jumpOffset, 1));
             }
             break;
         case LOOKUPSWITCH:
             for (int i = 0; i < pad; i++) {
-                bytes.add(0);
+                code.add(0);
             }
-            bytes.add(byteAt(defaultOffset, 4));
-            bytes.add(byteAt(defaultOffset, 3));
-            bytes.add(byteAt(defaultOffset, 2));
-            bytes.add(byteAt(defaultOffset, 1));
-            bytes.add(byteAt(numPairs, 4));
-            bytes.add(byteAt(numPairs, 3));
-            bytes.add(byteAt(numPairs, 2));
-            bytes.add(byteAt(numPairs, 1));
+            code.add(byteAt(defaultOffset, 4));
+            code.add(byteAt(defaultOffset, 3));
+            code.add(byteAt(defaultOffset, 2));
+            code.add(byteAt(defaultOffset, 1));
+            code.add(byteAt(numPairs, 4));
+            code.add(byteAt(numPairs, 3));
+            code.add(byteAt(numPairs, 2));
+            code.add(byteAt(numPairs, 1));
             Set<Entry<Integer, Integer>> matches = matchOffsetPairs.entrySet();
             Iterator<Entry<Integer, Integer>> iter = matches.iterator();
             while (iter.hasNext()) {
                 Entry<Integer, Integer> entry = iter.next();
                 int match = entry.getKey();
                 int offset = entry.getValue();
-                bytes.add(byteAt(match, 4));
-                bytes.add(byteAt(match, 3));
-                bytes.add(byteAt(match, 2));
-                bytes.add(byteAt(match, 1));
-                bytes.add(byteAt(offset, 4));
-                bytes.add(byteAt(offset, 3));
-                bytes.add(byteAt(offset, 2));
-                bytes.add(byteAt(offset, 1));
+                code.add(byteAt(match, 4));
+                code.add(byteAt(match, 3));
+                code.add(byteAt(match, 2));
+                code.add(byteAt(match, 1));
+                code.add(byteAt(offset, 4));
+                code.add(byteAt(offset, 3));
+                code.add(byteAt(offset, 2));
+                code.add(byteAt(offset, 1));
             }
             break;
         case GOTO_W:
         case JSR_W:
-            bytes.add(byteAt(jumpToOffset, 4));
-            bytes.add(byteAt(jumpToOffset, 3));
-            bytes.add(byteAt(jumpToOffset, 2));
-            bytes.add(byteAt(jumpToOffset, 1));
+            code.add(byteAt(jumpToOffset, 4));
+            code.add(byteAt(jumpToOffset, 3));
+            code.add(byteAt(jumpToOffset, 2));
+            code.add(byteAt(jumpToOffset, 1));
             break;
         default:
-            bytes.add(byteAt(jumpToOffset, 2));
-            bytes.add(byteAt(jumpToOffset, 1));
+            code.add(byteAt(jumpToOffset, 2));
+            code.add(byteAt(jumpToOffset, 1));
         }
-        return bytes;
     }
 
 }
@@ -1320,34 +1409,43 @@ class CLLoadStoreInstruction extends CLInstruction {
         this.constVal = constVal;
     }
 
+    /**
+     * Returns the byte (for BIPUSH), the short (for SIPUSH), or the constant
+     * pool index (for LDC instructions) this instruction pushes.
+     * 
+     * @return the constant value or index.
+     */
+
+    public int constVal() {
+        return constVal;
+    }
+
     /**
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
         if (instructionInfo[opcode].operandCount > 0) {
             if (localVariableIndex != IRRELEVANT) {
                 if (isWidened) {
-                    bytes.add(byteAt(localVariableIndex, 2));
+                    code.add(byteAt(localVariableIndex, 2));
                 }
-                bytes.add(byteAt(localVariableIndex, 1));
+                code.add(byteAt(localVariableIndex, 1));
             } else {
                 switch (opcode) {
                 case BIPUSH:
                 case LDC:
-                    bytes.add(byteAt(constVal, 1));
+                    code.add(byteAt(constVal, 1));
                     break;
                 case SIPUSH:
                 case LDC_W:
                 case LDC2_W:
-                    bytes.add(byteAt(constVal, 2));
-                    bytes.add(byteAt(constVal, 1));
+                    code.add(byteAt(constVal, 2));
+                    code.add(byteAt(constVal, 1));
                 }
             }
         }
-        return bytes;
     }
 
 }
@@ -1380,10 +1478,8 @@ class CLStackInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
     }
 
 }
@@ -1416,10 +1512,8 @@ class CLMiscInstruction extends CLInstruction {
      * {@inheritDoc}
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void toBytes(CLCodeBuffer code) {
+        code.add(opcode);
     }
 
 }
@@ -1483,3 +1577,69 @@ class CLInsInfo {
     }
 
 }
+
+/**
+ * A growable buffer of bytes into which the instructions of a method are
+ * assembled, for the code item of its Code attribute.
+ */
+
+class CLCodeBuffer {
+
+    /** The bytes; only the first {@code size} are in use. */
+    private byte[] bytes;
+
+    /** Number of bytes in the buffer. */
+    private int size;
+
+    /**
+     * Constructs an empty code buffer with room for the specified number of
+     * bytes.
+     * 
+     * @param capacity
+     *            initial capacity in bytes.
+     */
+
+    public CLCodeBuffer(int capacity) {
+        bytes = new byte[Math.max(capacity, 16)];
+        size = 0;
+    }
+
+    /**
+     * Appends the specified (unsigned) byte.
+     * 
+     * @param b
+     *            the byte; only its lower 8 bits are used.
+     */
+
+    public void add(int b) {
+        if (size == bytes.length) {
+            byte[] newBytes = new byte[2 * bytes.length];
+            System.arraycopy(bytes, 0, newBytes, 0, size);
+            bytes = newBytes;
+        }
+        bytes[size++] = (byte) b;
+    }
+
+    /**
+     * Returns the number of bytes in the buffer.
+     * 
+     * @return the number of bytes.
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the bytes in the buffer, in an array of their own.
+     * 
+     * @return the bytes.
+     */
+
+    public byte[] toByteArray() {
+        byte[] result = new byte[size];
+        System.arraycopy(bytes, 0, result, 0, size);
+        return result;
+    }
+
+}
@@ -5,30 +5,66 @@ package jminusminus;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
  * This class can be used to locate and load system, extension, and user-defined
- * class files from directories and zip (jar) files. The code for this class has
- * been adapted from the Kopi (http://www.dms.at/kopi/) project.
+ * class files from directories and zip (jar) files, and from the run-time image
+ * of the JVM (jrt:/) where there is no rt.jar. The code for this class has been
+ * adapted from the Kopi (http://www.dms.at/kopi/) project.
+ * <p>
+ * Each zip (jar) file and the run-time image are opened once, and indexed the
+ * first time a class is looked up in them; they are shared by all class paths.
+ * A zip file that changes (in modification time or length) is opened anew for
+ * the class paths constructed after the change. A class path remembers which
+ * of its zip (jar) files and run-time image, if any, has each class, as they
+ * are when it is constructed; its directories, whose class files may come and
+ * go, are looked in every time.
  */
 
 class CLPath {
 
+    /** The class path of this JVM; see {@link #system}. */
+    private static CLPath system;
+
+    /** The entries opened so far, shared by all class paths, by name. */
+    private static ConcurrentHashMap<String, CLPathEntry> opened =
+        new ConcurrentHashMap<String, CLPathEntry>();
+
+    /** Stands for a class that is not in the class path. */
+    private static final CLPathEntry NOT_FOUND = new CLDirectoryEntry(null);
+
     /**
      * Stores the individual directories, zip, and jar files from the class
      * path.
      */
-    private ArrayList<String> dirs;
+    private ArrayList<CLPathEntry> dirs;
+
+    /**
+     * The first zip (jar) file or run-time image in which each class looked
+     * up was found, or NOT_FOUND if none, by name.
+     */
+    private ConcurrentHashMap<String, CLPathEntry> found;
 
     /**
      * Return a list of conceptual directories defining the class path.
-     * 
+     *
      * @param classPath
      *            the directory names defining the class path.
      * @return a list of conceptual directories defining the class path.
@@ -52,14 +88,9 @@ class CLPath {
                 container.add(entries.nextToken());
             }
         } else {
-            float version = Float
-                    .parseFloat(System.getProperty("java.version"));
-            if (version > 1.1) {
-                String dir = System.getProperty("java.home")
-                        + File.separatorChar + "lib" + File.separatorChar
-                        + "rt.jar";
-                container.add(dir);
-            }
+            String dir = System.getProperty("java.home") + File.separatorChar
+                    + "lib" + File.separatorChar + "rt.jar";
+            container.add(new File(dir).isFile() ? dir : CLImageEntry.NAME);
         }
         return container;
     }
@@ -75,7 +106,7 @@ class CLPath {
     /**
      * Constructs a CLPath object given the directory names defining the path and
      * the directory for the Java extension classes.
-     * 
+     *
      * @param path
      *            the directory names defining the class path, separated by path
      *            separator.
@@ -92,7 +123,7 @@ class CLPath {
             // Last resort, use current directory
             path = ".";
         }
-        dirs = loadClassPath(path);
+        ArrayList<String> names = loadClassPath(path);
         if (extdir == null) {
             // Java extension classes
             extdir = System.getProperty("java.ext.dirs");
@@ -106,20 +137,113 @@ class CLPath {
                     if (file.isFile()
                             && (file.getName().endsWith(".zip") || file
                                     .getName().endsWith(".jar"))) {
-                        dirs.add(file.getName());
+                        names.add(file.getPath());
                     } else {
                         // Wrong suffix; ignore
                     }
                 }
             }
         }
+        dirs = new ArrayList<CLPathEntry>();
+        for (String name : names) {
+            CLPathEntry entry = entry(name);
+            if (entry != null) {
+                dirs.add(entry);
+            } else {
+                // Bogus entry; ignore
+            }
+        }
+        found = new ConcurrentHashMap<String, CLPathEntry>();
+    }
+
+    /**
+     * Returns the class path of this JVM (that of {@link #CLPath()}), shared
+     * by all who look up classes in it.
+     *
+     * @return the class path of this JVM.
+     */
+
+    public static synchronized CLPath system() {
+        if (system == null) {
+            system = new CLPath();
+        }
+        return system;
+    }
+
+    /**
+     * Returns the (shared) entry for the specified directory, zip (jar) file,
+     * or run-time image, or {@code null} if there is none by that name. A zip
+     * file that has changed since it was opened is opened anew; sessions
+     * still using the old entry keep it.
+     *
+     * @param name
+     *            the name of the entry.
+     * @return the entry, or {@code null}.
+     */
+
+    private static CLPathEntry entry(String name) {
+        CLPathEntry entry = opened.get(name);
+        if (entry != null && entry.isCurrent()) {
+            return entry;
+        }
+        CLPathEntry fresh;
+        File file = new File(name);
+        if (name.equals(CLImageEntry.NAME)) {
+            fresh = new CLImageEntry();
+        } else if (file.isDirectory()) {
+            fresh = new CLDirectoryEntry(file);
+        } else if (file.isFile()) {
+            fresh = new CLZipEntry(file);
+        } else {
+            return null;
+        }
+        if (entry == null ? opened.putIfAbsent(name, fresh) == null : opened
+                .replace(name, entry, fresh)) {
+            return fresh;
+        }
+        return entry(name); // Another thread got there first
+    }
+
+    /**
+     * Returns the entry of the class path that has the class with the
+     * specified name (the first one that does), or {@code null} if none has.
+     *
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return the entry, or {@code null}.
+     */
+
+    private CLPathEntry entryFor(String name) {
+        CLPathEntry archive = found.get(name);
+        if (archive == null) {
+            archive = NOT_FOUND;
+            for (CLPathEntry dir : dirs) {
+                if (!(dir instanceof CLDirectoryEntry) && dir.contains(name)) {
+                    archive = dir;
+                    break;
+                }
+            }
+            found.put(name, archive);
+        }
+
+        // A directory ahead of that may have the class by now
+        for (CLPathEntry dir : dirs) {
+            if (dir == archive) {
+                return dir;
+            }
+            if (dir instanceof CLDirectoryEntry && dir.contains(name)) {
+                return dir;
+            }
+        }
+        return null;
     }
 
     /**
      * Returns a CLInputStream instance for the class with specified name
-     * (fully-qualified; tokens separated by '/') or {@code null} if the class 
-     * was not found.
-     * 
+     * (fully-qualified; tokens separated by '/') or {@code null} if the class
+     * was not found. The class is that in the first entry of the class path
+     * that has one by the name.
+     *
      * @param name
      *            the fully-qualified name of the class -- java/util/ArrayList
      *            for example.
@@ -128,37 +252,383 @@ class CLPath {
      */
 
     public CLInputStream loadClass(String name) {
-        CLInputStream reader = null;
-        for (int i = 0; i < dirs.size(); i++) {
-            String dir = dirs.get(i);
-            File file = new File(dir);
-            if (file.isDirectory()) {
-                File theClass = new File(dir, name.replace('/',
-                        File.separatorChar)
-                        + ".class");
-                if (theClass.canRead()) {
-                    try {
-                        reader = new CLInputStream(new BufferedInputStream(
-                                new FileInputStream(theClass)));
-                    } catch (FileNotFoundException e) {
-                        // Ignore
+        CLPathEntry entry = entryFor(name);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            InputStream in = entry.open(name);
+            return in == null ? null : new CLInputStream(
+                    new BufferedInputStream(in));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the bytes of the class file of the class with the specified
+     * name (fully-qualified; tokens separated by '/') or {@code null} if the
+     * class was not found. A class file in a directory is mapped into memory
+     * rather than read.
+     *
+     * @param name
+     *            the fully-qualified name of the class -- java/util/ArrayList
+     *            for example.
+     * @return the bytes of the class file, or {@code null}.
+     */
+
+    public ByteBuffer classBytes(String name) {
+        CLPathEntry entry = entryFor(name);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return entry.bytes(name);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+}
+
+/**
+ * An entry of a class path: a directory, a zip (jar) file, or the run-time
+ * image of the JVM.
+ */
+
+abstract class CLPathEntry {
+
+    /**
+     * Returns {@code true} if this entry has the class with the specified
+     * name, and {@code false} otherwise.
+     *
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return true or false.
+     */
+
+    public abstract boolean contains(String name);
+
+    /**
+     * Returns an input stream for the class file of the class with the
+     * specified name, or {@code null} if this entry does not have it.
+     *
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return an input stream, or {@code null}.
+     * @throws IOException
+     *             if the class file cannot be opened.
+     */
+
+    public abstract InputStream open(String name) throws IOException;
+
+    /**
+     * Returns the bytes of the class file of the class with the specified
+     * name, or {@code null} if this entry does not have it.
+     *
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return the bytes of the class file, or {@code null}.
+     * @throws IOException
+     *             if the class file cannot be read.
+     */
+
+    public abstract ByteBuffer bytes(String name) throws IOException;
+
+    /**
+     * Returns {@code true} if this entry is as it was when it was opened, and
+     * {@code false} if it should be opened anew.
+     *
+     * @return true or false.
+     */
+
+    public boolean isCurrent() {
+        return true;
+    }
+
+}
+
+/**
+ * A directory in a class path. It is not indexed, as the class files in it may
+ * come and go.
+ */
+
+class CLDirectoryEntry extends CLPathEntry {
+
+    /** The directory. */
+    private File dir;
+
+    /**
+     * Constructs an entry for the specified directory.
+     *
+     * @param dir
+     *            the directory.
+     */
+
+    public CLDirectoryEntry(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the class file of the class with the specified name.
+     *
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return the class file.
+     */
+
+    private File classFile(String name) {
+        return new File(dir, name.replace('/', File.separatorChar) + ".class");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean contains(String name) {
+        return classFile(name).canRead();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public InputStream open(String name) throws IOException {
+        File file = classFile(name);
+        return file.canRead() ? new FileInputStream(file) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public ByteBuffer bytes(String name) throws IOException {
+        File file = classFile(name);
+        if (!file.canRead()) {
+            return null;
+        }
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+                    .size());
+        } finally {
+            channel.close();
+        }
+    }
+
+}
+
+/**
+ * A zip (jar) file in a class path. It is opened, and its class files indexed
+ * by name, the first time a class is looked up in it, and stays open. It is
+ * current as long as the file has the modification time and the length it
+ * had when the entry was made.
+ */
+
+class CLZipEntry extends CLPathEntry {
+
+    /** The zip file's name. */
+    private File file;
+
+    /** The zip file's modification time when the entry was made. */
+    private long lastModified;
+
+    /** The zip file's length when the entry was made. */
+    private long length;
+
+    /** The zip file, once opened. */
+    private ZipFile zip;
+
+    /** The zip file's class files, by class name, once indexed. */
+    private HashMap<String, ZipEntry> classes;
+
+    /**
+     * Constructs an entry for the specified zip file.
+     *
+     * @param file
+     *            the zip file's name.
+     */
+
+    public CLZipEntry(File file) {
+        this.file = file;
+        lastModified = file.lastModified();
+        length = file.length();
+    }
+
+    /**
+     * Returns the zip file's class files by class name, opening the file and
+     * indexing it if that is not done yet. A file that is not a zip file has
+     * none.
+     *
+     * @return the class files by class name.
+     */
+
+    private synchronized HashMap<String, ZipEntry> classes() {
+        if (classes == null) {
+            classes = new HashMap<String, ZipEntry>();
+            try {
+                zip = new ZipFile(file);
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    if (name.endsWith(".class")) {
+                        classes.put(name.substring(0, name.length() - 6),
+                                entry);
                     }
                 }
-            } else if (file.isFile()) {
-                try {
-                    ZipFile zip = new ZipFile(dir);
-                    ZipEntry entry = zip.getEntry(name + ".class");
-                    if (entry != null) {
-                        reader = new CLInputStream(zip.getInputStream(entry));
+            } catch (IOException e) {
+                // Not a zip file; ignore
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean contains(String name) {
+        return classes().containsKey(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public InputStream open(String name) throws IOException {
+        ZipEntry entry = classes().get(name);
+        return entry == null ? null : zip.getInputStream(entry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public ByteBuffer bytes(String name) throws IOException {
+        InputStream in = open(name);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return ByteBuffer.wrap(in.readAllBytes());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isCurrent() {
+        return file.lastModified() == lastModified
+                && file.length() == length;
+    }
+
+}
+
+/**
+ * The run-time image of the JVM (jrt:/), which has the platform classes where
+ * there is no rt.jar. The modules of each package are indexed the first time a
+ * class is looked up in it.
+ */
+
+class CLImageEntry extends CLPathEntry {
+
+    /** The name of the run-time image in a class path. */
+    public static final String NAME = "jrt:/";
+
+    /** The run-time image, once opened; {@code null} if there is none. */
+    private FileSystem image;
+
+    /**
+     * The modules of each package (tokens separated by '/'), once indexed:
+     * those with classes in it, or in packages within it.
+     */
+    private HashMap<String, ArrayList<String>> modules;
+
+    /**
+     * Returns the modules of each package, opening the run-time image and
+     * indexing it if that is not done yet. A JVM with no run-time image has
+     * none.
+     *
+     * @return the modules by package.
+     */
+
+    private synchronized HashMap<String, ArrayList<String>> modules() {
+        if (modules == null) {
+            modules = new HashMap<String, ArrayList<String>>();
+            try {
+                image = FileSystems.getFileSystem(URI.create(NAME));
+                DirectoryStream<Path> packages = Files.newDirectoryStream(image
+                        .getPath("/packages"));
+                for (Path pkg : packages) {
+                    ArrayList<String> in = new ArrayList<String>();
+                    DirectoryStream<Path> dir = Files.newDirectoryStream(pkg);
+                    for (Path module : dir) {
+                        in.add(module.getFileName().toString());
                     }
-                } catch (IOException e) {
-                    // Ignore
+                    dir.close();
+                    modules.put(pkg.getFileName().toString().replace('.', '/'),
+                            in);
                 }
-            } else {
-                // Bogus entry; ignore
+                packages.close();
+            } catch (Exception e) {
+                // No run-time image; ignore
             }
         }
-        return reader;
+        return modules;
+    }
+
+    /**
+     * Returns the class file of the class with the specified name, or
+     * {@code null} if the class is not in the image.
+     *
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return the class file, or {@code null}.
+     */
+
+    private Path classFile(String name) {
+        int slash = name.lastIndexOf('/');
+        ArrayList<String> in = modules().get(slash < 0 ? "" : name.substring(
+                0, slash));
+        if (in != null) {
+            for (String module : in) {
+                Path file = image.getPath("/modules", module, name + ".class");
+                if (Files.isRegularFile(file)) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean contains(String name) {
+        return classFile(name) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public InputStream open(String name) throws IOException {
+        Path file = classFile(name);
+        return file == null ? null : Files.newInputStream(file);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public ByteBuffer bytes(String name) throws IOException {
+        Path file = classFile(name);
+        return file == null ? null : ByteBuffer.wrap(Files.readAllBytes(file));
     }
 
 }
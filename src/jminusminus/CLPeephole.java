@@ -0,0 +1,1130 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * A peephole optimizer for the JVM code of a method. The AST's codegen methods
+ * emit simple-minded instruction sequences (a GOTO to the very next
+ * instruction after an empty else part, a load, add and store where an IINC
+ * would do, a store of a local immediately followed by a load of it, and so
+ * on); the optimizer rewrites them, by a catalog of rules, into shorter ones.
+ * Shorter methods load faster and are more readily inlined by the JVM, whose
+ * inlining thresholds are in bytes of bytecode.
+ * <p>
+ * {@link CLEmitter} runs the optimizer, if it is given one, on the
+ * instructions of each method as the method is closed, before the jump labels
+ * are resolved. Each rule in turn, in the order of the catalog, is tried at
+ * every instruction of the method, and the catalog is gone through until no
+ * rule applies; so where two rules would rewrite overlapping instructions,
+ * the earlier one wins. Each rule counts the number of times it has been
+ * applied. A rule is an instance of {@link CLPeepholeRule}, and so new rules
+ * may be added to the catalog.
+ * <p>
+ * An optimizer may be shared by the emitters of several threads; it keeps no
+ * state of its own besides its rules, whose counts are updated atomically.
+ */
+
+class CLPeephole {
+
+    /** The catalog of rules, in the order in which they are tried. */
+    private ArrayList<CLPeepholeRule> rules;
+
+    /**
+     * Constructs a peephole optimizer with the standard catalog of rules.
+     */
+
+    public CLPeephole() {
+        rules = new ArrayList<CLPeepholeRule>();
+        rules.add(new CLNopRule());
+        rules.add(new CLUnreachableCodeRule());
+        rules.add(new CLJumpToNextRule());
+        rules.add(new CLJumpToJumpRule());
+        rules.add(new CLJumpToReturnRule());
+        rules.add(new CLBranchOverJumpRule());
+        rules.add(new CLIncrementRule());
+        rules.add(new CLStoreLoadRule());
+        rules.add(new CLPushPopRule());
+    }
+
+    /**
+     * Adds a rule to the end of the catalog.
+     *
+     * @param rule
+     *            the rule.
+     */
+
+    public void addRule(CLPeepholeRule rule) {
+        rules.add(rule);
+    }
+
+    /**
+     * Returns the catalog of rules.
+     *
+     * @return the rules, in the order in which they are tried.
+     */
+
+    public ArrayList<CLPeepholeRule> rules() {
+        return rules;
+    }
+
+    /**
+     * Optimizes the code of a method. The instructions, the labels, and the
+     * exception handlers are rewritten in place: the instructions are moved
+     * to their new pcs, the labels that are no longer jumped to are dropped
+     * and the rest are bound to their new pcs, and handlers that no longer
+     * cover any code are dropped. A method that jumps to labels that are not
+     * bound, or that uses JSR or RET, is left as it is.
+     *
+     * @param code
+     *            the instructions of the method.
+     * @param labels
+     *            the labels of the method, and the pcs they are bound to.
+     * @param handlers
+     *            the exception handlers of the method.
+     * @param pc
+     *            size of the code of the method, in bytes.
+     * @return size of the optimized code, in bytes.
+     */
+
+    public int optimize(ArrayList<CLInstruction> code,
+            Hashtable<String, Integer> labels, ArrayList<CLException> handlers,
+            int pc) {
+        CLPeepholeCode method = CLPeepholeCode.of(code, labels, handlers, pc);
+        if (method == null) {
+            return pc;
+        }
+        boolean changed;
+        do {
+            changed = false;
+            for (CLPeepholeRule rule : rules) {
+                CLPeepholeCode.Node node = method.first();
+                while (node != null) {
+                    if (node.instruction == null) {
+                        node = node.next;
+                        continue;
+                    }
+
+                    // Rules take away instructions at and after the one
+                    // they are tried at, but never before it; so the
+                    // search goes on from the instruction before it,
+                    // which stays put
+                    CLPeepholeCode.Node before = method.previous(node);
+                    if (rule.rewrite(method, node)) {
+                        rule.hit();
+                        changed = true;
+                        node = before == null ? method.first() : before.next;
+                    } else {
+                        node = node.next;
+                    }
+                }
+            }
+        } while (changed);
+
+        pc = method.layout(code, labels);
+        Iterator<CLException> iter = handlers.iterator();
+        while (iter.hasNext()) {
+            CLException handler = iter.next();
+            if (labels.get(handler.startLabel).equals(
+                    labels.get(handler.endLabel))) {
+                iter.remove();
+            }
+        }
+        return pc;
+    }
+
+}
+
+/**
+ * The code of a method, as the peephole optimizer sees it: a doubly linked
+ * list of instructions, with the labels that are jumped to in between them.
+ * Each label keeps count of the instructions and exception handlers that
+ * refer to it, and goes away when the count drops to zero; so the only
+ * labels in the list are ones that are jumped to, and a sequence of
+ * instructions with no label in between is entered only at the start.
+ */
+
+class CLPeepholeCode {
+
+    /** An instruction or a label. */
+    static class Node {
+
+        /** The instruction, or {@code null} if this is a label. */
+        public CLInstruction instruction;
+
+        /** The label, or {@code null} if this is an instruction. */
+        public String label;
+
+        /** The node before this one, or {@code null} if there is none. */
+        public Node prev;
+
+        /** The node after this one, or {@code null} if there is none. */
+        public Node next;
+
+    }
+
+    /** The first node. */
+    private Node first;
+
+    /** The last node. */
+    private Node last;
+
+    /** Maps labels to their nodes. */
+    private HashMap<String, Node> labelNodes;
+
+    /** Maps labels to the number of references to them. */
+    private HashMap<String, Integer> references;
+
+    /**
+     * Constructs an empty CLPeepholeCode object.
+     */
+
+    private CLPeepholeCode() {
+        labelNodes = new HashMap<String, Node>();
+        references = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Returns the code of a method, as the peephole optimizer sees it.
+     *
+     * @param code
+     *            the instructions of the method.
+     * @param labels
+     *            the labels of the method, and the pcs they are bound to.
+     * @param handlers
+     *            the exception handlers of the method.
+     * @param pc
+     *            size of the code of the method, in bytes.
+     * @return the code, or {@code null} if the method jumps to labels that
+     *         are not bound (or are bound to the middle of an instruction),
+     *         or uses JSR or RET.
+     */
+
+    public static CLPeepholeCode of(ArrayList<CLInstruction> code,
+            Hashtable<String, Integer> labels,
+            ArrayList<CLException> handlers, int pc) {
+        CLPeepholeCode method = new CLPeepholeCode();
+        for (CLInstruction instr : code) {
+            int opcode = instr.opcode();
+            if (opcode == JSR || opcode == JSR_W || opcode == RET) {
+                return null;
+            }
+            if (instr instanceof CLFlowControlInstruction) {
+                for (String label : ((CLFlowControlInstruction) instr)
+                        .jumpLabels()) {
+                    method.refer(label, 1);
+                }
+            }
+        }
+        for (CLException handler : handlers) {
+            method.refer(handler.startLabel, 1);
+            method.refer(handler.endLabel, 1);
+            method.refer(handler.handlerLabel, 1);
+        }
+
+        // The labels bound at each pc; the ones bound at the end of the
+        // code are at pc
+        HashMap<Integer, ArrayList<String>> labelsAt =
+            new HashMap<Integer, ArrayList<String>>();
+        for (String label : method.references.keySet()) {
+            Integer labelPC = labels.get(label);
+            if (labelPC == null) {
+                return null;
+            }
+            ArrayList<String> at = labelsAt.get(labelPC);
+            if (at == null) {
+                at = new ArrayList<String>(1);
+                labelsAt.put(labelPC, at);
+            }
+            at.add(label);
+        }
+        int bound = 0;
+        for (CLInstruction instr : code) {
+            bound += method.appendLabels(labelsAt.get(instr.pc()));
+            Node node = new Node();
+            node.instruction = instr;
+            method.append(node);
+        }
+        bound += method.appendLabels(labelsAt.get(pc));
+        return bound == method.references.size() ? method : null;
+    }
+
+    /**
+     * Returns the first node.
+     *
+     * @return the first node, or {@code null} if there is none.
+     */
+
+    public Node first() {
+        return first;
+    }
+
+    /**
+     * Returns the instruction immediately after the specified node, if there
+     * is no label in between.
+     *
+     * @param node
+     *            the node.
+     * @return the instruction node, or {@code null} if the next node is a
+     *         label or there is none.
+     */
+
+    public Node following(Node node) {
+        Node next = node.next;
+        return next == null || next.instruction == null ? null : next;
+    }
+
+    /**
+     * Returns the instruction immediately before the specified node, if
+     * there is no label in between.
+     *
+     * @param node
+     *            the node.
+     * @return the instruction node, or {@code null} if the previous node is a
+     *         label or there is none.
+     */
+
+    public Node preceding(Node node) {
+        Node prev = node.prev;
+        return prev == null || prev.instruction == null ? null : prev;
+    }
+
+    /**
+     * Returns the instruction before the specified node, past any labels.
+     *
+     * @param node
+     *            the node.
+     * @return the instruction node, or {@code null} if there is none.
+     */
+
+    public Node previous(Node node) {
+        Node prev = node.prev;
+        while (prev != null && prev.instruction == null) {
+            prev = prev.prev;
+        }
+        return prev;
+    }
+
+    /**
+     * Returns the instruction that control falls through to from the
+     * specified node: the next instruction, past any labels.
+     *
+     * @param node
+     *            the node.
+     * @return the instruction node, or {@code null} if control falls off the
+     *         end of the code.
+     */
+
+    public Node successor(Node node) {
+        Node next = node.next;
+        while (next != null && next.instruction == null) {
+            next = next.next;
+        }
+        return next;
+    }
+
+    /**
+     * Returns the instruction at the specified label.
+     *
+     * @param label
+     *            the label.
+     * @return the instruction node, or {@code null} if the label is bound at
+     *         the end of the code.
+     */
+
+    public Node destination(String label) {
+        return successor(labelNodes.get(label));
+    }
+
+    /**
+     * Returns whether the instruction at the specified node is preceded by a
+     * WIDE instruction.
+     *
+     * @param node
+     *            the instruction node.
+     * @return {@code true} if the instruction is widened; {@code false}
+     *         otherwise.
+     */
+
+    public boolean isWidened(Node node) {
+        Node prev = preceding(node);
+        return prev != null && prev.instruction.opcode() == WIDE;
+    }
+
+    /**
+     * Inserts an instruction before the specified node, after any labels
+     * bound there; so that a jump to the labels reaches the new instruction.
+     *
+     * @param node
+     *            the instruction node.
+     * @param instr
+     *            the instruction to insert.
+     * @return the node of the new instruction.
+     */
+
+    public Node insertBefore(Node node, CLInstruction instr) {
+        Node added = new Node();
+        added.instruction = instr;
+        added.prev = node.prev;
+        added.next = node;
+        if (node.prev == null) {
+            first = added;
+        } else {
+            node.prev.next = added;
+        }
+        node.prev = added;
+        refer(instr, 1);
+        return added;
+    }
+
+    /**
+     * Replaces the instruction at the specified node.
+     *
+     * @param node
+     *            the instruction node.
+     * @param instr
+     *            the new instruction.
+     */
+
+    public void replace(Node node, CLInstruction instr) {
+        CLInstruction old = node.instruction;
+        node.instruction = instr;
+        refer(instr, 1);
+        refer(old, -1);
+    }
+
+    /**
+     * Takes away the instruction at the specified node, and with it any
+     * labels that are no longer referred to.
+     *
+     * @param node
+     *            the instruction node.
+     */
+
+    public void remove(Node node) {
+        unlink(node);
+        refer(node.instruction, -1);
+    }
+
+    /**
+     * Assigns the instructions their pcs, and the labels theirs.
+     *
+     * @param code
+     *            the list in which the instructions are returned.
+     * @param labels
+     *            the table in which the labels that are still referred to,
+     *            and their pcs, are returned.
+     * @return size of the code, in bytes.
+     */
+
+    public int layout(ArrayList<CLInstruction> code,
+            Hashtable<String, Integer> labels) {
+        code.clear();
+        labels.clear();
+        int pc = 0;
+        for (Node node = first; node != null; node = node.next) {
+            if (node.instruction == null) {
+                labels.put(node.label, pc);
+            } else {
+                node.instruction.relocate(pc);
+                code.add(node.instruction);
+                pc += 1 + node.instruction.operandCount();
+            }
+        }
+        return pc;
+    }
+
+    /**
+     * Appends nodes for the specified labels.
+     *
+     * @param labels
+     *            the labels, or {@code null} for none.
+     * @return the number of labels appended.
+     */
+
+    private int appendLabels(ArrayList<String> labels) {
+        if (labels == null) {
+            return 0;
+        }
+        for (String label : labels) {
+            Node node = new Node();
+            node.label = label;
+            append(node);
+            labelNodes.put(label, node);
+        }
+        return labels.size();
+    }
+
+    /**
+     * Appends a node.
+     *
+     * @param node
+     *            the node.
+     */
+
+    private void append(Node node) {
+        node.prev = last;
+        if (last == null) {
+            first = node;
+        } else {
+            last.next = node;
+        }
+        last = node;
+    }
+
+    /**
+     * Unlinks a node from the list.
+     *
+     * @param node
+     *            the node.
+     */
+
+    private void unlink(Node node) {
+        if (node.prev == null) {
+            first = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            last = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+    }
+
+    /**
+     * Adds to, or takes from, the counts of references to the labels the
+     * specified instruction jumps to.
+     *
+     * @param instr
+     *            the instruction.
+     * @param delta
+     *            1 to add a reference, -1 to take one away.
+     */
+
+    private void refer(CLInstruction instr, int delta) {
+        if (instr instanceof CLFlowControlInstruction) {
+            for (String label : ((CLFlowControlInstruction) instr)
+                    .jumpLabels()) {
+                refer(label, delta);
+            }
+        }
+    }
+
+    /**
+     * Adds to, or takes from, the count of references to the specified
+     * label; a label with no references left is taken away.
+     *
+     * @param label
+     *            the label.
+     * @param delta
+     *            1 to add a reference, -1 to take one away.
+     */
+
+    private void refer(String label, int delta) {
+        Integer count = references.get(label);
+        int n = (count == null ? 0 : count) + delta;
+        if (n > 0) {
+            references.put(label, n);
+        } else {
+            references.remove(label);
+            Node node = labelNodes.remove(label);
+            if (node != null) {
+                unlink(node);
+            }
+        }
+    }
+
+}
+
+/**
+ * A rule of the peephole optimizer: a pattern of instructions, and what to
+ * rewrite them into. Each rule counts the number of times it has been
+ * applied. Subclasses implement {@link #rewrite}, and may use the helpers
+ * here for classifying opcodes.
+ */
+
+abstract class CLPeepholeRule {
+
+    /** Name of this rule. */
+    private String name;
+
+    /** Number of times this rule has been applied. */
+    private AtomicInteger hits;
+
+    /**
+     * Constructs a rule.
+     *
+     * @param name
+     *            name of the rule.
+     */
+
+    protected CLPeepholeRule(String name) {
+        this.name = name;
+        hits = new AtomicInteger();
+    }
+
+    /**
+     * Returns the name of this rule.
+     *
+     * @return the name.
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of times this rule has been applied.
+     *
+     * @return the number of hits.
+     */
+
+    public int hits() {
+        return hits.get();
+    }
+
+    /**
+     * Counts an application of this rule.
+     */
+
+    public void hit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Applies this rule to the instructions starting at the specified node,
+     * if they match its pattern. A rule may take away, replace, or insert
+     * instructions at or after the node, but not before it; and it must leave
+     * the code shorter, or in a form it does not apply to again.
+     *
+     * @param code
+     *            the code of the method.
+     * @param node
+     *            the instruction node.
+     * @return {@code true} if the rule applied; {@code false} otherwise.
+     */
+
+    public abstract boolean rewrite(CLPeepholeCode code,
+            CLPeepholeCode.Node node);
+
+    /**
+     * Returns whether the specified opcode is that of a conditional branch.
+     *
+     * @param opcode
+     *            the opcode.
+     * @return {@code true} or {@code false}.
+     */
+
+    protected static boolean isConditionalBranch(int opcode) {
+        return IFEQ <= opcode && opcode <= IF_ACMPNE || opcode == IFNULL
+                || opcode == IFNONNULL;
+    }
+
+    /**
+     * Returns whether control never falls through the instruction with the
+     * specified opcode to the next one.
+     *
+     * @param opcode
+     *            the opcode.
+     * @return {@code true} or {@code false}.
+     */
+
+    protected static boolean isUnconditionalTransfer(int opcode) {
+        return opcode == GOTO || opcode == GOTO_W || opcode == TABLESWITCH
+                || opcode == LOOKUPSWITCH || IRETURN <= opcode
+                && opcode <= RETURN || opcode == ATHROW;
+    }
+
+    /**
+     * Returns whether the instruction with the specified opcode loads a
+     * local variable.
+     *
+     * @param opcode
+     *            the opcode.
+     * @return {@code true} or {@code false}.
+     */
+
+    protected static boolean isLoad(int opcode) {
+        return ILOAD <= opcode && opcode <= ALOAD_3;
+    }
+
+    /**
+     * Returns whether the instruction with the specified opcode stores into a
+     * local variable.
+     *
+     * @param opcode
+     *            the opcode.
+     * @return {@code true} or {@code false}.
+     */
+
+    protected static boolean isStore(int opcode) {
+        return ISTORE <= opcode && opcode <= ASTORE_3;
+    }
+
+    /**
+     * Returns the type of the local variable that the specified load or store
+     * instruction operates on: 0 for int, 1 for long, 2 for float, 3 for
+     * double, and 4 for reference.
+     *
+     * @param opcode
+     *            opcode of a load or store instruction.
+     * @return the type.
+     */
+
+    protected static int localType(int opcode) {
+        if (isLoad(opcode)) {
+            return opcode <= ALOAD ? opcode - ILOAD : (opcode - ILOAD_0) / 4;
+        }
+        return opcode <= ASTORE ? opcode - ISTORE : (opcode - ISTORE_0) / 4;
+    }
+
+    /**
+     * Returns the int value the specified instruction pushes, if it is an
+     * ICONST_*, BIPUSH or SIPUSH instruction.
+     *
+     * @param instr
+     *            the instruction.
+     * @return the value, or {@code null} if the instruction pushes no int
+     *         constant.
+     */
+
+    protected static Integer intConstant(CLInstruction instr) {
+        int opcode = instr.opcode();
+        if (ICONST_M1 <= opcode && opcode <= ICONST_5) {
+            return opcode - ICONST_0;
+        }
+        if (opcode == BIPUSH || opcode == SIPUSH) {
+            return ((CLLoadStoreInstruction) instr).constVal();
+        }
+        return null;
+    }
+
+}
+
+/**
+ * Takes away NOP instructions.
+ */
+
+class CLNopRule extends CLPeepholeRule {
+
+    /**
+     * Constructs the rule.
+     */
+
+    public CLNopRule() {
+        super("nop");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean rewrite(CLPeepholeCode code, CLPeepholeCode.Node node) {
+        if (node.instruction.opcode() != NOP) {
+            return false;
+        }
+        code.remove(node);
+        return true;
+    }
+
+}
+
+/**
+ * Takes away the instructions after an unconditional transfer of control
+ * that no jump reaches, such as the GOTO that JIfStatement emits after a then
+ * part that ends in a return.
+ */
+
+class CLUnreachableCodeRule extends CLPeepholeRule {
+
+    /**
+     * Constructs the rule.
+     */
+
+    public CLUnreachableCodeRule() {
+        super("unreachable code");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean rewrite(CLPeepholeCode code, CLPeepholeCode.Node node) {
+        if (!isUnconditionalTransfer(node.instruction.opcode())
+                || code.following(node) == null) {
+            return false;
+        }
+        for (CLPeepholeCode.Node dead = code.following(node); dead != null; dead = code
+                .following(node)) {
+            code.remove(dead);
+        }
+        return true;
+    }
+
+}
+
+/**
+ * Takes away a jump to the next instruction; a conditional one is replaced
+ * by the POP or POP2 of its operands.
+ */
+
+class CLJumpToNextRule extends CLPeepholeRule {
+
+    /**
+     * Constructs the rule.
+     */
+
+    public CLJumpToNextRule() {
+        super("jump to next");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean rewrite(CLPeepholeCode code, CLPeepholeCode.Node node) {
+        int opcode = node.instruction.opcode();
+        if (opcode != GOTO && opcode != GOTO_W
+                && !isConditionalBranch(opcode)) {
+            return false;
+        }
+        CLPeepholeCode.Node destination = code
+                .destination(((CLFlowControlInstruction) node.instruction)
+                        .jumpToLabel());
+        if (destination == null || destination != code.successor(node)) {
+            return false;
+        }
+        if (opcode == GOTO || opcode == GOTO_W) {
+            code.remove(node);
+        } else {
+            int pop = opcode >= IF_ICMPEQ && opcode <= IF_ACMPNE ? POP2 : POP;
+            code.replace(node, CLInstruction.noArgInstruction(pop, 0));
+        }
+        return true;
+    }
+
+}
+
+/**
+ * Makes a jump to a GOTO (to a GOTO ...) jump straight to where the last GOTO
+ * goes.
+ */
+
+class CLJumpToJumpRule extends CLPeepholeRule {
+
+    /**
+     * Constructs the rule.
+     */
+
+    public CLJumpToJumpRule() {
+        super("jump to jump");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean rewrite(CLPeepholeCode code, CLPeepholeCode.Node node) {
+        int opcode = node.instruction.opcode();
+        if (opcode != GOTO && !isConditionalBranch(opcode)) {
+            return false;
+        }
+        String label = ((CLFlowControlInstruction) node.instruction)
+                .jumpToLabel();
+        HashSet<String> seen = new HashSet<String>();
+        seen.add(label);
+        String target = label;
+        while (true) {
+            CLPeepholeCode.Node destination = code.destination(target);
+            if (destination == null
+                    || destination.instruction.opcode() != GOTO) {
+                break;
+            }
+            target = ((CLFlowControlInstruction) destination.instruction)
+                    .jumpToLabel();
+            if (!seen.add(target)) {
+                // A loop of GOTOs; leave it be
+                return false;
+            }
+        }
+        if (target.equals(label)) {
+            return false;
+        }
+        code.replace(node, new CLFlowControlInstruction(opcode, 0, target));
+        return true;
+    }
+
+}
+
+/**
+ * Replaces a GOTO to a return or ATHROW instruction by a copy of that
+ * instruction.
+ */
+
+class CLJumpToReturnRule extends CLPeepholeRule {
+
+    /**
+     * Constructs the rule.
+     */
+
+    public CLJumpToReturnRule() {
+        super("jump to return");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean rewrite(CLPeepholeCode code, CLPeepholeCode.Node node) {
+        int opcode = node.instruction.opcode();
+        if (opcode != GOTO && opcode != GOTO_W) {
+            return false;
+        }
+        CLPeepholeCode.Node destination = code
+                .destination(((CLFlowControlInstruction) node.instruction)
+                        .jumpToLabel());
+        if (destination == null) {
+            return false;
+        }
+        int target = destination.instruction.opcode();
+        if (!(IRETURN <= target && target <= RETURN || target == ATHROW)) {
+            return false;
+        }
+        code.replace(node, CLInstruction.noArgInstruction(target, 0));
+        return true;
+    }
+
+}
+
+/**
+ * Replaces a conditional branch over a GOTO by the opposite branch to where
+ * the GOTO goes.
+ */
+
+class CLBranchOverJumpRule extends CLPeepholeRule {
+
+    /**
+     * Constructs the rule.
+     */
+
+    public CLBranchOverJumpRule() {
+        super("branch over jump");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean rewrite(CLPeepholeCode code, CLPeepholeCode.Node node) {
+        int opcode = node.instruction.opcode();
+        if (!isConditionalBranch(opcode)) {
+            return false;
+        }
+        CLPeepholeCode.Node jump = code.following(node);
+        if (jump == null || jump.instruction.opcode() != GOTO) {
+            return false;
+        }
+        CLPeepholeCode.Node destination = code
+                .destination(((CLFlowControlInstruction) node.instruction)
+                        .jumpToLabel());
+        if (destination == null || destination != code.successor(jump)) {
+            return false;
+        }
+        code.replace(node, new CLFlowControlInstruction(opposite(opcode), 0,
+                ((CLFlowControlInstruction) jump.instruction).jumpToLabel()));
+        code.remove(jump);
+        return true;
+    }
+
+    /**
+     * Returns the opcode of the branch taken exactly when the specified one
+     * is not.
+     *
+     * @param opcode
+     *            opcode of a conditional branch.
+     * @return the opposite opcode.
+     */
+
+    private static int opposite(int opcode) {
+        if (opcode == IFNULL) {
+            return IFNONNULL;
+        }
+        if (opcode == IFNONNULL) {
+            return IFNULL;
+        }
+
+        // IFEQ, IFNE, ..., IF_ACMPEQ, IF_ACMPNE come in pairs, the first of
+        // each pair at an odd opcode
+        return opcode % 2 == 1 ? opcode + 1 : opcode - 1;
+    }
+
+}
+
+/**
+ * Replaces the load of an int local, the addition (or subtraction) of a
+ * constant, and the store back into the local, as JPlusAssignOp emits for
+ * {@code x += c}, by an IINC; if the new value is DUPed before the store, the
+ * local is loaded after the IINC instead.
+ */
+
+class CLIncrementRule extends CLPeepholeRule {
+
+    /**
+     * Constructs the rule.
+     */
+
+    public CLIncrementRule() {
+        super("increment");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean rewrite(CLPeepholeCode code, CLPeepholeCode.Node node) {
+        int opcode = node.instruction.opcode();
+        if (!isLoad(opcode) || localType(opcode) != 0 || code.isWidened(node)) {
+            return false;
+        }
+        int index = node.instruction.localVariableIndex();
+        CLPeepholeCode.Node constant = code.following(node);
+        Integer value = constant == null ? null : intConstant(constant
+                .instruction);
+        if (value == null) {
+            return false;
+        }
+        CLPeepholeCode.Node arithmetic = code.following(constant);
+        if (arithmetic == null) {
+            return false;
+        }
+        int increment;
+        if (arithmetic.instruction.opcode() == IADD) {
+            increment = value;
+        } else if (arithmetic.instruction.opcode() == ISUB) {
+            increment = -value;
+        } else {
+            return false;
+        }
+        CLPeepholeCode.Node dup = code.following(arithmetic);
+        CLPeepholeCode.Node store = dup;
+        if (dup != null && dup.instruction.opcode() == DUP) {
+            store = code.following(dup);
+        } else {
+            dup = null;
+        }
+        if (store == null || !isStore(store.instruction.opcode())
+                || localType(store.instruction.opcode()) != 0
+                || store.instruction.localVariableIndex() != index
+                || index > 255 || increment < -128 || increment > 127) {
+            return false;
+        }
+        code.insertBefore(node, new CLArithmeticInstruction(IINC, 0, index,
+                increment, false));
+        if (dup == null) {
+            code.remove(node);
+        } else {
+            code.remove(dup);
+        }
+        code.remove(constant);
+        code.remove(arithmetic);
+        code.remove(store);
+        return true;
+    }
+
+}
+
+/**
+ * Replaces the store of a local followed by a load of it with a DUP (or DUP2)
+ * followed by the store.
+ */
+
+class CLStoreLoadRule extends CLPeepholeRule {
+
+    /**
+     * Constructs the rule.
+     */
+
+    public CLStoreLoadRule() {
+        super("store then load");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean rewrite(CLPeepholeCode code, CLPeepholeCode.Node node) {
+        int opcode = node.instruction.opcode();
+        if (!isStore(opcode) || code.isWidened(node)) {
+            return false;
+        }
+        CLPeepholeCode.Node load = code.following(node);
+        if (load == null || !isLoad(load.instruction.opcode())
+                || localType(load.instruction.opcode()) != localType(opcode)
+                || load.instruction.localVariableIndex() != node.instruction
+                        .localVariableIndex()) {
+            return false;
+        }
+        int type = localType(opcode);
+        code.insertBefore(node, CLInstruction.noArgInstruction(
+                type == 1 || type == 3 ? DUP2 : DUP, 0));
+        code.remove(load);
+        return true;
+    }
+
+}
+
+/**
+ * Takes away the push of a value (the load of a local, a constant, or a DUP)
+ * that is immediately popped.
+ */
+
+class CLPushPopRule extends CLPeepholeRule {
+
+    /**
+     * Constructs the rule.
+     */
+
+    public CLPushPopRule() {
+        super("push then pop");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean rewrite(CLPeepholeCode code, CLPeepholeCode.Node node) {
+        int opcode = node.instruction.opcode();
+        int size;
+        if (isLoad(opcode) && !code.isWidened(node)) {
+            int type = localType(opcode);
+            size = type == 1 || type == 3 ? 2 : 1;
+        } else if (ACONST_NULL <= opcode && opcode <= SIPUSH) {
+            size = LCONST_0 <= opcode && opcode <= LCONST_1
+                    || DCONST_0 <= opcode && opcode <= DCONST_1 ? 2 : 1;
+        } else if (opcode == DUP) {
+            size = 1;
+        } else if (opcode == DUP2) {
+            size = 2;
+        } else {
+            return false;
+        }
+        CLPeepholeCode.Node pop = code.following(node);
+        if (pop == null
+                || pop.instruction.opcode() != (size == 1 ? POP : POP2)) {
+            return false;
+        }
+        code.remove(node);
+        code.remove(pop);
+        return true;
+    }
+
+}
@@ -0,0 +1,1536 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * Computes the stack map frames (JVM Spec Section 4.7.4) of the code of the
+ * methods of a class: the types of the local variables and of the operand
+ * stack entries at the start of each basic block that is entered other than
+ * by falling into it, that is, at each branch target, exception handler, and
+ * instruction following an unconditional transfer of control. Given these, in
+ * the StackMapTable attribute of the code, the type-checking verifier checks
+ * a method in a single linear pass, rather than inferring the types itself.
+ * <p>
+ * The frames are inferred by the data-flow analysis that the old verifier
+ * does (JVM Spec Section 4.10.2.2), over the assembled code: the types that
+ * reach a block along each of its incoming edges are merged, and the block is
+ * visited again whenever its types change. Two reference types merge into
+ * their nearest common superclass, looked up in the class being emitted, and
+ * in the types of the compilation (see {@link CompilationSession#typeNamed}),
+ * or, without one, in the classes of the platform; as for the verifier,
+ * interfaces are treated as Object.
+ * <p>
+ * The type-checking verifier checks unreachable code too, which the old one
+ * ignored. So, as javac and ASM do, code that no path reaches (such as the
+ * GOTO that follows a then part ending in a RETURN) is replaced by NOPs
+ * followed by an ATHROW, which verify with a frame of their own, and the
+ * exception handlers are trimmed so as not to cover it.
+ * <p>
+ * Verification types are represented by strings: "top", "int", "float",
+ * "long", "double", "null", "uninitializedThis", "uninitialized " followed by
+ * the pc of the NEW instruction that created the object, and otherwise the
+ * field descriptor of a reference type. A long or a double takes up two
+ * entries of the local variables, the second of which is top, but only one
+ * entry of the operand stack.
+ */
+
+class CLStackMap {
+
+    /** The top verification type. */
+    private static final String TOP = "top";
+
+    /** The int verification type. */
+    private static final String INTEGER = "int";
+
+    /** The float verification type. */
+    private static final String FLOAT = "float";
+
+    /** The long verification type. */
+    private static final String LONG = "long";
+
+    /** The double verification type. */
+    private static final String DOUBLE = "double";
+
+    /** The null verification type. */
+    private static final String NULL = "null";
+
+    /** The uninitializedThis verification type. */
+    private static final String UNINITIALIZED_THIS = "uninitializedThis";
+
+    /**
+     * Prefix of an uninitialized verification type; the pc of the NEW
+     * instruction follows.
+     */
+    private static final String UNINITIALIZED = "uninitialized ";
+
+    /** The type java.lang.Object. */
+    private static final String OBJECT = "Ljava/lang/Object;";
+
+    /** The type java.lang.Throwable. */
+    private static final String THROWABLE = "Ljava/lang/Throwable;";
+
+    /**
+     * The types produced by the arithmetic instructions, indexed by the
+     * opcode less IADD, modulo 4.
+     */
+    private static final String[] ARITHMETIC_TYPES = { INTEGER, LONG, FLOAT,
+            DOUBLE };
+
+    /** The types produced by the conversions, I2L to I2S, in opcode order. */
+    private static final String[] CONVERSION_TYPES = { LONG, FLOAT, DOUBLE,
+            INTEGER, FLOAT, DOUBLE, INTEGER, LONG, DOUBLE, INTEGER, LONG,
+            FLOAT, INTEGER, INTEGER, INTEGER };
+
+    /** The constant pool of the class. */
+    private CLConstantPool constantPool;
+
+    /** Name of the class, in internal form. */
+    private String thisClass;
+
+    /** Name of the superclass, in internal form. */
+    private String superClass;
+
+    /** Whether the class is an interface. */
+    private boolean isInterface;
+
+    /** The compilation the class is part of, or {@code null} if none. */
+    private CompilationSession session;
+
+    /** The code of the method. */
+    private byte[] code;
+
+    /** The exception table of the method. */
+    private ArrayList<CLExceptionInfo> exceptionTable;
+
+    /**
+     * The pcs at which blocks start that are entered other than by falling
+     * into them, and so need frames.
+     */
+    private BitSet targets;
+
+    /**
+     * The types on entry to the block starting at each pc, or {@code null}
+     * if the pc starts no block or no path reaches it.
+     */
+    private Frame[] frames;
+
+    /** The pcs of the blocks to visit (again). */
+    private BitSet pending;
+
+    /** Whether the method has unreachable code. */
+    private boolean hasUnreachableCode;
+
+    /** Why the frames could not be computed, or {@code null}. */
+    private String error;
+
+    /**
+     * Constructs a CLStackMap for the methods of the specified class.
+     *
+     * @param constantPool
+     *            the constant pool of the class.
+     * @param thisClass
+     *            name of the class in internal form.
+     * @param superClass
+     *            name of the superclass in internal form.
+     * @param isInterface
+     *            whether the class is an interface.
+     * @param session
+     *            the compilation the class is part of, or {@code null} if
+     *            there is none.
+     */
+
+    public CLStackMap(CLConstantPool constantPool, String thisClass,
+            String superClass, boolean isInterface, CompilationSession session) {
+        this.constantPool = constantPool;
+        this.thisClass = thisClass;
+        this.superClass = superClass;
+        this.isInterface = isInterface;
+        this.session = session;
+    }
+
+    /**
+     * Computes the stack map frames of the specified method. Any unreachable
+     * code is replaced, in place, by NOPs followed by an ATHROW, and the
+     * exception table is trimmed, in place, so as not to cover it.
+     *
+     * @param name
+     *            name of the method.
+     * @param descriptor
+     *            descriptor of the method.
+     * @param isStatic
+     *            whether the method is static.
+     * @param code
+     *            the code of the method.
+     * @param exceptionTable
+     *            the exception table of the method.
+     * @param maxLocals
+     *            the number of local variables of the method.
+     * @return the frames, or {@code null} if they could not be computed (see
+     *         {@link #error()}).
+     */
+
+    public ArrayList<CLStackMapFrame> frames(String name, String descriptor,
+            boolean isStatic, byte[] code,
+            ArrayList<CLExceptionInfo> exceptionTable, int maxLocals) {
+        this.code = code;
+        this.exceptionTable = exceptionTable;
+        hasUnreachableCode = false;
+        error = null;
+
+        // Find where the blocks start
+        targets = new BitSet(code.length + 1);
+        for (int pc = 0; pc < code.length; pc = next(pc)) {
+            int opcode = code[pc] & 0xFF;
+            for (int target : jumpTargets(pc)) {
+                targets.set(target);
+            }
+            if (!fallsThrough(opcode)) {
+                targets.set(next(pc));
+            }
+        }
+        for (CLExceptionInfo handler : exceptionTable) {
+            targets.set(handler.handlerPC);
+        }
+        targets.clear(code.length);
+
+        // Propagate the types through the blocks until they settle
+        Frame initial = initialFrame(name, descriptor, isStatic, maxLocals);
+        frames = new Frame[code.length];
+        pending = new BitSet(code.length);
+        merge(0, initial);
+        for (int pc = pending.nextSetBit(0); pc != -1 && error == null; pc = pending
+                .nextSetBit(0)) {
+            pending.clear(pc);
+            visit(pc);
+        }
+        if (error != null) {
+            return null;
+        }
+
+        // Encode a frame for each block, relative to the frame before it,
+        // replacing the unreachable blocks as they come
+        ArrayList<CLStackMapFrame> entries = new ArrayList<CLStackMapFrame>();
+        ArrayList<String> previousLocals = initial.encodedLocals();
+        int previousPC = -1;
+        for (int pc = targets.nextSetBit(0); pc != -1;) {
+            ArrayList<String> locals;
+            ArrayList<String> stack;
+            int end = pc + 1;
+            if (frames[pc] != null) {
+                locals = frames[pc].encodedLocals();
+                stack = frames[pc].encodedStack();
+            } else {
+                while (end < code.length
+                        && (!targets.get(end) || frames[end] == null)) {
+                    end++;
+                }
+                removeUnreachableCode(pc, end);
+                locals = new ArrayList<String>();
+                stack = new ArrayList<String>();
+                stack.add(THROWABLE);
+            }
+            int offsetDelta = previousPC == -1 ? pc : pc - previousPC - 1;
+            entries.add(frame(offsetDelta, previousLocals, locals, stack));
+            previousLocals = locals;
+            previousPC = pc;
+            pc = targets.nextSetBit(end);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns whether the method last given to {@link #frames frames} had
+     * unreachable code; the ATHROW that replaces it needs a stack entry.
+     *
+     * @return {@code true} if the method had unreachable code; {@code false}
+     *         otherwise.
+     */
+
+    public boolean hasUnreachableCode() {
+        return hasUnreachableCode;
+    }
+
+    /**
+     * Returns why the frames of the method last given to {@link #frames
+     * frames} could not be computed.
+     *
+     * @return the reason, or {@code null} if they were computed.
+     */
+
+    public String error() {
+        return error;
+    }
+
+    /**
+     * Returns the types on entry to the specified method.
+     *
+     * @param name
+     *            name of the method.
+     * @param descriptor
+     *            descriptor of the method.
+     * @param isStatic
+     *            whether the method is static.
+     * @param maxLocals
+     *            the number of local variables of the method.
+     * @return the types on entry.
+     */
+
+    private Frame initialFrame(String name, String descriptor,
+            boolean isStatic, int maxLocals) {
+        ArrayList<String> types = new ArrayList<String>();
+        if (!isStatic) {
+            types.add(name.equals("<init>")
+                    && !thisClass.equals("java/lang/Object") ? UNINITIALIZED_THIS
+                    : classType(thisClass));
+        }
+        for (int i = 1; descriptor.charAt(i) != ')'; i = fieldTypeEnd(
+                descriptor, i)) {
+            String type = fieldType(descriptor.substring(i, fieldTypeEnd(
+                    descriptor, i)));
+            types.add(type);
+            if (isCategory2(type)) {
+                types.add(TOP);
+            }
+        }
+        Frame frame = new Frame(Math.max(maxLocals, types.size()));
+        for (int i = 0; i < types.size(); i++) {
+            frame.locals[i] = types.get(i);
+        }
+        return frame;
+    }
+
+    /**
+     * Propagates the types on entry to the block starting at the specified pc
+     * through the block, and on to its successors.
+     *
+     * @param start
+     *            pc of the block.
+     */
+
+    private void visit(int start) {
+        Frame frame = frames[start].copy();
+        int pc = start;
+        while (error == null) {
+            int opcode = code[pc] & 0xFF;
+            for (CLExceptionInfo handler : exceptionTable) {
+                if (handler.startPC <= pc && pc < handler.endPC) {
+                    Frame caught = frame.copy();
+                    caught.size = 0;
+                    caught.push(handler.catchType == 0 ? THROWABLE
+                            : classType(className(handler.catchType)));
+                    merge(handler.handlerPC, caught);
+                }
+            }
+            execute(pc, frame);
+            for (int target : jumpTargets(pc)) {
+                merge(target, frame);
+            }
+            int next = next(pc);
+            if (!fallsThrough(opcode) || next >= code.length) {
+                // Falling off the end of the code is left for the verifier
+                // to report
+                return;
+            }
+            if (targets.get(next)) {
+                merge(next, frame);
+                return;
+            }
+            pc = next;
+        }
+    }
+
+    /**
+     * Merges the specified types into the types on entry to the block
+     * starting at the specified pc, and has the block visited again if they
+     * change.
+     *
+     * @param pc
+     *            pc of the block.
+     * @param frame
+     *            the types.
+     */
+
+    private void merge(int pc, Frame frame) {
+        Frame target = frames[pc];
+        if (target == null) {
+            frames[pc] = frame.copy();
+            pending.set(pc);
+            return;
+        }
+        if (target.size != frame.size) {
+            error = String.format("Inconsistent stack height at pc %d", pc);
+            return;
+        }
+        boolean changed = false;
+        for (int i = 0; i < target.locals.length; i++) {
+            String type = merge(target.locals[i], frame.locals[i]);
+            changed |= !type.equals(target.locals[i]);
+            target.locals[i] = type;
+        }
+        for (int i = 0; i < target.size; i++) {
+            String type = merge(target.stack[i], frame.stack[i]);
+            changed |= !type.equals(target.stack[i]);
+            target.stack[i] = type;
+        }
+        if (changed) {
+            pending.set(pc);
+        }
+    }
+
+    /**
+     * Returns the type that the specified types merge into.
+     *
+     * @param a
+     *            a type.
+     * @param b
+     *            another type.
+     * @return the merged type.
+     */
+
+    private String merge(String a, String b) {
+        if (a.equals(b)) {
+            return a;
+        } else if (a.equals(NULL) && isReference(b)) {
+            return b;
+        } else if (b.equals(NULL) && isReference(a)) {
+            return a;
+        } else if (isReference(a) && isReference(b)) {
+            return commonSuperType(a, b);
+        }
+        return TOP;
+    }
+
+    /**
+     * Returns the nearest common supertype of the specified (non-null)
+     * reference types.
+     *
+     * @param a
+     *            a reference type.
+     * @param b
+     *            another reference type.
+     * @return the common supertype.
+     */
+
+    private String commonSuperType(String a, String b) {
+        boolean isArrayA = a.charAt(0) == '[';
+        boolean isArrayB = b.charAt(0) == '[';
+        if (isArrayA && isArrayB) {
+            String elementA = a.substring(1);
+            String elementB = b.substring(1);
+            if (isReference(elementA) && isReference(elementB)) {
+                return "[" + commonSuperType(elementA, elementB);
+            }
+            return OBJECT;
+        } else if (isArrayA || isArrayB) {
+            return OBJECT;
+        }
+        return classType(commonSuperClass(a.substring(1, a.length() - 1), b
+                .substring(1, b.length() - 1)));
+    }
+
+    /**
+     * Returns the nearest common superclass of the specified classes, or
+     * java/lang/Object if either is an interface or cannot be found.
+     *
+     * @param a
+     *            name of a class in internal form.
+     * @param b
+     *            name of another class in internal form.
+     * @return name of the common superclass in internal form.
+     */
+
+    private String commonSuperClass(String a, String b) {
+        if (isInterface(a) || isInterface(b)) {
+            return "java/lang/Object";
+        }
+        HashSet<String> superClasses = new HashSet<String>();
+        for (String c = a; c != null; c = superClassOf(c)) {
+            superClasses.add(c);
+        }
+        for (String c = b; c != null; c = superClassOf(c)) {
+            if (superClasses.contains(c)) {
+                return c;
+            }
+        }
+        return "java/lang/Object";
+    }
+
+    /**
+     * Returns whether the specified class is an interface.
+     *
+     * @param name
+     *            name of the class in internal form.
+     * @return {@code true} if the class is an interface; {@code false} if it
+     *         is not, or cannot be found.
+     */
+
+    private boolean isInterface(String name) {
+        if (name.equals(thisClass)) {
+            return isInterface;
+        }
+        Type type = typeFor(name);
+        return type != null && type.isInterface();
+    }
+
+    /**
+     * Returns the superclass of the specified class.
+     *
+     * @param name
+     *            name of the class in internal form.
+     * @return name of the superclass in internal form, or {@code null} if
+     *         there is none or the class cannot be found.
+     */
+
+    private String superClassOf(String name) {
+        if (name.equals(thisClass)) {
+            return superClass;
+        }
+        Type type = typeFor(name);
+        if (type == null || type.superClass() == null) {
+            return null;
+        }
+        return type.superClass().jvmName();
+    }
+
+    /**
+     * Returns the type of the class with the specified name, without
+     * initializing the class.
+     *
+     * @param name
+     *            name of the class in internal form.
+     * @return the type, or {@code null} if it cannot be found.
+     */
+
+    private Type typeFor(String name) {
+        if (session != null) {
+            return session.typeNamed(name.replace('/', '.'));
+        }
+        try {
+            return Type.typeFor(Class.forName(name.replace('/', '.'), false,
+                    CLStackMap.class.getClassLoader()));
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies the effect of the instruction at the specified pc to the
+     * specified types.
+     *
+     * @param pc
+     *            pc of the instruction.
+     * @param frame
+     *            the types before the instruction, which become the types
+     *            after it.
+     */
+
+    private void execute(int pc, Frame frame) {
+        int opcode = code[pc] & 0xFF;
+        int index = opcode == WIDE ? u2(pc + 2) : pc + 1 < code.length ? u1(pc + 1)
+                : 0;
+        if (opcode == WIDE) {
+            opcode = code[pc + 1] & 0xFF;
+        }
+        switch (opcode) {
+        case NOP:
+        case IINC:
+        case GOTO:
+        case GOTO_W:
+        case RETURN:
+            break;
+        case ACONST_NULL:
+            frame.push(NULL);
+            break;
+        case ICONST_M1:
+        case ICONST_0:
+        case ICONST_1:
+        case ICONST_2:
+        case ICONST_3:
+        case ICONST_4:
+        case ICONST_5:
+        case BIPUSH:
+        case SIPUSH:
+        case ILOAD:
+        case ILOAD_0:
+        case ILOAD_1:
+        case ILOAD_2:
+        case ILOAD_3:
+            frame.push(INTEGER);
+            break;
+        case LCONST_0:
+        case LCONST_1:
+        case LLOAD:
+        case LLOAD_0:
+        case LLOAD_1:
+        case LLOAD_2:
+        case LLOAD_3:
+            frame.push(LONG);
+            break;
+        case FCONST_0:
+        case FCONST_1:
+        case FCONST_2:
+        case FLOAD:
+        case FLOAD_0:
+        case FLOAD_1:
+        case FLOAD_2:
+        case FLOAD_3:
+            frame.push(FLOAT);
+            break;
+        case DCONST_0:
+        case DCONST_1:
+        case DLOAD:
+        case DLOAD_0:
+        case DLOAD_1:
+        case DLOAD_2:
+        case DLOAD_3:
+            frame.push(DOUBLE);
+            break;
+        case LDC:
+            frame.push(constantType(u1(pc + 1)));
+            break;
+        case LDC_W:
+        case LDC2_W:
+            frame.push(constantType(u2(pc + 1)));
+            break;
+        case ALOAD:
+            frame.push(frame.locals[index]);
+            break;
+        case ALOAD_0:
+        case ALOAD_1:
+        case ALOAD_2:
+        case ALOAD_3:
+            frame.push(frame.locals[opcode - ALOAD_0]);
+            break;
+        case IALOAD:
+        case BALOAD:
+        case CALOAD:
+        case SALOAD:
+            frame.pop(2);
+            frame.push(INTEGER);
+            break;
+        case LALOAD:
+            frame.pop(2);
+            frame.push(LONG);
+            break;
+        case FALOAD:
+            frame.pop(2);
+            frame.push(FLOAT);
+            break;
+        case DALOAD:
+            frame.pop(2);
+            frame.push(DOUBLE);
+            break;
+        case AALOAD: {
+            frame.pop();
+            String array = frame.pop();
+            frame.push(array.charAt(0) == '[' ? fieldType(array.substring(1))
+                    : NULL);
+            break;
+        }
+        case ISTORE:
+        case LSTORE:
+        case FSTORE:
+        case DSTORE:
+        case ASTORE:
+            frame.store(index, frame.pop());
+            break;
+        case ISTORE_0:
+        case ISTORE_1:
+        case ISTORE_2:
+        case ISTORE_3:
+            frame.store(opcode - ISTORE_0, frame.pop());
+            break;
+        case LSTORE_0:
+        case LSTORE_1:
+        case LSTORE_2:
+        case LSTORE_3:
+            frame.store(opcode - LSTORE_0, frame.pop());
+            break;
+        case FSTORE_0:
+        case FSTORE_1:
+        case FSTORE_2:
+        case FSTORE_3:
+            frame.store(opcode - FSTORE_0, frame.pop());
+            break;
+        case DSTORE_0:
+        case DSTORE_1:
+        case DSTORE_2:
+        case DSTORE_3:
+            frame.store(opcode - DSTORE_0, frame.pop());
+            break;
+        case ASTORE_0:
+        case ASTORE_1:
+        case ASTORE_2:
+        case ASTORE_3:
+            frame.store(opcode - ASTORE_0, frame.pop());
+            break;
+        case IASTORE:
+        case LASTORE:
+        case FASTORE:
+        case DASTORE:
+        case AASTORE:
+        case BASTORE:
+        case CASTORE:
+        case SASTORE:
+            frame.pop(3);
+            break;
+        case POP:
+            frame.pop();
+            break;
+        case POP2:
+            if (!isCategory2(frame.pop())) {
+                frame.pop();
+            }
+            break;
+        case DUP:
+        case DUP_X1:
+        case DUP_X2:
+        case DUP2:
+        case DUP2_X1:
+        case DUP2_X2:
+        case SWAP:
+            executeStackInstruction(opcode, frame);
+            break;
+        case IADD:
+        case LADD:
+        case FADD:
+        case DADD:
+        case ISUB:
+        case LSUB:
+        case FSUB:
+        case DSUB:
+        case IMUL:
+        case LMUL:
+        case FMUL:
+        case DMUL:
+        case IDIV:
+        case LDIV:
+        case FDIV:
+        case DDIV:
+        case IREM:
+        case LREM:
+        case FREM:
+        case DREM:
+            frame.pop(2);
+            frame.push(ARITHMETIC_TYPES[(opcode - IADD) % 4]);
+            break;
+        case INEG:
+        case LNEG:
+        case FNEG:
+        case DNEG:
+            frame.pop();
+            frame.push(ARITHMETIC_TYPES[(opcode - INEG) % 4]);
+            break;
+        case ISHL:
+        case LSHL:
+        case ISHR:
+        case LSHR:
+        case IUSHR:
+        case LUSHR:
+        case IAND:
+        case LAND:
+        case IOR:
+        case LOR:
+        case IXOR:
+        case LXOR:
+            frame.pop(2);
+            frame.push((opcode - ISHL) % 2 == 0 ? INTEGER : LONG);
+            break;
+        case I2L:
+        case I2F:
+        case I2D:
+        case L2I:
+        case L2F:
+        case L2D:
+        case F2I:
+        case F2L:
+        case F2D:
+        case D2I:
+        case D2L:
+        case D2F:
+        case I2B:
+        case I2C:
+        case I2S:
+            frame.pop();
+            frame.push(CONVERSION_TYPES[opcode - I2L]);
+            break;
+        case LCMP:
+        case FCMPL:
+        case FCMPG:
+        case DCMPL:
+        case DCMPG:
+            frame.pop(2);
+            frame.push(INTEGER);
+            break;
+        case IFEQ:
+        case IFNE:
+        case IFLT:
+        case IFGE:
+        case IFGT:
+        case IFLE:
+        case IFNULL:
+        case IFNONNULL:
+        case TABLESWITCH:
+        case LOOKUPSWITCH:
+        case IRETURN:
+        case LRETURN:
+        case FRETURN:
+        case DRETURN:
+        case ARETURN:
+        case ATHROW:
+        case MONITORENTER:
+        case MONITOREXIT:
+        case PUTSTATIC:
+            frame.pop();
+            break;
+        case IF_ICMPEQ:
+        case IF_ICMPNE:
+        case IF_ICMPLT:
+        case IF_ICMPGE:
+        case IF_ICMPGT:
+        case IF_ICMPLE:
+        case IF_ACMPEQ:
+        case IF_ACMPNE:
+        case PUTFIELD:
+            frame.pop(2);
+            break;
+        case GETSTATIC:
+            frame.push(fieldType(memberDescriptor(u2(pc + 1))));
+            break;
+        case GETFIELD:
+            frame.pop();
+            frame.push(fieldType(memberDescriptor(u2(pc + 1))));
+            break;
+        case INVOKEVIRTUAL:
+        case INVOKESPECIAL:
+        case INVOKESTATIC:
+        case INVOKEINTERFACE:
+            executeInvoke(opcode, u2(pc + 1), frame);
+            break;
+        case NEW:
+            frame.push(UNINITIALIZED + pc);
+            break;
+        case NEWARRAY:
+            frame.pop();
+            frame.push("[" + "ZCFDBSIJ".charAt(u1(pc + 1) - 4));
+            break;
+        case ANEWARRAY:
+            frame.pop();
+            frame.push("[" + classType(className(u2(pc + 1))));
+            break;
+        case ARRAYLENGTH:
+        case INSTANCEOF:
+            frame.pop();
+            frame.push(INTEGER);
+            break;
+        case CHECKCAST:
+            frame.pop();
+            frame.push(classType(className(u2(pc + 1))));
+            break;
+        case MULTIANEWARRAY:
+            frame.pop(u1(pc + 3));
+            frame.push(className(u2(pc + 1)));
+            break;
+        default:
+            error = String.format(
+                    "Cannot compute stack map frames for code with '%s'",
+                    CLInstruction.instructionInfo[opcode].mnemonic);
+        }
+    }
+
+    /**
+     * Applies the effect of the specified DUP, DUP_X1, DUP_X2, DUP2, DUP2_X1,
+     * DUP2_X2 or SWAP instruction to the specified types; the forms of the
+     * DUP2 instructions depend on the categories of the entries.
+     *
+     * @param opcode
+     *            opcode of the instruction.
+     * @param frame
+     *            the types.
+     */
+
+    private void executeStackInstruction(int opcode, Frame frame) {
+        String v1 = frame.pop();
+        switch (opcode) {
+        case DUP:
+            frame.push(v1, v1);
+            break;
+        case DUP_X1: {
+            String v2 = frame.pop();
+            frame.push(v1, v2, v1);
+            break;
+        }
+        case DUP_X2: {
+            String v2 = frame.pop();
+            if (isCategory2(v2)) {
+                frame.push(v1, v2, v1);
+            } else {
+                String v3 = frame.pop();
+                frame.push(v1, v3, v2, v1);
+            }
+            break;
+        }
+        case DUP2:
+            if (isCategory2(v1)) {
+                frame.push(v1, v1);
+            } else {
+                String v2 = frame.pop();
+                frame.push(v2, v1, v2, v1);
+            }
+            break;
+        case DUP2_X1: {
+            String v2 = frame.pop();
+            if (isCategory2(v1)) {
+                frame.push(v1, v2, v1);
+            } else {
+                String v3 = frame.pop();
+                frame.push(v2, v1, v3, v2, v1);
+            }
+            break;
+        }
+        case DUP2_X2: {
+            String v2 = frame.pop();
+            if (isCategory2(v1) && isCategory2(v2)) {
+                frame.push(v1, v2, v1);
+            } else if (isCategory2(v1)) {
+                String v3 = frame.pop();
+                frame.push(v1, v3, v2, v1);
+            } else {
+                String v3 = frame.pop();
+                if (isCategory2(v3)) {
+                    frame.push(v2, v1, v3, v2, v1);
+                } else {
+                    String v4 = frame.pop();
+                    frame.push(v2, v1, v4, v3, v2, v1);
+                }
+            }
+            break;
+        }
+        default: {
+            String v2 = frame.pop();
+            frame.push(v1, v2);
+        }
+        }
+    }
+
+    /**
+     * Applies the effect of the specified method invocation to the specified
+     * types. Invoking a constructor initializes its target: every copy of the
+     * uninitialized target takes the type of the class.
+     *
+     * @param opcode
+     *            opcode of the instruction.
+     * @param index
+     *            constant pool index of the method.
+     * @param frame
+     *            the types.
+     */
+
+    private void executeInvoke(int opcode, int index, Frame frame) {
+        CLConstantMemberRefInfo method = (CLConstantMemberRefInfo) constantPool
+                .cpItem(index);
+        CLConstantNameAndTypeInfo nameAndType = (CLConstantNameAndTypeInfo) constantPool
+                .cpItem(method.nameAndTypeIndex);
+        String descriptor = utf8(nameAndType.descriptorIndex);
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            frame.pop();
+            i = fieldTypeEnd(descriptor, i);
+        }
+        if (opcode != INVOKESTATIC) {
+            String target = frame.pop();
+            if (utf8(nameAndType.nameIndex).equals("<init>")) {
+                if (target.equals(UNINITIALIZED_THIS)) {
+                    frame.replace(target, classType(thisClass));
+                } else if (target.startsWith(UNINITIALIZED)) {
+                    int newPC = Integer.parseInt(target
+                            .substring(UNINITIALIZED.length()));
+                    frame.replace(target, classType(className(u2(newPC + 1))));
+                }
+            }
+        }
+        if (descriptor.charAt(i + 1) != 'V') {
+            frame.push(fieldType(descriptor.substring(i + 1)));
+        }
+    }
+
+    /**
+     * Replaces the unreachable code between the specified pcs by NOPs
+     * followed by an ATHROW, and trims the exception table so that no handler
+     * covers it.
+     *
+     * @param start
+     *            pc of the first unreachable instruction.
+     * @param end
+     *            pc following the last unreachable instruction.
+     */
+
+    private void removeUnreachableCode(int start, int end) {
+        hasUnreachableCode = true;
+        Arrays.fill(code, start, end - 1, (byte) NOP);
+        code[end - 1] = (byte) ATHROW;
+        for (int i = 0; i < exceptionTable.size(); i++) {
+            CLExceptionInfo handler = exceptionTable.get(i);
+            if (handler.endPC <= start || end <= handler.startPC) {
+                continue;
+            }
+            if (end < handler.endPC) {
+                exceptionTable.add(i + 1, new CLExceptionInfo(end,
+                        handler.endPC, handler.handlerPC, handler.catchType));
+            }
+            if (handler.startPC < start) {
+                handler.endPC = start;
+            } else {
+                exceptionTable.remove(i--);
+            }
+        }
+    }
+
+    /**
+     * Returns the frame, of the most compact type that will do, for the
+     * specified types, given the locals of the frame before it.
+     *
+     * @param offsetDelta
+     *            offset of the frame from the frame before it.
+     * @param previousLocals
+     *            the locals of the frame before it.
+     * @param locals
+     *            the locals.
+     * @param stack
+     *            the stack entries.
+     * @return the frame.
+     */
+
+    private CLStackMapFrame frame(int offsetDelta,
+            ArrayList<String> previousLocals, ArrayList<String> locals,
+            ArrayList<String> stack) {
+        ArrayList<CLVerificationTypeInfo> frameLocals = new ArrayList<CLVerificationTypeInfo>();
+        ArrayList<CLVerificationTypeInfo> frameStack = new ArrayList<CLVerificationTypeInfo>();
+        int frameType;
+        int k = locals.size() - previousLocals.size();
+        if (stack.size() <= 1 && locals.equals(previousLocals)) {
+            if (stack.size() == 0) {
+                frameType = offsetDelta <= SAME_FRAME_MAX ? offsetDelta
+                        : SAME_FRAME_EXTENDED;
+            } else {
+                frameType = offsetDelta <= SAME_LOCALS_1_STACK_ITEM_MAX
+                        - SAME_LOCALS_1_STACK_ITEM ? SAME_LOCALS_1_STACK_ITEM
+                        + offsetDelta : SAME_LOCALS_1_STACK_ITEM_EXTENDED;
+                frameStack.add(verificationType(stack.get(0)));
+            }
+        } else if (stack.size() == 0 && -3 <= k && k < 0
+                && previousLocals.subList(0, locals.size()).equals(locals)) {
+            frameType = SAME_FRAME_EXTENDED + k;
+        } else if (stack.size() == 0 && 0 < k && k <= 3
+                && locals.subList(0, previousLocals.size()).equals(
+                        previousLocals)) {
+            frameType = SAME_FRAME_EXTENDED + k;
+            addVerificationTypes(frameLocals, locals.subList(previousLocals
+                    .size(), locals.size()));
+        } else {
+            frameType = FULL_FRAME;
+            addVerificationTypes(frameLocals, locals);
+            addVerificationTypes(frameStack, stack);
+        }
+        return new CLStackMapFrame(frameType, offsetDelta, frameLocals,
+                frameStack);
+    }
+
+    /**
+     * Adds the verification_type_info structures for the specified types to
+     * the specified list.
+     *
+     * @param infos
+     *            the list.
+     * @param types
+     *            the types.
+     */
+
+    private void addVerificationTypes(ArrayList<CLVerificationTypeInfo> infos,
+            List<String> types) {
+        for (String type : types) {
+            infos.add(verificationType(type));
+        }
+    }
+
+    /**
+     * Returns the verification_type_info structure for the specified type.
+     *
+     * @param type
+     *            the type.
+     * @return the verification_type_info structure.
+     */
+
+    private CLVerificationTypeInfo verificationType(String type) {
+        if (type.equals(TOP)) {
+            return new CLVerificationTypeInfo(ITEM_Top, 0);
+        } else if (type.equals(INTEGER)) {
+            return new CLVerificationTypeInfo(ITEM_Integer, 0);
+        } else if (type.equals(FLOAT)) {
+            return new CLVerificationTypeInfo(ITEM_Float, 0);
+        } else if (type.equals(LONG)) {
+            return new CLVerificationTypeInfo(ITEM_Long, 0);
+        } else if (type.equals(DOUBLE)) {
+            return new CLVerificationTypeInfo(ITEM_Double, 0);
+        } else if (type.equals(NULL)) {
+            return new CLVerificationTypeInfo(ITEM_Null, 0);
+        } else if (type.equals(UNINITIALIZED_THIS)) {
+            return new CLVerificationTypeInfo(ITEM_UninitializedThis, 0);
+        } else if (type.startsWith(UNINITIALIZED)) {
+            return new CLVerificationTypeInfo(ITEM_Uninitialized, Integer
+                    .parseInt(type.substring(UNINITIALIZED.length())));
+        }
+        String name = type.charAt(0) == '[' ? type : type.substring(1, type
+                .length() - 1);
+        return new CLVerificationTypeInfo(ITEM_Object, constantPool
+                .constantClassInfo(name));
+    }
+
+    /**
+     * Returns the pcs that the instruction at the specified pc may jump to,
+     * other than the one following it.
+     *
+     * @param pc
+     *            pc of the instruction.
+     * @return the jump targets.
+     */
+
+    private int[] jumpTargets(int pc) {
+        int opcode = code[pc] & 0xFF;
+        if (IFEQ <= opcode && opcode <= GOTO || opcode == IFNULL
+                || opcode == IFNONNULL) {
+            return new int[] { pc + (short) u2(pc + 1) };
+        } else if (opcode == GOTO_W) {
+            return new int[] { pc + s4(pc + 1) };
+        } else if (opcode == TABLESWITCH || opcode == LOOKUPSWITCH) {
+            int base = (pc + 4) & ~3;
+            int count = opcode == TABLESWITCH ? s4(base + 8) - s4(base + 4) + 1
+                    : s4(base + 4);
+            int[] jumps = new int[count + 1];
+            jumps[0] = pc + s4(base);
+            for (int i = 0; i < count; i++) {
+                jumps[i + 1] = pc
+                        + (opcode == TABLESWITCH ? s4(base + 12 + 4 * i)
+                                : s4(base + 12 + 8 * i));
+            }
+            return jumps;
+        }
+        return new int[0];
+    }
+
+    /**
+     * Returns whether control may pass from the instruction with the
+     * specified opcode to the instruction following it.
+     *
+     * @param opcode
+     *            opcode of the instruction.
+     * @return {@code true} if control may fall through; {@code false}
+     *         otherwise.
+     */
+
+    private static boolean fallsThrough(int opcode) {
+        switch (opcode) {
+        case GOTO:
+        case GOTO_W:
+        case TABLESWITCH:
+        case LOOKUPSWITCH:
+        case IRETURN:
+        case LRETURN:
+        case FRETURN:
+        case DRETURN:
+        case ARETURN:
+        case RETURN:
+        case ATHROW:
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Returns the pc of the instruction following the one at the specified
+     * pc.
+     *
+     * @param pc
+     *            pc of the instruction.
+     * @return pc of the next instruction.
+     */
+
+    private int next(int pc) {
+        int opcode = code[pc] & 0xFF;
+        switch (opcode) {
+        case WIDE:
+            return pc + ((code[pc + 1] & 0xFF) == IINC ? 6 : 4);
+        case TABLESWITCH: {
+            int base = (pc + 4) & ~3;
+            return base + 16 + 4 * (s4(base + 8) - s4(base + 4));
+        }
+        case LOOKUPSWITCH: {
+            int base = (pc + 4) & ~3;
+            return base + 8 + 8 * s4(base + 4);
+        }
+        default:
+            return pc + 1 + CLInstruction.instructionInfo[opcode].operandCount;
+        }
+    }
+
+    /**
+     * Returns the type of the constant at the specified constant pool index,
+     * as loaded by LDC, LDC_W or LDC2_W.
+     *
+     * @param index
+     *            constant pool index.
+     * @return the type of the constant.
+     */
+
+    private String constantType(int index) {
+        CLCPInfo constant = constantPool.cpItem(index);
+        if (constant instanceof CLConstantIntegerInfo) {
+            return INTEGER;
+        } else if (constant instanceof CLConstantFloatInfo) {
+            return FLOAT;
+        } else if (constant instanceof CLConstantLongInfo) {
+            return LONG;
+        } else if (constant instanceof CLConstantDoubleInfo) {
+            return DOUBLE;
+        } else if (constant instanceof CLConstantStringInfo) {
+            return "Ljava/lang/String;";
+        }
+        return "Ljava/lang/Class;";
+    }
+
+    /**
+     * Returns the descriptor of the field or method at the specified constant
+     * pool index.
+     *
+     * @param index
+     *            constant pool index of a CONSTANT_Fieldref_info,
+     *            CONSTANT_Methodref_info or CONSTANT_InterfaceMethodref_info.
+     * @return the descriptor.
+     */
+
+    private String memberDescriptor(int index) {
+        CLConstantMemberRefInfo member = (CLConstantMemberRefInfo) constantPool
+                .cpItem(index);
+        CLConstantNameAndTypeInfo nameAndType = (CLConstantNameAndTypeInfo) constantPool
+                .cpItem(member.nameAndTypeIndex);
+        return utf8(nameAndType.descriptorIndex);
+    }
+
+    /**
+     * Returns the name of the class at the specified constant pool index.
+     *
+     * @param index
+     *            constant pool index of a CONSTANT_Class_info.
+     * @return name of the class in internal form.
+     */
+
+    private String className(int index) {
+        return utf8(((CLConstantClassInfo) constantPool.cpItem(index)).nameIndex);
+    }
+
+    /**
+     * Returns the string at the specified constant pool index.
+     *
+     * @param index
+     *            constant pool index of a CONSTANT_Utf8_info.
+     * @return the string.
+     */
+
+    private String utf8(int index) {
+        return new String(((CLConstantUtf8Info) constantPool.cpItem(index)).b);
+    }
+
+    /**
+     * Returns the unsigned byte of code at the specified pc.
+     *
+     * @param pc
+     *            the pc.
+     * @return the byte.
+     */
+
+    private int u1(int pc) {
+        return code[pc] & 0xFF;
+    }
+
+    /**
+     * Returns the unsigned two bytes of code at the specified pc.
+     *
+     * @param pc
+     *            the pc.
+     * @return the unsigned short.
+     */
+
+    private int u2(int pc) {
+        return (u1(pc) << 8) | u1(pc + 1);
+    }
+
+    /**
+     * Returns the signed four bytes of code at the specified pc.
+     *
+     * @param pc
+     *            the pc.
+     * @return the int.
+     */
+
+    private int s4(int pc) {
+        return (u2(pc) << 16) | u2(pc + 2);
+    }
+
+    /**
+     * Returns the verification type of a value of the specified field type.
+     *
+     * @param descriptor
+     *            the field descriptor.
+     * @return the verification type.
+     */
+
+    private static String fieldType(String descriptor) {
+        switch (descriptor.charAt(0)) {
+        case 'Z':
+        case 'B':
+        case 'C':
+        case 'S':
+        case 'I':
+            return INTEGER;
+        case 'F':
+            return FLOAT;
+        case 'J':
+            return LONG;
+        case 'D':
+            return DOUBLE;
+        default:
+            return descriptor;
+        }
+    }
+
+    /**
+     * Returns the index following the field type that starts at the specified
+     * index of the specified descriptor.
+     *
+     * @param descriptor
+     *            a field or method descriptor.
+     * @param i
+     *            index of the field type.
+     * @return the index following the field type.
+     */
+
+    private static int fieldTypeEnd(String descriptor, int i) {
+        while (descriptor.charAt(i) == '[') {
+            i++;
+        }
+        return descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1
+                : i + 1;
+    }
+
+    /**
+     * Returns the type of instances of the specified class.
+     *
+     * @param name
+     *            name of the class (or array class) in internal form.
+     * @return the type.
+     */
+
+    private static String classType(String name) {
+        return name.charAt(0) == '[' ? name : "L" + name + ";";
+    }
+
+    /**
+     * Returns whether the specified type is a reference type (or null).
+     *
+     * @param type
+     *            the type.
+     * @return {@code true} if the type is a reference type; {@code false}
+     *         otherwise.
+     */
+
+    private static boolean isReference(String type) {
+        return type.charAt(0) == 'L' || type.charAt(0) == '['
+                || type.equals(NULL);
+    }
+
+    /**
+     * Returns whether values of the specified type take up two words.
+     *
+     * @param type
+     *            the type.
+     * @return {@code true} if the type is long or double; {@code false}
+     *         otherwise.
+     */
+
+    private static boolean isCategory2(String type) {
+        return type.equals(LONG) || type.equals(DOUBLE);
+    }
+
+    /**
+     * The types of the local variables and of the operand stack entries at
+     * some point in a method.
+     */
+
+    private static class Frame {
+
+        /** The types of the local variables. */
+        public String[] locals;
+
+        /** The types of the operand stack entries, bottom first. */
+        public String[] stack;
+
+        /** Number of operand stack entries. */
+        public int size;
+
+        /**
+         * Constructs a frame with the specified number of local variables, of
+         * type top, and an empty operand stack.
+         *
+         * @param maxLocals
+         *            the number of local variables.
+         */
+
+        public Frame(int maxLocals) {
+            locals = new String[maxLocals];
+            Arrays.fill(locals, TOP);
+            stack = new String[4];
+            size = 0;
+        }
+
+        /**
+         * Returns a copy of this frame.
+         *
+         * @return the copy.
+         */
+
+        public Frame copy() {
+            Frame copy = new Frame(0);
+            copy.locals = locals.clone();
+            copy.stack = stack.clone();
+            copy.size = size;
+            return copy;
+        }
+
+        /**
+         * Pushes the specified types, in order, onto the operand stack.
+         *
+         * @param types
+         *            the types.
+         */
+
+        public void push(String... types) {
+            for (String type : types) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * size);
+                }
+                stack[size++] = type;
+            }
+        }
+
+        /**
+         * Pops the top entry off the operand stack.
+         *
+         * @return its type, or top if the stack is empty (the verifier
+         *         reports it).
+         */
+
+        public String pop() {
+            return size == 0 ? TOP : stack[--size];
+        }
+
+        /**
+         * Pops the specified number of entries off the operand stack.
+         *
+         * @param n
+         *            the number of entries.
+         */
+
+        public void pop(int n) {
+            size = Math.max(0, size - n);
+        }
+
+        /**
+         * Stores a value of the specified type in the specified local
+         * variable; a long or a double takes up the next one too, and one
+         * that took up this one is lost.
+         *
+         * @param index
+         *            index of the local variable.
+         * @param type
+         *            the type.
+         */
+
+        public void store(int index, String type) {
+            if (index > 0 && isCategory2(locals[index - 1])) {
+                locals[index - 1] = TOP;
+            }
+            locals[index] = type;
+            if (isCategory2(type)) {
+                locals[index + 1] = TOP;
+            }
+        }
+
+        /**
+         * Replaces every occurrence of the specified type, among the local
+         * variables and the operand stack entries, by another.
+         *
+         * @param type
+         *            the type replaced.
+         * @param by
+         *            the type replacing it.
+         */
+
+        public void replace(String type, String by) {
+            for (int i = 0; i < locals.length; i++) {
+                if (locals[i].equals(type)) {
+                    locals[i] = by;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                if (stack[i].equals(type)) {
+                    stack[i] = by;
+                }
+            }
+        }
+
+        /**
+         * Returns the local variables as a frame lists them: a long or a
+         * double as one entry, and without the trailing tops.
+         *
+         * @return the local variables.
+         */
+
+        public ArrayList<String> encodedLocals() {
+            ArrayList<String> encoded = new ArrayList<String>();
+            int end = 0;
+            for (int i = 0; i < locals.length; i++) {
+                encoded.add(locals[i]);
+                if (!locals[i].equals(TOP)) {
+                    end = encoded.size();
+                }
+                if (isCategory2(locals[i])) {
+                    i++;
+                }
+            }
+            return new ArrayList<String>(encoded.subList(0, end));
+        }
+
+        /**
+         * Returns the operand stack entries as a frame lists them.
+         *
+         * @return the operand stack entries, bottom first.
+         */
+
+        public ArrayList<String> encodedStack() {
+            return new ArrayList<String>(Arrays.asList(stack).subList(0, size));
+        }
+
+    }
+
+}
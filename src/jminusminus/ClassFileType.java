@@ -0,0 +1,694 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import static jminusminus.CLConstants.*;
+
+/**
+ * A class or interface type, or an array type, read from a class file on a
+ * class path (see {@link ClassFileTypes}) rather than loaded into the
+ * compiler's JVM. Its modifiers, super class, interfaces, and the signatures
+ * of its members are decoded from the bytes of the class file, through a
+ * {@link CLAbsorber}; the class is never loaded, and so none of its code is
+ * run.
+ * <p>
+ * A type is created when it is first named, whether in source or in the
+ * signature of a member of another type. Its class file is read only when the
+ * type is asked about more than its name, and its members are indexed only
+ * when one of them is looked up; so most of the types named in the
+ * signatures of a class are never read at all.
+ */
+
+class ClassFileType extends Type {
+
+    /** The types of the class path that this type is on. */
+    private ClassFileTypes types;
+
+    /** The type's descriptor. */
+    private String descriptor;
+
+    /** The component type, if this is an array type; {@code null} if not. */
+    private Type componentType;
+
+    /** Whether the class file has been looked for. */
+    private boolean isRead;
+
+    /**
+     * The reader of the class file, once read; {@code null} if there is no
+     * class file, or it could not be read.
+     */
+    private CLAbsorber absorber;
+
+    /** The index of the declared members, once built. */
+    private MemberIndex memberIndex;
+
+    /**
+     * Constructs the class or interface type with the specified descriptor, on
+     * the specified class path.
+     *
+     * @param types
+     *            the types of the class path.
+     * @param descriptor
+     *            the descriptor of the type.
+     */
+
+    public ClassFileType(ClassFileTypes types, String descriptor) {
+        this.types = types;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * Constructs the type of arrays of the specified (class file) type.
+     *
+     * @param types
+     *            the types of the class path.
+     * @param componentType
+     *            the component type.
+     */
+
+    public ClassFileType(ClassFileTypes types, ClassFileType componentType) {
+        this.types = types;
+        this.componentType = componentType;
+        descriptor = "[" + componentType.toDescriptor();
+    }
+
+    /**
+     * Returns the reader of this type's class file, reading the file the first
+     * time it is asked for.
+     *
+     * @return the reader, or {@code null} if there is no class file, or it
+     *         could not be read.
+     */
+
+    private synchronized CLAbsorber absorber() {
+        if (!isRead) {
+            isRead = true;
+            absorber = types.read(jvmName());
+        }
+        return absorber;
+    }
+
+    /**
+     * Does the class file of this (class or interface) type exist on the class
+     * path, and can it be read?
+     *
+     * @return true or false.
+     */
+
+    public boolean exists() {
+        return absorber() != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isArray() {
+        return componentType != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type componentType() {
+        return componentType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isPrimitive() {
+        return false;
+    }
+
+    /**
+     * Returns the Type's super type (or {@code null} if there is none). As
+     * with reflection, an interface has none, and an array type has
+     * java.lang.Object.
+     *
+     * @return the super type or {@code null} if there is no super type.
+     */
+
+    public Type superClass() {
+        if (isArray()) {
+            return Type.OBJECT;
+        }
+        if (absorber() == null) {
+            return descriptor.equals("Ljava/lang/Object;") ? null : Type.OBJECT;
+        }
+        String name = absorber.superClassName();
+        return name == null || isInterface() ? null : types.typeFor("L"
+                + name + ";");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type[] interfaces() {
+        if (isArray()) {
+            return new Type[] { types.typeFor("Ljava/lang/Cloneable;"),
+                    types.typeFor("Ljava/io/Serializable;") };
+        }
+        if (absorber() == null) {
+            return new Type[0];
+        }
+        ArrayList<String> names = absorber.interfaceNames();
+        Type[] interfaces = new Type[names.size()];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = types.typeFor("L" + names.get(i) + ";");
+        }
+        return interfaces;
+    }
+
+    /**
+     * Returns the modifiers of this type. As with reflection, those of an array
+     * type are the access modifiers of its component type, with final and
+     * abstract.
+     *
+     * @return the modifiers.
+     */
+
+    protected int modifiers() {
+        if (isArray()) {
+            return componentType.modifiers()
+                    & (ACC_PUBLIC | ACC_PROTECTED | ACC_PRIVATE) | ACC_FINAL
+                    | ACC_ABSTRACT;
+        }
+        return absorber() == null ? ACC_PUBLIC : absorber.accessFlags()
+                & ~ACC_SUPER;
+    }
+
+    /**
+     * Returns the index of the members declared in this type, building it
+     * from the class file the first time it is asked for.
+     *
+     * @return the member index.
+     */
+
+    synchronized MemberIndex memberIndex() {
+        if (memberIndex != null) {
+            return memberIndex;
+        }
+        Type superClass = superClass();
+        memberIndex = new MemberIndex(superClass == null ? null : superClass
+                .memberIndex());
+        if (isArray() || absorber() == null) {
+            return memberIndex;
+        }
+        for (CLMemberView method : absorber.methods()) {
+            String name = method.name();
+            String methodDescriptor = method.descriptor();
+            if (name.equals("<init>")) {
+                memberIndex.addConstructor(new ClassFileConstructor(this,
+                        method.accessFlags(), methodDescriptor), ClassFileTypes
+                        .paramDescriptors(methodDescriptor));
+            } else if (!name.equals("<clinit>")) {
+                memberIndex.addMethod(new ClassFileMethod(this, method
+                        .accessFlags(), name, methodDescriptor),
+                        ClassFileTypes.paramDescriptors(methodDescriptor),
+                        (method.accessFlags() & ACC_ABSTRACT) != 0);
+            }
+        }
+        for (CLMemberView field : absorber.fields()) {
+            memberIndex.addField(new ClassFileField(this, field.accessFlags(),
+                    field.name(), field.descriptor()));
+        }
+        return memberIndex;
+    }
+
+    /**
+     * Returns the types of the class path that this type is on.
+     *
+     * @return the types.
+     */
+
+    ClassFileTypes types() {
+        return types;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type arrayType() {
+        return types.typeFor("[" + descriptor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String jvmName() {
+        return isArray() ? descriptor : descriptor.substring(1, descriptor
+                .length() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toString() {
+        return isArray() ? componentType + "[]" : jvmName().replace('/', '.');
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String simpleName() {
+        if (isArray()) {
+            return componentType.simpleName() + "[]";
+        }
+        String name = jvmName();
+        return name.substring(Math.max(name.lastIndexOf('/'), name
+                .lastIndexOf('$')) + 1);
+    }
+
+}
+
+/**
+ * The types of the classes (and interfaces) on a class path, each read from
+ * its class file (see {@link ClassFileType}), and created once, when first
+ * named. The types belong to one compilation (see {@link CompilationSession}),
+ * which may resolve them on any number of threads; the class files in a
+ * directory may change between compilations, so only the zip (jar) files and
+ * the run-time image behind them are shared (see {@link CLPath}).
+ * <p>
+ * The primitive types, and the few types that the compiler itself refers to
+ * ({@link Type#OBJECT}, {@link Type#STRING}, and the boxed types), remain
+ * those of the compiler's JVM, so that they are the same {@code Type}s
+ * whichever way types are resolved.
+ */
+
+class ClassFileTypes {
+
+    /** The class path. */
+    private CLPath classPath;
+
+    /** The types created so far, by descriptor. */
+    private ConcurrentHashMap<String, Type> types;
+
+    /**
+     * Constructs the types of the specified class path: directories, and zip
+     * (jar) files, separated by the path separator. The platform classes are
+     * always on it.
+     *
+     * @param path
+     *            the class path.
+     */
+
+    public ClassFileTypes(String path) {
+        classPath = new CLPath(path, null);
+        types = new ConcurrentHashMap<String, Type>();
+        for (Type type : new Type[] { Type.OBJECT, Type.STRING,
+                Type.BOXED_INT, Type.BOXED_CHAR, Type.BOXED_BOOLEAN }) {
+            types.put(type.toDescriptor(), type);
+        }
+    }
+
+    /**
+     * Returns the type with the specified (fully qualified) name, or
+     * {@code null} if there is no class file for it on the class path.
+     *
+     * @param name
+     *            the name of the type -- java.util.ArrayList, for example.
+     * @return the type, or {@code null}.
+     */
+
+    public Type typeNamed(String name) {
+        Type type = typeFor("L" + name.replace('.', '/') + ";");
+        return type instanceof ClassFileType
+                && !((ClassFileType) type).exists() ? null : type;
+    }
+
+    /**
+     * Returns the type with the specified descriptor.
+     *
+     * @param descriptor
+     *            the descriptor -- Ljava/util/ArrayList; or [I, for example.
+     * @return the type.
+     */
+
+    public Type typeFor(String descriptor) {
+        Type type = types.get(descriptor);
+        if (type != null) {
+            return type;
+        }
+        switch (descriptor.charAt(0)) {
+        case 'I':
+            return Type.INT;
+        case 'C':
+            return Type.CHAR;
+        case 'Z':
+            return Type.BOOLEAN;
+        case 'V':
+            return Type.VOID;
+        case 'B':
+            return Type.typeFor(byte.class);
+        case 'S':
+            return Type.typeFor(short.class);
+        case 'J':
+            return Type.typeFor(long.class);
+        case 'F':
+            return Type.typeFor(float.class);
+        case 'D':
+            return Type.typeFor(double.class);
+        case '[':
+            Type componentType = typeFor(descriptor.substring(1));
+            type = componentType instanceof ClassFileType ? new ClassFileType(
+                    this, (ClassFileType) componentType) : componentType
+                    .arrayType();
+            break;
+        default:
+            type = new ClassFileType(this, descriptor);
+        }
+        Type existing = types.putIfAbsent(descriptor, type);
+        return existing == null ? type : existing;
+    }
+
+    /**
+     * Reads the class file of the class with the specified name.
+     *
+     * @param name
+     *            the name of the class in internal form.
+     * @return the reader of the class file, or {@code null} if there is no
+     *         class file for the class, or it could not be read.
+     */
+
+    CLAbsorber read(String name) {
+        java.nio.ByteBuffer bytes = classPath.classBytes(name);
+        if (bytes == null) {
+            return null;
+        }
+        CLAbsorber absorber = new CLAbsorber(name, bytes);
+        return absorber.errorHasOccurred() ? null : absorber;
+    }
+
+    /**
+     * Returns the descriptors of the parameter types in the specified method
+     * descriptor.
+     *
+     * @param descriptor
+     *            the method descriptor -- (I[Ljava/lang/String;)V, for
+     *            example.
+     * @return the parameter descriptors.
+     */
+
+    public static String[] paramDescriptors(String descriptor) {
+        ArrayList<String> params = new ArrayList<String>();
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int start = i;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1
+                    : i + 1;
+            params.add(descriptor.substring(start, i));
+        }
+        return params.toArray(new String[params.size()]);
+    }
+
+    /**
+     * Returns the types of the parameters in the specified method descriptor.
+     *
+     * @param descriptor
+     *            the method descriptor.
+     * @return the parameter types.
+     */
+
+    public Type[] paramTypes(String descriptor) {
+        String[] params = paramDescriptors(descriptor);
+        Type[] types = new Type[params.length];
+        for (int i = 0; i < params.length; i++) {
+            types[i] = typeFor(params[i]);
+        }
+        return types;
+    }
+
+    /**
+     * Returns the return type in the specified method descriptor.
+     *
+     * @param descriptor
+     *            the method descriptor.
+     * @return the return type.
+     */
+
+    public Type returnType(String descriptor) {
+        return typeFor(descriptor.substring(descriptor.indexOf(')') + 1));
+    }
+
+}
+
+/**
+ * A method of a {@link ClassFileType}, known by its name, access flags and
+ * descriptor.
+ */
+
+class ClassFileMethod extends Method {
+
+    /** The type declaring this method. */
+    private ClassFileType declaringType;
+
+    /** The method's access flags. */
+    private int accessFlags;
+
+    /** The method's name. */
+    private String name;
+
+    /** The method's descriptor. */
+    private String descriptor;
+
+    /**
+     * Constructs a method of a class file type.
+     *
+     * @param declaringType
+     *            the type declaring the method.
+     * @param accessFlags
+     *            the method's access flags.
+     * @param name
+     *            the method's name.
+     * @param descriptor
+     *            the method's descriptor.
+     */
+
+    public ClassFileMethod(ClassFileType declaringType, int accessFlags,
+            String name, String descriptor) {
+        this.declaringType = declaringType;
+        this.accessFlags = accessFlags;
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return accessFlags;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toString() {
+        String str = name() + "(";
+        for (Type paramType : declaringType.types().paramTypes(descriptor)) {
+            str += paramType.toString();
+        }
+        str += ")";
+        return str;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type returnType() {
+        return declaringType.types().returnType(descriptor);
+    }
+
+}
+
+/**
+ * A field of a {@link ClassFileType}, known by its name, access flags and
+ * descriptor.
+ */
+
+class ClassFileField extends Field {
+
+    /** The type declaring this field. */
+    private ClassFileType declaringType;
+
+    /** The field's access flags. */
+    private int accessFlags;
+
+    /** The field's name. */
+    private String name;
+
+    /** The field's descriptor. */
+    private String descriptor;
+
+    /**
+     * Constructs a field of a class file type.
+     *
+     * @param declaringType
+     *            the type declaring the field.
+     * @param accessFlags
+     *            the field's access flags.
+     * @param name
+     *            the field's name.
+     * @param descriptor
+     *            the field's descriptor.
+     */
+
+    public ClassFileField(ClassFileType declaringType, int accessFlags,
+            String name, String descriptor) {
+        this.declaringType = declaringType;
+        this.accessFlags = accessFlags;
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return accessFlags;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type type() {
+        return declaringType.types().typeFor(descriptor);
+    }
+
+}
+
+/**
+ * A constructor of a {@link ClassFileType}, known by its access flags and
+ * descriptor.
+ */
+
+class ClassFileConstructor extends Constructor {
+
+    /** The type declaring this constructor. */
+    private ClassFileType declaringType;
+
+    /** The constructor's access flags. */
+    private int accessFlags;
+
+    /** The constructor's descriptor. */
+    private String descriptor;
+
+    /**
+     * Constructs a constructor of a class file type.
+     *
+     * @param declaringType
+     *            the type declaring the constructor.
+     * @param accessFlags
+     *            the constructor's access flags.
+     * @param descriptor
+     *            the constructor's descriptor.
+     */
+
+    public ClassFileConstructor(ClassFileType declaringType, int accessFlags,
+            String descriptor) {
+        this.declaringType = declaringType;
+        this.accessFlags = accessFlags;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * Returns the constructor's name: that of the declaring type, as with
+     * reflection.
+     *
+     * @return the name.
+     */
+
+    public String name() {
+        return declaringType.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return accessFlags;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return descriptor;
+    }
+
+}
@@ -0,0 +1,505 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.FileNotFoundException;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A single compilation of a set of source files, and the state that goes with
+ * it: chiefly, the types declared in source (see {@link SourceType}). Nothing
+ * about one compilation is kept in static state, so that a host embedding the
+ * compiler may run any number of sessions at once, on threads of its own,
+ * without them interfering with one another. What sessions do share, through
+ * static state, is built once and then only read, or is safe to use from any
+ * number of threads:
+ * <ul>
+ *   <li>the {@link Type}s of the Java platform (and the member indexes
+ *       behind them);</li>
+ *   <li>the zip (jar) files and the run-time image opened by {@link CLPath};
+ *       and</li>
+ *   <li>the tables of the table-driven scanner ({@link LexicalGrammar}).</li>
+ * </ul>
+ * {@link Main}, which runs one session per invocation, keeps whether an error
+ * occurred in static state of its own; so it (and {@link CompilerDaemon},
+ * through it) compiles one request at a time.
+ * <p>
+ * Within a session, the source files are scanned and parsed, analyzed, and
+ * translated to code in parallel, one compilation unit per task, on a
+ * fork-join pool. Pre-analysis, which declares the types of all the units
+ * and records their member headers, is done for all units together, on the
+ * calling thread. While a thread works on a unit,
+ * {@link JAST#compilationUnit()} returns that unit.
+ * <p>
+ * A session is typically used as follows:
+ * <pre>
+ *   CompilationSession session = new CompilationSession();
+ *   session.destinationDir("classes");
+ *   session.compile(sourceFiles);
+ *   if (session.errorHasOccurred()) ...
+ * </pre>
+ * {@link Main} goes through the phases (parse, preAnalyze, analyze, and
+ * codegen) one at a time, so that it can stop after any of them.
+ */
+
+public class CompilationSession {
+
+    /** Where the output files are placed. */
+    private String destinationDir;
+
+    /** The register allocation scheme, if SPIM output is asked for. */
+    private String registerAllocation;
+
+    /** Maximum number of physical registers used for SPIM output. */
+    private int registerCount;
+
+    /** Maximum number of threads used for the compilation. */
+    private int threads;
+
+    /** Whether source files are scanned by the table-driven scanner. */
+    private boolean isTableDriven;
+
+    /** Major version of the class files generated. */
+    private int targetVersion;
+
+    /** The peephole optimizer for the JVM code; {@code null} if none. */
+    private CLPeephole peephole;
+
+    /** The optimizer for the HIR of SPIM output; {@code null} if none. */
+    private NOptimizer optimizer;
+
+    /** Whether an error occurred in this compilation. */
+    private volatile boolean errorHasOccurred;
+
+    /** Maps the descriptors of the types declared in source to the types. */
+    private ConcurrentHashMap<String, Type> types;
+
+    /**
+     * The types of the class path that types are resolved on; {@code null}
+     * if types are resolved by loading them.
+     */
+    private ClassFileTypes classFileTypes;
+
+    /**
+     * Constructs a compilation session, with output going to the current
+     * directory, as JVM class files, and using as many threads as there are
+     * processors.
+     */
+
+    public CompilationSession() {
+        destinationDir = ".";
+        registerAllocation = null;
+        registerCount = NPhysicalRegister.DEFAULT_MAX_COUNT;
+        threads = Runtime.getRuntime().availableProcessors();
+        isTableDriven = false;
+        targetVersion = CLConstants.MAJOR_VERSION;
+        peephole = null;
+        optimizer = null;
+        errorHasOccurred = false;
+        types = new ConcurrentHashMap<String, Type>();
+        classFileTypes = null;
+    }
+
+    /**
+     * Sets the directory where the output files are placed.
+     *
+     * @param destinationDir
+     *            the destination directory.
+     */
+
+    public void destinationDir(String destinationDir) {
+        this.destinationDir = destinationDir;
+    }
+
+    /**
+     * Asks for SPIM output, using the specified register allocation scheme,
+     * instead of JVM class files.
+     *
+     * @param registerAllocation
+     *            "naive", "linear", or "graph".
+     */
+
+    public void spimOutput(String registerAllocation) {
+        this.registerAllocation = registerAllocation;
+    }
+
+    /**
+     * Sets the maximum number of physical registers used for SPIM output.
+     *
+     * @param registerCount
+     *            the number of registers, starting at T0.
+     */
+
+    public void registerCount(int registerCount) {
+        this.registerCount = registerCount;
+    }
+
+    /**
+     * Sets the maximum number of threads used for the compilation.
+     *
+     * @param threads
+     *            the number of threads (at least 1).
+     */
+
+    public void threads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets whether source files are scanned by the table-driven
+     * {@link DFAScanner}, rather than by the hand-written {@link Scanner}.
+     *
+     * @param isTableDriven
+     *            whether to use the table-driven scanner.
+     */
+
+    public void tableDrivenScanner(boolean isTableDriven) {
+        this.isTableDriven = isTableDriven;
+    }
+
+    /**
+     * Sets the major version of the class files generated; from version 50
+     * on, they carry the stack map frames that the type-checking verifier
+     * needs. The version does not apply to SPIM output.
+     *
+     * @param targetVersion
+     *            the major version.
+     */
+
+    public void targetVersion(int targetVersion) {
+        this.targetVersion = targetVersion;
+    }
+
+    /**
+     * Resolves the types named in source from the class files on the
+     * specified class path (and the platform's), read without loading them
+     * (see {@link ClassFileType}), rather than by loading them into the
+     * compiler's JVM.
+     *
+     * @param classPath
+     *            the class path: directories and jar files, separated by the
+     *            path separator.
+     */
+
+    public void classPath(String classPath) {
+        classFileTypes = new ClassFileTypes(classPath);
+    }
+
+    /**
+     * Sets the peephole optimizer that the JVM code of each method is run
+     * through; by default, there is none. The optimizer does not apply to
+     * SPIM output, which is translated from the code as it is emitted.
+     *
+     * @param peephole
+     *            the optimizer, or {@code null} for none.
+     */
+
+    public void peephole(CLPeephole peephole) {
+        this.peephole = peephole;
+    }
+
+    /**
+     * Sets the optimizer that the high-level (HIR) instructions of each
+     * method are run through on their way to SPIM; by default, there is none.
+     * The optimizer does not apply to JVM output.
+     *
+     * @param optimizer
+     *            the optimizer, or {@code null} for none.
+     */
+
+    public void optimizer(NOptimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * Returns a scanner, of the kind asked for, for the specified source
+     * file.
+     *
+     * @param sourceFile
+     *            the source file.
+     * @return the scanner.
+     * @exception FileNotFoundException
+     *                when the source file cannot be found.
+     */
+
+    public Scanner scanner(String sourceFile) throws FileNotFoundException {
+        return isTableDriven ? new DFAScanner(sourceFile) : new Scanner(
+                sourceFile);
+    }
+
+    /**
+     * Has an error occurred in this compilation up to now?
+     *
+     * @return {@code true} if an error has occurred; {@code false} otherwise.
+     */
+
+    public boolean errorHasOccurred() {
+        return errorHasOccurred;
+    }
+
+    /**
+     * Compiles the specified source files: parses, pre-analyzes, analyzes,
+     * and generates code for them, stopping after the first phase in which an
+     * error occurs.
+     *
+     * @param sourceFiles
+     *            the source files.
+     * @return {@code true} if the compilation succeeded; {@code false}
+     *         otherwise.
+     */
+
+    public boolean compile(ArrayList<String> sourceFiles) {
+        ArrayList<JCompilationUnit> units = parse(sourceFiles);
+        if (!errorHasOccurred) {
+            preAnalyze(units);
+        }
+        if (!errorHasOccurred) {
+            analyze(units);
+        }
+        if (!errorHasOccurred) {
+            codegen(units);
+        }
+        return !errorHasOccurred;
+    }
+
+    /**
+     * Scans and parses the specified source files, and returns their ASTs in
+     * the order of the files. Files that cannot be read are reported and left
+     * out.
+     *
+     * @param sourceFiles
+     *            the source files.
+     * @return the ASTs for the source files.
+     */
+
+    public ArrayList<JCompilationUnit> parse(ArrayList<String> sourceFiles) {
+        final ArrayList<JCompilationUnit> units =
+            new ArrayList<JCompilationUnit>();
+        ArrayList<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for (final String sourceFile : sourceFiles) {
+            final int index = units.size();
+            units.add(null);
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    LookaheadScanner scanner = null;
+                    try {
+                        scanner = new LookaheadScanner(scanner(sourceFile));
+                    } catch (FileNotFoundException e) {
+                        System.err.println("Error: file " + sourceFile
+                                + " not found.");
+                        return false;
+                    }
+                    Parser parser = new Parser(scanner);
+                    JCompilationUnit unit = parser.compilationUnit();
+                    synchronized (units) {
+                        units.set(index, unit);
+                    }
+                    return !parser.errorHasOccurred()
+                            && !scanner.errorHasOccured();
+                }
+            });
+        }
+        run(tasks);
+        ArrayList<JCompilationUnit> asts = new ArrayList<JCompilationUnit>();
+        synchronized (units) {
+            for (JCompilationUnit unit : units) {
+                if (unit != null) {
+                    asts.add(unit);
+                }
+            }
+        }
+        return asts;
+    }
+
+    /**
+     * Pre-analyzes the specified compilation units together, on the calling
+     * thread, declaring their types in this session.
+     *
+     * @param units
+     *            the compilation units.
+     */
+
+    public void preAnalyze(ArrayList<JCompilationUnit> units) {
+        try {
+            JCompilationUnit.preAnalyze(units, this);
+        } finally {
+            JAST.setCompilationUnit(null);
+        }
+        for (JCompilationUnit unit : units) {
+            errorHasOccurred |= unit.errorHasOccurred();
+        }
+    }
+
+    /**
+     * Analyzes the specified (pre-analyzed) compilation units, in parallel.
+     *
+     * @param units
+     *            the compilation units.
+     */
+
+    public void analyze(ArrayList<JCompilationUnit> units) {
+        ArrayList<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for (final JCompilationUnit unit : units) {
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    try {
+                        unit.analyze(null);
+                        return !unit.errorHasOccurred();
+                    } finally {
+                        JAST.setCompilationUnit(null);
+                    }
+                }
+            });
+        }
+        run(tasks);
+    }
+
+    /**
+     * Generates code for the specified (analyzed) compilation units, in
+     * parallel, each with an emitter of its own: JVM class files, or, if
+     * asked for, SPIM files.
+     *
+     * @param units
+     *            the compilation units.
+     */
+
+    public void codegen(ArrayList<JCompilationUnit> units) {
+        ArrayList<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for (final JCompilationUnit unit : units) {
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    try {
+                        CLEmitter clEmitter = new CLEmitter(
+                                registerAllocation == null);
+                        clEmitter.destinationDir(destinationDir);
+                        if (registerAllocation == null) {
+                            clEmitter.targetVersion(targetVersion);
+                            clEmitter.session(CompilationSession.this);
+                            clEmitter.peephole(peephole);
+                        }
+                        unit.codegen(clEmitter);
+                        if (clEmitter.errorHasOccurred()
+                                || registerAllocation == null) {
+                            return !clEmitter.errorHasOccurred();
+                        }
+
+                        // Convert the in-memory JVM instructions to SPIM
+                        // using the specified register allocation scheme
+                        NEmitter nEmitter = new NEmitter(unit.fileName(), unit
+                                .clFiles(), registerAllocation, registerCount,
+                                optimizer);
+                        nEmitter.destinationDir(destinationDir);
+                        nEmitter.write();
+                        return !nEmitter.errorHasOccurred();
+                    } finally {
+                        JAST.setCompilationUnit(null);
+                    }
+                }
+            });
+        }
+        run(tasks);
+    }
+
+    /**
+     * Returns the types declared in source in this compilation, by their
+     * descriptors.
+     *
+     * @return the source types.
+     */
+
+    ConcurrentHashMap<String, Type> types() {
+        return types;
+    }
+
+    /**
+     * Declares the specified type, declared in source, in this compilation;
+     * unless a type with the same name is already declared, in which case 
+     * that type is returned.
+     *
+     * @param type
+     *            the source type.
+     * @return the type declared under the type's name.
+     */
+
+    SourceType declareType(SourceType type) {
+        Type existing = types.putIfAbsent(type.toDescriptor(), type);
+        return existing == null ? type : (SourceType) existing;
+    }
+
+    /**
+     * Returns the type with the specified fully qualified name: declared in
+     * source in this compilation, or else read from its class file if a class
+     * path was given, or else loaded (though not initialized).
+     *
+     * @param name
+     *            the name of the type -- java.util.ArrayList, for example.
+     * @return the type, or {@code null} if it cannot be found.
+     */
+
+    Type typeNamed(String name) {
+        Type type = types.get("L" + name.replace('.', '/') + ";");
+        if (type != null) {
+            return type;
+        }
+        if (classFileTypes != null) {
+            return classFileTypes.typeNamed(name);
+        }
+        try {
+            return Type.typeFor(Class.forName(name, false, Type.class
+                    .getClassLoader()));
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the specified tasks, each returning whether it succeeded; in
+     * parallel when there is more than one task and more than one thread.
+     *
+     * @param tasks
+     *            the tasks.
+     */
+
+    private void run(ArrayList<Callable<Boolean>> tasks) {
+        if (tasks.size() <= 1 || threads == 1) {
+            for (Callable<Boolean> task : tasks) {
+                try {
+                    errorHasOccurred |= !task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(threads, tasks.size()));
+        try {
+            for (Future<Boolean> result : pool.invokeAll(tasks)) {
+                errorHasOccurred |= !result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
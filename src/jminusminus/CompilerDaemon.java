@@ -0,0 +1,415 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import java.util.ArrayList;
+
+/**
+ * A long-running j-- compiler. Keeping one JVM around across compilations
+ * spares each of them the JVM startup, the class loading and JIT warm-up of
+ * the compiler itself, and the construction of the tables the compiler
+ * shares between compilations (for example, the {@link Type}s of the Java
+ * platform and the reflection data behind them).
+ * <p>
+ * The daemon serves requests either on a local (loopback) socket, one request
+ * per connection, or one after another on its STDIN. Since any local user
+ * can connect to a loopback port, a socket request must start with a token,
+ * on a line of its own, that the daemon draws at random when it starts and
+ * writes to a file only its owner can read; connections that do not present
+ * it are closed unanswered. (STDIN belongs to whoever started the daemon, so
+ * requests served there carry no token.) A request is then the client's
+ * working directory on a line of its own, followed by the command-line
+ * arguments for {@link Main}, one per line, and ended by an empty line. The
+ * response is the output of the compilation, each line prefixed with "1 " if
+ * it was written to STDOUT or "2 " if it was written to STDERR, followed by a
+ * line "x " and the exit status: 0 for success and 1 if an error occurred.
+ * The {@code bin/j--} script is a client for the socket protocol; it reads
+ * the token from the file the daemon writes it to.
+ * <p>
+ * Since the compiler reports through {@code System.out} and
+ * {@code System.err}, requests are compiled one at a time.
+ */
+
+public class CompilerDaemon {
+
+    /** Default port on which the daemon listens. */
+    public static final int DEFAULT_PORT = 9595;
+
+    /** Default file, in the user's home directory, for the token. */
+    public static final String DEFAULT_TOKEN_FILE = ".j--d-token";
+
+    /** Argument that, as the only argument of a request, stops the daemon. */
+    private static final String STOP = "-stop";
+
+    /** Exit status of a successful compilation. */
+    private static final int SUCCESS = 0;
+
+    /** Exit status of a compilation in which an error occurred. */
+    private static final int FAILURE = 1;
+
+    /** The original STDOUT. */
+    private PrintStream out;
+
+    /** The original STDERR. */
+    private PrintStream err;
+
+    /** Whether a request to stop has been received. */
+    private boolean isStopped;
+
+    /** The token that socket requests must start with. */
+    private byte[] token;
+
+    /**
+     * Constructs a daemon.
+     */
+
+    public CompilerDaemon() {
+        out = System.out;
+        err = System.err;
+        isStopped = false;
+    }
+
+    /**
+     * Serves requests from the specified (loopback) port until stopped. The
+     * token that the requests must start with is written to the specified
+     * file, which is readable by the current user only, and which is deleted
+     * when the daemon exits.
+     *
+     * @param port
+     *            the port.
+     * @param tokenFile
+     *            the file for the token.
+     * @throws IOException
+     *             if the token file cannot be written or the port cannot be
+     *             listened on.
+     */
+
+    public void serve(int port, File tokenFile) throws IOException {
+        writeToken(tokenFile);
+        ServerSocket server = new ServerSocket(port, 50, InetAddress
+                .getLoopbackAddress());
+        err.printf("j-- daemon listening on port %d\n", server.getLocalPort());
+        try {
+            while (!isStopped) {
+                Socket client = server.accept();
+                try {
+                    BufferedReader in = new BufferedReader(
+                            new InputStreamReader(client.getInputStream(),
+                                    "UTF-8"));
+                    if (isAuthentic(in.readLine())) {
+                        serve(in, client.getOutputStream());
+                    } else {
+                        err.println("Error: request without a valid token");
+                    }
+                } catch (IOException e) {
+                    err.println("Error: " + e.getMessage());
+                } finally {
+                    client.close();
+                }
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Draws a random token and writes it to the specified file, replacing
+     * the file if it exists. Where the file system supports POSIX
+     * permissions the file is created with mode 0600; elsewhere it is
+     * restricted to its owner after it is created, before the token is
+     * written.
+     *
+     * @param tokenFile
+     *            the file for the token.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+
+    private void writeToken(File tokenFile) throws IOException {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        token = hex.toString().getBytes("UTF-8");
+
+        Path path = tokenFile.toPath();
+        Files.deleteIfExists(path);
+        if (path.getFileSystem().supportedFileAttributeViews()
+                .contains("posix")) {
+            FileAttribute<?> ownerOnly = PosixFilePermissions
+                    .asFileAttribute(PosixFilePermissions
+                            .fromString("rw-------"));
+            Files.createFile(path, ownerOnly);
+        } else {
+            Files.createFile(path);
+            if (!(tokenFile.setReadable(false, false)
+                    && tokenFile.setReadable(true, true)
+                    && tokenFile.setWritable(false, false)
+                    && tokenFile.setWritable(true, true))) {
+                throw new IOException("cannot restrict access to "
+                        + tokenFile);
+            }
+        }
+        tokenFile.deleteOnExit();
+        Files.write(path, token);
+    }
+
+    /**
+     * Returns {@code true} if the specified line is the token, and
+     * {@code false} otherwise. The comparison takes the same time wherever
+     * the line first differs from the token.
+     *
+     * @param line
+     *            the first line of a request.
+     * @return {@code true} if the line is the token.
+     * @throws IOException
+     *             if the line cannot be encoded.
+     */
+
+    private boolean isAuthentic(String line) throws IOException {
+        return line != null
+                && MessageDigest.isEqual(line.getBytes("UTF-8"), token);
+    }
+
+    /**
+     * Serves requests from STDIN, writing the responses to STDOUT, until the
+     * end of the input or until stopped.
+     *
+     * @throws IOException
+     *             if reading or writing fails.
+     */
+
+    public void serveStdin() throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                System.in, "UTF-8"));
+        while (!isStopped && serve(in, out)) {
+            // One request at a time
+        }
+    }
+
+    /**
+     * Reads a request, compiles as requested, and writes the response.
+     *
+     * @param in
+     *            where the request is read from.
+     * @param response
+     *            where the response is written to.
+     * @return {@code true} if a request was read; {@code false} at the end of
+     *         the input.
+     * @throws IOException
+     *             if reading or writing fails.
+     */
+
+    private boolean serve(BufferedReader in, OutputStream response)
+            throws IOException {
+        String workingDir = in.readLine();
+        if (workingDir == null) {
+            return false;
+        }
+        ArrayList<String> args = new ArrayList<String>();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals("")) {
+            args.add(line);
+        }
+        Writer writer = new OutputStreamWriter(response, "UTF-8");
+        int status = SUCCESS;
+        if (args.size() == 1 && args.get(0).equals(STOP)) {
+            isStopped = true;
+        } else {
+            status = compile(args.toArray(new String[args.size()]), new File(
+                    workingDir), writer);
+        }
+        writer.write("x " + status + "\n");
+        writer.flush();
+        return true;
+    }
+
+    /**
+     * Compiles as directed by the specified arguments, sending whatever the
+     * compiler writes to STDOUT and STDERR to the specified writer.
+     *
+     * @param args
+     *            the command-line arguments for {@link Main}.
+     * @param workingDir
+     *            the client's working directory.
+     * @param writer
+     *            the writer for the response.
+     * @return the exit status.
+     */
+
+    private int compile(String[] args, File workingDir, Writer writer) {
+        PrintStream compilerOut = new PrintStream(new LineStream("1 ",
+                writer), true);
+        PrintStream compilerErr = new PrintStream(new LineStream("2 ",
+                writer), true);
+        System.setOut(compilerOut);
+        System.setErr(compilerErr);
+        int status = SUCCESS;
+        try {
+            Main.compile(args, workingDir);
+            if (Main.errorHasOccurred()) {
+                status = FAILURE;
+            }
+        } catch (Throwable e) {
+            // Report the compiler's own failure to the client, and
+            // stay up for the next request
+            e.printStackTrace();
+            status = FAILURE;
+        } finally {
+            compilerOut.close();
+            compilerErr.close();
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return status;
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args
+     *            the command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        File tokenFile = new File(System.getProperty("user.home"),
+                DEFAULT_TOKEN_FILE);
+        boolean useStdin = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-port") && (i + 1) < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-token") && (i + 1) < args.length) {
+                tokenFile = new File(args[++i]);
+            } else if (args[i].equals("-")) {
+                useStdin = true;
+            } else {
+                printUsage();
+                return;
+            }
+        }
+        CompilerDaemon daemon = new CompilerDaemon();
+        try {
+            if (useStdin) {
+                daemon.serveStdin();
+            } else {
+                daemon.serve(port, tokenFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints command usage to STDOUT.
+     */
+
+    private static void printUsage() {
+        String usage = "Usage: java jminusminus.CompilerDaemon <options>\n"
+                + "Where possible options include:\n"
+                + "  -port <num>   Listen on the specified (loopback) port; "
+                + "default = " + DEFAULT_PORT + "\n"
+                + "  -token <file> Write the token for socket requests to "
+                + "the specified file;\n"
+                + "                default = ~/" + DEFAULT_TOKEN_FILE + "\n"
+                + "  -             Serve requests from STDIN instead";
+        System.out.println(usage);
+    }
+
+    /**
+     * An output stream that writes each (complete) line written to it,
+     * preceded by a prefix, to a writer shared with other such streams.
+     */
+
+    private static class LineStream extends OutputStream {
+
+        /** Prefix for each line. */
+        private String prefix;
+
+        /** The shared writer. */
+        private Writer writer;
+
+        /** The bytes of the line being written. */
+        private ByteArrayOutputStream line;
+
+        /**
+         * Constructs a line stream.
+         *
+         * @param prefix
+         *            prefix for each line.
+         * @param writer
+         *            the shared writer.
+         */
+
+        public LineStream(String prefix, Writer writer) {
+            this.prefix = prefix;
+            this.writer = writer;
+            line = new ByteArrayOutputStream();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public void write(int b) throws IOException {
+            if (b == '\n') {
+                writeLine();
+            } else if (b != '\r') {
+                line.write(b);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public void close() throws IOException {
+            if (line.size() > 0) {
+                writeLine();
+            }
+        }
+
+        /**
+         * Writes the line (with its prefix) to the shared writer.
+         *
+         * @throws IOException
+         *             if writing fails.
+         */
+
+        private void writeLine() throws IOException {
+            synchronized (writer) {
+                writer.write(prefix);
+                writer.write(line.toString());
+                writer.write('\n');
+                writer.flush();
+            }
+            line.reset();
+        }
+
+    }
+
+}
@@ -2,6 +2,7 @@
 
 package jminusminus;
 
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
@@ -31,6 +32,16 @@ import java.util.Set;
  * only into the type (for example a class) declaration for typing the members;
  * pre-analysis does not reach into the method bodies. The rest of it is built
  * during analysis.
+ * <p>
+ * Analysis walks the tree depth first, so the contexts in use at any moment
+ * are those along a single branch. Besides its own map, each context binds
+ * its names in a {@link ScopeTable} shared by all the contexts of the
+ * compilation unit, which holds, for each name, the definitions of the name
+ * along the current branch; so a name is looked up with a single probe, 
+ * however deeply its scope is nested, rather than by a probe at every level.
+ * A lookup in a context that is no longer on the current branch (one whose 
+ * block has been left) goes through the maps of the context and its 
+ * surrounding contexts, as it always did.
  */
 
 class Context {
@@ -52,6 +63,12 @@ class Context {
      */
     protected Map<String, IDefn> entries;
 
+    /** The nesting depth of this context; 0 for the compilation unit. */
+    protected int depth;
+
+    /** The table of the names bound along the current branch. */
+    protected ScopeTable scopeTable;
+
     /**
      * Constructs a Context.
      * 
@@ -70,6 +87,14 @@ class Context {
         this.classContext = classContext;
         this.compilationUnitContext = compilationUnitContext;
         this.entries = new HashMap<String, IDefn>();
+        if (surrounding == null) {
+            depth = 0;
+            scopeTable = new ScopeTable();
+        } else {
+            depth = surrounding.depth + 1;
+            scopeTable = surrounding.scopeTable;
+        }
+        scopeTable.enter(this);
     }
 
     /**
@@ -86,10 +111,11 @@ class Context {
 
     public void addEntry(int line, String name, IDefn definition) {
         if (entries.containsKey(name)) {
-            JAST.compilationUnit.reportSemanticError(line, "redefining name: "
+            JAST.compilationUnit().reportSemanticError(line, "redefining name: "
                     + name);
         } else {
             entries.put(name, definition);
+            scopeTable.bind(this, name, definition);
         }
     }
 
@@ -103,6 +129,9 @@ class Context {
      */
 
     public IDefn lookup(String name) {
+        if (scopeTable.isOnBranch(this)) {
+            return scopeTable.lookup(this, name);
+        }
         IDefn iDefn = (IDefn) entries.get(name);
         return iDefn != null ? iDefn
                 : surroundingContext != null ? surroundingContext.lookup(name)
@@ -220,6 +249,183 @@ class Context {
 
 }
 
+/**
+ * The names bound by the contexts along the current branch of a compilation
+ * unit's tree of contexts, in a single hash table; each name maps to its
+ * bindings, innermost first, each binding shadowing the next. The contexts of
+ * the branch are kept on a stack, each with the (undo) log of the names it
+ * has bound.
+ * <p>
+ * A context is pushed when it is created, and the branch is then that of the
+ * new context. So a context is popped, its bindings undone, only when a
+ * context is created that is not nested in it (when the analysis has moved on
+ * from its block to the next); and a context created in one that has been
+ * popped (such as a method context in a class context, the class contexts of
+ * a unit all being created in pre-analysis) has the branch leading to it
+ * pushed again, bindings and all.
+ */
+
+class ScopeTable {
+
+    /** The innermost binding of each name bound along the branch. */
+    private HashMap<String, Binding> bindings;
+
+    /** The contexts of the branch, outermost first. */
+    private ArrayList<Context> branch;
+
+    /** The names bound by each context of the branch, in the same order. */
+    private ArrayList<ArrayList<String>> logs;
+
+    /**
+     * Constructs an empty table.
+     */
+
+    public ScopeTable() {
+        bindings = new HashMap<String, Binding>();
+        branch = new ArrayList<Context>();
+        logs = new ArrayList<ArrayList<String>>();
+    }
+
+    /**
+     * Is the specified context on the current branch?
+     *
+     * @param context
+     *            the context.
+     * @return true or false.
+     */
+
+    public boolean isOnBranch(Context context) {
+        return context.depth < branch.size()
+                && branch.get(context.depth) == context;
+    }
+
+    /**
+     * Makes the branch that of the specified (newly created) context.
+     *
+     * @param context
+     *            the context.
+     */
+
+    public void enter(Context context) {
+        Context surrounding = context.surroundingContext();
+        if (surrounding != null && !isOnBranch(surrounding)) {
+            enter(surrounding);
+        }
+        while (branch.size() > context.depth) {
+            pop();
+        }
+        branch.add(context);
+        logs.add(new ArrayList<String>());
+        for (Map.Entry<String, IDefn> entry : context.entries.entrySet()) {
+            bind(context, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Binds the specified name to the specified definition in the specified
+     * context; it is bound in the table only if the context is on the branch.
+     *
+     * @param context
+     *            the context.
+     * @param name
+     *            the name.
+     * @param definition
+     *            the definition.
+     */
+
+    public void bind(Context context, String name, IDefn definition) {
+        if (!isOnBranch(context)) {
+            return;
+        }
+        Binding inner = null;
+        Binding outer = bindings.get(name);
+        while (outer != null && outer.depth > context.depth) {
+            inner = outer;
+            outer = outer.shadowed;
+        }
+        Binding binding = new Binding(definition, context.depth, outer);
+        if (inner == null) {
+            bindings.put(name, binding);
+        } else {
+            inner.shadowed = binding;
+        }
+        logs.get(context.depth).add(name);
+    }
+
+    /**
+     * Returns the definition for a name, as seen from the specified context on
+     * the branch.
+     *
+     * @param context
+     *            the context.
+     * @param name
+     *            the name.
+     * @return the definition; {@code null}, if not found.
+     */
+
+    public IDefn lookup(Context context, String name) {
+        Binding binding = bindings.get(name);
+        while (binding != null && binding.depth > context.depth) {
+            binding = binding.shadowed;
+        }
+        return binding == null ? null : binding.definition;
+    }
+
+    /**
+     * Pops the innermost context off the branch, undoing its bindings.
+     */
+
+    private void pop() {
+        ArrayList<String> log = logs.remove(logs.size() - 1);
+        branch.remove(branch.size() - 1);
+        for (String name : log) {
+            Binding shadowed = bindings.get(name).shadowed;
+            if (shadowed == null) {
+                bindings.remove(name);
+            } else {
+                bindings.put(name, shadowed);
+            }
+        }
+    }
+
+    /**
+     * A binding of a name to a definition, in the context at a depth on the
+     * branch.
+     */
+
+    private static class Binding {
+
+        /** The definition. */
+        public IDefn definition;
+
+        /** Depth of the context that binds the name. */
+        public int depth;
+
+        /** The binding of the name in a surrounding context, if any. */
+        public Binding shadowed;
+
+        /**
+         * Constructs a binding.
+         *
+         * @param definition
+         *            the definition.
+         * @param depth
+         *            depth of the context that binds the name.
+         * @param shadowed
+         *            the binding of the name in a surrounding context, or
+         *            {@code null} if there is none.
+         */
+
+        public Binding(IDefn definition, int depth, Binding shadowed) {
+            this.definition = definition;
+            this.depth = depth;
+            this.shadowed = shadowed;
+        }
+
+    }
+
+}
+
 /**
  * The compilation unit context is always the outermost context and is where
  * imported types and locally defined types (classes) are declared.
@@ -0,0 +1,144 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.FileNotFoundException;
+
+import static jminusminus.TokenKind.*;
+
+/**
+ * A table-driven lexical analyzer for j--, an alternative to the hand-written
+ * {@link Scanner}. Rather than a case per token, it runs the deterministic
+ * finite automaton compiled (by {@link LexicalGrammar}) from the
+ * {@code lexicalgrammar} file, taking the longest input that the automaton
+ * accepts as the next token. Keywords are told from identifiers by the
+ * automaton, so no table of reserved words is consulted.
+ * <p>
+ * The two scanners produce the same tokens for well-formed input; on
+ * malformed input, this one reports each character that starts no token as
+ * an "Unidentified input token", and goes on to the next one.
+ */
+
+class DFAScanner extends Scanner {
+
+    /** The lexical grammar, compiled into an automaton. */
+    private LexicalGrammar grammar;
+
+    /**
+     * Constructs a DFAScanner object.
+     *
+     * @param fileName
+     *            the name of the file containing the source.
+     * @exception FileNotFoundException
+     *                when the named file cannot be found.
+     */
+
+    public DFAScanner(String fileName) throws FileNotFoundException {
+        super(fileName);
+        grammar = LexicalGrammar.jminusminus();
+    }
+
+    /**
+     * Scans the next token from input.
+     *
+     * @return the next scanned token.
+     */
+
+    public TokenInfo getNextToken() {
+        while (true) {
+            if (ch == EOFCH) {
+                return new TokenInfo(EOF, input.line());
+            }
+            int tokenLine = input.line();
+            int start = input.offset();
+            int startLine = line;
+            char first = ch;
+
+            // Run the automaton for as long as it can go, remembering
+            // where it last accepted
+            int state = grammar.startState();
+            int rule = -1;
+            int end = start;
+            int endLine = startLine;
+            while ((state = grammar.next(state, ch)) != -1) {
+                nextCh();
+                if (grammar.accept(state) != -1) {
+                    rule = grammar.accept(state);
+                    end = input.offset();
+                    endLine = line;
+                }
+            }
+            if (rule == -1) {
+                reportScannerError("Unidentified input token: '%c'", first);
+                backUp(start, startLine);
+                nextCh();
+                continue;
+            }
+            if (input.offset() != end) {
+                backUp(end, endLine);
+            }
+            TokenKind kind = grammar.kind(rule);
+            if (kind == null) {
+                // Whitespace or a comment
+                continue;
+            }
+            switch (kind) {
+            case IDENTIFIER:
+            case INT_LITERAL:
+                return new TokenInfo(kind, input.image(start), tokenLine);
+            case CHAR_LITERAL:
+            case STRING_LITERAL:
+                return new TokenInfo(kind, literalImage(input.image(start)),
+                        tokenLine);
+            default:
+                return new TokenInfo(kind, tokenLine);
+            }
+        }
+    }
+
+    /**
+     * Returns the image of a character or string literal as the hand-written
+     * scanner has it: escapes as they are in the source, except for \",
+     * which stands for ".
+     *
+     * @param literal
+     *            the literal, as it is in the source.
+     * @return the image.
+     */
+
+    private String literalImage(String literal) {
+        if (literal.indexOf('\\') == -1) {
+            return literal;
+        }
+        StringBuilder image = new StringBuilder(literal.length());
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c == '\\' && i + 1 < literal.length()) {
+                char escaped = literal.charAt(++i);
+                if (escaped != '"') {
+                    image.append(c);
+                }
+                image.append(escaped);
+            } else {
+                image.append(c);
+            }
+        }
+        return image.toString();
+    }
+
+    /**
+     * Returns to the character at the specified offset, making it the next
+     * unscanned character.
+     *
+     * @param offset
+     *            offset of the character.
+     * @param line
+     *            the line number before the character is scanned.
+     */
+
+    private void backUp(int offset, int line) {
+        input.reset(offset, line);
+        nextCh();
+    }
+
+}
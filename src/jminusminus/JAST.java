@@ -9,8 +9,12 @@ package jminusminus;
 
 abstract class JAST {
 
-    /** Current compilation unit (set in JCompilationUnit()). */
-    public static JCompilationUnit compilationUnit;
+    /**
+     * The compilation unit each thread is currently working on (set in
+     * JCompilationUnit). Semantic errors are reported against it.
+     */
+    private static final ThreadLocal<JCompilationUnit> currentCompilationUnit =
+        new ThreadLocal<JCompilationUnit>();
 
     /** Line in which the source for the AST was found. */
     protected int line;
@@ -26,6 +30,32 @@ abstract class JAST {
         this.line = line;
     }
 
+    /**
+     * Returns the compilation unit the current thread is working on.
+     * 
+     * @return the current compilation unit.
+     */
+
+    public static JCompilationUnit compilationUnit() {
+        return currentCompilationUnit.get();
+    }
+
+    /**
+     * Sets the compilation unit the current thread is working on.
+     * 
+     * @param compilationUnit
+     *            the compilation unit, or {@code null} once the thread is done
+     *            with it.
+     */
+
+    public static void setCompilationUnit(JCompilationUnit compilationUnit) {
+        if (compilationUnit == null) {
+            currentCompilationUnit.remove();
+        } else {
+            currentCompilationUnit.set(compilationUnit);
+        }
+    }
+
     /**
      * Returns the line in which the source for the AST was found.
      * 
@@ -47,21 +77,6 @@ abstract class JAST {
 
     public abstract JAST analyze(Context context);
 
-    /**
-     * Generates a partial class for this type, reflecting only the member
-     * information required to do analysis.
-     * 
-     * @param context
-     *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
-     */
-
-    public void partialCodegen(Context context, CLEmitter partial) {
-        // A dummy -- redefined where necessary.
-    }
-
     /**
      * Performs code generation for this AST.
      * 
@@ -95,7 +95,8 @@ class JPlusOp extends JBinaryExpression {
      * Analysis involves first analyzing the operands. If this is a string
      * concatenation, we rewrite the subtree to make that explicit (and analyze
      * that). Otherwise we check the types of the addition operands and compute
-     * the result type.
+     * the result type. An addition of two int literals is folded into a
+     * literal, and an addition of the literal 0 into the other operand.
      * 
      * @param context
      *            context in which names are resolved.
@@ -110,9 +111,18 @@ class JPlusOp extends JBinaryExpression {
                     .analyze(context);
         } else if (lhs.type() == Type.INT && rhs.type() == Type.INT) {
             type = Type.INT;
+            Integer l = intConstant(lhs);
+            Integer r = intConstant(rhs);
+            if (l != null && r != null) {
+                return literal(line, l + r, context);
+            } else if (r != null && r == 0) {
+                return lhs;
+            } else if (l != null && l == 0) {
+                return rhs;
+            }
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for +");
         }
         return this;
@@ -164,7 +174,9 @@ class JSubtractOp extends JBinaryExpression {
 
     /**
      * Analyzing the - operation involves analyzing its operands, checking
-     * types, and determining the result type.
+     * types, and determining the result type. A subtraction of two int
+     * literals is folded into a literal, and a subtraction of the literal 0
+     * into the lhs.
      * 
      * @param context
      *            context in which names are resolved.
@@ -177,6 +189,13 @@ class JSubtractOp extends JBinaryExpression {
         lhs.type().mustMatchExpected(line(), Type.INT);
         rhs.type().mustMatchExpected(line(), Type.INT);
         type = Type.INT;
+        Integer l = intConstant(lhs);
+        Integer r = intConstant(rhs);
+        if (l != null && r != null) {
+            return literal(line, l - r, context);
+        } else if (r != null && r == 0 && lhs.type() == Type.INT) {
+            return lhs;
+        }
         return this;
     }
 
@@ -222,7 +241,9 @@ class JMultiplyOp extends JBinaryExpression {
 
     /**
      * Analyzing the * operation involves analyzing its operands, checking
-     * types, and determining the result type.
+     * types, and determining the result type. A multiplication of two int
+     * literals is folded into a literal, and a multiplication by the literal
+     * 1 into the other operand.
      * 
      * @param context
      *            context in which names are resolved.
@@ -235,6 +256,15 @@ class JMultiplyOp extends JBinaryExpression {
         lhs.type().mustMatchExpected(line(), Type.INT);
         rhs.type().mustMatchExpected(line(), Type.INT);
         type = Type.INT;
+        Integer l = intConstant(lhs);
+        Integer r = intConstant(rhs);
+        if (l != null && r != null) {
+            return literal(line, l * r, context);
+        } else if (r != null && r == 1 && lhs.type() == Type.INT) {
+            return lhs;
+        } else if (l != null && l == 1 && rhs.type() == Type.INT) {
+            return rhs;
+        }
         return this;
     }
 
@@ -83,7 +83,8 @@ class JEqualOp extends JBooleanBinaryExpression {
 
     /**
      * Analyzing an equality expression means analyzing its operands and
-     * checking that the types match.
+     * checking that the types match. A comparison of two int or two boolean
+     * literals is folded into a boolean literal.
      * 
      * @param context
      *            context in which names are resolved.
@@ -95,6 +96,16 @@ class JEqualOp extends JBooleanBinaryExpression {
         rhs = (JExpression) rhs.analyze(context);
         lhs.type().mustMatchExpected(line(), rhs.type());
         type = Type.BOOLEAN;
+        Integer li = intConstant(lhs);
+        Integer ri = intConstant(rhs);
+        if (li != null && ri != null) {
+            return literal(line, li.equals(ri), context);
+        }
+        Boolean lb = booleanConstant(lhs);
+        Boolean rb = booleanConstant(rhs);
+        if (lb != null && rb != null) {
+            return literal(line, lb.equals(rb), context);
+        }
         return this;
     }
 
@@ -150,7 +161,9 @@ class JLogicalAndOp extends JBooleanBinaryExpression {
 
     /**
      * Analyzing a logical AND expression involves analyzing its operands and
-     * insuring they are boolean; the result type is of course boolean.
+     * insuring they are boolean; the result type is of course boolean. If the
+     * lhs is a boolean literal, the expression is folded into the rhs (for
+     * true) or into false; if the rhs is true, it is folded into the lhs.
      * 
      * @param context
      *            context in which names are resolved.
@@ -163,6 +176,15 @@ class JLogicalAndOp extends JBooleanBinaryExpression {
         lhs.type().mustMatchExpected(line(), Type.BOOLEAN);
         rhs.type().mustMatchExpected(line(), Type.BOOLEAN);
         type = Type.BOOLEAN;
+        if (lhs.type() != Type.BOOLEAN || rhs.type() != Type.BOOLEAN) {
+            return this;
+        }
+        Boolean l = booleanConstant(lhs);
+        if (l != null) {
+            return l ? rhs : lhs;
+        } else if (Boolean.TRUE.equals(booleanConstant(rhs))) {
+            return lhs;
+        }
         return this;
     }
 
@@ -29,7 +29,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
     private Type superType;
 
     /** This class type. */
-    private Type thisType;
+    private SourceType thisType;
 
     /** Context for this class. */
     private ClassContext context;
@@ -121,12 +121,10 @@ class JClassDeclaration extends JAST implements JTypeDecl {
      */
 
     public void declareThisType(Context context) {
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
-        CLEmitter partial = new CLEmitter(false);
-        partial.addClass(mods, qualifiedName, Type.OBJECT.jvmName(), null,
-                false); // Object for superClass, just for now
-        thisType = Type.typeFor(partial.toClass());
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ? name
+                : JAST.compilationUnit().packageName() + "/" + name;
+        thisType = JAST.compilationUnit().session().declareType(
+                new SourceType(qualifiedName, mods));
         context.addType(line, thisType);
     }
 
@@ -146,27 +144,17 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         // Resolve superclass
         superType = superType.resolve(this.context);
 
-        // Creating a partial class in memory can result in a
-        // java.lang.VerifyError if the semantics below are
-        // violated, so we can't defer these checks to analyze()
         thisType.checkAccess(line, superType);
         if (superType.isFinal()) {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Cannot extend a final type: %s", superType.toString());
         }
 
-        // Create the (partial) class
-        CLEmitter partial = new CLEmitter(false);
-
-        // Add the class header to the partial class
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
-        partial.addClass(mods, qualifiedName, superType.jvmName(), null, false);
-
-        // Pre-analyze the members and add them to the partial
-        // class
+        // Record the super class, and pre-analyze the members,
+        // adding their headers to the member table of this type
+        thisType.superClass(superType);
         for (JMember member : classBlock) {
-            member.preAnalyze(this.context, partial);
+            member.preAnalyze(this.context, thisType);
             if (member instanceof JConstructorDeclaration
                     && ((JConstructorDeclaration) member).params.size() == 0) {
                 hasExplicitConstructor = true;
@@ -175,15 +163,9 @@ class JClassDeclaration extends JAST implements JTypeDecl {
 
         // Add the implicit empty constructor?
         if (!hasExplicitConstructor) {
-            codegenPartialImplicitConstructor(partial);
-        }
-
-        // Get the Class rep for the (partial) class and make it
-        // the
-        // representation for this type
-        Type id = this.context.lookupType(name);
-        if (id != null && !JAST.compilationUnit.errorHasOccurred()) {
-            id.setClassRep(partial.toClass());
+            ArrayList<String> mods = new ArrayList<String>();
+            mods.add("public");
+            thisType.addConstructor(mods, new Type[0]);
         }
     }
 
@@ -222,7 +204,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
             for (Method method : thisType.abstractMethods()) {
                 methods += "\n" + method;
             }
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Class must be declared abstract since it defines "
                             + "the following abstract methods: %s", methods);
 
@@ -240,8 +222,8 @@ class JClassDeclaration extends JAST implements JTypeDecl {
 
     public void codegen(CLEmitter output) {
         // The class header
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ? name
+                : JAST.compilationUnit().packageName() + "/" + name;
         output.addClass(mods, qualifiedName, superType.jvmName(), null, false);
 
         // The implicit empty constructor?
@@ -293,28 +275,6 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         p.println("</JClassDeclaration>");
     }
 
-    /**
-     * Generates code for an implicit empty constructor. (Necessary only if there
-     * is not already an explicit one.)
-     * 
-     * @param partial
-     *            the code emitter (basically an abstraction for producing a
-     *            Java class).
-     */
-
-    private void codegenPartialImplicitConstructor(CLEmitter partial) {
-        // Invoke super constructor
-        ArrayList<String> mods = new ArrayList<String>();
-        mods.add("public");
-        partial.addMethod(mods, "<init>", "()V", null, false);
-        partial.addNoArgInstruction(ALOAD_0);
-        partial.addMemberAccessInstruction(INVOKESPECIAL, superType.jvmName(),
-                "<init>", "()V");
-
-        // Return
-        partial.addNoArgInstruction(RETURN);
-    }
-
     /**
      * Generates code for an implicit empty constructor. (Necessary only if there
      * is not already an explicit one.
@@ -30,7 +30,8 @@ abstract class JComparison extends JBooleanBinaryExpression {
 
     /**
      * The analysis of a comparison operation consists of analyzing its two
-     * operands, and making sure they both have the same numeric type.
+     * operands, and making sure they both have the same numeric type. A
+     * comparison of two int literals is folded into a boolean literal.
      * 
      * @param context
      *            context in which names are resolved.
@@ -43,9 +44,26 @@ abstract class JComparison extends JBooleanBinaryExpression {
         lhs.type().mustMatchExpected(line(), Type.INT);
         rhs.type().mustMatchExpected(line(), lhs.type());
         type = Type.BOOLEAN;
+        Integer l = intConstant(lhs);
+        Integer r = intConstant(rhs);
+        if (l != null && r != null) {
+            return literal(line, compare(l, r), context);
+        }
         return this;
     }
 
+    /**
+     * Returns the result of this comparison on the specified values.
+     * 
+     * @param lhs
+     *            the lhs value.
+     * @param rhs
+     *            the rhs value.
+     * @return the result.
+     */
+
+    protected abstract boolean compare(int lhs, int rhs);
+
 }
 
 /**
@@ -72,6 +90,14 @@ class JGreaterThanOp extends JComparison {
         super(line, ">", lhs, rhs);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    protected boolean compare(int lhs, int rhs) {
+        return lhs > rhs;
+    }
+
     /**
      * Branching code generation for &gt; operation.
      * 
@@ -118,6 +144,14 @@ class JLessEqualOp extends JComparison {
         super(line, "<=", lhs, rhs);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    protected boolean compare(int lhs, int rhs) {
+        return lhs <= rhs;
+    }
+
     /**
      * Branching code generation for &lt;= operation.
      * 
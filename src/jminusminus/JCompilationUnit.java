@@ -3,6 +3,8 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  * The abstract syntax tree (AST) node representing a compilation unit, and so
@@ -20,9 +22,8 @@ import java.util.ArrayList;
  *   <li>Method {@code preAnalyze} is invoked for making a first pass at type 
  *       analysis, recursively reaching down to the member headers for declaring
  *       types and member interfaces in the environment (contexts). 
- *       {@code preAnalyze} also creates a partial class file (in memory) for 
- *       recording member header information, using the {@code partialCodegen} 
- *       method.</li>
+ *       {@code preAnalyze} also records the member header information in the
+ *       member table of each declared type (see {@link SourceType}).</li>
  * 
  *   <li>Method {@code analyze} is invoked for type-checking field 
  *       initializations and method bodies, and determining the types of all 
@@ -65,6 +66,9 @@ class JCompilationUnit extends JAST {
     /** For imports and type declarations. */
     private CompilationUnitContext context;
 
+    /** The compilation this unit is part of (set in pre-analysis). */
+    private CompilationSession session;
+
     /** Whether a semantic error has been found. */
     private boolean isInError;
 
@@ -93,7 +97,26 @@ class JCompilationUnit extends JAST {
         this.imports = imports;
         this.typeDeclarations = typeDeclarations;
         clFiles = new ArrayList<CLFile>();
-        compilationUnit = this;
+    }
+
+    /**
+     * Returns the name of the source file.
+     * 
+     * @return the source file name.
+     */
+
+    public String fileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the compilation this unit is part of.
+     * 
+     * @return the compilation session.
+     */
+
+    public CompilationSession session() {
+        return session;
     }
 
     /**
@@ -132,18 +155,106 @@ class JCompilationUnit extends JAST {
     public void reportSemanticError(int line, String message,
             Object... arguments) {
         isInError = true;
-        System.err.printf("%s:%d: ", fileName, line);
-        System.err.printf(message, arguments);
-        System.err.println();
+        System.err.printf("%s:%d: %s%n", fileName, line, String.format(message,
+                arguments));
     }
 
     /**
      * Constructs a context for the compilation unit, initializing it with
      * imported types. Then pre-analyze the unit's type declarations, adding
-     * their types to the context.
+     * their types to the context. The unit is compiled on its own, in a 
+     * compilation session of its own.
      */
 
     public void preAnalyze() {
+        ArrayList<JCompilationUnit> units = new ArrayList<JCompilationUnit>();
+        units.add(this);
+        new CompilationSession().preAnalyze(units);
+    }
+
+    /**
+     * Pre-analyzes the specified compilation units together, so that a type
+     * declared in one of them may be referenced from the others. Types 
+     * declared in a unit of the same package are visible by their simple 
+     * names; all others, by their qualified names (or through an import).
+     * <p>
+     * Every type is declared before any is pre-analyzed, and the types are 
+     * then pre-analyzed in an order that puts each (source) super class ahead
+     * of its subclasses, since the member table of a type is linked to that of
+     * its super class.
+     * 
+     * @param units
+     *            the compilation units making up a compilation.
+     * @param session
+     *            the compilation.
+     */
+
+    static void preAnalyze(ArrayList<JCompilationUnit> units,
+            CompilationSession session) {
+        // Declare the locally declared type(s) of every unit
+        HashMap<String, Type> sourceTypes = new HashMap<String, Type>();
+        HashMap<Type, JCompilationUnit> declaringUnits = 
+            new HashMap<Type, JCompilationUnit>();
+        HashMap<JAST, JCompilationUnit> enclosingUnits = 
+            new HashMap<JAST, JCompilationUnit>();
+        for (JCompilationUnit unit : units) {
+            unit.session = session;
+            unit.declareTypes();
+            for (JAST typeDeclaration : unit.typeDeclarations) {
+                Type type = ((JTypeDecl) typeDeclaration).thisType();
+                JCompilationUnit declaringUnit = declaringUnits.get(type);
+                if (declaringUnit == null) {
+                    sourceTypes.put(type.toString(), type);
+                    declaringUnits.put(type, unit);
+                } else if (declaringUnit != unit) {
+                    unit.reportSemanticError(typeDeclaration.line(),
+                            "Type %s is already declared in %s", type,
+                            declaringUnit.fileName);
+                }
+                enclosingUnits.put(typeDeclaration, unit);
+            }
+        }
+
+        // Declare the imported types, and the types declared in the
+        // other units
+        for (JCompilationUnit unit : units) {
+            unit.importTypes(sourceTypes, declaringUnits);
+        }
+
+        // Pre-analyze the locally declared type(s), super classes
+        // first, recording only the member interface type
+        // information
+        HashMap<Type, JAST> declarations = new HashMap<Type, JAST>();
+        for (JCompilationUnit unit : units) {
+            for (JAST typeDeclaration : unit.typeDeclarations) {
+                Type type = ((JTypeDecl) typeDeclaration).thisType();
+                if (!declarations.containsKey(type)) {
+                    declarations.put(type, typeDeclaration);
+                }
+            }
+        }
+        ArrayList<JAST> ordered = new ArrayList<JAST>();
+        HashSet<JAST> visited = new HashSet<JAST>();
+        for (JCompilationUnit unit : units) {
+            for (JAST typeDeclaration : unit.typeDeclarations) {
+                orderSuperTypesFirst(typeDeclaration, enclosingUnits,
+                        declarations, visited, ordered);
+            }
+        }
+        for (JAST typeDeclaration : ordered) {
+            JCompilationUnit unit = enclosingUnits.get(typeDeclaration);
+            setCompilationUnit(unit);
+            ((JTypeDecl) typeDeclaration).preAnalyze(unit.context);
+        }
+    }
+
+    /**
+     * Constructs a context for this compilation unit and declares in it the 
+     * two implicit types and the locally declared type(s).
+     */
+
+    private void declareTypes() {
+        setCompilationUnit(this);
         context = new CompilationUnitContext();
 
         // Declare the two implicit types java.lang.Object and
@@ -151,30 +262,91 @@ class JCompilationUnit extends JAST {
         context.addType(0, Type.OBJECT);
         context.addType(0, Type.STRING);
 
+        // Declare the locally declared type(s)
+        for (JAST typeDeclaration : typeDeclarations) {
+            ((JTypeDecl) typeDeclaration).declareThisType(context);
+        }
+    }
+
+    /**
+     * Declares the imported types, and the types declared in the other units
+     * of the compilation, in this compilation unit's context.
+     * 
+     * @param sourceTypes
+     *            maps the qualified names of all source-declared types to 
+     *            their types.
+     * @param declaringUnits
+     *            maps each source-declared type to its compilation unit.
+     */
+
+    private void importTypes(HashMap<String, Type> sourceTypes,
+            HashMap<Type, JCompilationUnit> declaringUnits) {
+        setCompilationUnit(this);
+
         // Declare any imported types
         for (TypeName imported : imports) {
-            try {
-                Class<?> classRep = Class.forName(imported.toString());
-                context.addType(imported.line(), Type.typeFor(classRep));
-            } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(imported.line(),
+            Type type = sourceTypes.get(imported.toString());
+            if (type != null) {
+                context.addType(imported.line(), type);
+                continue;
+            }
+            type = session.typeNamed(imported.toString());
+            if (type != null) {
+                context.addType(imported.line(), type);
+            } else {
+                JAST.compilationUnit().reportSemanticError(imported.line(),
                         "Unable to find %s", imported.toString());
             }
         }
 
-        // Declare the locally declared type(s)
-        CLEmitter.initializeByteClassLoader();
-        for (JAST typeDeclaration : typeDeclarations) {
-            ((JTypeDecl) typeDeclaration).declareThisType(context);
+        // Declare the types from the other units; by simple name
+        // only within the same package
+        for (Type type : sourceTypes.values()) {
+            JCompilationUnit unit = declaringUnits.get(type);
+            if (unit == this || context.lookupType(type.toString()) != null) {
+                continue;
+            }
+            if (unit.packageName().equals(packageName())
+                    && context.lookupType(type.simpleName()) == null) {
+                context.addType(0, type);
+            } else {
+                context.addEntry(0, type.toString(), new TypeNameDefn(type));
+            }
         }
+    }
 
-        // Pre-analyze the locally declared type(s). Generate
-        // (partial) Class instances, reflecting only the member
-        // interface type information
-        CLEmitter.initializeByteClassLoader();
-        for (JAST typeDeclaration : typeDeclarations) {
-            ((JTypeDecl) typeDeclaration).preAnalyze(context);
+    /**
+     * Adds the specified type declaration to the ordered list after the 
+     * declaration of its super class, if that is also declared in source.
+     * 
+     * @param typeDeclaration
+     *            the type declaration.
+     * @param enclosingUnits
+     *            maps type declarations to their compilation units.
+     * @param declarations
+     *            maps source-declared types to their declarations.
+     * @param visited
+     *            the declarations visited so far.
+     * @param ordered
+     *            the ordered list of declarations.
+     */
+
+    private static void orderSuperTypesFirst(JAST typeDeclaration,
+            HashMap<JAST, JCompilationUnit> enclosingUnits,
+            HashMap<Type, JAST> declarations, HashSet<JAST> visited,
+            ArrayList<JAST> ordered) {
+        if (!visited.add(typeDeclaration)) {
+            return;
+        }
+        Context context = enclosingUnits.get(typeDeclaration).context;
+        Type superType = ((JTypeDecl) typeDeclaration).superType();
+        JAST superDeclaration = superType == null ? null : declarations
+                .get(context.lookupType(superType.toString()));
+        if (superDeclaration != null) {
+            orderSuperTypesFirst(superDeclaration, enclosingUnits,
+                    declarations, visited, ordered);
         }
+        ordered.add(typeDeclaration);
     }
 
     /**
@@ -186,6 +358,7 @@ class JCompilationUnit extends JAST {
      */
 
     public JAST analyze(Context context) {
+        setCompilationUnit(this);
         for (JAST typeDeclaration : typeDeclarations) {
             typeDeclaration.analyze(this.context);
         }
@@ -202,6 +375,7 @@ class JCompilationUnit extends JAST {
      */
 
     public void codegen(CLEmitter output) {
+        setCompilationUnit(this);
         for (JAST typeDeclaration : typeDeclarations) {
             typeDeclaration.codegen(output);
             output.write();
@@ -50,18 +50,17 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
      * 
      * @param context
      *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param thisType
+     *            the type of the parent class.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial) {
-        super.preAnalyze(context, partial);
+    public void preAnalyze(Context context, SourceType thisType) {
+        super.preAnalyze(context, thisType);
         if (isStatic) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Constructor cannot be declared static");
         } else if (isAbstract) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Constructor cannot be declared abstract");
         }
         if (body.statements().size() > 0
@@ -116,24 +115,15 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
     }
 
     /**
-     * Adds this constructor declaration to the partial class.
+     * Adds this constructor declaration to the member table of the type
+     * declaring it.
      * 
-     * @param context
-     *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param thisType
+     *            the type of the parent class.
      */
 
-    public void partialCodegen(Context context, CLEmitter partial) {
-        partial.addMethod(mods, "<init>", descriptor, null, false);
-        if (!invokesConstructor) {
-            partial.addNoArgInstruction(ALOAD_0);
-            partial.addMemberAccessInstruction(INVOKESPECIAL,
-                    ((JTypeDecl) context.classContext().definition())
-                            .superType().jvmName(), "<init>", "()V");
-        }
-        partial.addNoArgInstruction(RETURN);
+    protected void declareIn(SourceType thisType) {
+        thisType.addConstructor(mods, paramTypes());
     }
 
     /**
@@ -63,6 +63,77 @@ abstract class JExpression extends JStatement {
 
     public abstract JExpression analyze(Context context);
 
+    /**
+     * Returns the value of the specified (analyzed) expression, if it is an
+     * int literal; this is how analysis tells that the operands of an
+     * operation are constants, and so may be folded.
+     * 
+     * @param expr
+     *            the expression.
+     * @return the value, or {@code null} if the expression is not an int
+     *         literal (or is one that is out of range).
+     */
+
+    protected static Integer intConstant(JExpression expr) {
+        return expr instanceof JLiteralInt ? ((JLiteralInt) expr).value()
+                : null;
+    }
+
+    /**
+     * Returns the value of the specified (analyzed) expression, if it is a
+     * boolean literal.
+     * 
+     * @param expr
+     *            the expression.
+     * @return the value, or {@code null} if the expression is not a boolean
+     *         literal.
+     */
+
+    protected static Boolean booleanConstant(JExpression expr) {
+        if (expr instanceof JLiteralTrue) {
+            return Boolean.TRUE;
+        }
+        return expr instanceof JLiteralFalse ? Boolean.FALSE : null;
+    }
+
+    /**
+     * Returns an (analyzed) int literal with the specified value; the result
+     * of folding an int operation.
+     * 
+     * @param line
+     *            line in which the folded expression occurs in the source
+     *            file.
+     * @param value
+     *            the value.
+     * @param context
+     *            context in which names are resolved.
+     * @return the literal.
+     */
+
+    protected static JExpression literal(int line, int value, Context context) {
+        return new JLiteralInt(line, Integer.toString(value)).analyze(context);
+    }
+
+    /**
+     * Returns an (analyzed) boolean literal with the specified value; the
+     * result of folding a boolean operation.
+     * 
+     * @param line
+     *            line in which the folded expression occurs in the source
+     *            file.
+     * @param value
+     *            the value.
+     * @param context
+     *            context in which names are resolved.
+     * @return the literal.
+     */
+
+    protected static JExpression literal(int line, boolean value,
+            Context context) {
+        return (value ? new JLiteralTrue(line) : new JLiteralFalse(line))
+                .analyze(context);
+    }
+
     /**
      * Performs (short-circuit) code generation for a boolean expression, given
      * the code emitter, a target label, and whether we branch to that label on
@@ -51,27 +51,25 @@ class JFieldDeclaration extends JAST implements JMember {
     }
 
     /**
-     * Declares fields in the parent's (partial) class.
+     * Declares fields in the member table of the parent's type.
      * 
      * @param context
      *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param thisType
+     *            the type of the parent class.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial) {
+    public void preAnalyze(Context context, SourceType thisType) {
         // Fields may not be declared abstract.
         if (mods.contains("abstract")) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Field cannot be declared abstract");
         }
 
         for (JVariableDeclarator decl : decls) {
-            // Add field to (partial) class
+            // Add field to the member table
             decl.setType(decl.type().resolve(context));
-            partial.addField(mods, decl.name(), decl.type().toDescriptor(),
-                    false);
+            thisType.addField(mods, decl.name(), decl.type());
         }
     }
 
@@ -43,7 +43,9 @@ class JIfStatement extends JStatement {
 
     /**
      * Analyzing the if-statement means analyzing its components and checking
-     * that the test is a boolean.
+     * that the test is a boolean. If the test is (or has been folded into) a
+     * boolean literal, the if-statement is replaced by the part that is
+     * executed, if any; the other part is analyzed all the same, for errors.
      * 
      * @param context
      *            context in which names are resolved.
@@ -57,7 +59,13 @@ class JIfStatement extends JStatement {
         if (elsePart != null) {
             elsePart = (JStatement) elsePart.analyze(context);
         }
-        return this;
+        Boolean test = JExpression.booleanConstant(condition);
+        if (test == null) {
+            return this;
+        } else if (test) {
+            return thenPart;
+        }
+        return elsePart == null ? new JEmptyStatement(line) : elsePart;
     }
 
     /**
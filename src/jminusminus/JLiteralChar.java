@@ -41,6 +41,17 @@ class JLiteralChar extends JExpression {
         return this;
     }
 
+    /**
+     * Returns the representation of the char, as it is in the source: quoted,
+     * and with escapes.
+     * 
+     * @return the representation.
+     */
+
+    public String text() {
+        return text;
+    }
+
     /**
      * Generating code for a char literal means generating code to push it onto
      * the stack.
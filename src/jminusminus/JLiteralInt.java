@@ -41,6 +41,20 @@ class JLiteralInt extends JExpression {
         return this;
     }
 
+    /**
+     * Returns the value of this literal.
+     * 
+     * @return the value, or {@code null} if it is out of range.
+     */
+
+    public Integer value() {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * Generating code for an int literal means generating code to push it onto
      * the stack.
@@ -53,6 +67,9 @@ class JLiteralInt extends JExpression {
     public void codegen(CLEmitter output) {
         int i = Integer.parseInt(text);
         switch (i) {
+        case -1:
+            output.addNoArgInstruction(ICONST_M1);
+            break;
         case 0:
             output.addNoArgInstruction(ICONST_0);
             break;
@@ -72,9 +89,9 @@ class JLiteralInt extends JExpression {
             output.addNoArgInstruction(ICONST_5);
             break;
         default:
-            if (i >= 6 && i <= 127) {
+            if (i >= -128 && i <= 127) {
                 output.addOneArgInstruction(BIPUSH, i);
-            } else if (i >= 128 && i <= 32767) {
+            } else if (i >= -32768 && i <= 32767) {
                 output.addOneArgInstruction(SIPUSH, i);
             } else {
                 output.addLDCInstruction(i);
@@ -39,6 +39,17 @@ class JLiteralString extends JExpression {
         return this;
     }
 
+    /**
+     * Returns the representation of the string, as it is in the source: quoted,
+     * and with escapes.
+     * 
+     * @return the representation.
+     */
+
+    public String text() {
+        return text;
+    }
+
     /**
      * Generating code for a string literal means generating code to push it
      * onto the stack.
@@ -9,17 +9,16 @@ package jminusminus;
 interface JMember {
 
     /**
-     * Declares the member name(s) in the specified (class) context. Generates 
-     * the member header(s) in the (partial) class. All members must support 
-     * this method.
+     * Declares the member name(s) in the specified (class) context. Adds the 
+     * member header(s) to the member table of the class' type. All members 
+     * must support this method.
      * 
      * @param context
      *            class context in which names are resolved.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param thisType
+     *            the type of the class declaring the member.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial);
+    public void preAnalyze(Context context, SourceType thisType);
 
 }
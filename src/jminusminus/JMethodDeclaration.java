@@ -82,12 +82,11 @@ class JMethodDeclaration extends JAST implements JMember {
      * 
      * @param context
      *                the parent (class) context.
-     * @param partial
-     *                the code emitter (basically an abstraction
-     *                for producing the partial class).
+     * @param thisType
+     *                the type of the parent class.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial) {
+    public void preAnalyze(Context context, SourceType thisType) {
         // Resolve types of the formal parameters
         for (JFormalParameter param : params) {
             param.setType(param.type().resolve(context));
@@ -98,16 +97,16 @@ class JMethodDeclaration extends JAST implements JMember {
 
         // Check proper local use of abstract
         if (isAbstract && body != null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                 "abstract method cannot have a body");
         } else if (body == null && !isAbstract) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                 "Method with null body must be abstract");
         } else if (isAbstract && isPrivate) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                 "private method cannot be declared abstract");
         } else if (isAbstract && isStatic) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                 "static method cannot be declared abstract");
         }
 
@@ -118,8 +117,8 @@ class JMethodDeclaration extends JAST implements JMember {
         }
         descriptor += ")" + returnType.toDescriptor();
 
-        // Generate the method with an empty body (for now)
-        partialCodegen(context, partial);
+        // Add the method header to the member table
+        declareIn(thisType);
     }
 
     /**
@@ -157,7 +156,7 @@ class JMethodDeclaration extends JAST implements JMember {
         if (body != null) {
             body = body.analyze(this.context);
             if (returnType!=Type.VOID && ! methodContext.methodHasReturn()){
-                JAST.compilationUnit.reportSemanticError(line(),
+                JAST.compilationUnit().reportSemanticError(line(),
                             "Non-void method must have a return statement");
             }
         }
@@ -165,32 +164,29 @@ class JMethodDeclaration extends JAST implements JMember {
     }
 
     /**
-     * Adds this method declaration to the partial class.
+     * Adds this method declaration to the member table of the type declaring
+     * it.
      * 
-     * @param context
-     *                the parent (class) context.
-     * @param partial
-     *                the code emitter (basically an abstraction
-     *                for producing the partial class).
+     * @param thisType
+     *                the type of the parent class.
      */
 
-    public void partialCodegen(Context context, CLEmitter partial) {
-        // Generate a method with an empty body; need a return to
-        // make the class verifier happy.
-        partial.addMethod(mods, name, descriptor, null, false);
+    protected void declareIn(SourceType thisType) {
+        thisType.addMethod(mods, name, paramTypes(), returnType);
+    }
 
-        // Add implicit RETURN
-        if (returnType == Type.VOID) {
-            partial.addNoArgInstruction(RETURN);
-        } else if (returnType == Type.INT
-            || returnType == Type.BOOLEAN || returnType == Type.CHAR) {
-            partial.addNoArgInstruction(ICONST_0);
-            partial.addNoArgInstruction(IRETURN);
-        } else {
-            // A reference type.
-            partial.addNoArgInstruction(ACONST_NULL);
-            partial.addNoArgInstruction(ARETURN);
+    /**
+     * Returns the (resolved) types of the formal parameters.
+     * 
+     * @return the parameter types.
+     */
+
+    protected Type[] paramTypes() {
+        Type[] paramTypes = new Type[params.size()];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramTypes[i] = params.get(i).type();
         }
+        return paramTypes;
     }
 
     /**
@@ -33,7 +33,9 @@ class JStringConcatenationOp extends JBinaryExpression {
 
     /**
      * Analysis is simple here. The operands have already been analyzed (in
-     * {@link JPlusOp}) so we simply set the result type.
+     * {@link JPlusOp}) so we simply set the result type. A concatenation of
+     * two literals is folded into a string literal, so that it is loaded by a
+     * single LDC.
      * 
      * @param context
      *            context in which names are resolved.
@@ -42,9 +44,42 @@ class JStringConcatenationOp extends JBinaryExpression {
 
     public JExpression analyze(Context context) {
         type = Type.STRING;
+        String l = literalText(lhs);
+        String r = literalText(rhs);
+        if (l != null && r != null) {
+            return new JLiteralString(line, "\"" + l + r + "\"")
+                    .analyze(context);
+        }
         return this;
     }
 
+    /**
+     * Returns the text of the specified operand, if it is a literal, as it
+     * would be written within a string literal (with escapes, but without the
+     * enclosing quotes).
+     * 
+     * @param operand
+     *            the operand.
+     * @return the text, or {@code null} if the operand is not a literal.
+     */
+
+    private static String literalText(JExpression operand) {
+        if (operand instanceof JLiteralString) {
+            String text = ((JLiteralString) operand).text();
+            return text.substring(1, text.length() - 1);
+        } else if (operand instanceof JLiteralChar) {
+            String text = ((JLiteralChar) operand).text();
+            text = text.substring(1, text.length() - 1);
+            return text.equals("\"") ? "\\\"" : text;
+        }
+        Integer i = intConstant(operand);
+        if (i != null) {
+            return i.toString();
+        }
+        Boolean b = booleanConstant(operand);
+        return b == null ? null : b.toString();
+    }
+
     /**
      * Code generation generates code for creating a {@code StringBuilder} atop 
      * the runtime stack, appending the operands (which might contain nested
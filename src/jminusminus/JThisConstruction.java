@@ -73,7 +73,7 @@ class JThisConstruction extends JExpression {
         }
 
         if (!properUseOfConstructor) {
-            JAST.compilationUnit.reportSemanticError(line(), "this"
+            JAST.compilationUnit().reportSemanticError(line(), "this"
                     + Type.argTypesAsString(argTypes)
                     + " must be first statement in the constructor's body.");
             return this;
@@ -84,7 +84,7 @@ class JThisConstruction extends JExpression {
                 .thisType().constructorFor(argTypes);
 
         if (constructor == null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "No such constructor: this"
                             + Type.argTypesAsString(argTypes));
 
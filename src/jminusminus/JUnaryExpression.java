@@ -78,7 +78,8 @@ class JNegateOp extends JUnaryExpression {
 
     /**
      * Analyzing the negation operation involves analyzing its operand, checking
-     * its type and determining the result type.
+     * its type and determining the result type. The negation of an int literal
+     * is folded into a literal.
      * 
      * @param context
      *            context in which names are resolved.
@@ -89,6 +90,10 @@ class JNegateOp extends JUnaryExpression {
         arg = arg.analyze(context);
         arg.type().mustMatchExpected(line(), Type.INT);
         type = Type.INT;
+        Integer value = intConstant(arg);
+        if (value != null) {
+            return literal(line, -value, context);
+        }
         return this;
     }
 
@@ -131,7 +136,9 @@ class JLogicalNotOp extends JUnaryExpression {
 
     /**
      * Analyzing a logical NOT operation means analyzing its operand, insuring
-     * it's a boolean, and setting the result to boolean.
+     * it's a boolean, and setting the result to boolean. The NOT of a boolean
+     * literal is folded into a literal, and the NOT of a NOT into the operand
+     * of the latter.
      * 
      * @param context
      *            context in which names are resolved.
@@ -141,6 +148,12 @@ class JLogicalNotOp extends JUnaryExpression {
         arg = (JExpression) arg.analyze(context);
         arg.type().mustMatchExpected(line(), Type.BOOLEAN);
         type = Type.BOOLEAN;
+        Boolean value = booleanConstant(arg);
+        if (value != null) {
+            return literal(line, !value, context);
+        } else if (arg instanceof JLogicalNotOp) {
+            return ((JLogicalNotOp) arg).arg;
+        }
         return this;
     }
 
@@ -211,7 +224,7 @@ class JPostDecrementOp extends JUnaryExpression {
 
     public JExpression analyze(Context context) {
         if (!(arg instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Operand to expr-- must have an LValue.");
             type = Type.ANY;
         } else {
@@ -294,7 +307,7 @@ class JPreIncrementOp extends JUnaryExpression {
 
     public JExpression analyze(Context context) {
         if (!(arg instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Operand to ++expr must have an LValue.");
             type = Type.ANY;
         } else {
@@ -74,7 +74,7 @@ class JVariableDeclaration extends JStatement {
             IDefn previousDefn = context.lookup(decl.name());
             if (previousDefn != null
                     && previousDefn instanceof LocalVariableDefn) {
-                JAST.compilationUnit.reportSemanticError(decl.line(),
+                JAST.compilationUnit().reportSemanticError(decl.line(),
                         "The name " + decl.name()
                                 + " overshadows another local variable.");
             }
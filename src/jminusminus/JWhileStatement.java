@@ -36,17 +36,22 @@ class JWhileStatement extends JStatement {
 
     /**
      * Analysis involves analyzing the test, checking its type and analyzing the
-     * body statement.
+     * body statement. A loop whose test is (or has been folded into) false is
+     * replaced by an empty statement; one whose test is true needs no test,
+     * and gets none from {@code codegen}.
      * 
      * @param context
      *            context in which names are resolved.
      * @return the analyzed (and possibly rewritten) AST subtree.
      */
 
-    public JWhileStatement analyze(Context context) {
+    public JStatement analyze(Context context) {
         condition = condition.analyze(context);
         condition.type().mustMatchExpected(line(), Type.BOOLEAN);
         body = (JStatement) body.analyze(context);
+        if (Boolean.FALSE.equals(JExpression.booleanConstant(condition))) {
+            return new JEmptyStatement(line);
+        }
         return this;
     }
 
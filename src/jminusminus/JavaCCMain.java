@@ -52,6 +52,7 @@ public class JavaCCMain {
         String outputDir = ".";
         boolean spimOutput = false;
         String registerAllocation = "";
+        int registerCount = NPhysicalRegister.DEFAULT_MAX_COUNT;
         errorHasOccurred = false;
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("javaccj--")) {
@@ -74,10 +75,8 @@ public class JavaCCMain {
                     return;
                 }
             } else if (args[i].endsWith("-r") && (i + 1) < args.length) {
-                NPhysicalRegister.MAX_COUNT = Math.min(18, Integer
-                        .parseInt(args[++i]));
-                NPhysicalRegister.MAX_COUNT = Math.max(1,
-                        NPhysicalRegister.MAX_COUNT);
+                registerCount = Math.min(18, Integer.parseInt(args[++i]));
+                registerCount = Math.max(2, registerCount);
             } else {
                 printUsage(caller);
                 return;
@@ -135,7 +134,7 @@ public class JavaCCMain {
 
         // Do pre-analysis
         ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        errorHasOccurred |= ast.errorHasOccurred();
         if (debugOption.equals("-pa")) {
             ast.writeToStdOut(new PrettyPrinter());
             return;
@@ -146,7 +145,7 @@ public class JavaCCMain {
 
         // Do analysis
         ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        errorHasOccurred |= ast.errorHasOccurred();
         if (debugOption.equals("-a")) {
             ast.writeToStdOut(new PrettyPrinter());
             return;
@@ -169,7 +168,7 @@ public class JavaCCMain {
         // allocation scheme.
         if (spimOutput) {
             NEmitter nEmitter = new NEmitter(sourceFile, ast.clFiles(),
-                    registerAllocation);
+                    registerAllocation, registerCount, null);
             nEmitter.destinationDir(outputDir);
             nEmitter.write();
             errorHasOccurred |= nEmitter.errorHasOccurred();
@@ -205,7 +204,7 @@ public class JavaCCMain {
                 + "  -a  Only parse, pre-analyze, and analyze input "
                 + "and print AST to STDOUT\n"
                 + "  -s  <naive|linear|graph> Generate SPIM code\n"
-                + "  -r  <num> Max. physical registers (1-18) available for allocation; default = 8\n"
+                + "  -r  <num> Max. physical registers (2-18) available for allocation; default = 8\n"
                 + "  -d  <dir> Specify where to place output files; default = .";
         System.out.println(usage);
     }
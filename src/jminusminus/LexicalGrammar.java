@@ -0,0 +1,1160 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * A lexical grammar (in the notation of the {@code lexicalgrammar} file),
+ * compiled into a deterministic finite automaton (DFA) for use by
+ * {@link DFAScanner}.
+ * <p>
+ * Each line of the grammar is either a comment (starting with {@code //}), a
+ * named rule ({@code NAME ::= expression}), or an unnamed rule for input that
+ * is to be ignored (whitespace and comments). A rule whose name is that of a
+ * {@link TokenKind} describes tokens of that kind; any other named rule (ESC,
+ * for example) is a fragment, which later rules may refer to by name. The EOF
+ * rule is not an expression, and is skipped; the scanner recognizes the end
+ * of the input on its own.
+ * <p>
+ * Expressions are made up of strings ({@code "abc"}, with Java escapes),
+ * character ranges ({@code "a"-"z"}), alternation ({@code |}), grouping
+ * ({@code (...)}), repetition ({@code {...}}), options ({@code [...]}),
+ * complements of character sets ({@code ~(...)}), and references to
+ * fragments.
+ * <p>
+ * The rules are compiled into a nondeterministic automaton (by Thompson's
+ * construction), which is made deterministic (by the subset construction),
+ * and then minimized. Input characters are mapped to equivalence classes, so
+ * that the transition table has a column per class rather than per character.
+ * When more than one rule matches the longest input, the rule listed first
+ * wins; this is how keywords, which are listed before IDENTIFIER, are told
+ * from identifiers, within the automaton itself.
+ */
+
+class LexicalGrammar {
+
+    /** Largest character that can be matched; EOFCH is never matched. */
+    private static final int MAX_CHAR = CharReader.EOFCH - 1;
+
+    /** The j-- grammar, once loaded. */
+    private static LexicalGrammar jminusminus;
+
+    /** The token kind for each rule; {@code null} for ignored input. */
+    private ArrayList<TokenKind> kinds;
+
+    /** Maps each character to its equivalence class. */
+    private byte[] classOf;
+
+    /** Number of character equivalence classes. */
+    private int classCount;
+
+    /**
+     * The transition table; the state following state s on a character of
+     * class c is at s * classCount + c, and is -1 if there is none.
+     */
+    private int[] transitions;
+
+    /** The rule each state accepts, or -1 if it accepts none. */
+    private int[] accepts;
+
+    /**
+     * Returns the j-- lexical grammar, compiled from the {@code lexicalgrammar}
+     * resource (a copy of the file of the same name) the first time it is
+     * asked for.
+     *
+     * @return the j-- lexical grammar.
+     */
+
+    public static synchronized LexicalGrammar jminusminus() {
+        if (jminusminus == null) {
+            InputStream in = LexicalGrammar.class
+                    .getResourceAsStream("lexicalgrammar");
+            if (in == null) {
+                throw new IllegalStateException(
+                        "Resource jminusminus/lexicalgrammar not found");
+            }
+            try {
+                jminusminus = new LexicalGrammar(new InputStreamReader(in,
+                        "UTF-8"));
+            } catch (IOException e) {
+                throw new IllegalStateException(
+                        "Cannot read resource jminusminus/lexicalgrammar", e);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Everything has been read by now
+                }
+            }
+        }
+        return jminusminus;
+    }
+
+    /**
+     * Constructs a lexical grammar from its text, and compiles it.
+     *
+     * @param grammar
+     *            the text of the grammar.
+     * @exception IOException
+     *                if the grammar cannot be read.
+     */
+
+    public LexicalGrammar(Reader grammar) throws IOException {
+        kinds = new ArrayList<TokenKind>();
+        ArrayList<Regex> rules = new ArrayList<Regex>();
+        HashMap<String, Regex> fragments = new HashMap<String, Regex>();
+        BufferedReader in = new BufferedReader(grammar);
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.equals("") || line.startsWith("//")) {
+                continue;
+            }
+            String name = null;
+            int definedAs = line.indexOf("::=");
+            if (definedAs != -1 && !line.startsWith("\"")) {
+                name = line.substring(0, definedAs).trim();
+                line = line.substring(definedAs + 3).trim();
+            }
+            if (name != null && name.equals("EOF")) {
+                continue;
+            }
+            Regex regex = new RegexParser(line, lineNumber, fragments).parse();
+            if (name == null) {
+                rules.add(regex);
+                kinds.add(null);
+                continue;
+            }
+            fragments.put(name, regex);
+            TokenKind kind = tokenKind(name);
+            if (kind != null) {
+                rules.add(regex);
+                kinds.add(kind);
+            }
+        }
+        compile(rules);
+    }
+
+    /**
+     * Returns the start state.
+     *
+     * @return the start state.
+     */
+
+    public int startState() {
+        return 0;
+    }
+
+    /**
+     * Returns the state following the specified state on the specified
+     * character.
+     *
+     * @param state
+     *            the state.
+     * @param c
+     *            the character.
+     * @return the next state, or -1 if there is none.
+     */
+
+    public int next(int state, char c) {
+        return transitions[state * classCount + classOf[c]];
+    }
+
+    /**
+     * Returns the rule accepted in the specified state.
+     *
+     * @param state
+     *            the state.
+     * @return the rule, or -1 if the state is not accepting.
+     */
+
+    public int accept(int state) {
+        return accepts[state];
+    }
+
+    /**
+     * Returns the token kind for the specified rule.
+     *
+     * @param rule
+     *            the rule.
+     * @return the token kind, or {@code null} if the rule's input is ignored.
+     */
+
+    public TokenKind kind(int rule) {
+        return kinds.get(rule);
+    }
+
+    /**
+     * Returns the number of states of the (minimized) automaton.
+     *
+     * @return the number of states.
+     */
+
+    public int stateCount() {
+        return accepts.length;
+    }
+
+    /**
+     * Returns the number of character equivalence classes.
+     *
+     * @return the number of classes.
+     */
+
+    public int classCount() {
+        return classCount;
+    }
+
+    /**
+     * Returns the token kind named by the specified rule name, or {@code null}
+     * if there is no such kind.
+     *
+     * @param name
+     *            the rule name.
+     * @return the token kind, or {@code null}.
+     */
+
+    private static TokenKind tokenKind(String name) {
+        for (TokenKind kind : TokenKind.values()) {
+            if (kind.name().equals(name)) {
+                return kind;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compiles the specified rules into the (minimized) transition table.
+     *
+     * @param rules
+     *            the rules, in order of priority.
+     */
+
+    private void compile(ArrayList<Regex> rules) {
+        // Character equivalence classes: characters that no
+        // character set tells apart share a class
+        TreeSet<Integer> bounds = new TreeSet<Integer>();
+        bounds.add(0);
+        bounds.add(MAX_CHAR + 1);
+        for (Regex rule : rules) {
+            rule.addBounds(bounds);
+        }
+        Integer[] starts = bounds.toArray(new Integer[bounds.size()]);
+        classCount = starts.length;
+        if (classCount > Byte.MAX_VALUE) {
+            throw new IllegalStateException("Too many character classes");
+        }
+        classOf = new byte[CharReader.EOFCH + 1];
+        for (int i = 0; i < starts.length - 1; i++) {
+            Arrays.fill(classOf, starts[i], starts[i + 1], (byte) i);
+        }
+
+        // The last class (EOFCH alone) is in no character set
+        classOf[CharReader.EOFCH] = (byte) (classCount - 1);
+
+        // Thompson's construction
+        Nfa nfa = new Nfa();
+        int nfaStart = nfa.newState();
+        for (int i = 0; i < rules.size(); i++) {
+            int[] fragment = rules.get(i).build(nfa);
+            nfa.epsilon(nfaStart, fragment[0]);
+            nfa.accept(fragment[1], i);
+        }
+
+        // The subset construction
+        ArrayList<BitSet> subsets = new ArrayList<BitSet>();
+        HashMap<BitSet, Integer> subsetIndices = new HashMap<BitSet, Integer>();
+        ArrayList<int[]> dfaTransitions = new ArrayList<int[]>();
+        BitSet startSubset = new BitSet();
+        startSubset.set(nfaStart);
+        nfa.closure(startSubset);
+        subsets.add(startSubset);
+        subsetIndices.put(startSubset, 0);
+        for (int s = 0; s < subsets.size(); s++) {
+            BitSet subset = subsets.get(s);
+            int[] row = new int[classCount];
+            for (int c = 0; c < classCount; c++) {
+                BitSet target = nfa.move(subset, starts[c]);
+                if (target.isEmpty()) {
+                    row[c] = -1;
+                    continue;
+                }
+                nfa.closure(target);
+                Integer index = subsetIndices.get(target);
+                if (index == null) {
+                    index = subsets.size();
+                    subsets.add(target);
+                    subsetIndices.put(target, index);
+                }
+                row[c] = index;
+            }
+            dfaTransitions.add(row);
+        }
+        int[] dfaAccepts = new int[subsets.size()];
+        for (int s = 0; s < subsets.size(); s++) {
+            dfaAccepts[s] = nfa.accept(subsets.get(s));
+        }
+
+        minimize(dfaTransitions, dfaAccepts);
+    }
+
+    /**
+     * Minimizes the specified automaton, by partition refinement (Moore's
+     * algorithm), and makes the result the transition table.
+     *
+     * @param dfaTransitions
+     *            the transitions of the automaton, a row per state.
+     * @param dfaAccepts
+     *            the rule each state accepts, or -1.
+     */
+
+    private void minimize(ArrayList<int[]> dfaTransitions, int[] dfaAccepts) {
+        int n = dfaAccepts.length;
+
+        // Start with the states partitioned by the rule they accept
+        int[] block = new int[n];
+        HashMap<Integer, Integer> acceptBlocks = new HashMap<Integer, Integer>();
+        for (int s = 0; s < n; s++) {
+            Integer b = acceptBlocks.get(dfaAccepts[s]);
+            if (b == null) {
+                b = acceptBlocks.size();
+                acceptBlocks.put(dfaAccepts[s], b);
+            }
+            block[s] = b;
+        }
+        int blockCount = acceptBlocks.size();
+
+        // Split blocks until the states in each agree, class by class,
+        // on the block they move to
+        while (true) {
+            HashMap<String, Integer> signatures = new HashMap<String, Integer>();
+            int[] newBlock = new int[n];
+            for (int s = 0; s < n; s++) {
+                StringBuilder signature = new StringBuilder();
+                signature.append(block[s]);
+                for (int target : dfaTransitions.get(s)) {
+                    signature.append(',').append(
+                            target == -1 ? -1 : block[target]);
+                }
+                Integer b = signatures.get(signature.toString());
+                if (b == null) {
+                    b = signatures.size();
+                    signatures.put(signature.toString(), b);
+                }
+                newBlock[s] = b;
+            }
+            boolean isStable = signatures.size() == blockCount;
+            block = newBlock;
+            blockCount = signatures.size();
+            if (isStable) {
+                break;
+            }
+        }
+
+        // Renumber the blocks so that the start state's is 0
+        int[] number = new int[blockCount];
+        Arrays.fill(number, -1);
+        number[block[0]] = 0;
+        int next = 1;
+        for (int s = 1; s < n; s++) {
+            if (number[block[s]] == -1) {
+                number[block[s]] = next++;
+            }
+        }
+        transitions = new int[blockCount * classCount];
+        accepts = new int[blockCount];
+        for (int s = 0; s < n; s++) {
+            int state = number[block[s]];
+            accepts[state] = dfaAccepts[s];
+            int[] row = dfaTransitions.get(s);
+            for (int c = 0; c < classCount; c++) {
+                transitions[state * classCount + c] = row[c] == -1 ? -1
+                        : number[block[row[c]]];
+            }
+        }
+    }
+
+    /**
+     * A nondeterministic finite automaton, built up by Thompson's
+     * construction. Each state has at most one character-set transition, and
+     * any number of epsilon transitions.
+     */
+
+    private static class Nfa {
+
+        /** The character set on each state's transition, or {@code null}. */
+        private ArrayList<CharSet> sets = new ArrayList<CharSet>();
+
+        /** The target of each state's character-set transition. */
+        private ArrayList<Integer> targets = new ArrayList<Integer>();
+
+        /** The targets of each state's epsilon transitions. */
+        private ArrayList<ArrayList<Integer>> epsilons =
+            new ArrayList<ArrayList<Integer>>();
+
+        /** The rule each state accepts, or -1. */
+        private ArrayList<Integer> accepts = new ArrayList<Integer>();
+
+        /**
+         * Adds a new state.
+         *
+         * @return the new state.
+         */
+
+        public int newState() {
+            sets.add(null);
+            targets.add(-1);
+            epsilons.add(new ArrayList<Integer>());
+            accepts.add(-1);
+            return sets.size() - 1;
+        }
+
+        /**
+         * Adds an epsilon transition.
+         *
+         * @param from
+         *            the source state.
+         * @param to
+         *            the target state.
+         */
+
+        public void epsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        /**
+         * Adds a transition on the characters in the specified set.
+         *
+         * @param from
+         *            the source state.
+         * @param set
+         *            the character set.
+         * @param to
+         *            the target state.
+         */
+
+        public void transition(int from, CharSet set, int to) {
+            sets.set(from, set);
+            targets.set(from, to);
+        }
+
+        /**
+         * Makes the specified state accept the specified rule.
+         *
+         * @param state
+         *            the state.
+         * @param rule
+         *            the rule.
+         */
+
+        public void accept(int state, int rule) {
+            accepts.set(state, rule);
+        }
+
+        /**
+         * Adds to the specified set of states all states reachable from them
+         * through epsilon transitions.
+         *
+         * @param states
+         *            the set of states.
+         */
+
+        public void closure(BitSet states) {
+            ArrayList<Integer> work = new ArrayList<Integer>();
+            for (int s = states.nextSetBit(0); s >= 0; s = states
+                    .nextSetBit(s + 1)) {
+                work.add(s);
+            }
+            while (!work.isEmpty()) {
+                int s = work.remove(work.size() - 1);
+                for (int t : epsilons.get(s)) {
+                    if (!states.get(t)) {
+                        states.set(t);
+                        work.add(t);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the set of states reached from the specified set of states
+         * on the specified character.
+         *
+         * @param states
+         *            the set of states.
+         * @param c
+         *            the character.
+         * @return the set of states reached.
+         */
+
+        public BitSet move(BitSet states, int c) {
+            BitSet result = new BitSet();
+            for (int s = states.nextSetBit(0); s >= 0; s = states
+                    .nextSetBit(s + 1)) {
+                CharSet set = sets.get(s);
+                if (set != null && set.contains(c)) {
+                    result.set(targets.get(s));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the highest priority (lowest numbered) rule accepted by any
+         * of the specified states.
+         *
+         * @param states
+         *            the set of states.
+         * @return the rule, or -1 if none is accepted.
+         */
+
+        public int accept(BitSet states) {
+            int rule = -1;
+            for (int s = states.nextSetBit(0); s >= 0; s = states
+                    .nextSetBit(s + 1)) {
+                int r = accepts.get(s);
+                if (r != -1 && (rule == -1 || r < rule)) {
+                    rule = r;
+                }
+            }
+            return rule;
+        }
+
+    }
+
+    /**
+     * A set of characters, as a sorted list of disjoint, inclusive ranges.
+     */
+
+    private static class CharSet {
+
+        /** Lower and upper bounds of the ranges, in pairs. */
+        private int[] ranges;
+
+        /**
+         * Constructs a set from the specified ranges.
+         *
+         * @param ranges
+         *            lower and upper bounds, in pairs; sorted and disjoint.
+         */
+
+        public CharSet(int[] ranges) {
+            this.ranges = ranges;
+        }
+
+        /**
+         * Constructs a set of the characters from lo to hi, inclusive.
+         *
+         * @param lo
+         *            the first character.
+         * @param hi
+         *            the last character.
+         */
+
+        public CharSet(int lo, int hi) {
+            this(new int[] { lo, hi });
+        }
+
+        /**
+         * Returns whether the set contains the specified character.
+         *
+         * @param c
+         *            the character.
+         * @return {@code true} if c is in the set; {@code false} otherwise.
+         */
+
+        public boolean contains(int c) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (c >= ranges[i] && c <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the union of this set and the specified set.
+         *
+         * @param other
+         *            the other set.
+         * @return the union.
+         */
+
+        public CharSet union(CharSet other) {
+            boolean[] in = new boolean[MAX_CHAR + 2];
+            mark(in);
+            other.mark(in);
+            return fromMarks(in, false);
+        }
+
+        /**
+         * Returns the complement of this set (within the characters that can
+         * be matched).
+         *
+         * @return the complement.
+         */
+
+        public CharSet complement() {
+            boolean[] in = new boolean[MAX_CHAR + 2];
+            mark(in);
+            return fromMarks(in, true);
+        }
+
+        /**
+         * Adds the bounds of this set's ranges (each range's first character,
+         * and the one following its last) to the specified set of bounds.
+         *
+         * @param bounds
+         *            the set of bounds.
+         */
+
+        public void addBounds(TreeSet<Integer> bounds) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                bounds.add(ranges[i]);
+                bounds.add(ranges[i + 1] + 1);
+            }
+        }
+
+        /**
+         * Marks the characters of this set.
+         *
+         * @param in
+         *            a flag per character.
+         */
+
+        private void mark(boolean[] in) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                Arrays.fill(in, ranges[i], ranges[i + 1] + 1, true);
+            }
+        }
+
+        /**
+         * Returns the set of the characters marked (or not marked).
+         *
+         * @param in
+         *            a flag per character.
+         * @param negate
+         *            whether to take the characters not marked instead.
+         * @return the set.
+         */
+
+        private static CharSet fromMarks(boolean[] in, boolean negate) {
+            ArrayList<Integer> bounds = new ArrayList<Integer>();
+            int c = 0;
+            while (c <= MAX_CHAR) {
+                if (in[c] != negate) {
+                    int lo = c;
+                    while (c <= MAX_CHAR && in[c] != negate) {
+                        c++;
+                    }
+                    bounds.add(lo);
+                    bounds.add(c - 1);
+                } else {
+                    c++;
+                }
+            }
+            int[] ranges = new int[bounds.size()];
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = bounds.get(i);
+            }
+            return new CharSet(ranges);
+        }
+
+    }
+
+    /**
+     * A regular expression.
+     */
+
+    private static abstract class Regex {
+
+        /**
+         * Adds the bounds of the character sets in this expression to the
+         * specified set of bounds.
+         *
+         * @param bounds
+         *            the set of bounds.
+         */
+
+        public abstract void addBounds(TreeSet<Integer> bounds);
+
+        /**
+         * Adds states for this expression to the specified automaton.
+         *
+         * @param nfa
+         *            the automaton.
+         * @return the entry and exit states of the expression's fragment of
+         *         the automaton.
+         */
+
+        public abstract int[] build(Nfa nfa);
+
+        /**
+         * Returns the character set this expression matches, if it matches
+         * single characters only.
+         *
+         * @return the character set, or {@code null}.
+         */
+
+        public CharSet charSet() {
+            return null;
+        }
+
+    }
+
+    /**
+     * A regular expression matching a character from a set.
+     */
+
+    private static class CharRegex extends Regex {
+
+        /** The character set. */
+        private CharSet set;
+
+        /**
+         * Constructs an expression matching a character from the specified
+         * set.
+         *
+         * @param set
+         *            the character set.
+         */
+
+        public CharRegex(CharSet set) {
+            this.set = set;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public void addBounds(TreeSet<Integer> bounds) {
+            set.addBounds(bounds);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public int[] build(Nfa nfa) {
+            int entry = nfa.newState();
+            int exit = nfa.newState();
+            nfa.transition(entry, set, exit);
+            return new int[] { entry, exit };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public CharSet charSet() {
+            return set;
+        }
+
+    }
+
+    /**
+     * A regular expression matching a sequence, or an alternation, of
+     * expressions.
+     */
+
+    private static class ListRegex extends Regex {
+
+        /** Whether this is an alternation (rather than a sequence). */
+        private boolean isAlternation;
+
+        /** The expressions. */
+        private ArrayList<Regex> items;
+
+        /**
+         * Constructs a sequence or an alternation of the specified
+         * expressions.
+         *
+         * @param isAlternation
+         *            whether this is an alternation.
+         * @param items
+         *            the expressions.
+         */
+
+        public ListRegex(boolean isAlternation, ArrayList<Regex> items) {
+            this.isAlternation = isAlternation;
+            this.items = items;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public void addBounds(TreeSet<Integer> bounds) {
+            for (Regex item : items) {
+                item.addBounds(bounds);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public int[] build(Nfa nfa) {
+            int entry = nfa.newState();
+            int exit = nfa.newState();
+            int last = entry;
+            for (Regex item : items) {
+                int[] fragment = item.build(nfa);
+                if (isAlternation) {
+                    nfa.epsilon(entry, fragment[0]);
+                    nfa.epsilon(fragment[1], exit);
+                } else {
+                    nfa.epsilon(last, fragment[0]);
+                    last = fragment[1];
+                }
+            }
+            if (!isAlternation) {
+                nfa.epsilon(last, exit);
+            }
+            return new int[] { entry, exit };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public CharSet charSet() {
+            if (!isAlternation && items.size() != 1 || items.size() == 0) {
+                return null;
+            }
+            CharSet set = items.get(0).charSet();
+            for (int i = 1; set != null && i < items.size(); i++) {
+                CharSet other = items.get(i).charSet();
+                set = other == null ? null : set.union(other);
+            }
+            return set;
+        }
+
+    }
+
+    /**
+     * A regular expression matching zero or more, or zero or one,
+     * occurrences of an expression.
+     */
+
+    private static class RepeatRegex extends Regex {
+
+        /** The expression repeated. */
+        private Regex item;
+
+        /** Whether more than one occurrence is matched. */
+        private boolean isMany;
+
+        /**
+         * Constructs a repetition ({@code {...}}) or an option
+         * ({@code [...]}) of the specified expression.
+         *
+         * @param item
+         *            the expression.
+         * @param isMany
+         *            {@code true} for a repetition; {@code false} for an
+         *            option.
+         */
+
+        public RepeatRegex(Regex item, boolean isMany) {
+            this.item = item;
+            this.isMany = isMany;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public void addBounds(TreeSet<Integer> bounds) {
+            item.addBounds(bounds);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+
+        public int[] build(Nfa nfa) {
+            int entry = nfa.newState();
+            int exit = nfa.newState();
+            int[] fragment = item.build(nfa);
+            nfa.epsilon(entry, fragment[0]);
+            nfa.epsilon(fragment[1], exit);
+            nfa.epsilon(entry, exit);
+            if (isMany) {
+                nfa.epsilon(fragment[1], fragment[0]);
+            }
+            return new int[] { entry, exit };
+        }
+
+    }
+
+    /**
+     * A recursive descent parser for the expression of a rule.
+     */
+
+    private static class RegexParser {
+
+        /** The text of the expression. */
+        private String text;
+
+        /** Position in the text. */
+        private int pos;
+
+        /** Line of the grammar the expression is on. */
+        private int line;
+
+        /** The fragments defined so far. */
+        private HashMap<String, Regex> fragments;
+
+        /**
+         * Constructs a parser for the specified expression.
+         *
+         * @param text
+         *            the text of the expression.
+         * @param line
+         *            line of the grammar the expression is on.
+         * @param fragments
+         *            the fragments defined so far.
+         */
+
+        public RegexParser(String text, int line,
+                HashMap<String, Regex> fragments) {
+            this.text = text;
+            this.line = line;
+            this.fragments = fragments;
+            pos = 0;
+        }
+
+        /**
+         * Parses the (whole) expression.
+         *
+         * <pre>
+         *   expression ::= sequence {"|" sequence}
+         * </pre>
+         *
+         * @return the expression.
+         */
+
+        public Regex parse() {
+            Regex regex = alternation();
+            skipSpaces();
+            if (pos < text.length()) {
+                error("Unexpected '%c'", text.charAt(pos));
+            }
+            return regex;
+        }
+
+        /**
+         * Parses an alternation.
+         *
+         * @return the expression.
+         */
+
+        private Regex alternation() {
+            ArrayList<Regex> items = new ArrayList<Regex>();
+            items.add(sequence());
+            while (have('|')) {
+                items.add(sequence());
+            }
+            return items.size() == 1 ? items.get(0) : new ListRegex(true,
+                    items);
+        }
+
+        /**
+         * Parses a sequence.
+         *
+         * <pre>
+         *   sequence ::= {["~"] atom}
+         * </pre>
+         *
+         * @return the expression.
+         */
+
+        private Regex sequence() {
+            ArrayList<Regex> items = new ArrayList<Regex>();
+            while (true) {
+                skipSpaces();
+                if (pos >= text.length() || "|)}]".indexOf(text.charAt(pos)) != -1) {
+                    break;
+                }
+                if (have('~')) {
+                    CharSet set = atom().charSet();
+                    if (set == null) {
+                        error("~ applies to character sets only");
+                    }
+                    items.add(new CharRegex(set.complement()));
+                } else {
+                    items.add(atom());
+                }
+            }
+            return items.size() == 1 ? items.get(0) : new ListRegex(false,
+                    items);
+        }
+
+        /**
+         * Parses an atom.
+         *
+         * <pre>
+         *   atom ::= string ["-" string]
+         *          | "(" expression ")" | "{" expression "}"
+         *          | "[" expression "]" | name
+         * </pre>
+         *
+         * @return the expression.
+         */
+
+        private Regex atom() {
+            skipSpaces();
+            if (have('(')) {
+                Regex regex = alternation();
+                mustBe(')');
+                return regex;
+            } else if (have('{')) {
+                Regex regex = alternation();
+                mustBe('}');
+                return new RepeatRegex(regex, true);
+            } else if (have('[')) {
+                Regex regex = alternation();
+                mustBe(']');
+                return new RepeatRegex(regex, false);
+            } else if (pos < text.length() && text.charAt(pos) == '"') {
+                String s = string();
+                if (have('-')) {
+                    String hi = string();
+                    if (s.length() != 1 || hi.length() != 1) {
+                        error("A range is bounded by single characters");
+                    }
+                    return new CharRegex(new CharSet(s.charAt(0), hi
+                            .charAt(0)));
+                }
+                ArrayList<Regex> items = new ArrayList<Regex>();
+                for (int i = 0; i < s.length(); i++) {
+                    items.add(new CharRegex(new CharSet(s.charAt(i), s
+                            .charAt(i))));
+                }
+                return items.size() == 1 ? items.get(0) : new ListRegex(
+                        false, items);
+            } else {
+                int start = pos;
+                while (pos < text.length()
+                        && (Character.isLetterOrDigit(text.charAt(pos)) || text
+                                .charAt(pos) == '_')) {
+                    pos++;
+                }
+                String name = text.substring(start, pos);
+                Regex fragment = fragments.get(name);
+                if (fragment == null) {
+                    error("Undefined name '%s'", name);
+                }
+                return fragment;
+            }
+        }
+
+        /**
+         * Parses a string, with Java escapes.
+         *
+         * @return the characters of the string.
+         */
+
+        private String string() {
+            mustBe('"');
+            StringBuilder s = new StringBuilder();
+            while (pos < text.length() && text.charAt(pos) != '"') {
+                char c = text.charAt(pos++);
+                if (c == '\\' && pos < text.length()) {
+                    c = text.charAt(pos++);
+                    switch (c) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    }
+                }
+                s.append(c);
+            }
+            mustBe('"');
+            return s.toString();
+        }
+
+        /**
+         * Skips the specified character (after any spaces) if it is next.
+         *
+         * @param c
+         *            the character.
+         * @return {@code true} if it was skipped; {@code false} otherwise.
+         */
+
+        private boolean have(char c) {
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Skips the specified character, which must be next.
+         *
+         * @param c
+         *            the character.
+         */
+
+        private void mustBe(char c) {
+            if (!have(c)) {
+                error("'%c' expected", c);
+            }
+        }
+
+        /**
+         * Skips spaces.
+         */
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text
+                    .charAt(pos))) {
+                pos++;
+            }
+        }
+
+        /**
+         * Reports an error in the grammar.
+         *
+         * @param message
+         *            message identifying the error.
+         * @param args
+         *            related values.
+         */
+
+        private void error(String message, Object... args) {
+            throw new IllegalArgumentException(String.format(
+                    "lexicalgrammar:%d: %s", line, String.format(message,
+                            args)));
+        }
+
+    }
+
+}
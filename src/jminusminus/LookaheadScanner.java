@@ -3,37 +3,52 @@
 package jminusminus;
 
 import java.io.FileNotFoundException;
-import java.util.Stack;
-import java.util.Vector;
 
 /**
  * A lexical analyzer for j-- that interfaces with the hand-written parser
  * ({@link Parser}). It provides a backtracking mechanism, and makes use of the
- * underlying hand-written {@link Scanner}.
+ * underlying hand-written {@link Scanner} (or of the table-driven
+ * {@link DFAScanner}).
+ * <p>
+ * Tokens are kept in a ring buffer, and are known by their position: the
+ * number of tokens scanned before them. A recorded position is just such a
+ * number, pushed on a stack of ints, and returning to it just sets the
+ * current position back; so looking ahead copies no tokens, and allocates
+ * nothing once the buffer has grown to the longest lookahead. Tokens before
+ * the earliest recorded position (but for the previous token) are let go.
  */
 
 class LookaheadScanner {
 
-    /** The underlying hand-written scanner. */
+    /** Initial capacity of the token buffer; a power of 2. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The underlying scanner. */
     private Scanner scanner;
 
-    /** Backtracking queue. */
-    private Vector<TokenInfo> backtrackingQueue;
+    /**
+     * The token buffer; the token at position p, if it is kept, is at
+     * p &amp; (buffer.length - 1).
+     */
+    private TokenInfo[] buffer;
 
-    /** Token queue. */
-    private Vector<TokenInfo> nextQueue;
+    /** Position of the earliest token kept in the buffer. */
+    private int first;
 
-    /** Stack of token queues for nested lookahead. */
-    private Stack<Vector<TokenInfo>> queueStack;
+    /** Position following the last token scanned. */
+    private int end;
 
-    /** Whether we are looking ahead. */
-    public boolean isLookingAhead;
+    /** Position of the current token; -1 before the first is scanned. */
+    private int position;
+
+    /** Stack of recorded positions, for nested lookahead. */
+    private int[] marks;
 
-    /** Previous token. */
-    private TokenInfo previousToken;
+    /** Number of recorded positions on the stack. */
+    private int markCount;
 
-    /** Current token. */
-    private TokenInfo token;
+    /** Whether we are looking ahead. */
+    public boolean isLookingAhead;
 
     /**
      * Constructs a LookaheadScanner from a file name.
@@ -45,10 +60,25 @@ class LookaheadScanner {
      */
 
     public LookaheadScanner(String fileName) throws FileNotFoundException {
-        scanner = new Scanner(fileName);
-        backtrackingQueue = new Vector<TokenInfo>();
-        nextQueue = new Vector<TokenInfo>();
-        queueStack = new Stack<Vector<TokenInfo>>();
+        this(new Scanner(fileName));
+    }
+
+    /**
+     * Constructs a LookaheadScanner over the specified scanner; the
+     * hand-written {@link Scanner}, or the table-driven {@link DFAScanner}.
+     * 
+     * @param scanner
+     *            the underlying scanner.
+     */
+
+    public LookaheadScanner(Scanner scanner) {
+        this.scanner = scanner;
+        buffer = new TokenInfo[INITIAL_CAPACITY];
+        first = 0;
+        end = 0;
+        position = -1;
+        marks = new int[INITIAL_CAPACITY];
+        markCount = 0;
         isLookingAhead = false;
     }
 
@@ -57,48 +87,57 @@ class LookaheadScanner {
      */
 
     public void next() {
-        previousToken = token;
-        if (backtrackingQueue.size() == 0) {
-            token = scanner.getNextToken();
-        } else {
-            token = backtrackingQueue.remove(0);
+        position++;
+        if (markCount == 0 && position - 1 > first) {
+            // Only the previous token need be kept
+            first = position - 1;
         }
-        if (isLookingAhead) {
-            nextQueue.add(token);
+        if (position == end) {
+            if (end - first == buffer.length) {
+                grow();
+            }
+            buffer[end & (buffer.length - 1)] = scanner.getNextToken();
+            end++;
         }
     }
 
     /**
      * Records the current position in the input, so that we can start looking
-     * ahead in the input (and later return to this position). We'll queue up
-     * the current and subsequent tokens until {@code returnToPosition} is 
-     * invoked. These recordPosition's can be nested.
+     * ahead in the input (and later return to this position). The current and
+     * subsequent tokens are kept until {@code returnToPosition} is invoked.
+     * These recordPosition's can be nested.
      */
 
     public void recordPosition() {
+        if (markCount == marks.length) {
+            int[] newMarks = new int[marks.length * 2];
+            System.arraycopy(marks, 0, newMarks, 0, markCount);
+            marks = newMarks;
+        }
+        marks[markCount++] = position;
         isLookingAhead = true;
-        queueStack.push(nextQueue);
-        nextQueue = new Vector<TokenInfo>();
-        nextQueue.add(previousToken);
-        nextQueue.add(token);
     }
 
     /**
      * Returns to the previously recorded position in the input stream of tokens.
-     * If this is a nested lookahead, then return to the previous token queue.
+     * If this is a nested lookahead, then return to the previous recorded
+     * position the next time.
      */
 
     public void returnToPosition() {
-        while (backtrackingQueue.size() > 0) {
-            nextQueue.add(backtrackingQueue.remove(0));
-        }
-        backtrackingQueue = nextQueue;
-        nextQueue = queueStack.pop();
-        isLookingAhead = !(queueStack.empty());
+        position = marks[--markCount];
+        isLookingAhead = markCount > 0;
+    }
+
+    /**
+     * Returns the position of the current token: the number of tokens before
+     * it in the input.
+     * 
+     * @return the position of the current token.
+     */
 
-        // Restore previous and current tokens
-        previousToken = backtrackingQueue.remove(0);
-        token = backtrackingQueue.remove(0);
+    public int position() {
+        return position;
     }
 
     /**
@@ -108,7 +147,7 @@ class LookaheadScanner {
      */
 
     public TokenInfo token() {
-        return token;
+        return position < 0 ? null : buffer[position & (buffer.length - 1)];
     }
 
     /**
@@ -120,7 +159,8 @@ class LookaheadScanner {
      */
 
     public TokenInfo previousToken() {
-        return previousToken;
+        return position < 1 ? null
+                : buffer[(position - 1) & (buffer.length - 1)];
     }
 
     /**
@@ -143,4 +183,17 @@ class LookaheadScanner {
         return scanner.fileName();
     }
 
+    /**
+     * Doubles the capacity of the token buffer, keeping the tokens in it.
+     */
+
+    private void grow() {
+        TokenInfo[] newBuffer = new TokenInfo[buffer.length * 2];
+        for (int p = first; p < end; p++) {
+            newBuffer[p & (newBuffer.length - 1)] = buffer[p
+                    & (buffer.length - 1)];
+        }
+        buffer = newBuffer;
+    }
+
 }
@@ -2,8 +2,14 @@
 
 package jminusminus;
 
-import java.io.FileInputStream;
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import static jminusminus.TokenKind.EOF;
 
@@ -33,6 +39,13 @@ import static jminusminus.TokenKind.EOF;
  *       leaves, generating JVM code for producing a .class or .s (SPIM) file 
  *       for each defined type (class).</li>
  * </ol>
+ * Any number of source files may be compiled together, named individually, 
+ * through directories (searched recursively for .java files), or through 
+ * argument files ({@code @file}, listing one source file per line). They are
+ * compiled together in a {@link CompilationSession}, which scans, parses, 
+ * analyzes, and generates code for them in parallel, and pre-analyzes them
+ * together so that types declared in one file can be referenced from the
+ * others.
  */
 
 public class Main {
@@ -48,23 +61,63 @@ public class Main {
      */
 
     public static void main(String args[]) {
+        compile(args, null);
+    }
+
+    /**
+     * Compiles as directed by the specified command-line arguments. Relative 
+     * paths among the arguments are resolved against the specified working
+     * directory; this lets {@link CompilerDaemon} compile on behalf of clients
+     * running elsewhere in the file system.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @param workingDir
+     *            the directory against which relative paths are resolved, or
+     *            {@code null} for the current directory.
+     */
+
+    public static void compile(String args[], File workingDir) {
         String caller = "java jminusminus.Main";
-        String sourceFile = "";
+        ArrayList<String> sourceFiles = new ArrayList<String>();
         String debugOption = "";
-        String outputDir = ".";
+        String outputDir = resolve(workingDir, ".");
         boolean spimOutput = false;
         String registerAllocation = "";
+        int registerCount = NPhysicalRegister.DEFAULT_MAX_COUNT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean isTableDriven = false;
+        int targetVersion = CLConstants.MAJOR_VERSION;
+        String classPath = null;
+        CLPeephole peephole = null;
+        NOptimizer optimizer = null;
+        boolean peepholeStatistics = false;
+        ArrayList<String> disabledOptimizations = new ArrayList<String>();
         errorHasOccurred = false;
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("j--")) {
                 caller = "j--";
             } else if (args[i].endsWith(".java")) {
-                sourceFile = args[i];
+                sourceFiles.add(resolve(workingDir, args[i]));
+            } else if (args[i].startsWith("@")) {
+                if (!readArgumentFile(resolve(workingDir, args[i]
+                        .substring(1)), workingDir, sourceFiles)) {
+                    errorHasOccurred = true;
+                    return;
+                }
             } else if (args[i].equals("-t") || args[i].equals("-p")
                     || args[i].equals("-pa") || args[i].equals("-a")) {
                 debugOption = args[i];
+            } else if (args[i].equals("-dfa")) {
+                isTableDriven = true;
+            } else if (args[i].equals("-O") || args[i].equals("-Ostats")) {
+                peephole = new CLPeephole();
+                optimizer = new NOptimizer();
+                peepholeStatistics = args[i].equals("-Ostats");
+            } else if (args[i].startsWith("-Ono-")) {
+                disabledOptimizations.add(args[i].substring(5));
             } else if (args[i].endsWith("-d") && (i + 1) < args.length) {
-                outputDir = args[++i];
+                outputDir = resolve(workingDir, args[++i]);
             } else if (args[i].endsWith("-s") && (i + 1) < args.length) {
                 spimOutput = true;
                 registerAllocation = args[++i];
@@ -76,47 +129,88 @@ public class Main {
                     return;
                 }
             } else if (args[i].endsWith("-r") && (i + 1) < args.length) {
-                NPhysicalRegister.MAX_COUNT = Math.min(18, Integer
-                        .parseInt(args[++i]));
-                NPhysicalRegister.MAX_COUNT = Math.max(1,
-                        NPhysicalRegister.MAX_COUNT);
+                registerCount = Math.min(18, Integer.parseInt(args[++i]));
+                registerCount = Math.max(2, registerCount);
+            } else if (args[i].equals("-j") && (i + 1) < args.length) {
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            } else if ((args[i].equals("-cp") || args[i].equals("-classpath"))
+                    && (i + 1) < args.length) {
+                classPath = resolveClassPath(workingDir, args[++i]);
+            } else if (args[i].equals("-target") && (i + 1) < args.length) {
+                targetVersion = Integer.parseInt(args[++i]);
+                if (targetVersion < CLConstants.MAJOR_VERSION) {
+                    printUsage(caller);
+                    return;
+                }
+            } else if (new File(resolve(workingDir, args[i])).isDirectory()) {
+                addSourceFiles(new File(resolve(workingDir, args[i])),
+                        sourceFiles);
             } else {
                 printUsage(caller);
                 return;
             }
         }
-        if (sourceFile.equals("")) {
+        if (sourceFiles.size() == 0) {
             printUsage(caller);
             return;
         }
+        for (String name : disabledOptimizations) {
+            NOptimization optimization = optimizer == null ? null : optimizer
+                    .optimization(name);
+            if (optimization == null) {
+                printUsage(caller);
+                return;
+            }
+            optimization.enable(false);
+        }
 
-        LookaheadScanner scanner = null;
-        try {
-            scanner = new LookaheadScanner(sourceFile);
-        } catch (FileNotFoundException e) {
-            System.err.println("Error: file " + sourceFile + " not found.");
-            return;
+        CompilationSession session = new CompilationSession();
+        session.destinationDir(outputDir);
+        if (spimOutput) {
+            session.spimOutput(registerAllocation);
+            session.registerCount(registerCount);
         }
+        session.threads(threads);
+        session.tableDrivenScanner(isTableDriven);
+        session.targetVersion(targetVersion);
+        if (classPath != null) {
+            session.classPath(classPath);
+        }
+        session.peephole(peephole);
+        session.optimizer(optimizer);
 
         if (debugOption.equals("-t")) {
             // Just tokenize input and print the tokens to STDOUT
-            TokenInfo token;
-            do {
-                scanner.next();
-                token = scanner.token();
-                System.out.printf("%d\t : %s = %s\n", token.line(), token
-                        .tokenRep(), token.image());
-            } while (token.kind() != EOF);
-            errorHasOccurred |= scanner.errorHasOccured();
+            for (String sourceFile : sourceFiles) {
+                LookaheadScanner scanner = null;
+                try {
+                    scanner = new LookaheadScanner(session
+                            .scanner(sourceFile));
+                } catch (FileNotFoundException e) {
+                    System.err.println("Error: file " + sourceFile
+                            + " not found.");
+                    errorHasOccurred = true;
+                    continue;
+                }
+                TokenInfo token;
+                do {
+                    scanner.next();
+                    token = scanner.token();
+                    System.out.printf("%d\t : %s = %s\n", token.line(), token
+                            .tokenRep(), token.image());
+                } while (token.kind() != EOF);
+                errorHasOccurred |= scanner.errorHasOccured();
+            }
             return;
         }
 
         // Parse input
-        Parser parser = new Parser(scanner);
-        JCompilationUnit ast = parser.compilationUnit();
-        errorHasOccurred |= parser.errorHasOccurred();
+        ArrayList<JCompilationUnit> asts = session.parse(sourceFiles);
+        errorHasOccurred |= session.errorHasOccurred();
         if (debugOption.equals("-p")) {
-            ast.writeToStdOut(new PrettyPrinter());
+            for (JCompilationUnit ast : asts) {
+                ast.writeToStdOut(new PrettyPrinter());
+            }
             return;
         }
         if (errorHasOccurred) {
@@ -124,10 +218,12 @@ public class Main {
         }
 
         // Do pre-analysis
-        ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        session.preAnalyze(asts);
+        errorHasOccurred |= session.errorHasOccurred();
         if (debugOption.equals("-pa")) {
-            ast.writeToStdOut(new PrettyPrinter());
+            for (JCompilationUnit ast : asts) {
+                ast.writeToStdOut(new PrettyPrinter());
+            }
             return;
         }
         if (errorHasOccurred) {
@@ -135,34 +231,35 @@ public class Main {
         }
 
         // Do analysis
-        ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        session.analyze(asts);
+        errorHasOccurred |= session.errorHasOccurred();
         if (debugOption.equals("-a")) {
-            ast.writeToStdOut(new PrettyPrinter());
-            return;
-        }
-        if (errorHasOccurred) {
+            for (JCompilationUnit ast : asts) {
+                ast.writeToStdOut(new PrettyPrinter());
+            }
             return;
         }
-
-        // Generate JVM code
-        CLEmitter clEmitter = new CLEmitter(!spimOutput);
-        clEmitter.destinationDir(outputDir);
-        ast.codegen(clEmitter);
-        errorHasOccurred |= clEmitter.errorHasOccurred();
         if (errorHasOccurred) {
             return;
         }
 
-        // If SPIM output was asked for, convert the in-memory
-        // JVM instructions to SPIM using the specified register
-        // allocation scheme.
-        if (spimOutput) {
-            NEmitter nEmitter = new NEmitter(sourceFile, ast.clFiles(),
-                    registerAllocation);
-            nEmitter.destinationDir(outputDir);
-            nEmitter.write();
-            errorHasOccurred |= nEmitter.errorHasOccurred();
+        // Generate JVM code and, if SPIM output was asked for,
+        // convert the in-memory JVM instructions to SPIM using
+        // the specified register allocation scheme
+        session.codegen(asts);
+        errorHasOccurred |= session.errorHasOccurred();
+        if (peepholeStatistics && !spimOutput) {
+            for (CLPeepholeRule rule : peephole.rules()) {
+                System.out.printf("%-20s %8d\n", rule.name(), rule.hits());
+            }
+        } else if (peepholeStatistics) {
+            for (NOptimization optimization : optimizer.optimizations()) {
+                String[] statistics = optimization.statistics();
+                for (int i = 0; i < statistics.length; i++) {
+                    System.out.printf("%-20s %8d\n", optimization.name() + " "
+                            + statistics[i], optimization.count(i));
+                }
+            }
         }
     }
 
@@ -176,6 +273,116 @@ public class Main {
         return errorHasOccurred;
     }
 
+    /**
+     * Adds the .java files under the specified directory (and its
+     * sub-directories) to the list of source files, in name order.
+     * 
+     * @param dir
+     *            the directory.
+     * @param sourceFiles
+     *            the list of source files.
+     */
+
+    private static void addSourceFiles(File dir, ArrayList<String> sourceFiles) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addSourceFiles(file, sourceFiles);
+            } else if (file.getName().endsWith(".java")) {
+                sourceFiles.add(file.getPath());
+            }
+        }
+    }
+
+    /**
+     * Resolves the specified path against the specified working directory.
+     * 
+     * @param workingDir
+     *            the working directory, or {@code null} for the current
+     *            directory.
+     * @param path
+     *            the path.
+     * @return the path, unchanged if absolute or if there is no working
+     *         directory.
+     */
+
+    private static String resolve(File workingDir, String path) {
+        return workingDir == null || new File(path).isAbsolute() ? path
+                : new File(workingDir, path).getPath();
+    }
+
+    /**
+     * Resolves each entry of the specified class path against the working
+     * directory.
+     *
+     * @param workingDir
+     *            the directory against which relative paths are resolved, or
+     *            {@code null} for the current directory.
+     * @param classPath
+     *            the class path.
+     * @return the class path, with its entries resolved.
+     */
+
+    private static String resolveClassPath(File workingDir, String classPath) {
+        String resolved = "";
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.equals("")) {
+                resolved += (resolved.equals("") ? "" : File.pathSeparator)
+                        + resolve(workingDir, entry);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Adds the source files listed (one per line) in the specified argument
+     * file to the list of source files. Blank lines are ignored, and 
+     * directories are searched for .java files.
+     * 
+     * @param argumentFile
+     *            the argument file.
+     * @param workingDir
+     *            the directory against which relative paths are resolved, or
+     *            {@code null} for the current directory.
+     * @param sourceFiles
+     *            the list of source files.
+     * @return {@code true} if the argument file could be read; {@code false}
+     *         otherwise.
+     */
+
+    private static boolean readArgumentFile(String argumentFile,
+            File workingDir, ArrayList<String> sourceFiles) {
+        try {
+            BufferedReader in = new BufferedReader(new FileReader(argumentFile));
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    line = line.trim();
+                    if (line.equals("")) {
+                        continue;
+                    }
+                    line = resolve(workingDir, line);
+                    if (new File(line).isDirectory()) {
+                        addSourceFiles(new File(line), sourceFiles);
+                    } else {
+                        sourceFiles.add(line);
+                    }
+                }
+            } finally {
+                in.close();
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error: cannot read argument file "
+                    + argumentFile + ".");
+            return false;
+        }
+    }
+
     /**
      * Prints command usage to STDOUT.
      * 
@@ -186,16 +393,30 @@ public class Main {
     private static void printUsage(String caller) {
         String usage = "Usage: "
                 + caller
-                + " <options> <source file>\n"
-                + "Where possible options include:\n"
+                + " <options> <source files>\n"
+                + "Where source files may be .java files, directories "
+                + "(searched for .java files)\n"
+                + "or @<file> naming a file that lists them, one per line, "
+                + "and possible options include:\n"
                 + "  -t  Only tokenize input and print tokens to STDOUT\n"
+                + "  -dfa Scan with the table-driven scanner, compiled from "
+                + "the lexical grammar\n"
                 + "  -p  Only parse input and print AST to STDOUT\n"
                 + "  -pa Only parse and pre-analyze input and print "
                 + "AST to STDOUT\n"
                 + "  -a  Only parse, pre-analyze, and analyze input "
                 + "and print AST to STDOUT\n"
                 + "  -s  <naive|linear|graph> Generate SPIM code\n"
-                + "  -r  <num> Max. physical registers (1-18) available for allocation; default = 8\n"
+                + "  -r  <num> Max. physical registers (2-18) available for allocation; default = 8\n"
+                + "  -j  <num> Max. threads used for compilation; default = number of processors\n"
+                + "  -target <num> Class file major version (49 and up; from 50 on, with stack map\n"
+                + "      frames for the type-checking verifier); default = 49\n"
+                + "  -cp <path> Resolve types from the class files on the path (directories and\n"
+                + "      jars), and the platform's, without loading them\n"
+                + "  -O  Run the JVM code through the peephole optimizer, or, with -s, the\n"
+                + "      HIR through the optimizations (sccp, gvn, dce, licm)\n"
+                + "  -Ostats As -O, and print how often each optimizer rule applied\n"
+                + "  -Ono-<name> With -O and -s, leave out the named HIR optimization\n"
                 + "  -d  <dir> Specify where to place output files; default = .";
         System.out.println(usage);
     }
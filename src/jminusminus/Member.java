@@ -6,6 +6,10 @@ package jminusminus;
  * A wrapper for members (eg Fields, Methods, Constructors) in the Java API.
  * Members are used in message expressions, field selections, and new object
  * construction operations.
+ * <p>
+ * Members are, by default, those of classes loaded into the compiler's JVM,
+ * as seen through the reflection API; those of types read from class files
+ * (see {@link ClassFileType}) override the methods that consult it.
  */
 
 abstract class Member {
@@ -30,6 +34,17 @@ abstract class Member {
         return Type.typeFor(member().getDeclaringClass());
     }
 
+    /**
+     * Returns the modifiers (access flags) with which this member was
+     * declared, as {@link java.lang.reflect.Modifier} encodes them.
+     * 
+     * @return the modifiers.
+     */
+
+    protected int modifiers() {
+        return member().getModifiers();
+    }
+
     /**
      * Has this member been declared with the static modifier?
      * 
@@ -37,7 +52,7 @@ abstract class Member {
      */
 
     public boolean isStatic() {
-        return java.lang.reflect.Modifier.isStatic(member().getModifiers());
+        return java.lang.reflect.Modifier.isStatic(modifiers());
     }
 
     /**
@@ -47,7 +62,7 @@ abstract class Member {
      */
 
     public boolean isPublic() {
-        return java.lang.reflect.Modifier.isPublic(member().getModifiers());
+        return java.lang.reflect.Modifier.isPublic(modifiers());
     }
 
     /**
@@ -57,7 +72,7 @@ abstract class Member {
      */
 
     public boolean isProtected() {
-        return java.lang.reflect.Modifier.isProtected(member().getModifiers());
+        return java.lang.reflect.Modifier.isProtected(modifiers());
     }
 
     /**
@@ -67,7 +82,7 @@ abstract class Member {
      */
 
     public boolean isPrivate() {
-        return java.lang.reflect.Modifier.isPrivate(member().getModifiers());
+        return java.lang.reflect.Modifier.isPrivate(modifiers());
     }
 
     /**
@@ -77,7 +92,7 @@ abstract class Member {
      */
 
     public boolean isAbstract() {
-        return java.lang.reflect.Modifier.isAbstract(member().getModifiers());
+        return java.lang.reflect.Modifier.isAbstract(modifiers());
     }
 
     /**
@@ -90,7 +105,7 @@ abstract class Member {
      */
 
     public boolean isFinal() {
-        return java.lang.reflect.Modifier.isFinal(member().getModifiers());
+        return java.lang.reflect.Modifier.isFinal(modifiers());
     }
 
     /**
@@ -124,6 +139,12 @@ class Method extends Member {
         this.method = method;
     }
 
+    /** This constructor is for subclasses with no internal representation. */
+
+    protected Method() {
+        super();
+    }
+
     /**
      * Returns the JVM descriptor for this method.
      * 
@@ -173,8 +194,10 @@ class Method extends Member {
      */
 
     public boolean equals(Method that) {
-        return Type.argTypesMatch(this.method.getParameterTypes(), that.method
-                .getParameterTypes());
+        String thisDescriptor = this.toDescriptor();
+        String thatDescriptor = that.toDescriptor();
+        return thisDescriptor.regionMatches(0, thatDescriptor, 0,
+                thisDescriptor.indexOf(')') + 1);
     }
 
     /**
@@ -209,6 +232,12 @@ class Field extends Member {
         this.field = field;
     }
 
+    /** This constructor is for subclasses with no internal representation. */
+
+    protected Field() {
+        super();
+    }
+
     /**
      * Returns the field's type.
      * 
@@ -249,6 +278,12 @@ class Constructor extends Member {
         this.constructor = constructor;
     }
 
+    /** This constructor is for subclasses with no internal representation. */
+
+    protected Constructor() {
+        super();
+    }
+
     /**
      * Returns the JVM descriptor for this constructor.
      * 
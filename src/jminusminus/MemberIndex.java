@@ -0,0 +1,319 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.lang.reflect.Modifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An index of the members declared in a class: its methods and constructors
+ * by name, each name with its list of overloads, and its fields by name. The
+ * reflection API returns fresh arrays of fresh {@code Method}s (and so on)
+ * on every call, so rather than asking it on every lookup, {@link Type} asks
+ * it once per class, here, and looks members up in the index.
+ * <p>
+ * There is one index per {@code Class}, built the first time it is asked
+ * for and kept with the class (in a {@code ClassValue}); so the index of a
+ * class of the Java platform is shared by all lookups in all compilations.
+ * Indices are immutable once built, and so may be shared between threads.
+ * <p>
+ * An index holds only the members declared in its class; a lookup searches
+ * the class and then its superclasses, through the indices of the
+ * superclasses, as the reflection-based lookups did.
+ * <p>
+ * The index of a type declared in source (see {@link SourceType}), or read
+ * from a class file (see {@link ClassFileType}), is not built from a 
+ * {@code Class}, but filled in, member by member, by the type; it is kept
+ * with the type.
+ */
+
+class MemberIndex {
+
+    /** The index of each class, built when first asked for. */
+    private static final ClassValue<MemberIndex> indices =
+        new ClassValue<MemberIndex>() {
+            protected MemberIndex computeValue(Class<?> cls) {
+                return new MemberIndex(cls);
+            }
+        };
+
+    /** The index of the superclass, or {@code null} if there is none. */
+    private MemberIndex superIndex;
+
+    /** The declared methods, by name. */
+    private HashMap<String, ArrayList<Overload<Method>>> methods;
+
+    /** The declared constructors. */
+    private ArrayList<Overload<Constructor>> constructors;
+
+    /** The declared fields, by name. */
+    private HashMap<String, Field> fields;
+
+    /** The declared abstract methods. */
+    private ArrayList<Method> abstractMethods;
+
+    /** The declared concrete methods. */
+    private ArrayList<Method> concreteMethods;
+
+    /**
+     * Returns the index of the specified class.
+     *
+     * @param cls
+     *            the class.
+     * @return the index.
+     */
+
+    public static MemberIndex of(Class<?> cls) {
+        return indices.get(cls);
+    }
+
+    /**
+     * Constructs an empty index, to be filled in through {@link #addMethod},
+     * {@link #addConstructor} and {@link #addField}.
+     *
+     * @param superIndex
+     *            the index of the superclass, or {@code null} if there is
+     *            none.
+     */
+
+    MemberIndex(MemberIndex superIndex) {
+        this.superIndex = superIndex;
+        methods = new HashMap<String, ArrayList<Overload<Method>>>();
+        constructors = new ArrayList<Overload<Constructor>>();
+        fields = new HashMap<String, Field>();
+        abstractMethods = new ArrayList<Method>();
+        concreteMethods = new ArrayList<Method>();
+    }
+
+    /**
+     * Constructs the index of the specified class.
+     *
+     * @param cls
+     *            the class.
+     */
+
+    private MemberIndex(Class<?> cls) {
+        this(cls.getSuperclass() == null ? null : of(cls.getSuperclass()));
+        for (java.lang.reflect.Method method : cls.getDeclaredMethods()) {
+            addMethod(new Method(method), descriptorsFor(method
+                    .getParameterTypes()), Modifier.isAbstract(method
+                    .getModifiers()));
+        }
+        for (java.lang.reflect.Constructor<?> constructor : cls
+                .getDeclaredConstructors()) {
+            addConstructor(new Constructor(constructor),
+                    descriptorsFor(constructor.getParameterTypes()));
+        }
+        for (java.lang.reflect.Field field : cls.getDeclaredFields()) {
+            addField(new Field(field));
+        }
+    }
+
+    /**
+     * Adds the specified method, declared in this class, to the index.
+     *
+     * @param method
+     *            the method.
+     * @param paramDescriptors
+     *            the descriptors of its parameter types.
+     * @param isAbstract
+     *            whether the method is abstract.
+     */
+
+    void addMethod(Method method, String[] paramDescriptors,
+            boolean isAbstract) {
+        ArrayList<Overload<Method>> overloads = methods.get(method.name());
+        if (overloads == null) {
+            overloads = new ArrayList<Overload<Method>>(1);
+            methods.put(method.name(), overloads);
+        }
+        overloads.add(new Overload<Method>(method, paramDescriptors));
+        if (isAbstract) {
+            abstractMethods.add(method);
+        } else {
+            concreteMethods.add(method);
+        }
+    }
+
+    /**
+     * Adds the specified constructor, declared in this class, to the index.
+     *
+     * @param constructor
+     *            the constructor.
+     * @param paramDescriptors
+     *            the descriptors of its parameter types.
+     */
+
+    void addConstructor(Constructor constructor, String[] paramDescriptors) {
+        constructors.add(new Overload<Constructor>(constructor,
+                paramDescriptors));
+    }
+
+    /**
+     * Adds the specified field, declared in this class, to the index.
+     *
+     * @param field
+     *            the field.
+     */
+
+    void addField(Field field) {
+        fields.put(field.name(), field);
+    }
+
+    /**
+     * Finds the method with the specified name and argument types, declared
+     * in this class or inherited from a superclass.
+     *
+     * @param name
+     *            the method name.
+     * @param argTypes
+     *            the argument types.
+     * @return the method, or {@code null} if there is none.
+     */
+
+    public Method methodFor(String name, Type[] argTypes) {
+        for (MemberIndex index = this; index != null; index = index.superIndex) {
+            Method method = find(index.methods.get(name), argTypes);
+            if (method != null) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the constructor, declared in this class, with the specified
+     * argument types.
+     *
+     * @param argTypes
+     *            the argument types.
+     * @return the constructor, or {@code null} if there is none.
+     */
+
+    public Constructor constructorFor(Type[] argTypes) {
+        return find(constructors, argTypes);
+    }
+
+    /**
+     * Finds the field with the specified name, declared in this class or
+     * inherited from a superclass.
+     *
+     * @param name
+     *            the field name.
+     * @return the field, or {@code null} if there is none.
+     */
+
+    public Field fieldFor(String name) {
+        for (MemberIndex index = this; index != null; index = index.superIndex) {
+            Field field = index.fields.get(name);
+            if (field != null) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the abstract methods declared in this class.
+     *
+     * @return the declared abstract methods; not to be modified.
+     */
+
+    public ArrayList<Method> abstractMethods() {
+        return abstractMethods;
+    }
+
+    /**
+     * Returns the concrete methods declared in this class.
+     *
+     * @return the declared concrete methods; not to be modified.
+     */
+
+    public ArrayList<Method> concreteMethods() {
+        return concreteMethods;
+    }
+
+    /**
+     * Returns the first of the specified overloads whose parameter types
+     * match the specified argument types; as in {@link Type#equals(Type)},
+     * types match if their descriptors do.
+     *
+     * @param overloads
+     *            the overloads, or {@code null} for none.
+     * @param argTypes
+     *            the argument types.
+     * @return the member, or {@code null} if none matches.
+     */
+
+    private static <M extends Member> M find(ArrayList<Overload<M>> overloads,
+            Type[] argTypes) {
+        if (overloads == null) {
+            return null;
+        }
+        String[] argDescriptors = null;
+        for (Overload<M> overload : overloads) {
+            String[] paramDescriptors = overload.paramDescriptors;
+            if (paramDescriptors.length != argTypes.length) {
+                continue;
+            }
+            if (argDescriptors == null) {
+                argDescriptors = new String[argTypes.length];
+                for (int i = 0; i < argTypes.length; i++) {
+                    argDescriptors[i] = argTypes[i].toDescriptor();
+                }
+            }
+            if (Arrays.equals(argDescriptors, paramDescriptors)) {
+                return overload.member;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the descriptors of the specified types.
+     *
+     * @param types
+     *            the types.
+     * @return their descriptors.
+     */
+
+    private static String[] descriptorsFor(Class<?>[] types) {
+        String[] descriptors = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            descriptors[i] = Type.descriptorFor(types[i]);
+        }
+        return descriptors;
+    }
+
+    /**
+     * A method or constructor, with the descriptors of its parameter types.
+     */
+
+    private static class Overload<M extends Member> {
+
+        /** The member. */
+        public M member;
+
+        /** The descriptors of the parameter types. */
+        public String[] paramDescriptors;
+
+        /**
+         * Constructs an overload.
+         *
+         * @param member
+         *            the member.
+         * @param paramDescriptors
+         *            the descriptors of the parameter types.
+         */
+
+        public Overload(M member, String[] paramDescriptors) {
+            this.member = member;
+            this.paramDescriptors = paramDescriptors;
+        }
+
+    }
+
+}
@@ -5,8 +5,12 @@ package jminusminus;
 import static jminusminus.CLConstants.*;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Stack;
 import java.util.TreeMap;
 import java.util.Queue;
@@ -248,8 +252,11 @@ class NBasicBlock {
         s = "Locals: ";
         if (locals != null) {
             for (int i = 0; i < locals.length; i++) {
-                if (!(cfg.hirMap.get(locals[i]) instanceof NHIRLocal)) {
-                    s += cfg.hirMap.get(locals[i]).id() + " ";
+                NHIRInstruction local = cfg.hirMap.get(locals[i]);
+
+                // The instruction may have been optimized away
+                if (local != null && !(local instanceof NHIRLocal)) {
+                    s += local.id() + " ";
                 }
             }
         }
@@ -380,22 +387,22 @@ class NControlFlowGraph {
     private HashMap<Integer, NBasicBlock> pcToBasicBlock;
 
     /** block identifier. */
-    public static int blockId;
+    public int blockId;
 
     /** HIR instruction identifier. */
-    public static int hirId;
+    public int hirId;
 
     /** HIR instruction identifier. */
-    public static int lirId;
+    public int lirId;
 
     /** Virtual register identifier. */
-    public static int regId;
+    public int regId;
 
     /** Stack offset counter.. */
     public int offset;
 
     /** Loop identifier. */
-    public static int loopIndex;
+    public int loopIndex;
 
     /** Name of the method this cfg corresponds to. */
     public String name;
@@ -436,6 +443,9 @@ class NControlFlowGraph {
     /** Used to construct jump labels in spim output. */
     public String labelPrefix;
 
+    /** The emitter writing the spim output; it labels string constants. */
+    public NEmitter emitter;
+
     /**
      * SPIM code for string literals added to the data segment.
      */
@@ -459,12 +469,12 @@ class NControlFlowGraph {
         desc = new String(((CLConstantUtf8Info) cp.cpItem(m.descriptorIndex)).b);
         basicBlocks = new ArrayList<NBasicBlock>();
         pcToBasicBlock = new HashMap<Integer, NBasicBlock>();
-        ArrayList<Integer> code = getByteCode();
+        byte[] code = getByteCode();
         ArrayList<NTuple> tuples = bytecodeToTuples(code);
         if (tuples.size() == 0) {
             return;
         }
-        NTuple[] tupleAt = new NTuple[code.size()];
+        NTuple[] tupleAt = new NTuple[code.length];
         for (NTuple tuple : tuples) {
             tupleAt[tuple.pc] = tuple;
         }
@@ -479,7 +489,7 @@ class NControlFlowGraph {
         // its control flow graph.
         basicBlocks.get(0).successors.add(basicBlocks.get(1));
         basicBlocks.get(1).predecessors.add(basicBlocks.get(0));
-        NBasicBlock[] blockAt = new NBasicBlock[code.size()];
+        NBasicBlock[] blockAt = new NBasicBlock[code.length];
         for (NBasicBlock block : basicBlocks) {
             if (block.tuples.size() == 0) {
                 continue;
@@ -693,7 +703,7 @@ class NControlFlowGraph {
             block.isLoopHead = true;
             pred.isLoopTail = true;
             block.bwdBranches++;
-            block.loopIndex = NControlFlowGraph.loopIndex++;
+            block.loopIndex = loopIndex++;
         }
     }
 
@@ -939,6 +949,7 @@ class NControlFlowGraph {
                     block.hir.add(ins.id);
                     break;
                 }
+                case ICONST_M1:
                 case ICONST_0:
                 case ICONST_1:
                 case ICONST_2:
@@ -987,7 +998,10 @@ class NControlFlowGraph {
                 }
                 case BIPUSH: {
                     operandByte1 = tuple.operands.get(0);
-                    ins = new NHIRIntConstant(block, hirId++, operandByte1);
+
+                    // The operand is a signed byte
+                    ins = new NHIRIntConstant(block, hirId++,
+                            (byte) operandByte1);
                     block.cfg.hirMap.put(ins.id, ins);
                     block.hir.add(ins.id);
                     operandStack.push(ins.id);
@@ -1006,13 +1020,20 @@ class NControlFlowGraph {
                 case LDC: {
                     operandByte1 = tuple.operands.get(0);
 
-                    // Only allowing ldc of string constants for
-                    // now.
-                    int stringIndex = ((CLConstantStringInfo) cp
-                            .cpItem(operandByte1)).stringIndex;
-                    String s = new String(((CLConstantUtf8Info) cp
-                            .cpItem(stringIndex)).b);
-                    ins = new NHIRStringConstant(block, hirId++, s);
+                    // Only allowing ldc of int and string constants
+                    // for now; an int is one folded out of the
+                    // short range.
+                    CLCPInfo item = cp.cpItem(operandByte1);
+                    if (item instanceof CLConstantIntegerInfo) {
+                        ins = new NHIRIntConstant(block, hirId++,
+                                ((CLConstantIntegerInfo) item).i);
+                    } else {
+                        int stringIndex = ((CLConstantStringInfo) item)
+                                .stringIndex;
+                        String s = new String(((CLConstantUtf8Info) cp
+                                .cpItem(stringIndex)).b);
+                        ins = new NHIRStringConstant(block, hirId++, s);
+                    }
                     block.cfg.hirMap.put(ins.id, ins);
                     block.hir.add(ins.id);
                     operandStack.push(ins.id);
@@ -1165,11 +1186,317 @@ class NControlFlowGraph {
     }
 
     /**
-     * Carries out optimizations on the high-level instructions.
+     * Carries out optimizations on the high-level instructions: each of the
+     * enabled optimizations of the specified optimizer, in the order of its
+     * catalog.
+     * 
+     * @param optimizer
+     *            the optimizer; {@code null} for none.
+     */
+
+    public void optimize(NOptimizer optimizer) {
+        if (optimizer == null) {
+            return;
+        }
+        for (NOptimization optimization : optimizer.optimizations()) {
+            if (optimization.isEnabled()) {
+                optimization.optimize(this);
+            }
+        }
+    }
+
+    /**
+     * Replaces each of the specified HIR instructions with another: from now
+     * on, its HIR id (and any other id that stands for it) stands for the
+     * other. The instruction is taken out of its block, unless the other has
+     * the same id, and so takes its place there.
+     * 
+     * @param replacements
+     *            maps each instruction to the one that replaces it.
+     */
+
+    public void replace(HashMap<NHIRInstruction, NHIRInstruction> replacements) {
+        for (Map.Entry<Integer, NHIRInstruction> entry : hirMap.entrySet()) {
+            NHIRInstruction replacement = replacements.get(entry.getValue());
+            if (replacement != null) {
+                entry.setValue(replacement);
+            }
+        }
+        for (NHIRInstruction ins : replacements.keySet()) {
+            if (replacements.get(ins).id != ins.id) {
+                ins.block.hir.remove((Integer) ins.id);
+            }
+        }
+    }
+
+    /**
+     * Removes the specified HIR instructions from their blocks and from this
+     * cfg. Nothing that stays may use them.
+     * 
+     * @param instructions
+     *            the instructions.
+     */
+
+    public void remove(HashSet<NHIRInstruction> instructions) {
+        Iterator<NHIRInstruction> iter = hirMap.values().iterator();
+        while (iter.hasNext()) {
+            if (instructions.contains(iter.next())) {
+                iter.remove();
+            }
+        }
+        for (NHIRInstruction ins : instructions) {
+            ins.block.hir.remove((Integer) ins.id);
+        }
+    }
+
+    /**
+     * Removes the edge from one block to another, along with the argument
+     * that each phi function in the latter receives along it.
+     * 
+     * @param from
+     *            the block the edge leaves.
+     * @param to
+     *            the block the edge enters.
+     */
+
+    public void removeEdge(NBasicBlock from, NBasicBlock to) {
+        int i = to.predecessors.indexOf(from);
+        for (int ins : to.hir) {
+            NHIRInstruction hir = hirMap.get(ins);
+            if (hir instanceof NHIRPhiFunction
+                    && ((NHIRPhiFunction) hir).arguments.size() == to.predecessors
+                            .size()) {
+                ((NHIRPhiFunction) hir).arguments.remove(i);
+            }
+        }
+        to.predecessors.remove(i);
+        from.successors.remove(to);
+    }
+
+    /**
+     * Returns whether each phi function in the specified block has one
+     * argument per predecessor of the block, the i-th one coming from the
+     * i-th predecessor. (A block with more than two predecessors, other than
+     * a loop head, gets its phi functions nested instead.) Only then may
+     * edges into the block be removed.
+     * 
+     * @param block
+     *            the block.
+     * @return {@code true} or {@code false}.
+     */
+
+    public boolean hasPhiArgumentPerPredecessor(NBasicBlock block) {
+        for (int ins : block.hir) {
+            NHIRInstruction hir = hirMap.get(ins);
+            if (hir instanceof NHIRPhiFunction
+                    && ((NHIRPhiFunction) hir).arguments.size() != block.predecessors
+                            .size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether one block dominates another, i.e., whether it is the
+     * other block or one of its dominators.
+     *
+     * @param a
+     *            a basic block.
+     * @param b
+     *            another basic block.
+     * @return {@code true} or {@code false}.
+     */
+
+    public boolean dominates(NBasicBlock a, NBasicBlock b) {
+        for (NBasicBlock dom = b; dom != null; dom = dom.dom) {
+            if (dom == a) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the blocks of the (natural) loop headed by the specified block:
+     * the loop head, and the blocks from which a loop tail going back to it
+     * can be reached without going through it.
+     *
+     * @param head
+     *            the loop head.
+     * @return the blocks of the loop, in the order of the cfg.
+     */
+
+    public ArrayList<NBasicBlock> loopBody(NBasicBlock head) {
+        HashSet<NBasicBlock> body = new HashSet<NBasicBlock>();
+        Stack<NBasicBlock> work = new Stack<NBasicBlock>();
+        body.add(head);
+        for (NBasicBlock pred : head.predecessors) {
+            if (dominates(head, pred) && body.add(pred)) {
+                work.push(pred);
+            }
+        }
+        while (!work.isEmpty()) {
+            for (NBasicBlock pred : work.pop().predecessors) {
+                if (body.add(pred)) {
+                    work.push(pred);
+                }
+            }
+        }
+        ArrayList<NBasicBlock> blocks = new ArrayList<NBasicBlock>();
+        for (NBasicBlock block : basicBlocks) {
+            if (body.contains(block)) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Computes the loop depth of each block in this cfg: the number of loops
+     * (headed by the loop heads found by detectLoops) that it is in.
+     */
+
+    public void computeLoopDepths() {
+        for (NBasicBlock block : basicBlocks) {
+            block.loopDepth = 0;
+        }
+        for (NBasicBlock head : basicBlocks) {
+            if (head.isLoopHead) {
+                for (NBasicBlock block : loopBody(head)) {
+                    block.loopDepth++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts a preheader for the loop headed by the specified block: an
+     * empty block, placed just before the head, that the one edge into the
+     * loop from outside goes through, and so where code can be run once
+     * before the loop. The preheader falls through to the head.
+     *
+     * @param head
+     *            the loop head.
+     * @return the preheader, or {@code null} if the loop is entered from
+     *         more than one block, or the head cannot have a block placed
+     *         before it.
+     */
+
+    public NBasicBlock insertPreheader(NBasicBlock head) {
+        NBasicBlock entry = null;
+        for (NBasicBlock pred : head.predecessors) {
+            if (!dominates(head, pred)) {
+                if (entry != null && entry != pred) {
+                    return null;
+                }
+                entry = pred;
+            }
+        }
+        if (entry == null || !hasPhiArgumentPerPredecessor(head)) {
+            return null;
+        }
+
+        // A block that falls through to the head must be the entry, which
+        // then falls through to the preheader instead
+        int index = basicBlocks.indexOf(head);
+        NBasicBlock previous = index > 0 ? basicBlocks.get(index - 1) : null;
+        if (previous != entry && previous != null
+                && previous.successors.contains(head)
+                && !endsWithJump(previous)) {
+            return null;
+        }
+        if (previous != entry && !endsWithJump(entry)) {
+            return null;
+        }
+
+        NBasicBlock preheader = new NBasicBlock(this, blockId++);
+        preheader.locals = entry.locals;
+        preheader.dom = head.dom;
+        head.dom = preheader;
+        preheader.predecessors.add(entry);
+        preheader.successors.add(head);
+        Collections.replaceAll(entry.successors, head, preheader);
+        Collections.replaceAll(head.predecessors, entry, preheader);
+        if (endsWithJump(entry)) {
+            NHIRInstruction jump = hirMap.get(entry.hir
+                    .get(entry.hir.size() - 1));
+            if (jump instanceof NHIRGoto) {
+                ((NHIRGoto) jump).destination = preheader;
+            } else {
+                NHIRConditionalJump condJump = (NHIRConditionalJump) jump;
+                if (condJump.onTrueDestination == head) {
+                    condJump.onTrueDestination = preheader;
+                }
+                if (condJump.onFalseDestination == head) {
+                    condJump.onFalseDestination = preheader;
+                }
+            }
+        }
+        basicBlocks.add(index, preheader);
+        return preheader;
+    }
+
+    /**
+     * Returns whether the last HIR instruction of the specified block is a
+     * jump.
+     *
+     * @param block
+     *            the block.
+     * @return {@code true} or {@code false}.
      */
 
-    public void optimize() {
-        // TBD
+    private boolean endsWithJump(NBasicBlock block) {
+        int len = block.hir.size();
+        return len > 0 && isHIRJmp(hirMap.get(block.hir.get(len - 1)));
+    }
+
+    /**
+     * Splits an edge, in the LIR, with a new block that goes to the block the
+     * edge is to, and so where code can be run on the way along that edge
+     * only. The block the edge is from must end with a conditional jump,
+     * which is retargeted. The new block is placed just after it, falling
+     * through to the block the edge is to if the jump fell through to that
+     * block, and is otherwise one that jumps, placed where it is not fallen
+     * through to. Its live sets are those on entry to the block the edge is
+     * to.
+     *
+     * @param from
+     *            the block the edge is from.
+     * @param to
+     *            the block the edge is to.
+     * @return the new block.
+     */
+
+    public NBasicBlock splitEdge(NBasicBlock from, NBasicBlock to) {
+        NLIRConditionalJump jump = (NLIRConditionalJump) from.lir.get(from.lir
+                .size() - 1);
+        NBasicBlock block = new NBasicBlock(this, blockId++);
+        block.loopDepth = to.loopDepth;
+        block.predecessors.add(from);
+        block.successors.add(to);
+        Collections.replaceAll(from.successors, to, block);
+        Collections.replaceAll(to.predecessors, from, block);
+        if (jump.onTrueDestination == to) {
+            jump.onTrueDestination = block;
+        }
+        if (jump.onFalseDestination == to) {
+            jump.onFalseDestination = block;
+        }
+        int index = basicBlocks.indexOf(from) + 1;
+        if (jump.onFalseDestination != block || !jump.fallsThrough) {
+            block.lir.add(new NLIRGoto(block, jump.id + 1, to));
+            if (jump.fallsThrough) {
+                // From falls through to another block
+                index = basicBlocks.size();
+            }
+        }
+        block.liveDef = new BitSet(registers.size());
+        block.liveUse = new BitSet(registers.size());
+        block.liveIn = (BitSet) to.liveIn.clone();
+        block.liveOut = (BitSet) to.liveIn.clone();
+        basicBlocks.add(index, block);
+        return block;
     }
 
     /**
@@ -1243,7 +1570,10 @@ class NControlFlowGraph {
     public void resolvePhiFunctions() {
         for (int ins1 : hirMap.keySet()) {
             NHIRInstruction hir = hirMap.get(ins1);
-            if (hir instanceof NHIRPhiFunction) {
+
+            // An id that stands for another instruction is skipped; the
+            // instruction is resolved under its own id
+            if (hir instanceof NHIRPhiFunction && hir.id == ins1) {
                 NHIRPhiFunction phi = (NHIRPhiFunction) hir;
                 NBasicBlock block = phi.block;
                 for (int i = 0; i < phi.arguments.size(); i++) {
@@ -1255,8 +1585,11 @@ class NControlFlowGraph {
                     NLIRMove move = new NLIRMove(arg.block, lirId++, arg.lir,
                             phi.lir);
                     int len = targetBlock.hir.size();
-                    if (isHIRJmp(hirMap.get(targetBlock.hir.get(len - 1)))) {
-                        targetBlock.lir.add(len - 1, move);
+                    if (len > 0
+                            && isHIRJmp(hirMap.get(targetBlock.hir.get(len - 1)))) {
+                        // The jump, last in the block, is the last of its
+                        // LIR instructions too
+                        targetBlock.lir.add(targetBlock.lir.size() - 1, move);
                     } else {
                         targetBlock.lir.add(move);
                     }
@@ -1279,11 +1612,115 @@ class NControlFlowGraph {
     }
 
     /**
-     * Computes optimal ordering of the basic blocks in this cfg.
+     * Computes an ordering of the basic blocks in this cfg in which as many
+     * jumps as possible become fall throughs. The blocks are chained, each
+     * to a successor not yet placed: the one in the deeper loop, or, of two
+     * in the same loop, the one on false (that fallen through to in the
+     * bytecode). Then each loop whose head ends with its test, and whose body
+     * follows the head in a row, is rotated: the head is placed after the
+     * block that jumps back to it, so that an iteration takes one jump rather
+     * than two. Finally, conditional jumps are inverted where that lets them
+     * fall through, gotos to the next block are removed, and gotos are added
+     * where a block is no longer followed by the one it fell through to.
      */
 
     public void orderBlocks() {
-        // TBD
+        computeLoopDepths();
+        ArrayList<NBasicBlock> order = new ArrayList<NBasicBlock>();
+        HashSet<NBasicBlock> placed = new HashSet<NBasicBlock>();
+        for (NBasicBlock block : basicBlocks) {
+            for (NBasicBlock b = block; b != null && placed.add(b);
+                    b = fallThroughSuccessor(b, placed)) {
+                order.add(b);
+            }
+        }
+
+        // Rotate the loops.
+        for (NBasicBlock head : basicBlocks) {
+            if (!head.isLoopHead || head.lir.isEmpty() || !(head.lir.get(head
+                    .lir.size() - 1) instanceof NLIRConditionalJump)) {
+                continue;
+            }
+            NLIRConditionalJump test = (NLIRConditionalJump) head.lir.get(head
+                    .lir.size() - 1);
+            ArrayList<NBasicBlock> body = loopBody(head);
+            int start = order.indexOf(head);
+            int end = start + body.size() - 1;
+            if (body.contains(test.onTrueDestination) == body
+                    .contains(test.onFalseDestination)
+                    || end >= order.size()
+                    || !body.containsAll(order.subList(start, end + 1))) {
+                continue;
+            }
+            NBasicBlock tail = order.get(end);
+            if (tail != head && tail.successors.size() == 1
+                    && tail.successors.get(0) == head) {
+                order.remove(start);
+                order.add(end, head);
+            }
+        }
+
+        // Make the jumps agree with the order.
+        for (int i = 0; i < order.size(); i++) {
+            NBasicBlock block = order.get(i);
+            NBasicBlock next = i + 1 < order.size() ? order.get(i + 1) : null;
+            NLIRInstruction last = block.lir.isEmpty() ? null : block.lir
+                    .get(block.lir.size() - 1);
+            if (last instanceof NLIRConditionalJump) {
+                NLIRConditionalJump jump = (NLIRConditionalJump) last;
+                if (jump.onTrueDestination == next) {
+                    jump.invert();
+                }
+                jump.fallsThrough = jump.onFalseDestination == next;
+            } else if (last instanceof NLIRGoto) {
+                if (((NLIRGoto) last).destination == next) {
+                    block.lir.remove(last);
+                }
+            } else if (!(last instanceof NLIRReturn)
+                    && block.successors.size() == 1
+                    && block.successors.get(0) != next) {
+                block.lir.add(new NLIRGoto(block, last == null ? 0 : last.id,
+                        block.successors.get(0)));
+            }
+        }
+        basicBlocks.clear();
+        basicBlocks.addAll(order);
+    }
+
+    /**
+     * Returns the successor, not yet placed, that the specified block is
+     * best followed by (and falls through to) in the order of the blocks:
+     * of the two blocks a conditional jump goes to, the one in the deeper
+     * loop, or else the one on false.
+     *
+     * @param block
+     *            the block.
+     * @param placed
+     *            the blocks placed.
+     * @return the successor, or {@code null} if there is none.
+     */
+
+    private NBasicBlock fallThroughSuccessor(NBasicBlock block,
+            HashSet<NBasicBlock> placed) {
+        NLIRInstruction last = block.lir.isEmpty() ? null : block.lir
+                .get(block.lir.size() - 1);
+        if (last instanceof NLIRConditionalJump) {
+            NBasicBlock onTrue = ((NLIRConditionalJump) last).onTrueDestination;
+            NBasicBlock onFalse = ((NLIRConditionalJump) last)
+                    .onFalseDestination;
+            if (placed.contains(onFalse)) {
+                return placed.contains(onTrue) ? null : onTrue;
+            }
+            if (placed.contains(onTrue)) {
+                return onFalse;
+            }
+            return onTrue.loopDepth > onFalse.loopDepth ? onTrue : onFalse;
+        }
+        if (last instanceof NLIRReturn || block.successors.size() != 1
+                || placed.contains(block.successors.get(0))) {
+            return null;
+        }
+        return block.successors.get(0);
     }
 
     /**
@@ -1472,7 +1909,7 @@ class NControlFlowGraph {
                 args.add(a.locals[i]);
                 args.add(b.locals[i]);
                 NHIRInstruction ins = new NHIRPhiFunction(a,
-                        NControlFlowGraph.hirId++, args, i);
+                        hirId++, args, i);
                 a.locals[i] = ins.id;
                 a.hir.add(ins.id);
                 a.cfg.hirMap.put(ins.id, ins);
@@ -1491,11 +1928,11 @@ class NControlFlowGraph {
      * @return list of tuples.
      */
 
-    private ArrayList<NTuple> bytecodeToTuples(ArrayList<Integer> code) {
+    private ArrayList<NTuple> bytecodeToTuples(byte[] code) {
         ArrayList<NTuple> tuples = new ArrayList<NTuple>();
-        for (int i = 0; i < code.size(); i++) {
+        for (int i = 0; i < code.length; i++) {
             int pc = i;
-            int opcode = code.get(i);
+            int opcode = code[i] & 0xFF;
             int operandBytes = CLInstruction.instructionInfo[opcode].operandCount;
             short operandByte1, operandByte2, operandByte3, operandByte4;
             int pad, deflt;
@@ -1504,28 +1941,28 @@ class NControlFlowGraph {
             case 0:
                 break;
             case 1:
-                operandByte1 = code.get(++i).shortValue();
+                operandByte1 = (short) (code[++i] & 0xFF);
                 operands.add(operandByte1);
                 break;
             case 2:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
+                operandByte1 = (short) (code[++i] & 0xFF);
+                operandByte2 = (short) (code[++i] & 0xFF);
                 operands.add(operandByte1);
                 operands.add(operandByte2);
                 break;
             case 3:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
-                operandByte3 = code.get(++i).shortValue();
+                operandByte1 = (short) (code[++i] & 0xFF);
+                operandByte2 = (short) (code[++i] & 0xFF);
+                operandByte3 = (short) (code[++i] & 0xFF);
                 operands.add(operandByte1);
                 operands.add(operandByte2);
                 operands.add(operandByte3);
                 break;
             case 4:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
-                operandByte3 = code.get(++i).shortValue();
-                operandByte4 = code.get(++i).shortValue();
+                operandByte1 = (short) (code[++i] & 0xFF);
+                operandByte2 = (short) (code[++i] & 0xFF);
+                operandByte3 = (short) (code[++i] & 0xFF);
+                operandByte4 = (short) (code[++i] & 0xFF);
                 operands.add(operandByte1);
                 operands.add(operandByte2);
                 operands.add(operandByte3);
@@ -1579,8 +2016,8 @@ class NControlFlowGraph {
      * @return JVM bytecode for the method denoted by this cfg.
      */
 
-    private ArrayList<Integer> getByteCode() {
-        ArrayList<Integer> code = null;
+    private byte[] getByteCode() {
+        byte[] code = null;
         for (CLAttributeInfo info : m.attributes) {
             if (info instanceof CLCodeAttribute) {
                 code = ((CLCodeAttribute) info).code;
@@ -1628,11 +2065,9 @@ class NControlFlowGraph {
      */
 
     private int numLocals() {
-        ArrayList<Integer> code = null;
         int numLocals = 0;
         for (CLAttributeInfo info : m.attributes) {
             if (info instanceof CLCodeAttribute) {
-                code = ((CLCodeAttribute) info).code;
                 numLocals = ((CLCodeAttribute) info).maxLocals;
                 break;
             }
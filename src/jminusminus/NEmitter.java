@@ -33,6 +33,9 @@ public class NEmitter {
     /** Destination directory for the native SPIM code. */
     private String destDir;
 
+    /** Suffix for the label of the next string constant in the SPIM file. */
+    private int labelSuffix;
+
     /**
      * Whether an error occurred while creating/writing SPIM code.
      */
@@ -40,7 +43,8 @@ public class NEmitter {
 
     /**
      * Constructs a NEmitter instance given the source file, list of CLFile 
-     * objects, and the register allocation scheme.
+     * objects, the register allocation scheme, the number of registers, and
+     * the optimizer.
      * 
      * @param sourceFile
      *            the source j-- program file name.
@@ -48,9 +52,15 @@ public class NEmitter {
      *            list of CLFile objects.
      * @param ra
      *            register allocation scheme (naive, linear, or graph).
+     * @param maxCount
+     *            maximum number of physical registers used for allocation.
+     * @param optimizer
+     *            the optimizer for the HIR of each method; {@code null} for
+     *            none.
      */
 
-    public NEmitter(String sourceFile, ArrayList<CLFile> clFiles, String ra) {
+    public NEmitter(String sourceFile, ArrayList<CLFile> clFiles, String ra,
+            int maxCount, NOptimizer optimizer) {
         this.sourceFile = sourceFile.substring(sourceFile
                 .lastIndexOf(File.separator) + 1);
         classes = new HashMap<CLFile, HashMap<CLMethodInfo, NControlFlowGraph>>();
@@ -95,7 +105,7 @@ public class NEmitter {
 
                 // Perform optimizations on the high-level
                 // instructions.
-                cfg.optimize();
+                cfg.optimize(optimizer);
 
                 // Write the HIR instructions in cfg to STDOUT.
                 cfg.writeHirToStdOut(p);
@@ -123,11 +133,11 @@ public class NEmitter {
                 // Perform register allocation.
                 NRegisterAllocator regAllocator;
                 if (ra.equals("naive")) {
-                    regAllocator = new NNaiveRegisterAllocator(cfg);
+                    regAllocator = new NNaiveRegisterAllocator(cfg, maxCount);
                 } else if (ra.equals("linear")) {
-                    regAllocator = new NLinearRegisterAllocator(cfg);
+                    regAllocator = new NLinearRegisterAllocator(cfg, maxCount);
                 } else {
-                    regAllocator = new NGraphRegisterAllocator(cfg);
+                    regAllocator = new NGraphRegisterAllocator(cfg, maxCount);
                 }
                 regAllocator.allocation();
 
@@ -176,6 +186,16 @@ public class NEmitter {
         return errorHasOccurred;
     }
 
+    /**
+     * Creates a label for a string constant, unique in the SPIM file.
+     *
+     * @return the label.
+     */
+
+    public String createStringLabel() {
+        return "Constant..String" + labelSuffix++;
+    }
+
     /**
      * Writes out SPIM file(s) to the file system. The destination directory for
      * the files can be set using the {@code destinationDir} method.
@@ -218,6 +238,7 @@ public class NEmitter {
                         out.printf("%s.%s:\n", className, methodName);
                         cfg.labelPrefix = className + "." + methodName;
                     }
+                    cfg.emitter = this;
 
                     // Setup stack frame for this method
                     pushStackFrame(cfg, out);
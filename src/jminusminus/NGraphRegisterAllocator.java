@@ -3,22 +3,113 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import static jminusminus.NPhysicalRegister.*;
 
 /**
- * Implements register allocation using graph coloring algorithm.
+ * Implements register allocation using graph coloring algorithm, after
+ * Chaitin and Briggs. An interference graph is built from the liveness
+ * information in the blocks (liveIn and liveOut), with an edge between two
+ * virtual registers that are live at the same time; the moves between
+ * virtual registers are coalesced where that cannot make the graph harder
+ * to color (Briggs's conservative test); the registers are then simplified
+ * off the graph onto a stack and colored, in reverse, with the maxCount
+ * physical registers (t0, ..., t7, s0, ...). A register for which no color
+ * is left is spilled: it gets a slot in the stack frame, each use of it is
+ * preceded by a load into a new, short-lived register, and each definition
+ * followed by a store; and the allocation starts over. The register spilled
+ * when simplification is stuck is the one with the least cost per
+ * interference, the cost being the number of its uses and definitions, each
+ * weighted by 10 to the loop depth of its block; but it is pushed all the
+ * same, and only actually spilled if its neighbors leave it no color.
+ * <p>
+ * A spilled register that always holds the same int constant is not given a
+ * slot: the constant is loaded anew (with li) wherever it is used, and its
+ * definitions go away. Spilled registers copied one to another share a slot
+ * where they do not interfere, so that the copy goes away.
+ * <p>
+ * Each round of spilling starts over from the LIR as it was before any
+ * spilling, with all the registers spilled so far; once the registers are
+ * colored, those spilled in an early round that a later one made needless
+ * (in the order of their cost, dearest first) are kept in registers again
+ * if that does not make another register spill.
  */
 
 public class NGraphRegisterAllocator extends NRegisterAllocator {
 
+    /** Number of colors, i.e., of physical registers for allocation. */
+    private int k;
+
+    /** The virtual registers (nodes) in the interference graph. */
+    private BitSet nodes;
+
+    /** The registers each register interferes with, by register number. */
+    private BitSet[] adjacent;
+
+    /** The number of registers each register interferes with. */
+    private int[] degree;
+
+    /** The register each register is coalesced into; itself if none. */
+    private int[] alias;
+
+    /** Spill cost of each register. */
+    private double[] cost;
+
+    /** Moves between virtual registers; candidates for coalescing. */
+    private ArrayList<NLIRMove> moves;
+
+    /** Registers that are not to be spilled: those loaded or stored. */
+    private BitSet unspillable;
+
+    /** Color of each register (index from T0), or -1 if it has none. */
+    private int[] color;
+
+    /** The LIR of each block before spilling. */
+    private ArrayList<ArrayList<NLIRInstruction>> unspilledLir;
+
+    /**
+     * The registers each LIR instruction wrote (first; {@code null} if none)
+     * and read before spilling.
+     */
+    private HashMap<NLIRInstruction, NRegister[]> operands;
+
+    /** The number of registers before spilling. */
+    private int registerCount;
+
+    /** The next free stack offset before spilling. */
+    private int frameOffset;
+
+    /**
+     * The registers each register interfered with before spilling and
+     * coalescing; registers that do not interfere may share a slot.
+     */
+    private BitSet[] interference;
+
+    /** Spill cost of each register before spilling and coalescing. */
+    private double[] unspilledCost;
+
+    /**
+     * The constant each register always holds, if any; such a register is
+     * rematerialized rather than spilled.
+     */
+    private Integer[] constant;
+
+    /** The offset of the slot of each register last spilled. */
+    private int[] slot;
+
     /**
      * Construct a NGraphRegisterAllocator.
-     * 
+     *
      * @param cfg
      *            an instance of a control flow graph.
+     * @param maxCount
+     *            maximum number of physical registers used for allocation.
      */
 
-    public NGraphRegisterAllocator(NControlFlowGraph cfg) {
-        super(cfg);
+    public NGraphRegisterAllocator(NControlFlowGraph cfg, int maxCount) {
+        super(cfg, maxCount);
     }
 
     /**
@@ -26,7 +117,803 @@ public class NGraphRegisterAllocator extends NRegisterAllocator {
      */
 
     public void allocation() {
-        buildIntervals();
+        k = maxCount;
+        unspillable = new BitSet();
+        this.preprocess();
+        cfg.computeLoopDepths();
+
+        // Formals fourth and above stay where the caller put them (see
+        // preprocess), and are loaded where they are used
+        int[] offsets = new int[cfg.registers.size()];
+        OffsetFrom[] offsetsFrom = new OffsetFrom[cfg.registers.size()];
+        boolean formals = false;
+        for (int i = 32; i < cfg.intervals.size(); i++) {
+            NInterval interval = cfg.intervals.get(i);
+            if (interval.spill) {
+                offsets[i] = interval.offset;
+                offsetsFrom[i] = interval.offsetFrom;
+                formals = true;
+            }
+        }
+        if (formals) {
+            spill(offsets, offsetsFrom, new Integer[cfg.registers.size()]);
+        }
+        removeDeadMoves();
+        snapshot();
+        constants();
+        this.computeLocalLiveSets();
+        this.computeGlobalLiveSets();
+        build();
+        interference = new BitSet[adjacent.length];
+        for (int v = 0; v < adjacent.length; v++) {
+            interference[v] = (BitSet) adjacent[v].clone();
+        }
+        unspilledCost = cost.clone();
+
+        // Spill until the registers can be colored, each round adding to
+        // those spilled so far
+        BitSet spilled = new BitSet();
+        ArrayList<Integer> uncolored = color();
+        while (!uncolored.isEmpty() && addSpilled(uncolored, spilled)) {
+            uncolored = allocate(spilled);
+        }
+
+        // Keep in registers those that need not be spilled after all
+        if (!spilled.isEmpty()) {
+            ArrayList<Integer> order = new ArrayList<Integer>();
+            for (int v = spilled.nextSetBit(0); v >= 0; v = spilled
+                    .nextSetBit(v + 1)) {
+                int i = 0;
+                while (i < order.size()
+                        && unspilledCost[order.get(i)] >= unspilledCost[v]) {
+                    i++;
+                }
+                order.add(i, v);
+            }
+            boolean current = true;
+            for (int v : order) {
+                spilled.clear(v);
+                uncolored = allocate(spilled);
+                current = uncolored.isEmpty();
+                if (!current) {
+                    spilled.set(v);
+                }
+            }
+            if (!current) {
+                uncolored = allocate(spilled);
+            }
+        }
+
+        // With fewer registers than an instruction has operands, spilling
+        // does not help, and there is no correct allocation
+        for (int node : uncolored) {
+            color[node] = 0;
+        }
+        for (int v = spilled.nextSetBit(0); v >= 0; v = spilled
+                .nextSetBit(v + 1)) {
+            if (constant[v] == null) {
+                NInterval interval = cfg.intervals.get(v);
+                interval.spill = true;
+                interval.offset = slot[v];
+                interval.offsetFrom = OffsetFrom.SP;
+            }
+        }
+        cfg.renumberLirInstructions();
+        assign();
+
+        // For the record (cfg.writeIntervalsToStdOut)
+        this.buildIntervals();
+    }
+
+    /**
+     * Adds to the registers spilled those (before spilling) whose coalesced
+     * registers could not be colored.
+     *
+     * @param uncolored
+     *            the (coalesced) registers that could not be colored.
+     * @param spilled
+     *            the registers spilled so far.
+     * @return {@code true} if any register was added; {@code false} if the
+     *         registers that could not be colored are all unspillable.
+     */
+
+    private boolean addSpilled(ArrayList<Integer> uncolored,
+            BitSet spilled) {
+        boolean added = false;
+        for (int v = 32; v < registerCount; v++) {
+            if (cfg.registers.get(v) != null && !unspillable.get(v)
+                    && uncolored.contains(find(v))) {
+                spilled.set(v);
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Allocates registers anew, from the LIR as it was before spilling, with
+     * the specified registers spilled.
+     *
+     * @param spilled
+     *            the registers to be spilled.
+     * @return the (coalesced) registers that could not be colored.
+     */
+
+    private ArrayList<Integer> allocate(BitSet spilled) {
+        restore();
+        spill(spilled);
+        this.computeLocalLiveSets();
+        this.computeGlobalLiveSets();
+        build();
+        return color();
+    }
+
+    /**
+     * Coalesces and colors the registers in the interference graph.
+     *
+     * @return the (coalesced) registers that could not be colored.
+     */
+
+    private ArrayList<Integer> color() {
+        coalesce();
+        return select(simplify());
+    }
+
+    /**
+     * Removes the moves into (virtual) registers that are never read, such
+     * as those for a local that is dead by then, which would otherwise keep
+     * their sources live, and interfering, for nothing.
+     */
+
+    private void removeDeadMoves() {
+        boolean changed;
+        do {
+            changed = false;
+            BitSet read = new BitSet(cfg.registers.size());
+            for (NBasicBlock block : cfg.basicBlocks) {
+                for (NLIRInstruction lir : block.lir) {
+                    for (NRegister reg : lir.reads) {
+                        read.set(reg.number());
+                    }
+                }
+            }
+            for (NBasicBlock block : cfg.basicBlocks) {
+                ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+                for (NLIRInstruction lir : block.lir) {
+                    if (lir instanceof NLIRMove && isVirtual(lir.write)
+                            && !read.get(lir.write.number())) {
+                        changed = true;
+                        continue;
+                    }
+                    newLir.add(lir);
+                }
+                block.lir = newLir;
+            }
+        } while (changed);
+    }
+
+    /**
+     * Records the LIR, and the registers its instructions read and write,
+     * before spilling, so that spilling can start over from it.
+     */
+
+    private void snapshot() {
+        registerCount = cfg.registers.size();
+        frameOffset = cfg.offset;
+        unspilledLir = new ArrayList<ArrayList<NLIRInstruction>>();
+        operands = new HashMap<NLIRInstruction, NRegister[]>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            unspilledLir.add(new ArrayList<NLIRInstruction>(block.lir));
+            for (NLIRInstruction lir : block.lir) {
+                NRegister[] registers = new NRegister[lir.reads.size() + 1];
+                registers[0] = lir.write;
+                for (int i = 0; i < lir.reads.size(); i++) {
+                    registers[i + 1] = lir.reads.get(i);
+                }
+                operands.put(lir, registers);
+            }
+        }
+    }
+
+    /**
+     * Restores the LIR, and the registers and stack slots, to what they were
+     * before spilling.
+     */
+
+    private void restore() {
+        for (int i = 0; i < cfg.basicBlocks.size(); i++) {
+            NBasicBlock block = cfg.basicBlocks.get(i);
+            block.lir = new ArrayList<NLIRInstruction>(unspilledLir.get(i));
+            for (NLIRInstruction lir : block.lir) {
+                NRegister[] registers = operands.get(lir);
+                lir.write = registers[0];
+                for (int j = 1; j < registers.length; j++) {
+                    lir.reads.set(j - 1, registers[j]);
+                }
+            }
+        }
+        while (cfg.registers.size() > registerCount) {
+            cfg.registers.remove(cfg.registers.size() - 1);
+            cfg.intervals.remove(cfg.intervals.size() - 1);
+        }
+        cfg.regId = registerCount;
+        cfg.maxIntervals = cfg.intervals.size();
+        cfg.offset = frameOffset;
+        unspillable.clear(registerCount, Math.max(registerCount,
+                unspillable.length()));
+    }
+
+    /**
+     * Builds the interference graph, and computes the spill costs, from the
+     * LIR and the liveness information of the blocks.
+     */
+
+    private void build() {
+        int n = cfg.registers.size();
+        nodes = new BitSet(n);
+        adjacent = new BitSet[n];
+        degree = new int[n];
+        alias = new int[n];
+        cost = new double[n];
+        for (int i = 0; i < n; i++) {
+            adjacent[i] = new BitSet(n);
+            alias[i] = i;
+        }
+        moves = new ArrayList<NLIRMove>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            BitSet live = (BitSet) block.liveOut.clone();
+            double weight = Math.pow(10, block.loopDepth);
+            for (int j = block.lir.size() - 1; j >= 0; j--) {
+                NLIRInstruction lir = block.lir.get(j);
+                if (lir instanceof NLIRLoadLocal) {
+                    // Emits no code; the formal is where the caller put it
+                    continue;
+                }
+                if (lir instanceof NLIRMove && isVirtual(lir.write)
+                        && isVirtual(lir.reads.get(0))) {
+                    // The source and target of a move do not interfere
+                    // (on account of the move), so may be coalesced
+                    live.clear(lir.reads.get(0).number());
+                    moves.add((NLIRMove) lir);
+                }
+                if (lir.write != null && isVirtual(lir.write)) {
+                    int def = lir.write.number();
+                    nodes.set(def);
+                    cost[def] += weight;
+                    for (int v = live.nextSetBit(32); v >= 0; v = live
+                            .nextSetBit(v + 1)) {
+                        addEdge(def, v);
+                    }
+                    live.clear(def);
+                }
+                if (lir instanceof NLIRInvoke) {
+                    // The arguments fourth and above are stored (on the
+                    // stack) before the invocation, and not read by it
+                    continue;
+                }
+                for (NRegister reg : lir.reads) {
+                    if (isVirtual(reg)) {
+                        nodes.set(reg.number());
+                        cost[reg.number()] += weight;
+                        live.set(reg.number());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Coalesces the source and target of each move that do not interfere,
+     * provided the coalesced register has fewer than k neighbors of
+     * significant degree (k or more), so that it can still be simplified.
+     */
+
+    private void coalesce() {
+        boolean changed;
+        do {
+            changed = false;
+            for (NLIRMove move : moves) {
+                int a = find(move.reads.get(0).number());
+                int b = find(move.write.number());
+                if (a == b || adjacent[a].get(b) || unspillable.get(a)
+                        || unspillable.get(b)) {
+                    continue;
+                }
+                BitSet neighbors = (BitSet) adjacent[a].clone();
+                neighbors.or(adjacent[b]);
+                int significant = 0;
+                for (int v = neighbors.nextSetBit(0); v >= 0; v = neighbors
+                        .nextSetBit(v + 1)) {
+                    int d = degree[v];
+                    if (adjacent[a].get(v) && adjacent[b].get(v)) {
+                        d--;
+                    }
+                    if (d >= k) {
+                        significant++;
+                    }
+                }
+                if (significant < k) {
+                    combine(a, b);
+                    changed = true;
+                }
+            }
+        } while (changed);
+    }
+
+    /**
+     * Coalesces one register into another.
+     *
+     * @param a
+     *            the register coalesced into.
+     * @param b
+     *            the register coalesced.
+     */
+
+    private void combine(int a, int b) {
+        alias[b] = a;
+        nodes.clear(b);
+        for (int v = adjacent[b].nextSetBit(0); v >= 0; v = adjacent[b]
+                .nextSetBit(v + 1)) {
+            adjacent[v].clear(b);
+            degree[v]--;
+            addEdge(a, v);
+        }
+        adjacent[b].clear();
+        degree[b] = 0;
+        cost[a] += cost[b];
+    }
+
+    /**
+     * Finds the registers that always hold the same int constant: those
+     * whose every definition either loads that constant or moves from a
+     * register that holds it. A use of such a register, if it is spilled,
+     * loads the constant anew instead of loading it from the stack, and its
+     * definitions go away.
+     */
+
+    private void constants() {
+        constant = new Integer[cfg.registers.size()];
+        BitSet mixed = new BitSet();
+        ArrayList<NLIRInstruction> copies = new ArrayList<NLIRInstruction>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (NLIRInstruction lir : block.lir) {
+                if (lir.write == null || !isVirtual(lir.write)) {
+                    continue;
+                }
+                int v = lir.write.number();
+                if (lir instanceof NLIRIntConstant) {
+                    int value = ((NLIRIntConstant) lir).value;
+                    if (constant[v] == null) {
+                        constant[v] = value;
+                    } else if (constant[v].intValue() != value) {
+                        mixed.set(v);
+                    }
+                } else if (lir instanceof NLIRMove
+                        && isVirtual(lir.reads.get(0))) {
+                    copies.add(lir);
+                } else {
+                    mixed.set(v);
+                }
+            }
+        }
+
+        // A register moved from one holding a constant holds it too, as
+        // long as its other definitions agree
+        boolean changed;
+        do {
+            changed = false;
+            for (NLIRInstruction copy : copies) {
+                int from = copy.reads.get(0).number();
+                int to = copy.write.number();
+                if (from == to || mixed.get(to)) {
+                    continue;
+                }
+                if (mixed.get(from)) {
+                    mixed.set(to);
+                    changed = true;
+                } else if (constant[from] == null) {
+                    continue;
+                } else if (constant[to] == null) {
+                    constant[to] = constant[from];
+                    changed = true;
+                } else if (!constant[to].equals(constant[from])) {
+                    mixed.set(to);
+                    changed = true;
+                }
+            }
+        } while (changed);
+        for (int v = mixed.nextSetBit(0); v >= 0; v = mixed.nextSetBit(v + 1)) {
+            constant[v] = null;
+        }
+    }
+
+    /**
+     * Spills the specified registers, those that hold a constant by
+     * rematerializing it. The others each get a slot in the stack frame;
+     * one copied to or from another takes the other's slot if it interferes
+     * with none of the registers already there, so that the copy goes away
+     * instead of becoming a load and a store.
+     *
+     * @param spilled
+     *            the registers to be spilled.
+     */
+
+    private void spill(BitSet spilled) {
+        int n = cfg.registers.size();
+        int[] offsets = new int[n];
+        OffsetFrom[] offsetsFrom = new OffsetFrom[n];
+        Integer[] values = new Integer[n];
+        slot = new int[n];
+        for (int v = spilled.nextSetBit(0); v >= 0; v = spilled
+                .nextSetBit(v + 1)) {
+            values[v] = constant[v];
+            slot[v] = -1;
+        }
+        HashMap<Integer, BitSet> occupants = new HashMap<Integer, BitSet>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (NLIRInstruction lir : block.lir) {
+                if (!(lir instanceof NLIRMove) || !isVirtual(lir.write)
+                        || !isVirtual(lir.reads.get(0))) {
+                    continue;
+                }
+                int a = lir.reads.get(0).number();
+                int b = lir.write.number();
+                if (!spilled.get(a) || !spilled.get(b) || values[a] != null
+                        || values[b] != null) {
+                    continue;
+                }
+                if (slot[a] == -1 && slot[b] == -1) {
+                    slot[a] = cfg.offset++;
+                    occupants.put(slot[a], new BitSet(n));
+                    occupants.get(slot[a]).set(a);
+                }
+                int v = slot[a] == -1 ? a : b;
+                int offset = slot[a] == -1 ? slot[b] : slot[a];
+                if (slot[v] == -1
+                        && !interference[v].intersects(occupants.get(offset))) {
+                    slot[v] = offset;
+                    occupants.get(offset).set(v);
+                }
+            }
+        }
+        for (int v = spilled.nextSetBit(0); v >= 0; v = spilled
+                .nextSetBit(v + 1)) {
+            if (values[v] == null) {
+                if (slot[v] == -1) {
+                    slot[v] = cfg.offset++;
+                }
+                offsets[v] = slot[v];
+                offsetsFrom[v] = OffsetFrom.SP;
+            }
+        }
+        spill(offsets, offsetsFrom, values);
+    }
+
+    /**
+     * Takes the registers off the graph one at a time, each time one with
+     * fewer than k neighbors left if there is one, and otherwise the one
+     * cheapest to spill.
+     *
+     * @return the registers, in the order in which they were taken off.
+     */
+
+    private ArrayList<Integer> simplify() {
+        ArrayList<Integer> stack = new ArrayList<Integer>();
+        BitSet remaining = (BitSet) nodes.clone();
+        int[] left = degree.clone();
+        while (!remaining.isEmpty()) {
+            int node = -1;
+            for (int v = remaining.nextSetBit(0); v >= 0; v = remaining
+                    .nextSetBit(v + 1)) {
+                if (left[v] < k) {
+                    node = v;
+                    break;
+                }
+            }
+            if (node == -1) {
+                double cheapest = Double.MAX_VALUE;
+                for (int v = remaining.nextSetBit(0); v >= 0; v = remaining
+                        .nextSetBit(v + 1)) {
+                    if (!unspillable.get(v) && cost[v] / left[v] < cheapest) {
+                        cheapest = cost[v] / left[v];
+                        node = v;
+                    }
+                }
+                if (node == -1) {
+                    node = remaining.nextSetBit(0);
+                }
+            }
+            remaining.clear(node);
+            stack.add(node);
+            for (int v = adjacent[node].nextSetBit(0); v >= 0; v = adjacent[node]
+                    .nextSetBit(v + 1)) {
+                left[v]--;
+            }
+        }
+        return stack;
+    }
+
+    /**
+     * Colors the registers, in the reverse of the order in which they were
+     * taken off the graph, each with the lowest color none of its neighbors
+     * has.
+     *
+     * @param stack
+     *            the registers, in the order in which they were taken off.
+     * @return the registers that could not be colored.
+     */
+
+    private ArrayList<Integer> select(ArrayList<Integer> stack) {
+        ArrayList<Integer> spilled = new ArrayList<Integer>();
+        color = new int[cfg.registers.size()];
+        for (int i = 0; i < color.length; i++) {
+            color[i] = -1;
+        }
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            int node = stack.get(i);
+            BitSet used = new BitSet(k);
+            for (int v = adjacent[node].nextSetBit(0); v >= 0; v = adjacent[node]
+                    .nextSetBit(v + 1)) {
+                if (color[v] >= 0) {
+                    used.set(color[v]);
+                }
+            }
+            int c = used.nextClearBit(0);
+            if (c < k) {
+                color[node] = c;
+            } else {
+                spilled.add(node);
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * Rewrites the LIR for the specified registers to live in the stack: each
+     * use is preceded by a load into a new register, and each definition
+     * followed by a store from a new register. A use right after such a load
+     * or store takes the value from its register instead. A move into or out
+     * of such a register becomes a store or a load. The registers that hold
+     * a constant are not given a slot; the constant is loaded (with li)
+     * wherever they are used, and their definitions are dropped.
+     *
+     * @param offsets
+     *            the offset of the slot for each register to be spilled.
+     * @param offsetsFrom
+     *            what each offset is from; {@code null} for the registers
+     *            not to be spilled.
+     * @param values
+     *            the constant each register to be rematerialized holds;
+     *            {@code null} for the other registers.
+     */
+
+    private void spill(int[] offsets, OffsetFrom[] offsetsFrom,
+            Integer[] values) {
+        for (NBasicBlock block : cfg.basicBlocks) {
+            ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+
+            // The registers holding the spilled values that the previous
+            // instruction loaded or stored, by the registers spilled
+            HashMap<Integer, NVirtualRegister> held =
+                new HashMap<Integer, NVirtualRegister>();
+            for (NLIRInstruction lir : block.lir) {
+                int id = lir.id;
+                HashMap<Integer, NVirtualRegister> last = held;
+                held = new HashMap<Integer, NVirtualRegister>();
+                if (isRematerialized(lir.write, values)) {
+                    // Loads the constant, or moves it from a register that
+                    // holds it
+                    continue;
+                }
+                if (lir instanceof NLIRMove) {
+                    NRegister from = lir.reads.get(0);
+                    NRegister to = lir.write;
+                    boolean fromSpilled = isSpilled(from, offsetsFrom);
+                    boolean toSpilled = isSpilled(to, offsetsFrom);
+                    if (isRematerialized(from, values)) {
+                        NRegister target = toSpilled ? temporary(to) : to;
+                        newLir.add(new NLIRIntConstant(block, id,
+                                values[from.number()], target));
+                        if (toSpilled) {
+                            newLir.add(new NLIRStore(block, id,
+                                    offsets[to.number()], offsetsFrom[to
+                                            .number()], target));
+                        }
+                        continue;
+                    } else if (fromSpilled && toSpilled
+                            && offsets[from.number()] == offsets[to.number()]
+                            && offsetsFrom[from.number()] == offsetsFrom[to
+                                    .number()]) {
+                        continue;
+                    } else if (toSpilled && !fromSpilled) {
+                        newLir.add(new NLIRStore(block, id,
+                                offsets[to.number()], offsetsFrom[to.number()],
+                                from));
+                        continue;
+                    } else if (fromSpilled && !toSpilled) {
+                        newLir.add(new NLIRLoad(block, id,
+                                offsets[from.number()], offsetsFrom[from
+                                        .number()], to));
+                        continue;
+                    }
+                }
+
+                // The arguments of an invocation are in place (in a0, ...,
+                // a3, or on the stack) before it (see build)
+                if (!(lir instanceof NLIRInvoke)) {
+                    for (int i = 0; i < lir.reads.size(); i++) {
+                        NRegister reg = lir.reads.get(i);
+                        if (isRematerialized(reg, values)) {
+                            NVirtualRegister temp = last.get(reg.number());
+                            if (temp == null) {
+                                temp = temporary(reg);
+                                newLir.add(new NLIRIntConstant(block, id,
+                                        values[reg.number()], temp));
+                            }
+                            lir.reads.set(i, temp);
+                            held.put(reg.number(), temp);
+                        } else if (isSpilled(reg, offsetsFrom)) {
+                            NVirtualRegister temp = last.get(reg.number());
+                            if (temp == null) {
+                                temp = temporary(reg);
+                                newLir.add(new NLIRLoad(block, id, offsets[reg
+                                        .number()], offsetsFrom[reg.number()],
+                                        temp));
+                            }
+                            lir.reads.set(i, temp);
+                            held.put(reg.number(), temp);
+                        }
+                    }
+                }
+                newLir.add(lir);
+                if (isSpilled(lir.write, offsetsFrom)
+                        && !(lir instanceof NLIRLoadLocal)) {
+                    NRegister reg = lir.write;
+                    NVirtualRegister temp = temporary(reg);
+                    lir.write = temp;
+                    newLir.add(new NLIRStore(block, id,
+                            offsets[reg.number()], offsetsFrom[reg.number()],
+                            temp));
+                    held.put(reg.number(), temp);
+                }
+            }
+            block.lir = newLir;
+        }
+    }
+
+    /**
+     * Gives each register its color, as a physical register, and removes the
+     * moves made redundant by coalescing.
+     */
+
+    private void assign() {
+        boolean[] used = new boolean[k];
+        for (int v = 32; v < cfg.registers.size(); v++) {
+            if (cfg.registers.get(v) == null) {
+                continue;
+            }
+            int c = color[find(v)];
+            if (c >= 0) {
+                cfg.intervals.get(v).pRegister = regInfo[T0 + c];
+                used[c] = true;
+            }
+        }
+        for (int c = 0; c < k; c++) {
+            if (used[c]) {
+                cfg.pRegisters.add(regInfo[T0 + c]);
+            }
+        }
+        for (NBasicBlock block : cfg.basicBlocks) {
+            ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+            for (NLIRInstruction lir : block.lir) {
+                if (lir instanceof NLIRMove && isVirtual(lir.write)
+                        && isVirtual(lir.reads.get(0))
+                        && color[find(lir.write.number())] == color[find(lir.reads
+                                .get(0).number())]) {
+                    continue;
+                }
+                newLir.add(lir);
+            }
+            block.lir = newLir;
+        }
+    }
+
+    /**
+     * Returns a new (virtual) register, for a value loaded from or to be
+     * stored to the stack; it is not to be spilled.
+     *
+     * @param reg
+     *            the register whose value it holds.
+     * @return the new register.
+     */
+
+    private NVirtualRegister temporary(NRegister reg) {
+        NVirtualRegister vreg = (NVirtualRegister) reg;
+        NVirtualRegister temp = new NVirtualRegister(cfg.regId++,
+                vreg.sType(), vreg.lType());
+        cfg.registers.add(temp);
+        cfg.intervals.add(new NInterval(temp.number(), cfg));
+        cfg.maxIntervals = cfg.intervals.size();
+        unspillable.set(temp.number());
+        return temp;
+    }
+
+    /**
+     * Adds an edge between two registers to the interference graph.
+     *
+     * @param a
+     *            a register.
+     * @param b
+     *            another register.
+     */
+
+    private void addEdge(int a, int b) {
+        if (a != b && !adjacent[a].get(b)) {
+            adjacent[a].set(b);
+            adjacent[b].set(a);
+            degree[a]++;
+            degree[b]++;
+        }
+    }
+
+    /**
+     * Returns the register that the specified one is coalesced into.
+     *
+     * @param v
+     *            the register.
+     * @return the register it is coalesced into; itself if none.
+     */
+
+    private int find(int v) {
+        while (alias[v] != v) {
+            alias[v] = alias[alias[v]];
+            v = alias[v];
+        }
+        return v;
+    }
+
+    /**
+     * Returns whether the specified register is a virtual one.
+     *
+     * @param reg
+     *            the register.
+     * @return {@code true} or {@code false}.
+     */
+
+    private static boolean isVirtual(NRegister reg) {
+        return reg.number() >= 32;
+    }
+
+    /**
+     * Returns whether the specified register is to be spilled.
+     *
+     * @param reg
+     *            the register; may be {@code null}.
+     * @param offsetsFrom
+     *            what the offset of each register's slot is from;
+     *            {@code null} for the registers not to be spilled.
+     * @return {@code true} or {@code false}.
+     */
+
+    private static boolean isSpilled(NRegister reg, OffsetFrom[] offsetsFrom) {
+        return reg != null && isVirtual(reg) && reg.number() < offsetsFrom.length
+                && offsetsFrom[reg.number()] != null;
+    }
+
+    /**
+     * Returns whether the specified register is to be rematerialized.
+     *
+     * @param reg
+     *            the register; may be {@code null}.
+     * @param values
+     *            the constant each register to be rematerialized holds;
+     *            {@code null} for the other registers.
+     * @return {@code true} or {@code false}.
+     */
+
+    private static boolean isRematerialized(NRegister reg, Integer[] values) {
+        return reg != null && isVirtual(reg) && reg.number() < values.length
+                && values[reg.number()] != null;
     }
 
 }
@@ -118,6 +118,28 @@ abstract class NHIRInstruction {
         return null;
     }
 
+    /**
+     * Returns the HIR ids of the instructions whose values this instruction
+     * uses.
+     * 
+     * @return the HIR ids of the operands; none by default.
+     */
+
+    public ArrayList<Integer> operands() {
+        return new ArrayList<Integer>();
+    }
+
+    /**
+     * Returns whether this instruction does anything besides compute its
+     * value, so that it must be kept even if the value is not used.
+     * 
+     * @return {@code true} by default.
+     */
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
     /**
      * Returns the identifier of this instruction with the short type name
      * prefixed.
@@ -190,12 +212,31 @@ class NHIRArithmetic extends NHIRInstruction {
         }
         NLIRInstruction ins1 = block.cfg.hirMap.get(lhs).toLir();
         NLIRInstruction ins2 = block.cfg.hirMap.get(rhs).toLir();
-        lir = new NLIRArithmetic(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRArithmetic(block, block.cfg.lirId++, opcode,
                 ins1, ins2);
         block.lir.add(lir);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(lhs);
+        operands.add(rhs);
+        return operands;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -241,11 +282,19 @@ class NHIRIntConstant extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRIntConstant(block, NControlFlowGraph.lirId++, value);
+        lir = new NLIRIntConstant(block, block.cfg.lirId++, value);
         block.lir.add(lir);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -290,11 +339,19 @@ class NHIRStringConstant extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRStringConstant(block, NControlFlowGraph.lirId++, value);
+        lir = new NLIRStringConstant(block, block.cfg.lirId++, value);
         block.lir.add(lir);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -366,12 +423,23 @@ class NHIRConditionalJump extends NHIRInstruction {
         }
         NLIRInstruction ins1 = block.cfg.hirMap.get(lhs).toLir();
         NLIRInstruction ins2 = block.cfg.hirMap.get(rhs).toLir();
-        lir = new NLIRConditionalJump(block, NControlFlowGraph.lirId++, ins1,
+        lir = new NLIRConditionalJump(block, block.cfg.lirId++, ins1,
                 ins2, opcode, onTrueDestination, onFalseDestination);
         block.lir.add(lir);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(lhs);
+        operands.add(rhs);
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -418,7 +486,7 @@ class NHIRGoto extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRGoto(block, NControlFlowGraph.lirId++, destination);
+        lir = new NLIRGoto(block, block.cfg.lirId++, destination);
         block.lir.add(lir);
         return lir;
     }
@@ -516,12 +584,12 @@ class NHIRInvoke extends NHIRInstruction {
                 NPhysicalRegister from = NPhysicalRegister.regInfo[A0 + i];
                 block.cfg.registers.set(A0 + i, from);
                 NVirtualRegister to = new NVirtualRegister(
-                        NControlFlowGraph.regId++, sType, lType);
+                        block.cfg.regId++, sType, lType);
                 block.cfg.registers.add(to);
-                NLIRMove move1 = new NLIRMove(block, NControlFlowGraph.lirId++,
+                NLIRMove move1 = new NLIRMove(block, block.cfg.lirId++,
                         from, to);
                 block.lir.add(move1);
-                NLIRMove move2 = new NLIRMove(block, NControlFlowGraph.lirId++,
+                NLIRMove move2 = new NLIRMove(block, block.cfg.lirId++,
                         ins.write, from);
                 block.lir.add(move2);
                 arguments.add(NPhysicalRegister.regInfo[A0 + i]);
@@ -533,14 +601,14 @@ class NHIRInvoke extends NHIRInstruction {
                 tos.add(to);
             } else {
                 NLIRStore store = new NLIRStore(block,
-                        NControlFlowGraph.lirId++, i - 4, OffsetFrom.SP,
+                        block.cfg.lirId++, i - 4, OffsetFrom.SP,
                         ins.write);
                 block.lir.add(store);
                 arguments.add(ins.write);
             }
         }
 
-        lir = new NLIRInvoke(block, NControlFlowGraph.lirId++, opcode, target,
+        lir = new NLIRInvoke(block, block.cfg.lirId++, opcode, target,
                 name, arguments, sType, lType);
         block.lir.add(lir);
 
@@ -549,8 +617,8 @@ class NHIRInvoke extends NHIRInstruction {
         // register v0 into a virtual register.
         if (lir.write != null) {
             NVirtualRegister to = new NVirtualRegister(
-                    NControlFlowGraph.regId++, sType, lType);
-            NLIRMove move = new NLIRMove(block, NControlFlowGraph.lirId++,
+                    block.cfg.regId++, sType, lType);
+            NLIRMove move = new NLIRMove(block, block.cfg.lirId++,
                     NPhysicalRegister.regInfo[V0], to);
             block.cfg.registers.add(to);
             block.lir.add(move);
@@ -560,7 +628,7 @@ class NHIRInvoke extends NHIRInstruction {
         // Generate LIR move instructions to restore the a0, ..., a3
         // instructions.
         for (int i = 0; i < tos.size(); i++) {
-            NLIRMove move = new NLIRMove(block, NControlFlowGraph.lirId++, tos
+            NLIRMove move = new NLIRMove(block, block.cfg.lirId++, tos
                     .get(i), froms.get(i));
             block.lir.add(move);
         }
@@ -568,6 +636,14 @@ class NHIRInvoke extends NHIRInstruction {
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public ArrayList<Integer> operands() {
+        return new ArrayList<Integer>(arguments);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -628,17 +704,29 @@ class NHIRReturn extends NHIRInstruction {
         NLIRInstruction result = null;
         if (value != -1) {
             result = block.cfg.hirMap.get(value).toLir();
-            NLIRMove move = new NLIRMove(block, NControlFlowGraph.lirId++,
+            NLIRMove move = new NLIRMove(block, block.cfg.lirId++,
                     result.write, NPhysicalRegister.regInfo[V0]);
             block.lir.add(move);
             block.cfg.registers.set(V0, NPhysicalRegister.regInfo[V0]);
         }
-        lir = new NLIRReturn(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRReturn(block, block.cfg.lirId++, opcode,
                 (result == null) ? null : NPhysicalRegister.regInfo[V0]);
         block.lir.add(lir);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        if (value != -1) {
+            operands.add(value);
+        }
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -710,12 +798,22 @@ class NHIRPutField extends NHIRInstruction {
             return lir;
         }
         NLIRInstruction result = block.cfg.hirMap.get(value).toLir();
-        lir = new NLIRPutField(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRPutField(block, block.cfg.lirId++, opcode,
                 target, name, sType, lType, result);
         block.lir.add(lir);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(value);
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -777,7 +875,7 @@ class NHIRGetField extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRGetField(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRGetField(block, block.cfg.lirId++, opcode,
                 target, name, sType, lType);
         block.lir.add(lir);
         return lir;
@@ -837,7 +935,7 @@ class NHIRNewArray extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRNewArray(block, NControlFlowGraph.lirId++, opcode, dim,
+        lir = new NLIRNewArray(block, block.cfg.lirId++, opcode, dim,
                 sType, lType);
         block.lir.add(lir);
         return lir;
@@ -906,12 +1004,23 @@ class NHIRALoad extends NHIRInstruction {
         }
         NLIRInstruction arrayRef = block.cfg.hirMap.get(this.arrayRef).toLir();
         NLIRInstruction index = block.cfg.hirMap.get(this.index).toLir();
-        lir = new NLIRALoad(block, NControlFlowGraph.lirId++, opcode, arrayRef,
+        lir = new NLIRALoad(block, block.cfg.lirId++, opcode, arrayRef,
                 index, sType, lType);
         block.lir.add(lir);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(arrayRef);
+        operands.add(index);
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -983,12 +1092,24 @@ class NHIRAStore extends NHIRInstruction {
         NLIRInstruction arrayRef = block.cfg.hirMap.get(this.arrayRef).toLir();
         NLIRInstruction index = block.cfg.hirMap.get(this.index).toLir();
         NLIRInstruction value = block.cfg.hirMap.get(this.value).toLir();
-        lir = new NLIRAStore(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRAStore(block, block.cfg.lirId++, opcode,
                 arrayRef, index, value, sType, lType);
         block.lir.add(lir);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public ArrayList<Integer> operands() {
+        ArrayList<Integer> operands = new ArrayList<Integer>();
+        operands.add(arrayRef);
+        operands.add(index);
+        operands.add(value);
+        return operands;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1057,11 +1178,27 @@ class NHIRPhiFunction extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRPhiFunction(block, NControlFlowGraph.lirId++, sType,
+        lir = new NLIRPhiFunction(block, block.cfg.lirId++, sType,
                 lType);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public ArrayList<Integer> operands() {
+        return new ArrayList<Integer>(arguments);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1116,12 +1253,20 @@ class NHIRLoadLocal extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRLoadLocal(block, NControlFlowGraph.lirId++, local, sType,
+        lir = new NLIRLoadLocal(block, block.cfg.lirId++, local, sType,
                 lType);
         block.lir.add(lir);
         return lir;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean hasSideEffects() {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -154,38 +154,26 @@ class NInterval implements Comparable<NInterval> {
     }
 
     /**
-     * Returns the next use position of this interval after the first range 
-     * start of the foreign interval. If there is no such use, then the first 
-     * use position is returned to preserve data flow (in case of loops).
-     * 
-     * @param currInterval
-     *            the interval with starting point after which we want to find
-     *            the next usage of this one.
-     * 
-     * @return the next use position.
+     * Returns the next position, at or after the given one, at which this
+     * interval must be in a register: the position of a read, or the one just
+     * after a write (where the range of the value written starts).
      * 
+     * @param pos
+     *            the position.
+     * @return the next use position, or {@code Integer.MAX_VALUE} if there is
+     *         none.
      */
 
-    public int nextUsageOverlapping(NInterval currInterval) {
-        int psi = currInterval.firstNRangeStart();
-
-        if (usePositions.ceilingKey(psi) != null) {
-            return usePositions.ceilingKey(psi);
-        } else if (!usePositions.isEmpty()) {
-            return usePositions.firstKey();
-        } else {
-            return Integer.MAX_VALUE;
+    public int nextUsage(int pos) {
+        for (int use : usePositions.tailMap(pos - 1, true).keySet()) {
+            if (usePositions.get(use) == InstructionType.write) {
+                use++;
+            }
+            if (use >= pos) {
+                return use;
+            }
         }
-    }
-
-    /**
-     * Returns the first use position in this interval.
-     * 
-     * @return the first use position.
-     */
-
-    public int firstUsage() {
-        return usePositions.firstKey();
+        return Integer.MAX_VALUE;
     }
 
     /**
@@ -357,42 +345,26 @@ class NInterval implements Comparable<NInterval> {
     }
 
     /**
-     * Splits the current interval at the given index. Responsible for splitting
-     * a range if the index falls on one, moving remaining ranges over to child,
-     * and moving appropriate usePositions over to the child.
+     * Splits the current interval at the given index: the ranges, and parts
+     * of ranges, and the use positions at or after the index are moved to a
+     * new child interval.
      * 
      * @param idx
      *            the index at which this interval is to be split
      * 
-     * @return the child interval which is to be sorted onto unhandled. If there
-     *         was no child created in the case of a pruning this interval is
-     *         returned.
+     * @return the child interval, which is to be sorted onto unhandled.
      */
 
     public NInterval splitAt(int idx) {
-
         ArrayList<NRange> childsRanges = new ArrayList<NRange>();
-        if (this.isLiveAt(idx)) { // means split falls on a range
-            // Assumptions: if a range is LIVE on an index, then there
-            // exist usePositions at or before the index
-            // within this same range.
-            NRange liveRange = this.liveRangeAt(idx);
-            int splitTo = idx;
-            splitTo = usePositions.ceilingKey(idx);
-            childsRanges.add((liveRange.splitRange(splitTo, idx - 5)));
-        }
-
-        // The following two for loops take care of any untouched ranges
-        // which start after the split position and must be moved to the
-        // child interval.
-        for (NRange r : ranges) {
-            if (r.start > idx) {
+        for (NRange r : new ArrayList<NRange>(ranges)) {
+            if (r.start >= idx) {
                 childsRanges.add(r);
+                ranges.remove(r);
+            } else if (r.stop >= idx) {
+                childsRanges.add(r.splitRange(idx, idx - 1));
             }
         }
-        for (NRange r : childsRanges) {
-            ranges.remove(r);
-        }
 
         NInterval child = new NInterval(cfg.maxIntervals++, cfg, childsRanges,
                 this.getParent());
@@ -430,100 +402,22 @@ class NInterval implements Comparable<NInterval> {
      */
 
     public NInterval childAt(int idx) {
-        for (NInterval child : children) {
-            if (child.isLiveAt(idx)) {
-                return child;
-            }
+        // The value written by an instruction is live only after it, so the
+        // interval with the use is looked for first
+        if (usePositions.containsKey(idx)) {
+            return this;
         }
-        return this;
-    }
-
-    /**
-     * Returns the child of this interval which is live or ends before the given 
-     * basic block's end.
-     * 
-     * @param b
-     *            the basic block.
-     * @return the child of this interval which ends at or nearest (before) this
-     *         basic block's end (last lir instruction index).
-     */
-
-    public NInterval childAtOrEndingBefore(NBasicBlock b) {
-        int idx = b.getLastLIRInstId();
         for (NInterval child : children) {
-            if (child.isLiveAt(idx))
+            if (child.usePositions.containsKey(idx)) {
                 return child;
-        }
-        NInterval tmp = this;
-        int highestEndingAllowed = b.getFirstLIRInstId();
-        for (NInterval child : children) {
-            // get the child which ends before idx but also ends closest to idx
-            if (child.lastNRangeStop() < idx
-                    && child.lastNRangeStop() > highestEndingAllowed) {
-                tmp = child;
-                highestEndingAllowed = tmp.lastNRangeStop();
             }
         }
-        return tmp;
-    }
-
-    /**
-     * Returns the child of this interval which is live or starts after the given 
-     * basic block's start.
-     * 
-     * @param b
-     *            the basic block.
-     * @return the child of this interval which starts at or nearest (after)
-     *         this basic block's start (fist lir instruction index).
-     */
-
-    public NInterval childAtOrStartingAfter(NBasicBlock b) {
-        int idx = b.getFirstLIRInstId();
         for (NInterval child : children) {
-            if (child.isLiveAt(idx))
+            if (child.isLiveAt(idx)) {
                 return child;
-        }
-        NInterval tmp = this;
-        int lowestStartAllowed = b.getLastLIRInstId();// block's end
-        for (NInterval child : children) {
-            if (child.firstNRangeStart() > idx
-                    && child.firstNRangeStart() < lowestStartAllowed) {
-                tmp = child;
-                lowestStartAllowed = tmp.firstNRangeStart();
-            }
-        }
-        return tmp;
-    }
-
-    /**
-     * Returns the basic block in which this interval's start position falls.
-     * 
-     * @return basic block in which this interval's start position falls.
-     */
-
-    public int startsAtBlock() {
-        for (NBasicBlock b : this.cfg.basicBlocks) {
-            if (this.firstNRangeStart() >= b.getFirstLIRInstId()
-                    && this.firstNRangeStart() <= b.getLastLIRInstId())
-                return b.id;
-        }
-        return -1; // this will never happen
-    }
-
-    /**
-     * Returns the basic block in which this interval's end position falls.
-     * 
-     * @return the basic block number.
-     */
-
-    public int endsAtBlock() {
-        for (NBasicBlock b : this.cfg.basicBlocks) {
-            if (this.lastNRangeStop() >= b.getFirstLIRInstId()
-                    && this.lastNRangeStop() <= b.getLastLIRInstId()) {
-                return b.id;
             }
         }
-        return -1; // this will never happen
+        return this;
     }
 
     /**
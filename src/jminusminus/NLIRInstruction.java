@@ -27,7 +27,10 @@ abstract class NLIRInstruction {
         lirMnemonic[AALOAD] = "AALOAD";
         lirMnemonic[IALOAD] = "IALOAD";
         lirMnemonic[IASTORE] = "IASTORE";
+        lirMnemonic[IF_ICMPEQ] = "EQ";
         lirMnemonic[IF_ICMPNE] = "NE";
+        lirMnemonic[IF_ICMPLT] = "LT";
+        lirMnemonic[IF_ICMPGE] = "GE";
         lirMnemonic[IF_ICMPGT] = "GT";
         lirMnemonic[IF_ICMPLE] = "LE";
         lirMnemonic[GETSTATIC] = "GETSTATIC";
@@ -128,7 +131,7 @@ class NLIRArithmetic extends NLIRInstruction {
         this.opcode = opcode;
         reads.add(lhs.write);
         reads.add(rhs.write);
-        write = new NVirtualRegister(NControlFlowGraph.regId++, "I", "I");
+        write = new NVirtualRegister(block.cfg.regId++, "I", "I");
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -200,17 +203,41 @@ class NLIRIntConstant extends NLIRInstruction {
     public NLIRIntConstant(NBasicBlock block, int id, int value) {
         super(block, id);
         this.value = value;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, "I", "I");
+        write = new NVirtualRegister(block.cfg.regId++, "I", "I");
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
+    /**
+     * Construct an NLIRIntConstant instruction that loads the constant into
+     * the specified register; for rematerializing a spilled constant.
+     * 
+     * @param block
+     *            enclosing block.
+     * @param id
+     *            identifier of the instruction.
+     * @param value
+     *            the constant int value.
+     * @param write
+     *            register (virtual or physical) to load into.
+     */
+
+    public NLIRIntConstant(NBasicBlock block, int id, int value,
+            NRegister write) {
+        super(block, id);
+        this.value = value;
+        this.write = write;
+    }
+
     /**
      * {@inheritDoc}
      */
 
     public void allocatePhysicalRegisters() {
-        NInterval output = block.cfg.intervals.get(write.number()).childAt(id);
-        write = output.pRegister;
+        if (write.number() >= 32) {
+            NInterval output = block.cfg.intervals.get(write.number())
+                    .childAt(id);
+            write = output.pRegister;
+        }
     }
 
     /**
@@ -241,9 +268,6 @@ class NLIRStringConstant extends NLIRInstruction {
     /** The constant string value. */
     public String value;
 
-    /** */
-    private static int labelSuffix;
-
     /**
      * Construct an NHIRStringConstant instruction.
      * 
@@ -258,20 +282,9 @@ class NLIRStringConstant extends NLIRInstruction {
     public NLIRStringConstant(NBasicBlock block, int id, String value) {
         super(block, id);
         this.value = value;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, "L",
+        write = new NVirtualRegister(block.cfg.regId++, "L",
                 "Ljava/lang/String;");
         block.cfg.registers.add((NVirtualRegister) write);
-        labelSuffix = 0;
-    }
-
-    /**
-     * Create a label for LIR code.
-     * 
-     * @return the Label.
-     */
-
-    private String createLabel() {
-        return "Constant..String" + labelSuffix++;
     }
 
     /**
@@ -288,7 +301,7 @@ class NLIRStringConstant extends NLIRInstruction {
      */
 
     public void toSpim(PrintWriter out) {
-        String label = createLabel();
+        String label = block.cfg.emitter.createStringLabel();
         String s = label + ":\n";
         int size = 12 + value.length() + 1;
         int align = (size % 4 == 0) ? 0 : (size + 4) / 4 * 4 - size;
@@ -328,6 +341,12 @@ class NLIRConditionalJump extends NLIRInstruction {
     /** Block to jump to on false. */
     public NBasicBlock onFalseDestination;
 
+    /**
+     * Whether the block to jump to on false is the one emitted next, and so
+     * is fallen through to.
+     */
+    public boolean fallsThrough;
+
     /**
      * Construct an NLIRConditionalJump instruction.
      * 
@@ -358,6 +377,37 @@ class NLIRConditionalJump extends NLIRInstruction {
         this.onFalseDestination = onFalseDestination;
     }
 
+    /**
+     * Inverts this jump: it jumps on the negation of its test to the block it
+     * jumped to on false, and falls to the one it jumped to on true.
+     */
+
+    public void invert() {
+        switch (opcode) {
+        case IF_ICMPEQ:
+            opcode = IF_ICMPNE;
+            break;
+        case IF_ICMPNE:
+            opcode = IF_ICMPEQ;
+            break;
+        case IF_ICMPLT:
+            opcode = IF_ICMPGE;
+            break;
+        case IF_ICMPGE:
+            opcode = IF_ICMPLT;
+            break;
+        case IF_ICMPGT:
+            opcode = IF_ICMPLE;
+            break;
+        case IF_ICMPLE:
+            opcode = IF_ICMPGT;
+            break;
+        }
+        NBasicBlock destination = onTrueDestination;
+        onTrueDestination = onFalseDestination;
+        onFalseDestination = destination;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -377,6 +427,10 @@ class NLIRConditionalJump extends NLIRInstruction {
 
     public void toSpim(PrintWriter out) {
         switch (opcode) {
+        case IF_ICMPEQ:
+            out.printf("    beq %s,%s,%s\n", reads.get(0), reads.get(1),
+                    block.cfg.labelPrefix + "." + onTrueDestination.id);
+            break;
         case IF_ICMPNE:
             out.printf("    bne %s,%s,%s\n", reads.get(0), reads.get(1),
                     block.cfg.labelPrefix + "." + onTrueDestination.id);
@@ -389,9 +443,19 @@ class NLIRConditionalJump extends NLIRInstruction {
             out.printf("    ble %s,%s,%s\n", reads.get(0), reads.get(1),
                     block.cfg.labelPrefix + "." + onTrueDestination.id);
             break;
+        case IF_ICMPLT:
+            out.printf("    blt %s,%s,%s\n", reads.get(0), reads.get(1),
+                    block.cfg.labelPrefix + "." + onTrueDestination.id);
+            break;
+        case IF_ICMPGE:
+            out.printf("    bge %s,%s,%s\n", reads.get(0), reads.get(1),
+                    block.cfg.labelPrefix + "." + onTrueDestination.id);
+            break;
+        }
+        if (!fallsThrough) {
+            out.printf("    j %s\n", block.cfg.labelPrefix + "."
+                    + onFalseDestination.id);
         }
-        out.printf("    j %s\n", block.cfg.labelPrefix + "."
-                + onFalseDestination.id);
     }
 
     /**
@@ -412,7 +476,7 @@ class NLIRConditionalJump extends NLIRInstruction {
 class NLIRGoto extends NLIRInstruction {
 
     /** The destination block to unconditionally jump to. */
-    private NBasicBlock destination;
+    public NBasicBlock destination;
 
     /**
      * Construct an NLIRGoto instruction.
@@ -695,7 +759,7 @@ class NLIRGetField extends NLIRInstruction {
         this.opcode = opcode;
         this.target = target;
         this.name = name;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -752,7 +816,7 @@ class NLIRNewArray extends NLIRInstruction {
         super(block, id);
         this.opcode = opcode;
         this.dim = dim;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -809,7 +873,7 @@ class NLIRALoad extends NLIRInstruction {
         this.opcode = opcode;
         reads.add(arrayRef.write);
         reads.add(index.write);
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -912,7 +976,7 @@ class NLIRPhiFunction extends NLIRInstruction {
 
     public NLIRPhiFunction(NBasicBlock block, int id, String sType, String lType) {
         super(block, id);
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -978,10 +1042,13 @@ class NLIRMove extends NLIRInstruction {
     public void allocatePhysicalRegisters() {
         NInterval input = block.cfg.intervals.get(reads.get(0).number())
                 .childAt(id);
-        ;
         NInterval output = block.cfg.intervals.get(write.number()).childAt(id);
-        reads.set(0, input.pRegister);
-        write = output.pRegister;
+        if (input.vRegId >= 32) {
+            reads.set(0, input.pRegister);
+        }
+        if (output.vRegId >= 32) {
+            write = output.pRegister;
+        }
     }
 
     /**
@@ -1035,7 +1102,7 @@ class NLIRLoadLocal extends NLIRInstruction {
             block.cfg.registers.set(A0 + local, NPhysicalRegister.regInfo[A0
                     + local]);
         } else {
-            write = new NVirtualRegister(NControlFlowGraph.regId++, sType,
+            write = new NVirtualRegister(block.cfg.regId++, sType,
                     lType);
             block.cfg.registers.add((NVirtualRegister) write);
         }
@@ -1090,6 +1157,19 @@ class NLIRLoad extends NLIRInstruction {
         this.offset = offset;
         this.offsetFrom = offsetFrom;
         this.register = register;
+        write = register;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void allocatePhysicalRegisters() {
+        if (write.number() >= 32) {
+            write = block.cfg.intervals.get(write.number()).childAt(id)
+                    .pRegister;
+        }
+        register = write;
     }
 
     /**
@@ -3,51 +3,83 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
 
 import static jminusminus.NPhysicalRegister.*;
 
 /**
- * Implements the Linear Scan register allocation algorithm.
+ * Implements the Linear Scan register allocation algorithm, with interval
+ * splitting after Wimmer and Mossenbock (Optimized Interval Splitting in a
+ * Linear Scan Register Allocator, 2005).
+ * <p>
+ * The intervals are taken off a priority queue in the order of their starts.
+ * An interval for which a register is free for only part of its lifetime is
+ * split, and the rest goes back on the queue. When no register is free, the
+ * interval whose next use is the farthest away (the current one, or those
+ * holding the register) is spilled up to that use, where it is split again,
+ * so that an interval is in a register wherever it is used. Where there is a
+ * choice, an interval is split at the start of a block of lower loop depth,
+ * so that it is loaded outside of loops where possible.
+ * <p>
+ * The value an instruction writes is live from the position just after it
+ * (its id plus one), so it may be written into the register of an operand
+ * that dies there.
+ * <p>
+ * Once the registers are allocated, the data flow is resolved: where a value
+ * is in different places on either side of a split, or of an edge between
+ * blocks, moves, loads, and stores are inserted. Those at one place form a
+ * parallel move, which is sequenced so that no register is overwritten before
+ * it is read. A value spilled anywhere is stored to its stack slot either
+ * right after each of its definitions or wherever it goes from a register to
+ * the stack, whichever is run less often by loop depth.
  */
 
 public class NLinearRegisterAllocator extends NRegisterAllocator {
     /**
      * Interval queues for tracking the allocation process.
      */
-    private ArrayList<NInterval> unhandled;
+    private PriorityQueue<NInterval> unhandled;
     private ArrayList<NInterval> active;
     private ArrayList<NInterval> inactive;
 
     /**
-     * Used to keep track of which intervals get assigned to what physical
-     * register. Needed only in allocateBlockedRegFor.
+     * For each physical register, the position up to which it is free, and
+     * the position at which it is next used.
      */
-    private ArrayList<ArrayList<NInterval>> regIntervals;
-    private int[] freePos, usePos, blockPos;
+    private int[] freePos, usePos;
+
+    /** The LIR instructions of the cfg, in order; that with id i at i / 5. */
+    private ArrayList<NLIRInstruction> lir;
+
+    /** The block of each of those instructions. */
+    private ArrayList<NBasicBlock> blocks;
+
+    /** Stack offset of the slot for breaking cycles of moves; -1 if none. */
+    private int scratch;
 
     /**
      * Constructs a linear register allocator for the given control flow graph.
-     * 
+     *
      * @param cfg
      *            the control flow graph instance.
+     * @param maxCount
+     *            maximum number of physical registers used for allocation.
      */
 
-    public NLinearRegisterAllocator(NControlFlowGraph cfg) {
-        super(cfg);
-        unhandled = new ArrayList<NInterval>();
+    public NLinearRegisterAllocator(NControlFlowGraph cfg, int maxCount) {
+        super(cfg, maxCount);
+        unhandled = new PriorityQueue<NInterval>();
         active    = new ArrayList<NInterval>();
         inactive  = new ArrayList<NInterval>();
 
         // Instantiate usePositions and freePos to be the size of
         // the physical registers used.
-        freePos  = new int[MAX_COUNT];
-        usePos   = new int[MAX_COUNT];
-        blockPos = new int[MAX_COUNT];
-        
-        regIntervals = new ArrayList<ArrayList<NInterval>>();
-        for (int i = 0; i < MAX_COUNT; i++) {
-            regIntervals.add(new ArrayList<NInterval>());
-        }
+        freePos  = new int[maxCount];
+        usePos   = new int[maxCount];
+
+        scratch = -1;
     }
 
     /**
@@ -58,14 +90,32 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
     public void allocation() {
         // Build the intervals for the control flow graph.
         this.buildIntervals(); // The correct intervals are now in intervals
+        this.preprocess();
+        cfg.computeLoopDepths();
+        lir = new ArrayList<NLIRInstruction>();
+        blocks = new ArrayList<NBasicBlock>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (NLIRInstruction ins : block.lir) {
+                lir.add(ins);
+                blocks.add(block);
+            }
+        }
+        this.adjustIntervals();
 
         // Add all intervals corresponding to vregs to unhandled list
         for (int i = 32; i < cfg.intervals.size(); i++) {
-            this.addSortedToUnhandled(cfg.intervals.get(i));
+            NInterval interval = cfg.intervals.get(i);
+            if (cfg.registers.get(i) == null || interval.ranges.isEmpty()) {
+                continue;
+            }
+            if (interval.spill) {
+                // A formal fourth or above, where the caller put it
+                this.spillUntilUsed(interval);
+            } else {
+                unhandled.add(interval);
+            }
         }
 
-        this.preprocess();
-
         NInterval currInterval; // the current interval
         int psi;                // the current interval's first start position
         ArrayList<NInterval> tmp;
@@ -73,7 +123,7 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
         // Linear allocation begins; repeat so long as there are
         //   additional virtual registers to map to physical registers.
         while (!unhandled.isEmpty()) {
-            currInterval = unhandled.remove(0);
+            currInterval = unhandled.poll();
             psi = currInterval.firstNRangeStart();
             tmp = new ArrayList<NInterval>();
             for (int i = 0; i < active.size(); i++) {
@@ -102,96 +152,158 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
             if (!this.foundFreeRegFor(currInterval)) {    // check
                 this.allocateBlockedRegFor(currInterval); // never fails
             }
-            active.add(currInterval);
+            if (currInterval.pRegister != null) {
+                active.add(currInterval);
+            }
         }
         this.resolveDataFlow();
+
+        // The registers to be saved and restored
+        boolean[] used = new boolean[maxCount];
+        for (int i = 32; i < cfg.intervals.size(); i++) {
+            NInterval interval = cfg.intervals.get(i);
+            if (interval.pRegister != null) {
+                used[interval.pRegister.number - T0] = true;
+            }
+            for (NInterval child : interval.children) {
+                if (child.pRegister != null) {
+                    used[child.pRegister.number - T0] = true;
+                }
+            }
+            if (interval.spill) {
+                interval.spill(); // gives the children its slot
+            }
+        }
+        for (int i = 0; i < maxCount; i++) {
+            if (used[i]) {
+                cfg.pRegisters.add(regInfo[T0 + i]);
+            }
+        }
     }
 
     /**
-     * Adds a given interval onto the unhandled list, maintaining an order based
-     * on the first range start of the {@code NInterval}s.
-     * 
-     * @param newInterval
-     *            the NInterval to sort onto unhandled.
+     * Adjusts the intervals built for the cfg to the positions used here: the
+     * value written by an instruction is live from just after it, and a value
+     * live out of a block is live just past its last instruction. Also, the
+     * formals fourth and above (where the caller put them) and the arguments
+     * fourth and above (stored before an invocation) need no register where
+     * they are defined and passed.
      */
 
-    private void addSortedToUnhandled(NInterval newInterval) {
-        if (unhandled.isEmpty()) {
-            unhandled.add(newInterval);
-        } else {
-            int i = 0;
-            while (i < unhandled.size()
-                    && unhandled.get(i).firstNRangeStart() <= newInterval
-                            .firstNRangeStart()) {
-                i++;
+    private void adjustIntervals() {
+        for (NBasicBlock block : cfg.basicBlocks) {
+            if (block.lir.isEmpty()) {
+                continue;
+            }
+            int last = block.getLastLIRInstId();
+            for (int v = block.liveOut.nextSetBit(32); v >= 0; v = block
+                    .liveOut.nextSetBit(v + 1)) {
+                for (NRange r : cfg.intervals.get(v).ranges) {
+                    if (r.stop == last) {
+                        r.stop = last + 1;
+                    }
+                }
+            }
+        }
+        for (int i = 32; i < cfg.intervals.size(); i++) {
+            NInterval interval = cfg.intervals.get(i);
+            for (int use : interval.usePositions.keySet()) {
+                if (interval.usePositions.get(use) != InstructionType.write) {
+                    continue;
+                }
+                if (interval.ranges.isEmpty()) {
+                    // Written, but never read
+                    interval.ranges.add(new NRange(use, use));
+                }
+                for (NRange r : interval.ranges) {
+                    if (r.start == use) {
+                        r.start = use + 1;
+                        r.stop = Math.max(r.stop, r.start);
+                    }
+                }
+            }
+        }
+        for (NLIRInstruction ins : lir) {
+            if (ins instanceof NLIRLoadLocal) {
+                cfg.intervals.get(ins.write.number()).usePositions
+                        .remove(ins.id);
+            } else if (ins instanceof NLIRInvoke) {
+                for (NRegister reg : ins.reads) {
+                    if (reg.number() >= 32) {
+                        cfg.intervals.get(reg.number()).usePositions
+                                .remove(ins.id);
+                    }
+                }
             }
-            unhandled.add(i, newInterval);
         }
     }
 
     /**
      * Allocates a free physical register for the current interval. Inspects
-     * active and inactive sets. Cannot split or alter the assigned physical
-     * register of any other interval but current.
-     * 
+     * active and inactive sets. If the register is free for only part of the
+     * interval, the interval is split and the rest goes back on unhandled.
+     * Cannot split or alter the assigned physical register of any other
+     * interval but current.
+     *
      * @param currInterval
      *            the current interval for which a physical register is sought.
-     * @return {@code true} if a free physical register was found and allocated 
+     * @return {@code true} if a free physical register was found and allocated
      *         for {@code currInterval}; {@code false} otherwise.
      */
 
     private boolean foundFreeRegFor(NInterval currInterval) {
         this.initFreePositions(); // must be reset every iteration
         for (NInterval activeInterval : active) {
-            if (activeInterval.pRegister != null)
-                freePos[activeInterval.pRegister.number - T0] = 0;
+            freePos[activeInterval.pRegister.number - T0] = 0;
         }
         for (NInterval inactiveInterval : inactive) {
-            if (inactiveInterval.nextIntersection(currInterval) >= 0) {
+            int intersection = inactiveInterval.nextIntersection(currInterval);
+            if (intersection >= 0) {
                 freePos[inactiveInterval.pRegister.number - T0] = Math.min(
                               freePos[inactiveInterval.pRegister.number - T0],
-                              inactiveInterval.nextIntersection(currInterval));
+                              intersection);
             }
         }
 
         // The physical registers available are in NPhysicalRegister.regInfo
-        // static array. This is indexed from 0 to NPhysicalRegister.MAX_COUNT
+        // static array. This is indexed from 0 to maxCount
         int reg = this.getBestFreeReg();
-        if (freePos[reg] == 0) {
-            return false;
-        } else if (freePos[reg] > currInterval.lastNRangeStop()) {
+        int psi = currInterval.firstNRangeStart();
+        if (freePos[reg] > currInterval.lastNRangeStop()) {
             currInterval.pRegister = regInfo[reg + T0];
-            cfg.pRegisters.add(regInfo[reg + T0]);
-            regIntervals.get(reg).add(currInterval);
         } else {
-            this.addSortedToUnhandled(currInterval.splitAt(freePos[reg]));
-            currInterval.spill();
+            // Split before the register is next used (at an instruction)
+            int max = freePos[reg] - freePos[reg] % 5;
+            if (max <= psi) {
+                return false;
+            }
             currInterval.pRegister = regInfo[reg + T0];
-            regIntervals.get(reg).add(currInterval);
+            unhandled.add(currInterval.splitAt(this.optimalSplitPosition(psi,
+                    max)));
         }
         return true;
     }
 
     /**
-     * Sets all free positions of physical registers available for allocation 
+     * Sets all free positions of physical registers available for allocation
      * to a really high number.
      */
 
     private void initFreePositions() {
-        for (int i = 0; i < MAX_COUNT; i++) {
+        for (int i = 0; i < maxCount; i++) {
             freePos[i] = Integer.MAX_VALUE;
         }
     }
 
     /**
      * The best free physical register number.
-     * 
+     *
      * @return the register number.
      */
 
     private int getBestFreeReg() {
         int freeRegNumber = 0;
-        for (int i = 0; i < MAX_COUNT; i++) {
+        for (int i = 0; i < maxCount; i++) {
             if (freePos[i] > freePos[freeRegNumber])
                 freeRegNumber = i;
         }
@@ -199,73 +311,79 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
     }
 
     /**
-     * Allocates a register based on spilling an interval.
-     * 
+     * Allocates a register based on spilling an interval: the current one if
+     * every register is used before it is, and otherwise those that hold the
+     * register used the latest.
+     *
      * @param currInterval
      *            the current interval.
      */
 
     private void allocateBlockedRegFor(NInterval currInterval) {
-        this.initUseAndBlockPositions(); // must be reset every iteration
+        int psi = currInterval.firstNRangeStart();
+        this.initUsePositions(); // must be reset every iteration
         for (NInterval activeInterval : active) {
             usePos[activeInterval.pRegister.number - T0] = Math.min(
-                    usePos[activeInterval.pRegister.number - T0], 
-                    activeInterval.nextUsageOverlapping(currInterval));
+                    usePos[activeInterval.pRegister.number - T0],
+                    activeInterval.nextUsage(psi));
         }
         for (NInterval inactiveInterval : inactive) {
             if (inactiveInterval.nextIntersection(currInterval) >= 0) {
                 usePos[inactiveInterval.pRegister.number - T0] = Math.min(
-                        usePos[inactiveInterval.pRegister.number - T0], 
-                        inactiveInterval.nextUsageOverlapping(currInterval));
+                        usePos[inactiveInterval.pRegister.number - T0],
+                        inactiveInterval.nextUsage(psi));
             }
         }
         int reg = this.getBestBlockedReg(); // This is just an index in the
                                             //   usePos array
-        if (usePos[reg] < currInterval.firstUsage()) {
+        int firstUsage = currInterval.nextUsage(psi);
+        if (usePos[reg] < firstUsage && firstUsage - firstUsage % 5 > psi) {
             // best to spill current - no reg assignment.
-            this.addSortedToUnhandled(currInterval.splitAt(currInterval
-                                                           .firstUsage() - 5));
-            currInterval.spill();
-            NInterval splitChild = currInterval.splitAt(currInterval
-                                                        .firstNRangeStart());
-            this.addSortedToUnhandled(splitChild);
-            currInterval.spill();
-        } else {
-            // spilling frees reg for all of current
-            currInterval.pRegister = regInfo[reg + T0];
-            for (NInterval i : regIntervals.get(reg)) {
-                if (currInterval.nextIntersection(i) >= 0) {
-                    NInterval splitChild = i.splitAt(currInterval
-                                                     .firstNRangeStart());
-                    this.addSortedToUnhandled(splitChild);
-                    i.spill();
-                }
+            this.spillUntilUsed(currInterval);
+            return;
+        }
+        currInterval.pRegister = regInfo[reg + T0];
+        if (usePos[reg] <= psi) {
+            // Every register is used here: with fewer registers than an
+            // instruction has operands, there is no correct allocation
+            return;
+        }
+
+        // spilling frees reg for all of current
+        for (NInterval i : new ArrayList<NInterval>(active)) {
+            if (i.pRegister == currInterval.pRegister) {
+                active.remove(i);
+                this.splitAndSpill(i, psi);
+            }
+        }
+        for (NInterval i : new ArrayList<NInterval>(inactive)) {
+            if (i.pRegister == currInterval.pRegister
+                    && i.nextIntersection(currInterval) >= 0) {
+                inactive.remove(i);
+                this.splitAndSpill(i, psi);
             }
-            regIntervals.get(reg).add(currInterval);
         }
     }
 
     /**
-     * Initialize use and block positions before processing each virtual
-     * register.
+     * Initialize use positions before processing each virtual register.
      */
 
-    private void initUseAndBlockPositions() {
-        for (int i = 0; i < MAX_COUNT; i++) {
-            usePos[i]   = Integer.MAX_VALUE;
-            blockPos[i] = Integer.MAX_VALUE;
+    private void initUsePositions() {
+        for (int i = 0; i < maxCount; i++) {
+            usePos[i] = Integer.MAX_VALUE;
         }
     }
 
     /**
      * Get the best blocked physical register number.
-     * 
+     *
      * @return the register number.
      */
 
     private int getBestBlockedReg() {
         int usableRegNumber = 0;
-        for (int i = 0; i < MAX_COUNT; i++) {
+        for (int i = 0; i < maxCount; i++) {
             if (usePos[i] > usePos[usableRegNumber])
                 usableRegNumber = i;
         }
@@ -273,133 +391,432 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
     }
 
     /**
-     * Resolve the data flow after allocating registers, inserting additional
-     * saves and restores for registers to maintain consistency.
+     * Takes the register of an interval away from a given position on: the
+     * interval is split there (unless it starts there), and the part from the
+     * position on is spilled until it is next used.
+     *
+     * @param interval
+     *            the interval.
+     * @param position
+     *            the position.
+     */
+
+    private void splitAndSpill(NInterval interval, int position) {
+        if (interval.firstNRangeStart() < position) {
+            interval = interval.splitAt(position);
+        }
+        interval.pRegister = null;
+        this.spillUntilUsed(interval);
+    }
+
+    /**
+     * Spills an interval that has no register from its start until it is
+     * next used, where it is split, and the rest goes back on unhandled. If
+     * it is used right away, it goes back on unhandled whole.
+     *
+     * @param interval
+     *            the interval.
+     */
+
+    private void spillUntilUsed(NInterval interval) {
+        int start = interval.firstNRangeStart();
+        int use = interval.nextUsage(start);
+        if (use != Integer.MAX_VALUE && use - use % 5 <= start) {
+            unhandled.add(interval);
+            return;
+        }
+        NInterval parent = interval.isChild() ? interval.parent : interval;
+        parent.spill();
+        interval.spill = true;
+        interval.offset = parent.offset;
+        interval.offsetFrom = parent.offsetFrom;
+        if (use != Integer.MAX_VALUE) {
+            unhandled.add(interval.splitAt(this.optimalSplitPosition(start,
+                    use - use % 5)));
+        }
+    }
+
+    /**
+     * Returns the position, after one and at or before another (an
+     * instruction id), at which to split an interval: the latter, unless a
+     * block in between (starting after the first position) is of a lower
+     * loop depth than that of the latter, in which case the start of the
+     * block of the lowest loop depth (the last such) is returned.
+     *
+     * @param min
+     *            the position the split must be after.
+     * @param max
+     *            the position the split must be at or before.
+     * @return the split position.
+     */
+
+    private int optimalSplitPosition(int min, int max) {
+        NBasicBlock minBlock = blocks.get(min / 5);
+        NBasicBlock maxBlock = blocks.get(max / 5);
+        int splitPos = max;
+        int depth = maxBlock.loopDepth;
+        for (int i = cfg.basicBlocks.indexOf(maxBlock); cfg.basicBlocks.get(i)
+                != minBlock; i--) {
+            NBasicBlock block = cfg.basicBlocks.get(i);
+            if (!block.lir.isEmpty() && block.loopDepth < depth) {
+                depth = block.loopDepth;
+                splitPos = block.getFirstLIRInstId();
+            }
+        }
+        return splitPos;
+    }
+
+    /**
+     * Resolve the data flow after allocating registers, inserting moves,
+     * loads, and stores where a value is in different places on either side
+     * of a split within a block, or of an edge between blocks.
      */
 
     private void resolveDataFlow() {
-        // Local data flow construction.
-        // Devised an alternate way of doing this, perhaps with more
-        // clarity, will implement later, but has same effect.
-        for (NInterval i : cfg.intervals) {
-            if (cfg.registers.get(i.vRegId) != null) {
-                if (i.spill) {
-                    for (int c = 0; c < i.children.size(); c++) {
-                        if (i.endsAtBlock() == i.children.get(c)
-                                                         .startsAtBlock()) {
-                            if (c == 0) {
-                                addStoreInstruction(i, i.lastNRangeStop());
-                                addLoadInstruction(i.children.get(c),
-                                                   i.children.get(c)
-                                                    .firstNRangeStart());
-                            } else {
-                                addStoreInstruction(i.children.get(c - 1),
-                                                    i.children.get(c - 1)
-                                                     .lastNRangeStop());
-                                
-                                addLoadInstruction(i.children.get(c),
-                                                   i.children.get(c)
-                                                    .firstNRangeStart());
-                            }
-                        }
-                    }
+        ArrayList<Transition> transitions = new ArrayList<Transition>();
+
+        // Local data flow: the splits within blocks.
+        for (int v = 32; v < cfg.intervals.size(); v++) {
+            NInterval parent = cfg.intervals.get(v);
+            for (NInterval child : parent.children) {
+                int pos = child.firstNRangeStart();
+                NLIRInstruction ins = lir.get(pos / 5);
+                if (pos % 5 == 0 && ins == blocks.get(pos / 5).lir.get(0)) {
+                    continue; // resolved with the edges into the block
+                }
+                NInterval from = this.siblingAt(parent, pos - 1);
+                if (from != null && from.pRegister != child.pRegister) {
+                    Transition t = new Transition(parent, from, child);
+                    t.before = ins;
+                    t.midway = pos % 5 != 0;
+                    t.block = blocks.get(pos / 5);
+                    transitions.add(t);
                 }
             }
         }
 
-        // resolution of global data flow
-        for (NBasicBlock b : cfg.basicBlocks) {
+        // Global data flow: the edges.
+        for (NBasicBlock b : new ArrayList<NBasicBlock>(cfg.basicBlocks)) {
+            if (b.lir.isEmpty()) {
+                continue;
+            }
+            boolean atEnd = b.successors.size() == 1
+                    && !(b.lir.get(b.lir.size() - 1)
+                            instanceof NLIRConditionalJump);
             for (NBasicBlock s : b.successors) {
-                for (int i = s.liveIn.nextSetBit(0); i >= 0; i = s.liveIn
-                        .nextSetBit(i + 1)) {
-                    NInterval parent = cfg.intervals.get(i);
-                    NInterval from   = parent.childAtOrEndingBefore(b);
-                    NInterval to     = parent.childAtOrStartingAfter(s);
-                    if (!from.equals(to)) {
-                        addStoreInstruction(from, from.usePositions
-                                                      .floorKey(
-                                                        b.getLastLIRInstId())
-                                                               );
-                        to = getSegmentWithNearestUse(to, s.getFirstLIRInstId());
-                        if (to.usePositions.ceilingEntry(s.getFirstLIRInstId())
-                                .getValue() == InstructionType.read)
-                            // no use loading prior to a write.
-                            addLoadInstruction(to, to.usePositions
-                                                     .ceilingKey(
-                                                      s.getFirstLIRInstId())
-                                                                );
+                // Values go through blocks with no code unchanged
+                NBasicBlock target = s;
+                while (target.lir.isEmpty() && target.successors.size() == 1) {
+                    target = target.successors.get(0);
+                }
+                if (target.lir.isEmpty()) {
+                    continue;
+                }
+                for (int v = target.liveIn.nextSetBit(32); v >= 0; v = target
+                        .liveIn.nextSetBit(v + 1)) {
+                    NInterval parent = cfg.intervals.get(v);
+                    NInterval from = this.siblingAt(parent,
+                            b.getLastLIRInstId() + 1);
+                    NInterval to = this.siblingAt(parent,
+                            target.getFirstLIRInstId());
+                    if (from == null || to == null
+                            || from.pRegister == to.pRegister) {
+                        continue;
+                    }
+                    Transition t = new Transition(parent, from, to);
+                    if (atEnd) {
+                        t.block = b;
+                    } else if (s.predecessors.size() == 1) {
+                        t.block = s;
+                        t.before = s.lir.isEmpty() ? null : s.lir.get(0);
+                    } else {
+                        t.block = b;
+                        t.successor = s;
                     }
+                    transitions.add(t);
                 }
             }
         }
+
+        // A value spilled anywhere is stored after its definitions, or
+        // where it goes from a register to the stack, whichever is cheaper.
+        HashMap<NInterval, Double> splitCosts = new HashMap<NInterval, Double>();
+        for (Transition t : transitions) {
+            if (t.to.pRegister == null) {
+                Double cost = splitCosts.get(t.parent);
+                splitCosts.put(t.parent, (cost == null ? 0 : cost)
+                        + Math.pow(10, t.block.loopDepth));
+            }
+        }
+        HashMap<NLIRInstruction, ArrayList<NLIRInstruction>> after =
+            new HashMap<NLIRInstruction, ArrayList<NLIRInstruction>>();
+        HashSet<NInterval> storedAtSplits = new HashSet<NInterval>();
+        for (int v = 32; v < cfg.intervals.size(); v++) {
+            NInterval parent = cfg.intervals.get(v);
+            if (!parent.spill) {
+                continue;
+            }
+            ArrayList<NInterval> siblings = new ArrayList<NInterval>();
+            siblings.add(parent);
+            siblings.addAll(parent.children);
+            double defCost = 0;
+            ArrayList<NLIRInstruction> stores = new ArrayList<NLIRInstruction>();
+            for (NInterval sibling : siblings) {
+                for (int use : sibling.usePositions.keySet()) {
+                    if (sibling.usePositions.get(use) == InstructionType.write) {
+                        defCost += Math.pow(10, blocks.get(use / 5).loopDepth);
+                        stores.add(new NLIRStore(blocks.get(use / 5), use + 1,
+                                parent.offset, parent.offsetFrom,
+                                sibling.pRegister));
+                    }
+                }
+            }
+            Double splitCost = splitCosts.get(parent);
+            if (splitCost != null && splitCost < defCost) {
+                storedAtSplits.add(parent);
+                continue;
+            }
+            for (NLIRInstruction store : stores) {
+                NLIRInstruction ins = lir.get(store.id / 5);
+                if (after.get(ins) == null) {
+                    after.put(ins, new ArrayList<NLIRInstruction>());
+                }
+                after.get(ins).add(store);
+            }
+        }
+
+        // The moves, loads, and stores at each place.
+        HashMap<NLIRInstruction, ArrayList<NLIRInstruction>> before =
+            new HashMap<NLIRInstruction, ArrayList<NLIRInstruction>>();
+        HashMap<NLIRInstruction, ArrayList<NLIRInstruction>> midway =
+            new HashMap<NLIRInstruction, ArrayList<NLIRInstruction>>();
+        HashMap<NBasicBlock, ArrayList<NLIRInstruction>> atEnd =
+            new HashMap<NBasicBlock, ArrayList<NLIRInstruction>>();
+        HashMap<String, NBasicBlock> edgeBlocks = new HashMap<String, NBasicBlock>();
+        for (Transition t : transitions) {
+            NBasicBlock block = t.block;
+            ArrayList<NLIRInstruction> moves;
+            int id;
+            if (t.successor != null) {
+                String edge = t.block.id + " " + t.successor.id;
+                block = edgeBlocks.get(edge);
+                if (block == null) {
+                    block = cfg.splitEdge(t.block, t.successor);
+                    edgeBlocks.put(edge, block);
+                    atEnd.put(block, new ArrayList<NLIRInstruction>());
+                }
+                moves = atEnd.get(block);
+                id = t.block.getLastLIRInstId() + 1;
+            } else if (t.before != null) {
+                HashMap<NLIRInstruction, ArrayList<NLIRInstruction>> at =
+                    t.midway ? midway : before;
+                if (at.get(t.before) == null) {
+                    at.put(t.before, new ArrayList<NLIRInstruction>());
+                }
+                moves = at.get(t.before);
+                id = t.before.id - 1;
+            } else {
+                if (atEnd.get(block) == null) {
+                    atEnd.put(block, new ArrayList<NLIRInstruction>());
+                }
+                moves = atEnd.get(block);
+                id = block.getLastLIRInstId() + 1;
+            }
+            if (t.from.pRegister == null) {
+                moves.add(new NLIRLoad(block, id, t.parent.offset,
+                        t.parent.offsetFrom, t.to.pRegister));
+            } else if (t.to.pRegister != null) {
+                moves.add(new NLIRMove(block, id, t.from.pRegister,
+                        t.to.pRegister));
+            } else if (storedAtSplits.contains(t.parent)) {
+                moves.add(new NLIRStore(block, id, t.parent.offset,
+                        t.parent.offsetFrom, t.from.pRegister));
+            }
+        }
+
+        for (NBasicBlock block : cfg.basicBlocks) {
+            ArrayList<NLIRInstruction> newLir = new ArrayList<NLIRInstruction>();
+            ArrayList<NLIRInstruction> end = atEnd.get(block);
+            if (edgeBlocks.containsValue(block)) {
+                newLir.addAll(this.sequence(end, block));
+                newLir.addAll(block.lir);
+                block.lir = newLir;
+                continue;
+            }
+            for (NLIRInstruction ins : block.lir) {
+                if (before.get(ins) != null) {
+                    newLir.addAll(this.sequence(before.get(ins), block));
+                }
+                if (midway.get(ins) != null) {
+                    newLir.addAll(this.sequence(midway.get(ins), block));
+                }
+                if (ins instanceof NLIRGoto && end != null) {
+                    newLir.addAll(this.sequence(end, block));
+                    end = null;
+                }
+                newLir.add(ins);
+                if (after.get(ins) != null) {
+                    newLir.addAll(after.get(ins));
+                }
+            }
+            if (end != null) {
+                newLir.addAll(this.sequence(end, block));
+            }
+            block.lir = newLir;
+        }
+    }
+
+    /**
+     * Returns the interval (the parent, or one of its children) that is live
+     * at a given position.
+     *
+     * @param parent
+     *            the parent interval.
+     * @param position
+     *            the position.
+     * @return the interval live at the position, or {@code null} if none is.
+     */
+
+    private NInterval siblingAt(NInterval parent, int position) {
+        if (parent.isLiveAt(position)) {
+            return parent;
+        }
+        for (NInterval child : parent.children) {
+            if (child.isLiveAt(position)) {
+                return child;
+            }
+        }
+        return null;
     }
 
     /**
-     * Get the the interval segment that contains the nearest first use.
-     * 
-     * @param i
-     *            the interval segment (could be a parent or child).
-     * @param id
-     *            the lir id after which a use is sought.
-     * @return the interval segment that contains the first use at or after
-     *         the id position and is associated with the interval i through a
-     *         sibling or child relationship. Returns i if there is a use after
-     *         id within i. Null if no interval exists that is related to i and
-     *         contains a use position at or after id.
+     * Sequences a parallel move: the moves, loads, and stores made at one
+     * place, all of which read their registers before any writes them. An
+     * instruction is put before any that writes a register it reads; a cycle
+     * of moves is broken by storing one of the registers to a stack slot, and
+     * loading it from there instead.
+     *
+     * @param moves
+     *            the moves, loads, and stores.
+     * @param block
+     *            the block they are in.
+     * @return the sequenced moves, loads, and stores.
      */
 
-    private NInterval getSegmentWithNearestUse(NInterval i, int id) {
-        if (i.usePositions.ceilingEntry(id) != null)
-            return i;
-        else {
-            NInterval parent = i;
-            int idx = 0;
-            if (i.isChild()) {
-                parent = i.parent;
-                idx = parent.children.indexOf(i) + 1;
+    private ArrayList<NLIRInstruction> sequence(
+            ArrayList<NLIRInstruction> moves, NBasicBlock block) {
+        ArrayList<NLIRInstruction> sequenced = new ArrayList<NLIRInstruction>();
+        ArrayList<NLIRInstruction> pending = new ArrayList<NLIRInstruction>(
+                moves);
+        while (!pending.isEmpty()) {
+            NLIRInstruction ready = null;
+            for (NLIRInstruction move : pending) {
+                if (move.write == null || readerOf(move.write, pending) == null) {
+                    ready = move;
+                    break;
+                }
+            }
+            if (ready != null) {
+                pending.remove(ready);
+                sequenced.add(ready);
+                continue;
+            }
+
+            // Every register written is read by another move, so there is
+            // a cycle; following the readers from any move leads into it
+            NLIRInstruction move = pending.get(0);
+            for (int i = 0; i < pending.size(); i++) {
+                move = readerOf(move.write, pending);
             }
-            for (; idx < parent.children.size(); idx++) {
-                if (parent.children.get(idx).usePositions.ceilingEntry(id) != null)
-                    return parent.children.get(idx);
+            if (scratch == -1) {
+                scratch = cfg.offset++;
             }
-            return null;
+            sequenced.add(new NLIRStore(block, move.id, scratch,
+                    OffsetFrom.SP, move.reads.get(0)));
+            pending.set(pending.indexOf(move), new NLIRLoad(block, move.id,
+                    scratch, OffsetFrom.SP, move.write));
         }
+        return sequenced;
     }
 
     /**
-     * Adds a store instruction right after a use position specified by id.
-     * 
-     * @param from
-     *            the interval which this use position is a part of.
-     * @param id
-     *            the id of the use position.
+     * Returns the move, among the ones given, that reads a given register.
+     *
+     * @param reg
+     *            the register.
+     * @param moves
+     *            the moves, loads, and stores.
+     * @return the one that reads the register, or {@code null} if none does.
      */
 
-    private void addStoreInstruction(NInterval from, int id) {
-        NBasicBlock b = cfg.blockAt(id);
-        id++;
-        if (b.idIsFree(id)) { // assumes always same instr
-            b.insertLIRInst(new NLIRStore(b, id, from.offset, from.offsetFrom,
-                                                              from.pRegister));
+    private static NLIRInstruction readerOf(NRegister reg,
+            ArrayList<NLIRInstruction> moves) {
+        for (NLIRInstruction move : moves) {
+            for (NRegister read : move.reads) {
+                if (read.number() == reg.number()) {
+                    return move;
+                }
+            }
         }
+        return null;
     }
 
     /**
-     * Adds a store instruction right before a use position specified by id.
-     * 
-     * @param to
-     *            the interval which this use position is a part of.
-     * @param id
-     *            the id of the use position.
+     * A place where a value goes from one interval of a virtual register to
+     * another that is in a different place: before an instruction, at the
+     * start or end of a block, or along an edge that must be split.
      */
 
-    private void addLoadInstruction(NInterval to, int id) {
-        NBasicBlock s = cfg.blockAt(id);
-        id--;
-        if (s.idIsFree(id)) { // assumes always same instr
-            s.insertLIRInst(new NLIRLoad(s, id, to.offset, to.offsetFrom,
-                                                           to.pRegister));
+    private static class Transition {
+
+        /** The parent interval. */
+        public NInterval parent;
+
+        /** The interval the value goes from. */
+        public NInterval from;
+
+        /** The interval the value goes to. */
+        public NInterval to;
+
+        /**
+         * The block in which the value goes from one to the other, or the
+         * one the edge is from.
+         */
+        public NBasicBlock block;
+
+        /**
+         * The instruction before which the value goes from one to the other,
+         * or {@code null} if it is at the end of the block.
+         */
+        public NLIRInstruction before;
+
+        /**
+         * Whether the value goes from one to the other midway through the
+         * instruction (as that writes the register), so after the moves
+         * before it.
+         */
+        public boolean midway;
+
+        /** The block the edge is to, or {@code null} if not on an edge. */
+        public NBasicBlock successor;
+
+        /**
+         * Constructs a transition.
+         *
+         * @param parent
+         *            the parent interval.
+         * @param from
+         *            the interval the value goes from.
+         * @param to
+         *            the interval the value goes to.
+         */
+
+        public Transition(NInterval parent, NInterval from, NInterval to) {
+            this.parent = parent;
+            this.from = from;
+            this.to = to;
         }
+
     }
 
 }
@@ -23,10 +23,12 @@ public class NNaiveRegisterAllocator extends NRegisterAllocator {
      * 
      * @param cfg
      *            an instance of a control flow graph.
+     * @param maxCount
+     *            maximum number of physical registers used for allocation.
      */
 
-    public NNaiveRegisterAllocator(NControlFlowGraph cfg) {
-        super(cfg);
+    public NNaiveRegisterAllocator(NControlFlowGraph cfg, int maxCount) {
+        super(cfg, maxCount);
     }
 
     /**
@@ -51,7 +53,7 @@ public class NNaiveRegisterAllocator extends NRegisterAllocator {
         for (int i = 32, j = 0; i < cfg.intervals.size(); i++) {
             NInterval interval = cfg.intervals.get(i);
             if (interval.pRegister == null) {
-                if (j >= MAX_COUNT) {
+                if (j >= maxCount) {
                     // Pull out (from a queue) a register that's
                     // already assigned to another interval and
                     // re-assign it to this interval. But then
@@ -100,7 +102,7 @@ public class NNaiveRegisterAllocator extends NRegisterAllocator {
                     if (input1.pRegister == input2.pRegister) {
                         input2.pRegister = regInfo[T0 + 
                                                   (input2.pRegister.number() + 1)
-                                                 % MAX_COUNT];
+                                                 % maxCount];
                     }
                 }
 
@@ -0,0 +1,1328 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * An optimizer for the high-level (HIR) instructions of a method, on their
+ * way to SPIM. The HIR is in SSA form, so each instruction (its HIR id)
+ * stands for the one value it computes, and the optimizations work directly
+ * on the values: propagating constants through them, finding the ones that
+ * are computed more than once, taking away the ones that are not used, and
+ * moving the ones that do not change out of loops.
+ * <p>
+ * {@link NControlFlowGraph#optimize} carries out each of the optimizations
+ * of the catalog that is enabled, in order, on the HIR of each method, after
+ * the redundant phi functions are eliminated and before the HIR is converted
+ * to LIR. Each optimization may be turned off, and keeps statistics of what
+ * it has done. An optimization is an instance of {@link NOptimization}, and
+ * so new ones may be added to the catalog.
+ * <p>
+ * An optimizer may be shared by the emitters of several threads; it keeps no
+ * state of its own besides its optimizations, whose statistics are updated
+ * atomically.
+ */
+
+class NOptimizer {
+
+    /** The catalog of optimizations, in the order in which they are run. */
+    private ArrayList<NOptimization> optimizations;
+
+    /**
+     * Constructs an optimizer with the standard catalog of optimizations,
+     * all of them enabled.
+     */
+
+    public NOptimizer() {
+        optimizations = new ArrayList<NOptimization>();
+        optimizations.add(new NConstantPropagation());
+        optimizations.add(new NGlobalValueNumbering());
+        optimizations.add(new NDeadCodeElimination());
+        optimizations.add(new NLoopInvariantCodeMotion());
+    }
+
+    /**
+     * Adds an optimization to the end of the catalog.
+     *
+     * @param optimization
+     *            the optimization.
+     */
+
+    public void addOptimization(NOptimization optimization) {
+        optimizations.add(optimization);
+    }
+
+    /**
+     * Returns the catalog of optimizations.
+     *
+     * @return the optimizations, in the order in which they are run.
+     */
+
+    public ArrayList<NOptimization> optimizations() {
+        return optimizations;
+    }
+
+    /**
+     * Returns the optimization with the specified name.
+     *
+     * @param name
+     *            the name.
+     * @return the optimization, or {@code null} if there is none by that
+     *         name.
+     */
+
+    public NOptimization optimization(String name) {
+        for (NOptimization optimization : optimizations) {
+            if (optimization.name().equals(name)) {
+                return optimization;
+            }
+        }
+        return null;
+    }
+
+}
+
+/**
+ * An optimization of the HIR of a method. It has a short name, by which it
+ * can be turned off on the command line, and a number of statistics, counts
+ * of the things it has done.
+ */
+
+abstract class NOptimization {
+
+    /** Name of this optimization. */
+    private String name;
+
+    /** Whether this optimization is carried out. */
+    private boolean isEnabled;
+
+    /** Names of the statistics kept by this optimization. */
+    private String[] statistics;
+
+    /** The statistics kept by this optimization. */
+    private AtomicIntegerArray counts;
+
+    /**
+     * Constructs an (enabled) optimization.
+     *
+     * @param name
+     *            name of the optimization.
+     * @param statistics
+     *            names of the statistics it keeps.
+     */
+
+    protected NOptimization(String name, String... statistics) {
+        this.name = name;
+        this.statistics = statistics;
+        isEnabled = true;
+        counts = new AtomicIntegerArray(statistics.length);
+    }
+
+    /**
+     * Returns the name of this optimization.
+     *
+     * @return the name.
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns whether this optimization is carried out.
+     *
+     * @return {@code true} or {@code false}.
+     */
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Turns this optimization on or off.
+     *
+     * @param isEnabled
+     *            whether the optimization is to be carried out.
+     */
+
+    public void enable(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    /**
+     * Returns the names of the statistics kept by this optimization.
+     *
+     * @return the names.
+     */
+
+    public String[] statistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the value of the specified statistic.
+     *
+     * @param statistic
+     *            index of the statistic among the names.
+     * @return the value.
+     */
+
+    public int count(int statistic) {
+        return counts.get(statistic);
+    }
+
+    /**
+     * Adds to the specified statistic.
+     *
+     * @param statistic
+     *            index of the statistic among the names.
+     * @param n
+     *            the number to add.
+     */
+
+    protected void add(int statistic, int n) {
+        counts.addAndGet(statistic, n);
+    }
+
+    /**
+     * Carries out this optimization on the HIR of the specified cfg.
+     *
+     * @param cfg
+     *            the control flow graph.
+     */
+
+    public abstract void optimize(NControlFlowGraph cfg);
+
+}
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck). Each value
+ * is taken to be undefined, then a constant, then not a constant (over
+ * defined), and is only lowered along the way; and each block is taken to be
+ * unreachable until an edge into it is found to be executable. Working from
+ * the begin block, the values are computed from the values of their operands
+ * (phi functions from those of their arguments along executable edges only),
+ * and a conditional jump whose operands are constants makes only the one
+ * edge out of its block executable; each time a value is lowered, the
+ * instructions that use it are computed again.
+ * <p>
+ * Then, the arithmetic and the phi functions whose values are constants are
+ * replaced with the constants, and the conditional jumps whose outcome is
+ * known with gotos, the edges to the blocks they no longer jump to being
+ * removed. The blocks that are left unreachable are for dead code
+ * elimination to take away.
+ */
+
+class NConstantPropagation extends NOptimization {
+
+    /** Index of the statistic counting values replaced with constants. */
+    private static final int CONSTANTS = 0;
+
+    /** Index of the statistic counting conditional jumps made gotos. */
+    private static final int BRANCHES = 1;
+
+    /**
+     * Constructs the optimization.
+     */
+
+    public NConstantPropagation() {
+        super("sccp", "constants", "branches");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void optimize(NControlFlowGraph cfg) {
+        Propagation propagation = new Propagation(cfg);
+        propagation.run();
+        HashMap<NHIRInstruction, NHIRInstruction> replacements =
+            new HashMap<NHIRInstruction, NHIRInstruction>();
+        ArrayList<NBasicBlock[]> removedEdges = new ArrayList<NBasicBlock[]>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            if (!propagation.isReachable(block)) {
+                continue;
+            }
+            for (int id : block.hir) {
+                NHIRInstruction ins = cfg.hirMap.get(id);
+                if ((ins instanceof NHIRArithmetic
+                        || ins instanceof NHIRPhiFunction)
+                        && propagation.isConstant(ins)) {
+                    replacements.put(ins, new NHIRIntConstant(block, id,
+                            propagation.valueOf(ins)));
+                } else if (ins instanceof NHIRConditionalJump) {
+                    NHIRConditionalJump jump = (NHIRConditionalJump) ins;
+                    NBasicBlock destination = propagation.destination(jump);
+                    if (destination == null) {
+                        continue;
+                    }
+                    NBasicBlock other =
+                        destination == jump.onTrueDestination
+                            ? jump.onFalseDestination
+                            : jump.onTrueDestination;
+                    if (other != destination) {
+                        if (!cfg.hasPhiArgumentPerPredecessor(other)) {
+                            continue;
+                        }
+                        removedEdges.add(new NBasicBlock[] { block, other });
+                    }
+                    replacements.put(ins, new NHIRGoto(block, id, destination));
+                }
+            }
+        }
+        int branches = 0;
+        for (NHIRInstruction ins : replacements.keySet()) {
+            if (ins instanceof NHIRConditionalJump) {
+                branches++;
+            }
+        }
+        cfg.replace(replacements);
+        for (NBasicBlock[] edge : removedEdges) {
+            cfg.removeEdge(edge[0], edge[1]);
+        }
+        add(CONSTANTS, replacements.size() - branches);
+        add(BRANCHES, branches);
+    }
+
+    /**
+     * The propagation of constants through the HIR of a method.
+     */
+
+    private static class Propagation {
+
+        /** Lattice value of a value that is not (yet) known to be defined. */
+        private static final int UNDEFINED = 0;
+
+        /** Lattice value of a value that is a constant. */
+        private static final int CONSTANT = 1;
+
+        /** Lattice value of a value that is not a constant. */
+        private static final int OVERDEFINED = 2;
+
+        /** The control flow graph. */
+        private NControlFlowGraph cfg;
+
+        /** Lattice values of the instructions, by HIR id. */
+        private int[] lattice;
+
+        /** Values of the instructions whose values are constants. */
+        private int[] constants;
+
+        /** The instructions using the value of each one, by HIR id. */
+        private ArrayList<ArrayList<NHIRInstruction>> uses;
+
+        /** The blocks found reachable, by block id. */
+        private BitSet reachable;
+
+        /**
+         * For each block found reachable, the predecessors along whose edges
+         * it has been.
+         */
+        private HashMap<NBasicBlock, HashSet<NBasicBlock>> executable;
+
+        /** The edges found executable but not yet followed. */
+        private Queue<NBasicBlock[]> flowWork;
+
+        /** The instructions to compute again, their operands having changed. */
+        private Queue<NHIRInstruction> ssaWork;
+
+        /**
+         * Constructs a propagation through the HIR of the specified cfg.
+         *
+         * @param cfg
+         *            the control flow graph.
+         */
+
+        public Propagation(NControlFlowGraph cfg) {
+            this.cfg = cfg;
+            lattice = new int[cfg.hirId];
+            constants = new int[cfg.hirId];
+            uses = new ArrayList<ArrayList<NHIRInstruction>>(cfg.hirId);
+            for (int i = 0; i < cfg.hirId; i++) {
+                uses.add(null);
+            }
+            for (NBasicBlock block : cfg.basicBlocks) {
+                for (int id : block.hir) {
+                    NHIRInstruction ins = cfg.hirMap.get(id);
+                    for (int operand : ins.operands()) {
+                        int def = cfg.hirMap.get(operand).id;
+                        if (uses.get(def) == null) {
+                            uses.set(def, new ArrayList<NHIRInstruction>());
+                        }
+                        uses.get(def).add(ins);
+                    }
+                }
+            }
+            reachable = new BitSet(cfg.blockId);
+            executable = new HashMap<NBasicBlock, HashSet<NBasicBlock>>();
+            flowWork = new LinkedList<NBasicBlock[]>();
+            ssaWork = new LinkedList<NHIRInstruction>();
+        }
+
+        /**
+         * Propagates the constants, from the begin block.
+         */
+
+        public void run() {
+            flowWork.add(new NBasicBlock[] { null, cfg.basicBlocks.get(0) });
+            while (!flowWork.isEmpty() || !ssaWork.isEmpty()) {
+                while (!flowWork.isEmpty()) {
+                    NBasicBlock[] edge = flowWork.remove();
+                    follow(edge[0], edge[1]);
+                }
+                while (!ssaWork.isEmpty()) {
+                    NHIRInstruction ins = ssaWork.remove();
+                    if (reachable.get(ins.block.id)) {
+                        visit(ins);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns whether the specified block was found reachable.
+         *
+         * @param block
+         *            the block.
+         * @return {@code true} or {@code false}.
+         */
+
+        public boolean isReachable(NBasicBlock block) {
+            return reachable.get(block.id);
+        }
+
+        /**
+         * Returns whether the value of the specified instruction was found to
+         * be a constant.
+         *
+         * @param ins
+         *            the instruction.
+         * @return {@code true} or {@code false}.
+         */
+
+        public boolean isConstant(NHIRInstruction ins) {
+            return lattice[ins.id] == CONSTANT;
+        }
+
+        /**
+         * Returns the constant value of the specified instruction.
+         *
+         * @param ins
+         *            the instruction, whose value is a constant.
+         * @return the value.
+         */
+
+        public int valueOf(NHIRInstruction ins) {
+            return constants[ins.id];
+        }
+
+        /**
+         * Returns the block the specified conditional jump always jumps to,
+         * its operands being constants.
+         *
+         * @param jump
+         *            the conditional jump.
+         * @return the block, or {@code null} if the outcome is not known.
+         */
+
+        public NBasicBlock destination(NHIRConditionalJump jump) {
+            NHIRInstruction lhs = cfg.hirMap.get(jump.lhs);
+            NHIRInstruction rhs = cfg.hirMap.get(jump.rhs);
+            if (!isConstant(lhs) || !isConstant(rhs)) {
+                return null;
+            }
+            int l = valueOf(lhs), r = valueOf(rhs);
+            boolean outcome;
+            switch (jump.opcode) {
+            case IF_ICMPNE:
+                outcome = l != r;
+                break;
+            case IF_ICMPGT:
+                outcome = l > r;
+                break;
+            case IF_ICMPLE:
+                outcome = l <= r;
+                break;
+            default:
+                return null;
+            }
+            return outcome ? jump.onTrueDestination : jump.onFalseDestination;
+        }
+
+        /**
+         * Follows an edge found executable. The first time a block is
+         * reached, all its instructions are computed; when it is reached
+         * along another edge, just its phi functions are.
+         *
+         * @param from
+         *            the block the edge leaves; {@code null} for the entry
+         *            into the begin block.
+         * @param to
+         *            the block the edge enters.
+         */
+
+        private void follow(NBasicBlock from, NBasicBlock to) {
+            HashSet<NBasicBlock> preds = executable.get(to);
+            if (preds == null) {
+                preds = new HashSet<NBasicBlock>();
+                executable.put(to, preds);
+            }
+            if (from != null && !preds.add(from)) {
+                return;
+            }
+            if (reachable.get(to.id)) {
+                for (int id : to.hir) {
+                    NHIRInstruction ins = cfg.hirMap.get(id);
+                    if (ins instanceof NHIRPhiFunction) {
+                        visit(ins);
+                    }
+                }
+                return;
+            }
+            reachable.set(to.id);
+            for (int id : to.hir) {
+                visit(cfg.hirMap.get(id));
+            }
+
+            // A block that does not end in a jump falls through (or, for
+            // returns, goes nowhere)
+            NHIRInstruction last = to.hir.isEmpty() ? null : cfg.hirMap
+                    .get(to.hir.get(to.hir.size() - 1));
+            if (!(last instanceof NHIRGoto)
+                    && !(last instanceof NHIRConditionalJump)) {
+                for (NBasicBlock succ : to.successors) {
+                    flowWork.add(new NBasicBlock[] { to, succ });
+                }
+            }
+        }
+
+        /**
+         * Computes (again) the value of the specified instruction, in a
+         * reachable block; or, for a jump, the edges it makes executable.
+         *
+         * @param ins
+         *            the instruction.
+         */
+
+        private void visit(NHIRInstruction ins) {
+            if (ins instanceof NHIRGoto) {
+                flowWork.add(new NBasicBlock[] { ins.block,
+                        ((NHIRGoto) ins).destination });
+            } else if (ins instanceof NHIRConditionalJump) {
+                NHIRConditionalJump jump = (NHIRConditionalJump) ins;
+                NBasicBlock destination = destination(jump);
+                if (destination != null) {
+                    flowWork.add(new NBasicBlock[] { ins.block, destination });
+                } else {
+                    flowWork.add(new NBasicBlock[] { ins.block,
+                            jump.onTrueDestination });
+                    flowWork.add(new NBasicBlock[] { ins.block,
+                            jump.onFalseDestination });
+                }
+            } else if (ins instanceof NHIRIntConstant) {
+                lower(ins, CONSTANT, ((NHIRIntConstant) ins).value);
+            } else if (ins instanceof NHIRArithmetic) {
+                visitArithmetic((NHIRArithmetic) ins);
+            } else if (ins instanceof NHIRPhiFunction) {
+                visitPhiFunction((NHIRPhiFunction) ins);
+            } else {
+                lower(ins, OVERDEFINED, 0);
+            }
+        }
+
+        /**
+         * Computes the value of the specified arithmetic instruction.
+         *
+         * @param ins
+         *            the instruction.
+         */
+
+        private void visitArithmetic(NHIRArithmetic ins) {
+            NHIRInstruction lhs = cfg.hirMap.get(ins.lhs);
+            NHIRInstruction rhs = cfg.hirMap.get(ins.rhs);
+            if (ins.opcode == IMUL
+                    && (isConstant(lhs) && valueOf(lhs) == 0 || isConstant(rhs)
+                            && valueOf(rhs) == 0)) {
+                // Zero, whatever the other operand
+                lower(ins, CONSTANT, 0);
+            } else if (lattice[lhs.id] == OVERDEFINED
+                    || lattice[rhs.id] == OVERDEFINED) {
+                lower(ins, OVERDEFINED, 0);
+            } else if (isConstant(lhs) && isConstant(rhs)) {
+                int l = valueOf(lhs), r = valueOf(rhs);
+                switch (ins.opcode) {
+                case IADD:
+                    lower(ins, CONSTANT, l + r);
+                    break;
+                case ISUB:
+                    lower(ins, CONSTANT, l - r);
+                    break;
+                case IMUL:
+                    lower(ins, CONSTANT, l * r);
+                    break;
+                default:
+                    lower(ins, OVERDEFINED, 0);
+                }
+            }
+        }
+
+        /**
+         * Computes the value of the specified phi function: the meet of the
+         * values of its arguments along the executable edges into its block.
+         *
+         * @param phi
+         *            the phi function.
+         */
+
+        private void visitPhiFunction(NHIRPhiFunction phi) {
+            NBasicBlock block = phi.block;
+            HashSet<NBasicBlock> preds = executable.get(block);
+            boolean perPredecessor = phi.arguments.size() == block.predecessors
+                    .size();
+            int meet = UNDEFINED, value = 0;
+            for (int i = 0; i < phi.arguments.size(); i++) {
+                // If the arguments do not match up with the predecessors,
+                // all of them are taken into account
+                if (perPredecessor
+                        && !preds.contains(block.predecessors.get(i))) {
+                    continue;
+                }
+                NHIRInstruction arg = cfg.hirMap.get(phi.arguments.get(i));
+                if (arg == phi || lattice[arg.id] == UNDEFINED) {
+                    continue;
+                }
+                if (lattice[arg.id] == OVERDEFINED || meet == CONSTANT
+                        && valueOf(arg) != value) {
+                    meet = OVERDEFINED;
+                    break;
+                }
+                meet = CONSTANT;
+                value = valueOf(arg);
+            }
+            lower(phi, meet, value);
+        }
+
+        /**
+         * Lowers the lattice value of the specified instruction to the
+         * specified one, if that is lower, and if so, has the instructions
+         * using it computed again.
+         *
+         * @param ins
+         *            the instruction.
+         * @param lattice
+         *            the lattice value.
+         * @param value
+         *            the constant value, for a constant.
+         */
+
+        private void lower(NHIRInstruction ins, int lattice, int value) {
+            if (lattice <= this.lattice[ins.id]) {
+                return;
+            }
+            this.lattice[ins.id] = lattice;
+            constants[ins.id] = value;
+            if (uses.get(ins.id) != null) {
+                ssaWork.addAll(uses.get(ins.id));
+            }
+        }
+
+    }
+
+}
+
+/**
+ * Global value numbering. The blocks are visited down the dominator tree (by
+ * way of the {@code dom} links of the blocks), and each pure computation (an
+ * arithmetic operation, or a phi function) is numbered by its operation and
+ * the numbers of its operands; a computation that has the number of one in a
+ * dominating block (or earlier in its own block) computes the same value,
+ * and is replaced with it. A constant is numbered by its value, so that
+ * {@code i * 4} and {@code i * 4} are found to be the same even though each
+ * has its own {@code 4}; and the operands of an addition or multiplication
+ * are numbered in either order.
+ * <p>
+ * Loads (of a static field, or of an array element) are numbered too, but a
+ * load is only replaced with an earlier one if nothing that runs between the
+ * two could have changed what is loaded: a store into the same field kills
+ * the loads of the field, a store into any array kills the loads of array
+ * elements (the arrays may be the same), and a method invocation kills all
+ * the loads. Going from a block to one that it dominates, the loads are
+ * killed by whatever stores and invocations there are in the blocks on the
+ * paths between the two.
+ */
+
+class NGlobalValueNumbering extends NOptimization {
+
+    /** Index of the statistic counting the computations replaced. */
+    private static final int EXPRESSIONS = 0;
+
+    /** Index of the statistic counting the loads replaced. */
+    private static final int LOADS = 1;
+
+    /** Prefix of the numbers of field loads. */
+    private static final String FIELD = "field ";
+
+    /** Prefix of the numbers of array loads. */
+    private static final String ELEMENT = "element ";
+
+    /**
+     * Constructs the optimization.
+     */
+
+    public NGlobalValueNumbering() {
+        super("gvn", "expressions", "loads");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void optimize(NControlFlowGraph cfg) {
+        Numbering numbering = new Numbering(cfg);
+        for (NBasicBlock block : cfg.basicBlocks) {
+            if (!numbering.hasDominator(block)) {
+                numbering.number(block);
+            }
+        }
+        cfg.replace(numbering.replacements);
+        add(EXPRESSIONS, numbering.expressions);
+        add(LOADS, numbering.loads);
+    }
+
+    /**
+     * The state of the numbering of the HIR of one method: the numbered
+     * values in scope, the replacements found so far, and what the stores
+     * and invocations of each block kill.
+     */
+
+    private static class Numbering {
+
+        /** The control flow graph. */
+        private NControlFlowGraph cfg;
+
+        /** The blocks immediately dominated by each block. */
+        private HashMap<NBasicBlock, ArrayList<NBasicBlock>> children;
+
+        /** The values in scope, by number. */
+        private HashMap<String, NHIRInstruction> values;
+
+        /**
+         * For each value put in or taken out of scope, its number and the
+         * value it had before; undone on leaving a block.
+         */
+        private ArrayList<Object[]> undo;
+
+        /** The fields stored into by each block. */
+        private HashMap<NBasicBlock, HashSet<String>> fieldStores;
+
+        /** The blocks that store into an array. */
+        private HashSet<NBasicBlock> elementStores;
+
+        /** The blocks that invoke a method. */
+        private HashSet<NBasicBlock> invocations;
+
+        /** The instructions found to be redundant, and their replacements. */
+        public HashMap<NHIRInstruction, NHIRInstruction> replacements;
+
+        /** Number of computations replaced. */
+        public int expressions;
+
+        /** Number of loads replaced. */
+        public int loads;
+
+        /**
+         * Constructs the state for numbering the HIR of the specified cfg.
+         *
+         * @param cfg
+         *            the control flow graph.
+         */
+
+        public Numbering(NControlFlowGraph cfg) {
+            this.cfg = cfg;
+            children = new HashMap<NBasicBlock, ArrayList<NBasicBlock>>();
+            fieldStores = new HashMap<NBasicBlock, HashSet<String>>();
+            elementStores = new HashSet<NBasicBlock>();
+            invocations = new HashSet<NBasicBlock>();
+            for (NBasicBlock block : cfg.basicBlocks) {
+                children.put(block, new ArrayList<NBasicBlock>());
+                fieldStores.put(block, new HashSet<String>());
+            }
+            for (NBasicBlock block : cfg.basicBlocks) {
+                if (hasDominator(block)) {
+                    children.get(block.dom).add(block);
+                }
+                for (int id : block.hir) {
+                    NHIRInstruction ins = cfg.hirMap.get(id);
+                    if (ins instanceof NHIRPutField) {
+                        NHIRPutField put = (NHIRPutField) ins;
+                        fieldStores.get(block).add(put.target + "." + put.name);
+                    } else if (ins instanceof NHIRAStore) {
+                        elementStores.add(block);
+                    } else if (ins instanceof NHIRInvoke) {
+                        invocations.add(block);
+                    }
+                }
+            }
+            values = new HashMap<String, NHIRInstruction>();
+            undo = new ArrayList<Object[]>();
+            replacements = new HashMap<NHIRInstruction, NHIRInstruction>();
+        }
+
+        /**
+         * Returns whether the specified block has a dominator in the cfg;
+         * only the begin block should not.
+         *
+         * @param block
+         *            the block.
+         * @return {@code true} or {@code false}.
+         */
+
+        public boolean hasDominator(NBasicBlock block) {
+            return block.dom != null && children.containsKey(block.dom);
+        }
+
+        /**
+         * Numbers the instructions of the specified block and, in turn, of
+         * the blocks it dominates, with the values of the dominating blocks
+         * in scope.
+         *
+         * @param block
+         *            the block.
+         */
+
+        public void number(NBasicBlock block) {
+            int mark = undo.size();
+            if (hasDominator(block)) {
+                killOnEntry(block);
+            }
+            for (int id : block.hir) {
+                NHIRInstruction ins = cfg.hirMap.get(id);
+                if (ins.id != id) {
+                    // An alias, numbered with the instruction it stands for
+                    continue;
+                }
+                if (ins instanceof NHIRPutField) {
+                    NHIRPutField put = (NHIRPutField) ins;
+                    kill(FIELD + put.target + "." + put.name);
+                    continue;
+                } else if (ins instanceof NHIRAStore) {
+                    kill(ELEMENT);
+                    continue;
+                } else if (ins instanceof NHIRInvoke) {
+                    kill(FIELD);
+                    kill(ELEMENT);
+                    continue;
+                }
+                String number = numberOf(ins);
+                if (number == null) {
+                    continue;
+                }
+                NHIRInstruction value = values.get(number);
+                if (value == null) {
+                    put(number, ins);
+                } else {
+                    replacements.put(ins, value);
+                    if (ins instanceof NHIRGetField
+                            || ins instanceof NHIRALoad) {
+                        loads++;
+                    } else {
+                        expressions++;
+                    }
+                }
+            }
+            for (NBasicBlock child : children.get(block)) {
+                number(child);
+            }
+            while (undo.size() > mark) {
+                Object[] entry = undo.remove(undo.size() - 1);
+                if (entry[1] == null) {
+                    values.remove(entry[0]);
+                } else {
+                    values.put((String) entry[0], (NHIRInstruction) entry[1]);
+                }
+            }
+        }
+
+        /**
+         * Returns the number of the value computed by the specified
+         * instruction, made up of its operation and the numbers of its
+         * operands.
+         *
+         * @param ins
+         *            the instruction.
+         * @return the number, or {@code null} if the instruction is not
+         *         numbered.
+         */
+
+        private String numberOf(NHIRInstruction ins) {
+            if (ins instanceof NHIRArithmetic) {
+                NHIRArithmetic arithmetic = (NHIRArithmetic) ins;
+                String lhs = operandNumber(arithmetic.lhs);
+                String rhs = operandNumber(arithmetic.rhs);
+                if ((arithmetic.opcode == IADD || arithmetic.opcode == IMUL)
+                        && lhs.compareTo(rhs) > 0) {
+                    String t = lhs;
+                    lhs = rhs;
+                    rhs = t;
+                }
+                return arithmetic.opcode + " " + lhs + " " + rhs;
+            } else if (ins instanceof NHIRPhiFunction) {
+                NHIRPhiFunction phi = (NHIRPhiFunction) ins;
+                String number = "phi " + phi.block.id;
+                for (int arg : phi.arguments) {
+                    number += " " + operandNumber(arg);
+                }
+                return number;
+            } else if (ins instanceof NHIRGetField) {
+                NHIRGetField get = (NHIRGetField) ins;
+                return FIELD + get.target + "." + get.name;
+            } else if (ins instanceof NHIRALoad) {
+                NHIRALoad load = (NHIRALoad) ins;
+                return ELEMENT + load.opcode + " "
+                        + operandNumber(load.arrayRef) + " "
+                        + operandNumber(load.index);
+            }
+            return null;
+        }
+
+        /**
+         * Returns the number of the value with the specified HIR id: a
+         * constant is numbered by its value, and any other value by the id
+         * of the instruction that computes it, or of the one it is replaced
+         * with.
+         *
+         * @param id
+         *            HIR id of the value.
+         * @return the number.
+         */
+
+        private String operandNumber(int id) {
+            NHIRInstruction ins = cfg.hirMap.get(id);
+            if (ins instanceof NHIRIntConstant) {
+                return "#" + ((NHIRIntConstant) ins).value;
+            }
+            NHIRInstruction value = replacements.get(ins);
+            return "v" + (value == null ? ins : value).id;
+        }
+
+        /**
+         * Kills the loads that the stores and invocations in the blocks on
+         * the paths from the dominator of the specified block to it could
+         * change: the blocks from which the block can be reached without
+         * going through its dominator.
+         *
+         * @param block
+         *            the block.
+         */
+
+        private void killOnEntry(NBasicBlock block) {
+            HashSet<NBasicBlock> between = new HashSet<NBasicBlock>();
+            LinkedList<NBasicBlock> work = new LinkedList<NBasicBlock>();
+            for (NBasicBlock pred : block.predecessors) {
+                if (pred != block.dom && between.add(pred)) {
+                    work.add(pred);
+                }
+            }
+            while (!work.isEmpty()) {
+                for (NBasicBlock pred : work.remove().predecessors) {
+                    if (pred != block.dom && between.add(pred)) {
+                        work.add(pred);
+                    }
+                }
+            }
+            for (NBasicBlock b : between) {
+                if (invocations.contains(b)) {
+                    kill(FIELD);
+                    kill(ELEMENT);
+                    return;
+                }
+                if (elementStores.contains(b)) {
+                    kill(ELEMENT);
+                }
+                for (String field : fieldStores.get(b)) {
+                    kill(FIELD + field);
+                }
+            }
+        }
+
+        /**
+         * Takes the loads whose numbers start with the specified prefix out
+         * of scope.
+         *
+         * @param prefix
+         *            the prefix.
+         */
+
+        private void kill(String prefix) {
+            for (String number : new ArrayList<String>(values.keySet())) {
+                if (number.startsWith(prefix)) {
+                    undo.add(new Object[] { number, values.remove(number) });
+                }
+            }
+        }
+
+        /**
+         * Puts the specified value in scope.
+         *
+         * @param number
+         *            number of the value.
+         * @param ins
+         *            the instruction computing the value.
+         */
+
+        private void put(String number, NHIRInstruction ins) {
+            undo.add(new Object[] { number, values.put(number, ins) });
+        }
+
+    }
+
+}
+
+/**
+ * Loop-invariant code motion. Each loop (found from the loop heads marked by
+ * {@link NControlFlowGraph#detectLoops}) is given a preheader, a block run
+ * once on the way into the loop, and the computations in the loop whose
+ * values do not change from one iteration to the next are moved there:
+ * constants, and arithmetic operations (address computations among them)
+ * whose operands are defined outside the loop or are themselves moved. The
+ * loops are handled innermost first, so that what is moved out of an inner
+ * loop, into its preheader, may then be moved out of the loops around it.
+ * <p>
+ * The arithmetic of j-- (addition, subtraction and multiplication) cannot
+ * fail, so running it before the loop, even when the loop body is not run,
+ * is safe. Loads and invocations stay where they are.
+ */
+
+class NLoopInvariantCodeMotion extends NOptimization {
+
+    /** Index of the statistic counting the loops given preheaders. */
+    private static final int LOOPS = 0;
+
+    /** Index of the statistic counting the instructions moved. */
+    private static final int INSTRUCTIONS = 1;
+
+    /**
+     * Constructs the optimization.
+     */
+
+    public NLoopInvariantCodeMotion() {
+        super("licm", "loops", "instructions");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void optimize(NControlFlowGraph cfg) {
+        // Give each loop a preheader first, so that the preheader of an
+        // inner loop is in the bodies of the loops around it
+        HashMap<NBasicBlock, NBasicBlock> preheaders =
+            new HashMap<NBasicBlock, NBasicBlock>();
+        for (NBasicBlock block : new ArrayList<NBasicBlock>(cfg.basicBlocks)) {
+            if (block.isLoopHead) {
+                NBasicBlock preheader = cfg.insertPreheader(block);
+                if (preheader != null) {
+                    preheaders.put(block, preheader);
+                }
+            }
+        }
+
+        // The loop bodies, innermost (smallest) first
+        final HashMap<NBasicBlock, ArrayList<NBasicBlock>> bodies =
+            new HashMap<NBasicBlock, ArrayList<NBasicBlock>>();
+        for (NBasicBlock head : preheaders.keySet()) {
+            bodies.put(head, cfg.loopBody(head));
+        }
+        ArrayList<NBasicBlock> heads = new ArrayList<NBasicBlock>(
+                bodies.keySet());
+        Collections.sort(heads, new Comparator<NBasicBlock>() {
+            public int compare(NBasicBlock a, NBasicBlock b) {
+                return bodies.get(a).size() - bodies.get(b).size();
+            }
+        });
+
+        int instructions = 0;
+        for (NBasicBlock head : heads) {
+            instructions += hoist(cfg, new HashSet<NBasicBlock>(
+                    bodies.get(head)), preheaders.get(head));
+        }
+        add(LOOPS, preheaders.size());
+        add(INSTRUCTIONS, instructions);
+    }
+
+    /**
+     * Moves the invariant computations of a loop to its preheader.
+     *
+     * @param cfg
+     *            the control flow graph.
+     * @param body
+     *            the blocks of the loop.
+     * @param preheader
+     *            the preheader of the loop.
+     * @return the number of instructions moved.
+     */
+
+    private static int hoist(NControlFlowGraph cfg, HashSet<NBasicBlock> body,
+            NBasicBlock preheader) {
+        int moved = 0;
+        boolean changed;
+        do {
+            changed = false;
+            for (NBasicBlock block : cfg.basicBlocks) {
+                if (!body.contains(block)) {
+                    continue;
+                }
+                for (int id : new ArrayList<Integer>(block.hir)) {
+                    NHIRInstruction ins = cfg.hirMap.get(id);
+                    if (ins.id != id || !isInvariant(ins, cfg, body)) {
+                        continue;
+                    }
+                    block.hir.remove((Integer) id);
+                    preheader.hir.add(id);
+                    ins.block = preheader;
+                    moved++;
+                    changed = true;
+                }
+            }
+        } while (changed);
+        return moved;
+    }
+
+    /**
+     * Returns whether the specified instruction, in a loop, computes the same
+     * value in every iteration and may be moved out of the loop.
+     *
+     * @param ins
+     *            the instruction.
+     * @param cfg
+     *            the control flow graph.
+     * @param body
+     *            the blocks of the loop.
+     * @return {@code true} or {@code false}.
+     */
+
+    private static boolean isInvariant(NHIRInstruction ins,
+            NControlFlowGraph cfg, HashSet<NBasicBlock> body) {
+        if (ins instanceof NHIRIntConstant) {
+            return true;
+        }
+        if (!(ins instanceof NHIRArithmetic)) {
+            return false;
+        }
+        for (int operand : ins.operands()) {
+            if (body.contains(cfg.hirMap.get(operand).block)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
+
+/**
+ * Dead code elimination. The blocks that cannot be reached from the begin
+ * block (after constant propagation has turned conditional jumps into gotos)
+ * are taken away, and the phi functions left with a single value by the
+ * edges going with them are replaced with the value. Then the instructions
+ * without side effects (such as arithmetic, constants and phi functions)
+ * whose values are not used by any instruction that stays are taken away;
+ * the instructions that stay are found by marking those with side effects,
+ * and then, transitively, their operands.
+ */
+
+class NDeadCodeElimination extends NOptimization {
+
+    /** Index of the statistic counting the blocks taken away. */
+    private static final int BLOCKS = 0;
+
+    /** Index of the statistic counting the instructions taken away. */
+    private static final int INSTRUCTIONS = 1;
+
+    /**
+     * Constructs the optimization.
+     */
+
+    public NDeadCodeElimination() {
+        super("dce", "blocks", "instructions");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void optimize(NControlFlowGraph cfg) {
+        HashSet<NHIRInstruction> dead = new HashSet<NHIRInstruction>();
+
+        // Find the blocks that cannot be reached
+        BitSet reachable = new BitSet(cfg.blockId);
+        LinkedList<NBasicBlock> work = new LinkedList<NBasicBlock>();
+        work.add(cfg.basicBlocks.get(0));
+        reachable.set(0);
+        while (!work.isEmpty()) {
+            for (NBasicBlock succ : work.remove().successors) {
+                if (!reachable.get(succ.id)) {
+                    reachable.set(succ.id);
+                    work.add(succ);
+                }
+            }
+        }
+
+        // If an unreachable block goes to a block that cannot have edges
+        // into it removed (see hasPhiArgumentPerPredecessor), it must stay,
+        // and with it the values it uses; so then all of them stay
+        ArrayList<NBasicBlock> unreachable = new ArrayList<NBasicBlock>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            if (reachable.get(block.id)) {
+                continue;
+            }
+            for (NBasicBlock succ : block.successors) {
+                if (reachable.get(succ.id)
+                        && !cfg.hasPhiArgumentPerPredecessor(succ)) {
+                    unreachable.clear();
+                    reachable.set(0, cfg.blockId);
+                    break;
+                }
+            }
+            if (!reachable.get(block.id)) {
+                unreachable.add(block);
+            }
+        }
+        for (NBasicBlock block : unreachable) {
+            for (NBasicBlock succ : new ArrayList<NBasicBlock>(
+                    block.successors)) {
+                cfg.removeEdge(block, succ);
+            }
+            for (int id : block.hir) {
+                dead.add(cfg.hirMap.get(id));
+            }
+        }
+        cfg.basicBlocks.removeAll(unreachable);
+
+        // A phi function left with just the one value (its block having
+        // lost predecessors) is replaced with the value
+        HashMap<NHIRInstruction, NHIRInstruction> replacements =
+            new HashMap<NHIRInstruction, NHIRInstruction>();
+        boolean changed;
+        do {
+            changed = false;
+            for (NBasicBlock block : cfg.basicBlocks) {
+                for (int id : block.hir) {
+                    NHIRInstruction ins = cfg.hirMap.get(id);
+                    if (!(ins instanceof NHIRPhiFunction)
+                            || replacements.containsKey(ins)) {
+                        continue;
+                    }
+                    NHIRInstruction value = soleValue((NHIRPhiFunction) ins,
+                            cfg, replacements);
+                    if (value != null) {
+                        replacements.put(ins, value);
+                        changed = true;
+                    }
+                }
+            }
+        } while (changed);
+        for (NHIRInstruction phi : replacements.keySet()) {
+            replacements.put(phi, resolve(phi, replacements));
+        }
+        cfg.replace(replacements);
+
+        // Mark the instructions that stay
+        HashSet<NHIRInstruction> live = new HashSet<NHIRInstruction>();
+        LinkedList<NHIRInstruction> marked = new LinkedList<NHIRInstruction>();
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (int id : block.hir) {
+                NHIRInstruction ins = cfg.hirMap.get(id);
+                if (ins.hasSideEffects() && live.add(ins)) {
+                    marked.add(ins);
+                }
+            }
+        }
+        while (!marked.isEmpty()) {
+            for (int operand : marked.remove().operands()) {
+                NHIRInstruction ins = cfg.hirMap.get(operand);
+                if (live.add(ins)) {
+                    marked.add(ins);
+                }
+            }
+        }
+
+        // And sweep away the rest
+        int instructions = 0;
+        for (NBasicBlock block : cfg.basicBlocks) {
+            for (int id : block.hir) {
+                NHIRInstruction ins = cfg.hirMap.get(id);
+                if (!live.contains(ins)) {
+                    dead.add(ins);
+                    instructions++;
+                }
+            }
+        }
+        cfg.remove(dead);
+        add(BLOCKS, unreachable.size());
+        add(INSTRUCTIONS, replacements.size() + instructions);
+    }
+
+    /**
+     * Returns the one value, other than its own, that the specified phi
+     * function has for all its arguments, if there is one.
+     *
+     * @param phi
+     *            the phi function.
+     * @param cfg
+     *            the control flow graph.
+     * @param replacements
+     *            the phi functions already found to have one value.
+     * @return the value, or {@code null} if there is none.
+     */
+
+    private static NHIRInstruction soleValue(NHIRPhiFunction phi,
+            NControlFlowGraph cfg,
+            HashMap<NHIRInstruction, NHIRInstruction> replacements) {
+        NHIRInstruction value = null;
+        for (int arg : phi.arguments) {
+            NHIRInstruction ins = resolve(cfg.hirMap.get(arg), replacements);
+            if (ins == phi || ins == value) {
+                continue;
+            }
+            if (value != null) {
+                return null;
+            }
+            value = ins;
+        }
+
+        // Not an undefined local
+        return value == null || value.sType.equals("") ? null : value;
+    }
+
+    /**
+     * Returns the instruction that the specified one is (transitively)
+     * replaced with.
+     *
+     * @param ins
+     *            the instruction.
+     * @param replacements
+     *            the replacements.
+     * @return the replacing instruction, or the instruction itself if it is
+     *         not replaced.
+     */
+
+    private static NHIRInstruction resolve(NHIRInstruction ins,
+            HashMap<NHIRInstruction, NHIRInstruction> replacements) {
+        while (replacements.containsKey(ins)) {
+            ins = replacements.get(ins);
+        }
+        return ins;
+    }
+
+}
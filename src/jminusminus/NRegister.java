@@ -85,6 +85,26 @@ class NVirtualRegister extends NRegister {
         this.lType = lType;
     }
 
+    /**
+     * Returns the type (short name) of value in this register.
+     * 
+     * @return the short type name.
+     */
+
+    public String sType() {
+        return sType;
+    }
+
+    /**
+     * Returns the type (long name) of value in this register.
+     * 
+     * @return the long type name.
+     */
+
+    public String lType() {
+        return lType;
+    }
+
     /**
      * Returns a string representation of this virtual register.
      * 
@@ -104,9 +124,10 @@ class NVirtualRegister extends NRegister {
 class NPhysicalRegister extends NRegister {
 
     /**
-     * Maximum number of physical registers used for allocation, starting at T0.
+     * Default maximum number of physical registers used for allocation,
+     * starting at T0.
      */
-    public static int MAX_COUNT = 8;
+    public static final int DEFAULT_MAX_COUNT = 8;
 
     // Constants identifying the physical registers. These
     // can be used as indices into the static regInfo array
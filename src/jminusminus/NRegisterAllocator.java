@@ -17,16 +17,25 @@ public abstract class NRegisterAllocator {
     /** The control flow graph for a method. */
     protected NControlFlowGraph cfg;
 
+    /**
+     * Maximum number of physical registers used for allocation, starting at
+     * T0.
+     */
+    protected int maxCount;
+
     /**
      * Constructs a {@code NRegisterAllocator} object given the control flow 
-     * graph for method.
+     * graph for method and the number of registers to allocate from.
      * 
      * @param cfg
      *            control flow graph for a method.
+     * @param maxCount
+     *            maximum number of physical registers used for allocation.
      */
 
-    protected NRegisterAllocator(NControlFlowGraph cfg) {
+    protected NRegisterAllocator(NControlFlowGraph cfg, int maxCount) {
         this.cfg = cfg;
+        this.maxCount = maxCount;
         this.cfg.intervals = new ArrayList<NInterval>();
         for (int i = 0; i < cfg.registers.size(); i++) {
             this.cfg.intervals.add(new NInterval(i, cfg));
@@ -131,7 +140,7 @@ public abstract class NRegisterAllocator {
      * cfg's basicBlock structure.
      */
 
-    private void computeLocalLiveSets() {
+    protected void computeLocalLiveSets() {
         for (NBasicBlock block : cfg.basicBlocks) {
             block.liveUse = new BitSet(cfg.registers.size());
             block.liveDef = new BitSet(cfg.registers.size());
@@ -154,9 +163,10 @@ public abstract class NRegisterAllocator {
      * works internally with the cfg's basicBlock structure.
      */
 
-    private void computeGlobalLiveSets() {
+    protected void computeGlobalLiveSets() {
         boolean changed = false;
         for (NBasicBlock b : cfg.basicBlocks) {
+            b.liveIn = new BitSet(cfg.registers.size());
             b.liveOut = new BitSet(cfg.registers.size());
         }
 
@@ -3,6 +3,7 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static jminusminus.TokenKind.*;
 
@@ -28,6 +29,39 @@ public class Parser {
     /** Whether we have recovered from a parser error. */
     private boolean isRecovered;
 
+    /** Index of seeIdentLParen's results in the memo table. */
+    private static final int IDENT_LPAREN = 0;
+
+    /** Index of seeCast's results in the memo table. */
+    private static final int CAST = 1;
+
+    /** Index of seeLocalVariableDeclaration's results in the memo table. */
+    private static final int LOCAL_VARIABLE_DECLARATION = 2;
+
+    /** Number of memoized lookahead predicates. */
+    private static final int PREDICATES = 3;
+
+    /** A lookahead predicate not yet tried at a position. */
+    private static final byte UNKNOWN = 0;
+
+    /** A lookahead predicate found false at a position. */
+    private static final byte NO = 1;
+
+    /** A lookahead predicate found true at a position. */
+    private static final byte YES = 2;
+
+    /**
+     * Memo table for the lookahead predicates: PREDICATES entries per token
+     * position, from memoBase on, each UNKNOWN, NO, or YES.
+     */
+    private byte[] memo;
+
+    /** Position of the token the first entries of the memo table are for. */
+    private int memoBase;
+
+    /** Number of entries of the memo table in use. */
+    private int memoSize;
+
     /**
      * Constructs a parser from the given lexical analyzer.
      * 
@@ -39,6 +73,9 @@ public class Parser {
         this.scanner = scanner;
         isInError = false;
         isRecovered = true;
+        memo = new byte[PREDICATES * 64];
+        memoBase = 0;
+        memoSize = 0;
         scanner.next(); // Prime the pump
     }
 
@@ -151,28 +188,115 @@ public class Parser {
     private void reportParserError(String message, Object... args) {
         isInError = true;
         isRecovered = false;
-        System.err
-                .printf("%s:%d: ", scanner.fileName(), scanner.token().line());
-        System.err.printf(message, args);
-        System.err.println();
+        // A single write, so that errors from files being parsed
+        // concurrently do not interleave
+        System.err.printf("%s:%d: %s%n", scanner.fileName(), scanner.token()
+                .line(), String.format(message, args));
     }
 
     // ////////////////////////////////////////////////
     // Lookahead /////////////////////////////////////
     // ////////////////////////////////////////////////
 
+    // The answers of seeIdentLParen, seeCast, and
+    // seeLocalVariableDeclaration depend only on the tokens from
+    // the current one on, so each is remembered, by token
+    // position, for the rest of the statement (or member) being
+    // parsed; asking again at the same position costs nothing,
+    // however much lookahead the first answer took.
+
+    /**
+     * Forgets the memoized answers of the lookahead predicates, at the start
+     * of a statement or member declaration. Since the parser moves forward
+     * only, the answers for earlier positions will not be asked for again.
+     */
+
+    private void forgetLookahead() {
+        Arrays.fill(memo, 0, memoSize, UNKNOWN);
+        memoBase = scanner.position();
+        memoSize = 0;
+    }
+
+    /**
+     * Returns the memoized answer of the specified predicate at the current
+     * position.
+     * 
+     * @param predicate
+     *            the predicate.
+     * @return UNKNOWN, NO, or YES.
+     */
+
+    private byte memoized(int predicate) {
+        int i = (scanner.position() - memoBase) * PREDICATES + predicate;
+        return i >= 0 && i < memoSize ? memo[i] : UNKNOWN;
+    }
+
+    /**
+     * Memoizes the answer of the specified predicate at the current position.
+     * 
+     * @param predicate
+     *            the predicate.
+     * @param result
+     *            the answer.
+     * @return the answer.
+     */
+
+    private boolean memoize(int predicate, boolean result) {
+        int i = (scanner.position() - memoBase) * PREDICATES + predicate;
+        if (i < 0) {
+            return result;
+        }
+        if (i >= memo.length) {
+            memo = Arrays.copyOf(memo, Math.max(memo.length * 2, i + 1));
+        }
+        memo[i] = result ? YES : NO;
+        memoSize = Math.max(memoSize, i + 1);
+        return result;
+    }
+
     /**
      * Are we looking at an IDENTIFIER followed by a LPAREN? Look ahead to find
-     * out.
+     * out (unless we already know).
      * 
      * @return true iff we're looking at IDENTIFIER LPAREN; false otherwise.
      */
 
     private boolean seeIdentLParen() {
+        byte known = memoized(IDENT_LPAREN);
+        if (known != UNKNOWN) {
+            return known == YES;
+        }
         scanner.recordPosition();
         boolean result = have(IDENTIFIER) && see(LPAREN);
         scanner.returnToPosition();
-        return result;
+        return memoize(IDENT_LPAREN, result);
+    }
+
+    /**
+     * Are we looking at a cast? Look ahead to find out (unless we already
+     * know).
+     * 
+     * @return true iff we're looking at a cast; false otherwise.
+     */
+
+    private boolean seeCast() {
+        byte known = memoized(CAST);
+        return known == UNKNOWN ? memoize(CAST, lookAheadForCast())
+                : known == YES;
+    }
+
+    /**
+     * Are we looking at a local variable declaration? Look ahead to find out
+     * (unless we already know).
+     * 
+     * @return true iff we are looking at local variable declaration; false
+     *         otherwise.
+     */
+
+    private boolean seeLocalVariableDeclaration() {
+        byte known = memoized(LOCAL_VARIABLE_DECLARATION);
+        return known == UNKNOWN ? memoize(LOCAL_VARIABLE_DECLARATION,
+                lookAheadForLocalVariableDeclaration()) : known == YES;
     }
 
     /**
@@ -187,7 +311,7 @@ public class Parser {
      * @return true iff we're looking at a cast; false otherwise.
      */
 
-    private boolean seeCast() {
+    private boolean lookAheadForCast() {
         scanner.recordPosition();
         if (!have(LPAREN)) {
             scanner.returnToPosition();
@@ -237,7 +361,7 @@ public class Parser {
      *         otherwise.
      */
 
-    private boolean seeLocalVariableDeclaration() {
+    private boolean lookAheadForLocalVariableDeclaration() {
         scanner.recordPosition();
         if (have(IDENTIFIER)) {
             // A qualified identifier is ok
@@ -383,12 +507,14 @@ public class Parser {
     private TypeName qualifiedIdentifier() {
         int line = scanner.token().line();
         mustBe(IDENTIFIER);
-        String qualifiedIdentifier = scanner.previousToken().image();
+        StringBuilder qualifiedIdentifier = new StringBuilder(scanner
+                .previousToken().image());
         while (have(DOT)) {
             mustBe(IDENTIFIER);
-            qualifiedIdentifier += "." + scanner.previousToken().image();
+            qualifiedIdentifier.append('.').append(
+                    scanner.previousToken().image());
         }
-        return new TypeName(line, qualifiedIdentifier);
+        return new TypeName(line, qualifiedIdentifier.toString());
     }
 
     /**
@@ -547,6 +673,7 @@ public class Parser {
 
     private JMember memberDecl(ArrayList<String> mods) {
         int line = scanner.token().line();
+        forgetLookahead();
         JMember memberDecl = null;
         if (seeIdentLParen()) {
             // A constructor
@@ -621,6 +748,7 @@ public class Parser {
      */
 
     private JStatement blockStatement() {
+        forgetLookahead();
         if (seeLocalVariableDeclaration()) {
             return localVariableDeclarationStatement();
         } else {
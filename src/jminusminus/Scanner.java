@@ -2,12 +2,16 @@
 
 package jminusminus;
 
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
 
-import java.util.Hashtable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import java.util.HashMap;
 
 import static jminusminus.TokenKind.*;
 
@@ -28,14 +32,42 @@ class Scanner {
     /** End of file character. */
     public final static char EOFCH = CharReader.EOFCH;
 
-    /** Keywords in j--. */
-    private Hashtable<String, TokenKind> reserved;
+    /** Keywords in j--; shared by all scanners. */
+    private static final HashMap<String, TokenKind> reserved;
+
+    static {
+        reserved = new HashMap<String, TokenKind>();
+        reserved.put(ABSTRACT.image(), ABSTRACT);
+        reserved.put(BOOLEAN.image(), BOOLEAN);
+        reserved.put(CHAR.image(), CHAR);
+        reserved.put(CLASS.image(), CLASS);
+        reserved.put(ELSE.image(), ELSE);
+        reserved.put(EXTENDS.image(), EXTENDS);
+        reserved.put(FALSE.image(), FALSE);
+        reserved.put(IF.image(), IF);
+        reserved.put(IMPORT.image(), IMPORT);
+        reserved.put(INSTANCEOF.image(), INSTANCEOF);
+        reserved.put(INT.image(), INT);
+        reserved.put(NEW.image(), NEW);
+        reserved.put(NULL.image(), NULL);
+        reserved.put(PACKAGE.image(), PACKAGE);
+        reserved.put(PRIVATE.image(), PRIVATE);
+        reserved.put(PROTECTED.image(), PROTECTED);
+        reserved.put(PUBLIC.image(), PUBLIC);
+        reserved.put(RETURN.image(), RETURN);
+        reserved.put(STATIC.image(), STATIC);
+        reserved.put(SUPER.image(), SUPER);
+        reserved.put(THIS.image(), THIS);
+        reserved.put(TRUE.image(), TRUE);
+        reserved.put(VOID.image(), VOID);
+        reserved.put(WHILE.image(), WHILE);
+    }
 
     /** Source characters. */
-    private CharReader input;
+    protected CharReader input;
 
     /** Next unscanned character. */
-    private char ch;
+    protected char ch;
 
     /** Whether a scanner error has been found. */
     private boolean isInError;
@@ -44,7 +76,7 @@ class Scanner {
     private String fileName;
 
     /** Line number of current token. */
-    private int line;
+    protected int line;
 
     /**
      * Constructs a Scanner object.
@@ -60,33 +92,6 @@ class Scanner {
         this.fileName = fileName;
         isInError = false;
 
-        // Keywords in j--
-        reserved = new Hashtable<String, TokenKind>();
-        reserved.put(ABSTRACT.image(), ABSTRACT);
-        reserved.put(BOOLEAN.image(), BOOLEAN);
-        reserved.put(CHAR.image(), CHAR);
-        reserved.put(CLASS.image(), CLASS);
-        reserved.put(ELSE.image(), ELSE);
-        reserved.put(EXTENDS.image(), EXTENDS);
-        reserved.put(FALSE.image(), FALSE);
-        reserved.put(IF.image(), IF);
-        reserved.put(IMPORT.image(), IMPORT);
-        reserved.put(INSTANCEOF.image(), INSTANCEOF);
-        reserved.put(INT.image(), INT);
-        reserved.put(NEW.image(), NEW);
-        reserved.put(NULL.image(), NULL);
-        reserved.put(PACKAGE.image(), PACKAGE);
-        reserved.put(PRIVATE.image(), PRIVATE);
-        reserved.put(PROTECTED.image(), PROTECTED);
-        reserved.put(PUBLIC.image(), PUBLIC);
-        reserved.put(RETURN.image(), RETURN);
-        reserved.put(STATIC.image(), STATIC);
-        reserved.put(SUPER.image(), SUPER);
-        reserved.put(THIS.image(), THIS);
-        reserved.put(TRUE.image(), TRUE);
-        reserved.put(VOID.image(), VOID);
-        reserved.put(WHILE.image(), WHILE);
-
         // Prime the pump.
         nextCh();
     }
@@ -98,7 +103,8 @@ class Scanner {
      */
 
     public TokenInfo getNextToken() {
-        StringBuffer buffer;
+        StringBuilder buffer;
+        int start;
         boolean moreWhiteSpace = true;
         while (moreWhiteSpace) {
             while (isWhitespace(ch)) {
@@ -199,7 +205,7 @@ class Scanner {
                 return getNextToken();
             }
         case '\'':
-            buffer = new StringBuffer();
+            buffer = new StringBuilder();
             buffer.append('\'');
             nextCh();
             if (ch == '\\') {
@@ -224,7 +230,7 @@ class Scanner {
                 return new TokenInfo(CHAR_LITERAL, buffer.toString(), line);
             }
         case '"':
-            buffer = new StringBuffer();
+            buffer = new StringBuilder();
             buffer.append("\"");
             nextCh();
             while (ch != '"' && ch != '\n' && ch != EOFCH) {
@@ -264,22 +270,21 @@ class Scanner {
         case '7':
         case '8':
         case '9':
-            buffer = new StringBuffer();
+            start = input.offset();
             while (isDigit(ch)) {
-                buffer.append(ch);
                 nextCh();
             }
-            return new TokenInfo(INT_LITERAL, buffer.toString(), line);
+            return new TokenInfo(INT_LITERAL, input.image(start), line);
         default:
             if (isIdentifierStart(ch)) {
-                buffer = new StringBuffer();
+                start = input.offset();
                 while (isIdentifierPart(ch)) {
-                    buffer.append(ch);
                     nextCh();
                 }
-                String identifier = buffer.toString();
-                if (reserved.containsKey(identifier)) {
-                    return new TokenInfo(reserved.get(identifier), line);
+                String identifier = input.image(start);
+                TokenKind keyword = reserved.get(identifier);
+                if (keyword != null) {
+                    return new TokenInfo(keyword, line);
                 } else {
                     return new TokenInfo(IDENTIFIER, identifier, line);
                 }
@@ -335,13 +340,9 @@ class Scanner {
      * number.
      */
 
-    private void nextCh() {
+    protected void nextCh() {
         line = input.line();
-        try {
-            ch = input.nextChar();
-        } catch (Exception e) {
-            reportScannerError("Unable to read characters from input");
-        }
+        ch = input.nextChar();
     }
 
     /**
@@ -355,11 +356,10 @@ class Scanner {
      *            related values.
      */
 
-    private void reportScannerError(String message, Object... args) {
+    protected void reportScannerError(String message, Object... args) {
         isInError = true;
-        System.err.printf("%s:%d: ", fileName, line);
-        System.err.printf(message, args);
-        System.err.println();
+        System.err.printf("%s:%d: %s%n", fileName, line, String.format(
+                message, args));
     }
 
     /**
@@ -435,9 +435,14 @@ class Scanner {
 }
 
 /**
- * A buffered character reader. Abstracts out differences between platforms,
+ * A character reader over the whole of a source file, which it reads (in
+ * bulk) and decodes up front. Abstracts out differences between platforms,
  * mapping all new lines to '\n'. Also, keeps track of line numbers where the
  * first line is numbered 1.
+ * <p>
+ * Since the characters stay in memory, the image of a token (an identifier,
+ * say) is taken straight from them, as a slice, rather than being built up
+ * character by character.
  */
 
 class CharReader {
@@ -445,8 +450,20 @@ class CharReader {
     /** A representation of the end of file as a character. */
     public final static char EOFCH = (char) -1;
 
-    /** The underlying reader records line numbers. */
-    private LineNumberReader lineNumberReader;
+    /** The characters of the file. */
+    private char[] chars;
+
+    /** Number of characters in the file. */
+    private int length;
+
+    /** Offset of the next character to be scanned. */
+    private int position;
+
+    /** Offset of the character last scanned. */
+    private int offset;
+
+    /** Current line number, starting at 1. */
+    private int line;
 
     /** Name of the file that is being read. */
     private String fileName;
@@ -457,24 +474,59 @@ class CharReader {
      * @param fileName
      *            the name of the input file.
      * @exception FileNotFoundException
-     *                if the file is not found.
+     *                if the file is not found, or cannot be read.
      */
 
     public CharReader(String fileName) throws FileNotFoundException {
-        lineNumberReader = new LineNumberReader(new FileReader(fileName));
+        FileInputStream in = new FileInputStream(fileName);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+            while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+                // Read the file in as few reads as possible
+            }
+            bytes.flip();
+            CharBuffer decoded = Charset.defaultCharset().decode(bytes);
+            chars = decoded.array();
+            length = decoded.limit();
+        } catch (IOException e) {
+            throw new FileNotFoundException(fileName + " (" + e.getMessage()
+                    + ")");
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Everything has been read by now
+            }
+        }
         this.fileName = fileName;
+        position = 0;
+        offset = 0;
+        line = 1;
     }
 
     /**
      * Scans the next character.
      * 
-     * @return the character scanned.
-     * @exception IOException
-     *                if an I/O error occurs.
+     * @return the character scanned, or {@link #EOFCH} at the end of the file.
      */
 
-    public char nextChar() throws IOException {
-        return (char) lineNumberReader.read();
+    public char nextChar() {
+        offset = position;
+        if (position >= length) {
+            return EOFCH;
+        }
+        char c = chars[position++];
+        if (c == '\r') {
+            if (position < length && chars[position] == '\n') {
+                position++;
+            }
+            c = '\n';
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
     }
 
     /**
@@ -484,8 +536,48 @@ class CharReader {
      */
 
     public int line() {
-        // LineNumberReader counts lines from 0.
-        return lineNumberReader.getLineNumber() + 1;
+        return line;
+    }
+
+    /**
+     * Returns the offset in the file of the character last scanned; this
+     * marks the start of an image, for {@link #image(int)}.
+     * 
+     * @return the offset of the character last scanned.
+     */
+
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the characters from the specified offset up to (but not
+     * including) the character last scanned. The image must not span a new
+     * line, since a new line may be two characters in the file.
+     * 
+     * @param start
+     *            offset of the first character of the image.
+     * @return the image.
+     */
+
+    public String image(int start) {
+        return new String(chars, start, offset - start);
+    }
+
+    /**
+     * Moves the reader back (or forward) so that the next character scanned
+     * is the one at the specified offset; a scanner that has read past the
+     * end of a token uses this to return to it.
+     *
+     * @param position
+     *            offset of the next character to be scanned.
+     * @param line
+     *            the line number at that offset.
+     */
+
+    public void reset(int position, int line) {
+        this.position = position;
+        this.line = line;
     }
 
     /**
@@ -499,14 +591,11 @@ class CharReader {
     }
 
     /**
-     * Closes the file.
-     * 
-     * @exception IOException
-     *                if an I/O error occurs.
+     * Closes the file. The file is read in full, and closed, when the reader
+     * is constructed, so there is nothing left to do.
      */
 
-    public void close() throws IOException {
-        lineNumberReader.close();
+    public void close() {
     }
 
 }
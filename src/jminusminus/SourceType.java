@@ -0,0 +1,538 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import static jminusminus.CLConstants.*;
+
+/**
+ * A class type declared in source, or an array type whose elements are of
+ * such a type. Its modifiers, super class and member headers are recorded
+ * straight from the AST: the type is declared (with java.lang.Object for its
+ * super class, for now) by {@link JClassDeclaration#declareThisType}, and its
+ * super class and members are filled in, member by member, by
+ * {@link JClassDeclaration#preAnalyze}; no class is emitted or loaded for
+ * it. Once pre-analysis is done, the type is not modified, and so may be
+ * shared by the threads that analyze and generate code for the compilation.
+ */
+
+class SourceType extends Type {
+
+    /** The type's descriptor. */
+    private String descriptor;
+
+    /** The type's modifiers. */
+    private int modifiers;
+
+    /** The super class; {@code null} for an array type. */
+    private Type superClass;
+
+    /** The component type, if this is an array type; {@code null} if not. */
+    private Type componentType;
+
+    /** The index of the declared members. */
+    private MemberIndex memberIndex;
+
+    /** The type of arrays of this type, once asked for. */
+    private SourceType arrayType;
+
+    /**
+     * Constructs the class type with the specified name and modifiers.
+     *
+     * @param qualifiedName
+     *            the qualified name of the class, in internal form.
+     * @param mods
+     *            the class modifiers.
+     */
+
+    public SourceType(String qualifiedName, ArrayList<String> mods) {
+        descriptor = "L" + qualifiedName + ";";
+        modifiers = modifiersFor(mods) & ~ACC_SUPER;
+        superClass(Type.OBJECT);
+    }
+
+    /**
+     * Constructs the type of arrays whose elements are of the specified type.
+     *
+     * @param componentType
+     *            the component type.
+     */
+
+    private SourceType(Type componentType) {
+        this.componentType = componentType;
+        descriptor = "[" + componentType.toDescriptor();
+        modifiers = componentType.modifiers()
+                & (ACC_PUBLIC | ACC_PROTECTED | ACC_PRIVATE) | ACC_FINAL
+                | ACC_ABSTRACT;
+        memberIndex = new MemberIndex(Type.OBJECT.memberIndex());
+    }
+
+    /**
+     * Sets the super class of this (class) type, and empties its member
+     * table, which is linked to that of the super class.
+     *
+     * @param superClass
+     *            the super class.
+     */
+
+    public void superClass(Type superClass) {
+        this.superClass = superClass;
+        memberIndex = new MemberIndex(superClass == Type.ANY ? null
+                : superClass.memberIndex());
+    }
+
+    /**
+     * Adds a method to the member table of this type.
+     *
+     * @param mods
+     *            the method modifiers.
+     * @param name
+     *            the method name.
+     * @param paramTypes
+     *            the (resolved) types of the formal parameters.
+     * @param returnType
+     *            the (resolved) return type.
+     */
+
+    public void addMethod(ArrayList<String> mods, String name,
+            Type[] paramTypes, Type returnType) {
+        memberIndex.addMethod(new SourceMethod(this, modifiersFor(mods), name,
+                paramTypes, returnType), descriptorsFor(paramTypes), mods
+                .contains("abstract"));
+    }
+
+    /**
+     * Adds a constructor to the member table of this type.
+     *
+     * @param mods
+     *            the constructor modifiers.
+     * @param paramTypes
+     *            the (resolved) types of the formal parameters.
+     */
+
+    public void addConstructor(ArrayList<String> mods, Type[] paramTypes) {
+        memberIndex.addConstructor(new SourceConstructor(this,
+                modifiersFor(mods), paramTypes), descriptorsFor(paramTypes));
+    }
+
+    /**
+     * Adds a field to the member table of this type.
+     *
+     * @param mods
+     *            the field modifiers.
+     * @param name
+     *            the field name.
+     * @param type
+     *            the (resolved) field type.
+     */
+
+    public void addField(ArrayList<String> mods, String name, Type type) {
+        memberIndex.addField(new SourceField(this, modifiersFor(mods), name,
+                type));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isArray() {
+        return componentType != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type componentType() {
+        return componentType;
+    }
+
+    /**
+     * Returns the Type's super type. As with reflection, an array type has
+     * java.lang.Object.
+     *
+     * @return the super type.
+     */
+
+    public Type superClass() {
+        return isArray() ? Type.OBJECT : superClass;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type[] interfaces() {
+        return isArray() ? new Type[] { Type.typeFor(Cloneable.class),
+                Type.typeFor(java.io.Serializable.class) } : new Type[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isPrimitive() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    MemberIndex memberIndex() {
+        return memberIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public synchronized Type arrayType() {
+        if (arrayType == null) {
+            arrayType = new SourceType(this);
+        }
+        return arrayType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String jvmName() {
+        return isArray() ? descriptor : descriptor.substring(1, descriptor
+                .length() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toString() {
+        return isArray() ? componentType + "[]" : jvmName().replace('/', '.');
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String simpleName() {
+        if (isArray()) {
+            return componentType.simpleName() + "[]";
+        }
+        String name = jvmName();
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Returns the modifiers (access flags) denoted by the specified list of
+     * modifiers.
+     *
+     * @param mods
+     *            the modifiers, as in source.
+     * @return the access flags.
+     */
+
+    private static int modifiersFor(ArrayList<String> mods) {
+        int flags = 0;
+        for (String mod : mods) {
+            flags |= CLFile.accessFlagToInt(mod);
+        }
+        return flags;
+    }
+
+    /**
+     * Returns the descriptors of the specified types.
+     *
+     * @param types
+     *            the types.
+     * @return their descriptors.
+     */
+
+    private static String[] descriptorsFor(Type[] types) {
+        String[] descriptors = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            descriptors[i] = types[i].toDescriptor();
+        }
+        return descriptors;
+    }
+
+    /**
+     * Returns the JVM descriptor for a method with the specified parameter and
+     * return types.
+     *
+     * @param paramTypes
+     *            the parameter types.
+     * @param returnType
+     *            the return type.
+     * @return the descriptor.
+     */
+
+    static String descriptorFor(Type[] paramTypes, Type returnType) {
+        String descriptor = "(";
+        for (Type paramType : paramTypes) {
+            descriptor += paramType.toDescriptor();
+        }
+        return descriptor + ")" + returnType.toDescriptor();
+    }
+
+}
+
+/**
+ * A method of a {@link SourceType}, known by the header of its declaration.
+ */
+
+class SourceMethod extends Method {
+
+    /** The type declaring this method. */
+    private SourceType declaringType;
+
+    /** The method's modifiers. */
+    private int modifiers;
+
+    /** The method's name. */
+    private String name;
+
+    /** The types of the method's formal parameters. */
+    private Type[] paramTypes;
+
+    /** The method's return type. */
+    private Type returnType;
+
+    /**
+     * Constructs a method of a source type.
+     *
+     * @param declaringType
+     *            the type declaring the method.
+     * @param modifiers
+     *            the method's modifiers.
+     * @param name
+     *            the method's name.
+     * @param paramTypes
+     *            the types of the method's formal parameters.
+     * @param returnType
+     *            the method's return type.
+     */
+
+    public SourceMethod(SourceType declaringType, int modifiers, String name,
+            Type[] paramTypes, Type returnType) {
+        this.declaringType = declaringType;
+        this.modifiers = modifiers;
+        this.name = name;
+        this.paramTypes = paramTypes;
+        this.returnType = returnType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return SourceType.descriptorFor(paramTypes, returnType);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toString() {
+        String str = name() + "(";
+        for (Type paramType : paramTypes) {
+            str += paramType.toString();
+        }
+        str += ")";
+        return str;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type returnType() {
+        return returnType;
+    }
+
+}
+
+/**
+ * A field of a {@link SourceType}, known by its declaration.
+ */
+
+class SourceField extends Field {
+
+    /** The type declaring this field. */
+    private SourceType declaringType;
+
+    /** The field's modifiers. */
+    private int modifiers;
+
+    /** The field's name. */
+    private String name;
+
+    /** The field's type. */
+    private Type type;
+
+    /**
+     * Constructs a field of a source type.
+     *
+     * @param declaringType
+     *            the type declaring the field.
+     * @param modifiers
+     *            the field's modifiers.
+     * @param name
+     *            the field's name.
+     * @param type
+     *            the field's type.
+     */
+
+    public SourceField(SourceType declaringType, int modifiers, String name,
+            Type type) {
+        this.declaringType = declaringType;
+        this.modifiers = modifiers;
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type type() {
+        return type;
+    }
+
+}
+
+/**
+ * A constructor of a {@link SourceType}, known by the header of its
+ * declaration (or, for an implicit constructor, by the class declaration).
+ */
+
+class SourceConstructor extends Constructor {
+
+    /** The type declaring this constructor. */
+    private SourceType declaringType;
+
+    /** The constructor's modifiers. */
+    private int modifiers;
+
+    /** The types of the constructor's formal parameters. */
+    private Type[] paramTypes;
+
+    /**
+     * Constructs a constructor of a source type.
+     *
+     * @param declaringType
+     *            the type declaring the constructor.
+     * @param modifiers
+     *            the constructor's modifiers.
+     * @param paramTypes
+     *            the types of the constructor's formal parameters.
+     */
+
+    public SourceConstructor(SourceType declaringType, int modifiers,
+            Type[] paramTypes) {
+        this.declaringType = declaringType;
+        this.modifiers = modifiers;
+        this.paramTypes = paramTypes;
+    }
+
+    /**
+     * Returns the constructor's name: that of the declaring type, as with
+     * reflection.
+     *
+     * @return the name.
+     */
+
+    public String name() {
+        return declaringType.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return SourceType.descriptorFor(paramTypes, Type.VOID);
+    }
+
+}
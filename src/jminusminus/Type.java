@@ -7,11 +7,11 @@ import java.lang.reflect.Modifier;
 
 import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * For representing j-- types. All types are represented underneath (in the
- * classRep field) by Java objects of type {@code Class}. These objects 
+ * For representing j-- types. Types are, by default, represented underneath
+ * (in the classRep field) by Java objects of type {@code Class}. These objects 
  * represent types in Java, so this should ease our interfacing with existing 
  * Java classes.
  * <p>
@@ -23,6 +23,13 @@ import java.util.Hashtable;
  * IdentifierTypes must be "resolved" at some point, so that all Types having
  * the same name refer to the same Type object. The {@code resolve} method does 
  * this.
+ * <p>
+ * The types declared in source are represented by {@link SourceType}s, whose
+ * members are recorded from the AST. A compilation may also resolve the types
+ * not declared in source from the class files on a class path, without loading
+ * them into the compiler's JVM; such types are represented by 
+ * {@link ClassFileType}s. Both override the methods here that consult the
+ * {@code Class}.
  */
 
 class Type {
@@ -30,8 +37,16 @@ class Type {
     /** The Type's internal (Java) representation. * */
     private Class<?> classRep;
 
-    /** Maps type names to their Type representations. */
-    private static Hashtable<String, Type> types = new Hashtable<String, Type>();
+    /** The Type's descriptor, once computed from its classRep. */
+    private String descriptor;
+
+    /**
+     * Maps type names to their Type representations, for the types of the
+     * Java platform; these are shared by all compilations. Types declared in
+     * source are kept by the {@link CompilationSession} that declares them.
+     */
+    private static ConcurrentHashMap<String, Type> types =
+        new ConcurrentHashMap<String, Type>();
 
     /** The primitive type, int. */
     public final static Type INT = typeFor(int.class);
@@ -100,10 +115,16 @@ class Type {
      */
 
     public static Type typeFor(Class<?> classRep) {
-        if (types.get(descriptorFor(classRep)) == null) {
-            types.put(descriptorFor(classRep), new Type(classRep));
+        String descriptor = descriptorFor(classRep);
+        Type type = types.get(descriptor);
+        if (type == null) {
+            type = new Type(classRep);
+            Type existing = types.putIfAbsent(descriptor, type);
+            if (existing != null) {
+                type = existing;
+            }
         }
-        return types.get(descriptorFor(classRep));
+        return type;
     }
 
     /**
@@ -117,19 +138,6 @@ class Type {
         return classRep;
     }
 
-    /**
-     * This setter is used by {@link JCompilationUnit#preAnalyze()} to set this
-     * {@code classRep} to the specified partial class, computed during 
-     * pre-analysis.
-     * 
-     * @param classRep
-     *            the partial class.
-     */
-
-    public void setClassRep(Class<?> classRep) {
-        this.classRep = classRep;
-    }
-
     /**
      * Type equality is based on the equality of descriptors.
      * 
@@ -175,6 +183,44 @@ class Type {
                 : typeFor(classRep.getSuperclass());
     }
 
+    /**
+     * Returns the interfaces that this type directly implements (or, for an
+     * interface, extends). Meaningful only to class {@code Types}.
+     * 
+     * @return the interfaces.
+     */
+
+    public Type[] interfaces() {
+        Class<?>[] classes = classRep.getInterfaces();
+        Type[] interfaces = new Type[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            interfaces[i] = typeFor(classes[i]);
+        }
+        return interfaces;
+    }
+
+    /**
+     * Returns the modifiers (access flags) of this type, as 
+     * {@link java.lang.reflect.Modifier} encodes them.
+     * 
+     * @return the modifiers.
+     */
+
+    protected int modifiers() {
+        return classRep.getModifiers();
+    }
+
+    /**
+     * Returns the index of the members declared in this type. Meaningful only
+     * to class {@code Types}.
+     * 
+     * @return the member index.
+     */
+
+    MemberIndex memberIndex() {
+        return MemberIndex.of(classRep);
+    }
+
     /**
      * Is this a primitive type?
      * 
@@ -192,7 +238,7 @@ class Type {
      */
 
     public boolean isInterface() {
-        return classRep.isInterface();
+        return Modifier.isInterface(modifiers());
     }
 
     /**
@@ -212,7 +258,7 @@ class Type {
      */
 
     public boolean isFinal() {
-        return Modifier.isFinal(classRep.getModifiers());
+        return Modifier.isFinal(modifiers());
     }
 
     /**
@@ -222,7 +268,7 @@ class Type {
      */
 
     public boolean isAbstract() {
-        return Modifier.isAbstract(classRep.getModifiers());
+        return Modifier.isAbstract(modifiers());
     }
 
     /**
@@ -235,7 +281,43 @@ class Type {
      */
 
     public boolean isJavaAssignableFrom(Type that) {
-        return this.classRep.isAssignableFrom(that.classRep);
+        if (this.classRep != null && that.classRep != null) {
+            return this.classRep.isAssignableFrom(that.classRep);
+        }
+        if (this.isPrimitive() || that.isPrimitive()) {
+            return this.equals(that);
+        }
+        if (this.isArray()) {
+            return that.isArray()
+                    && this.componentType().isJavaAssignableFrom(
+                            that.componentType());
+        }
+        return this.equals(OBJECT) || this.isSuperTypeOf(that);
+    }
+
+    /**
+     * Is this type that (reference) type, or one of its super classes or
+     * interfaces?
+     * 
+     * @param that
+     *            the candidate subtype.
+     * @return true or false.
+     */
+
+    private boolean isSuperTypeOf(Type that) {
+        if (this.equals(that)) {
+            return true;
+        }
+        Type superClass = that.superClass();
+        if (superClass != null && isSuperTypeOf(superClass)) {
+            return true;
+        }
+        for (Type type : that.interfaces()) {
+            if (isSuperTypeOf(type)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -273,13 +355,7 @@ class Type {
      */
 
     private ArrayList<Method> declaredAbstractMethods() {
-        ArrayList<Method> declaredAbstractMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (Modifier.isAbstract(method.getModifiers())) {
-                declaredAbstractMethods.add(new Method(method));
-            }
-        }
-        return declaredAbstractMethods;
+        return memberIndex().abstractMethods();
     }
 
     /**
@@ -289,13 +365,7 @@ class Type {
      */
 
     private ArrayList<Method> declaredConcreteMethods() {
-        ArrayList<Method> declaredConcreteMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (!Modifier.isAbstract(method.getModifiers())) {
-                declaredConcreteMethods.add(new Method(method));
-            }
-        }
-        return declaredConcreteMethods;
+        return memberIndex().concreteMethods();
     }
 
     /**
@@ -316,7 +386,7 @@ class Type {
                 return;
             }
         }
-        JAST.compilationUnit.reportSemanticError(line,
+        JAST.compilationUnit().reportSemanticError(line,
                 "Type %s doesn't match any of the expected types %s", this,
                 Arrays.toString(expectedTypes));
     }
@@ -333,7 +403,7 @@ class Type {
 
     public void mustMatchExpected(int line, Type expectedType) {
         if (!matchesExpected(expectedType)) {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Type %s doesn't match type %s", this, expectedType);
         }
     }
@@ -409,7 +479,10 @@ class Type {
      */
 
     public String toDescriptor() {
-        return descriptorFor(classRep);
+        if (descriptor == null) {
+            descriptor = descriptorFor(classRep);
+        }
+        return descriptor;
     }
 
     /**
@@ -421,7 +494,7 @@ class Type {
      * @return the JVM descriptor.
      */
 
-    private static String descriptorFor(Class<?> cls) {
+    static String descriptorFor(Class<?> cls) {
         return cls == null ? "V" : cls == void.class ? "V"
                 : cls.isArray() ? "[" + descriptorFor(cls.getComponentType())
                         : cls.isPrimitive() ? (cls == int.class ? "I"
@@ -468,7 +541,7 @@ class Type {
     public String packageName() {
         String name = toString();
         return name.lastIndexOf('.') == -1 ? "" : name.substring(0, name
-                .lastIndexOf('.') - 1);
+                .lastIndexOf('.'));
     }
 
     /**
@@ -497,25 +570,9 @@ class Type {
      */
 
     public Method methodFor(String name, Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
-        }
-        Class cls = classRep;
-
         // Search this class and all superclasses
-        while (cls != null) {
-            java.lang.reflect.Method[] methods = cls.getDeclaredMethods();
-            for (java.lang.reflect.Method method : methods) {
-                if (method.getName().equals(name)
-                        && Type.argTypesMatch(classes, method
-                                .getParameterTypes())) {
-                    return new Method(method);
-                }
-            }
-            cls = cls.getSuperclass();
-        }
-        return null;
+        return this == ANY || this == CONSTRUCTOR ? null : memberIndex()
+                .methodFor(name, argTypes);
     }
 
     /**
@@ -530,20 +587,8 @@ class Type {
      */
 
     public Constructor constructorFor(Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
-        }
-
         // Search only this class (we don't inherit constructors)
-        java.lang.reflect.Constructor[] constructors = classRep
-                .getDeclaredConstructors();
-        for (java.lang.reflect.Constructor constructor : constructors) {
-            if (argTypesMatch(classes, constructor.getParameterTypes())) {
-                return new Constructor(constructor);
-            }
-        }
-        return null;
+        return memberIndex().constructorFor(argTypes);
     }
 
     /**
@@ -555,17 +600,8 @@ class Type {
      */
 
     public Field fieldFor(String name) {
-        Class<?> cls = classRep;
-        while (cls != null) {
-            java.lang.reflect.Field[] fields = cls.getDeclaredFields();
-            for (java.lang.reflect.Field field : fields) {
-                if (field.getName().equals(name)) {
-                    return new Field(field);
-                }
-            }
-            cls = cls.getSuperclass();
-        }
-        return null;
+        return this == ANY || this == CONSTRUCTOR ? null : memberIndex()
+                .fieldFor(name);
     }
 
     /**
@@ -603,7 +639,7 @@ class Type {
      */
 
     public boolean checkAccess(int line, Member member) {
-        if (!checkAccess(line, classRep, member.declaringType().classRep)) {
+        if (!checkAccess(line, this, member.declaringType())) {
             return false;
         }
 
@@ -611,31 +647,24 @@ class Type {
         if (member.isPublic()) {
             return true;
         }
-        java.lang.Package p1 = classRep.getPackage();
-        java.lang.Package p2 = member.declaringType().classRep.getPackage();
-        if ((p1 == null ? "" : p1.getName()).equals((p2 == null ? "" : p2
-                .getName()))) {
+        if (packageName().equals(member.declaringType().packageName())) {
             return true;
         }
         if (member.isProtected()) {
-            if (classRep.getPackage().getName().equals(
-                    member.declaringType().classRep.getPackage().getName())
-                    || typeFor(member.getClass().getDeclaringClass())
-                            .isJavaAssignableFrom(this)) {
+            if (member.declaringType().isJavaAssignableFrom(this)) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                JAST.compilationUnit().reportSemanticError(line,
                         "The protected member, " + member.name()
                                 + ", is not accessible.");
                 return false;
             }
         }
         if (member.isPrivate()) {
-            if (descriptorFor(classRep).equals(
-                    descriptorFor(member.member().getDeclaringClass()))) {
+            if (toDescriptor().equals(member.declaringType().toDescriptor())) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                JAST.compilationUnit().reportSemanticError(line,
                         "The private member, " + member.name()
                                 + ", is not accessible.");
                 return false;
@@ -643,15 +672,11 @@ class Type {
         }
 
         // Otherwise, the member has default access
-        if (packageName().equals(member.declaringType().packageName())) {
-            return true;
-        } else {
-            JAST.compilationUnit.reportSemanticError(line, "The member, "
-                    + member.name()
-                    + ", is not accessible because it's in a different "
-                    + "package.");
-            return false;
-        }
+        JAST.compilationUnit().reportSemanticError(line, "The member, "
+                + member.name()
+                + ", is not accessible because it's in a different "
+                + "package.");
+        return false;
     }
 
     /**
@@ -671,7 +696,7 @@ class Type {
         if (targetType.isArray()) {
             return this.checkAccess(line, targetType.componentType());
         }
-        return checkAccess(line, classRep, targetType.classRep);
+        return checkAccess(line, this, targetType);
     }
 
     /**
@@ -686,22 +711,28 @@ class Type {
      * @return {@code true} if access is valid; {@code false} otherwise.
      */
 
-    public static boolean checkAccess(int line, Class referencingType,
-            Class type) {
-        java.lang.Package p1 = referencingType.getPackage();
-        java.lang.Package p2 = type.getPackage();
-        if (Modifier.isPublic(type.getModifiers())
-                || (p1 == null ? "" : p1.getName()).equals((p2 == null ? ""
-                        : p2.getName()))) {
+    public static boolean checkAccess(int line, Type referencingType,
+            Type type) {
+        if (Modifier.isPublic(type.modifiers())
+                || referencingType.packageName().equals(type.packageName())) {
             return true;
         } else {
-            JAST.compilationUnit.reportSemanticError(line, "The type, "
-                    + type.getCanonicalName() + ", is not accessible from "
-                    + referencingType.getCanonicalName());
+            JAST.compilationUnit().reportSemanticError(line, "The type, "
+                    + type + ", is not accessible from " + referencingType);
             return false;
         }
     }
 
+    /**
+     * Returns the type of arrays whose elements are of this type.
+     * 
+     * @return the array type.
+     */
+
+    public Type arrayType() {
+        return typeFor(Array.newInstance(classRep, 0).getClass());
+    }
+
     /**
      * Resolves this type in the given context. Notice that this has meaning 
      * only for TypeName and ArrayTypeName, where names are replaced by real 
@@ -837,14 +868,14 @@ class TypeName extends Type {
         Type resolvedType = context.lookupType(name);
         if (resolvedType == null) {
             // Try loading a type with the give fullname
-            try {
-                resolvedType = typeFor(Class.forName(name));
+            resolvedType = JAST.compilationUnit().session().typeNamed(name);
+            if (resolvedType != null) {
                 context.addType(line, resolvedType);
                 // context.compilationUnitContext().addEntry(line,
                 // resolvedType.toString(),
                 // new TypeNameDefn(resolvedType));
-            } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(line,
+            } else {
+                JAST.compilationUnit().reportSemanticError(line,
                         "Unable to locate a type named %s", name);
                 resolvedType = Type.ANY;
             }
@@ -852,8 +883,7 @@ class TypeName extends Type {
         if (resolvedType != Type.ANY) {
             Type referencingType = ((JTypeDecl) (context.classContext
                     .definition())).thisType();
-            Type.checkAccess(line, referencingType.classRep(), resolvedType
-                    .classRep());
+            Type.checkAccess(line, referencingType, resolvedType);
         }
         return resolvedType;
     }
@@ -922,12 +952,7 @@ class ArrayTypeName extends Type {
 
     public Type resolve(Context context) {
         componentType = componentType.resolve(context);
-
-        // The API forces us to make an instance and get its
-        // type.
-        Class classRep = Array.newInstance(componentType().classRep(), 0)
-                .getClass();
-        return Type.typeFor(classRep);
+        return componentType.arrayType();
     }
 
 }
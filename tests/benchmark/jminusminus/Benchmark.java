@@ -0,0 +1,182 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The harness shared by the benchmarks, which time a phase of the compiler
+ * on generated inputs: a benchmark runs on a thread with a large stack, since
+ * some inputs nest as deep as they are big, and reports the best of a number
+ * of timed rounds for each input, after a warm-up round.
+ */
+
+abstract class Benchmark {
+
+    /** Number of timed rounds per input. */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Runs the benchmark on a thread with a large stack, and waits for it to
+     * finish.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @throws Exception
+     *             if the benchmark fails.
+     */
+
+    public void run(final String[] args) throws Exception {
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread(null, new Runnable() {
+            public void run() {
+                try {
+                    benchmark(args);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        }, getClass().getSimpleName(), 1L << 30);
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Runs the benchmark proper.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @throws IOException
+     *             if an input cannot be written.
+     */
+
+    protected abstract void benchmark(String[] args) throws IOException;
+
+    /**
+     * Returns the time taken by the phase being timed on the specified file.
+     *
+     * @param fileName
+     *            the file.
+     * @return the time, in nanoseconds.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    protected abstract long time(String fileName) throws FileNotFoundException;
+
+    /**
+     * Returns the best time taken on the specified file over a few rounds,
+     * after a round to warm up.
+     *
+     * @param fileName
+     *            the file.
+     * @return the best time, in nanoseconds.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    protected long bestTime(String fileName) throws FileNotFoundException {
+        return bestTime(fileName, ROUNDS);
+    }
+
+    /**
+     * Returns the best time taken on the specified file over the specified
+     * number of rounds, after a round to warm up.
+     *
+     * @param fileName
+     *            the file.
+     * @param rounds
+     *            the number of timed rounds.
+     * @return the best time, in nanoseconds.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    protected long bestTime(String fileName, int rounds)
+            throws FileNotFoundException {
+        time(fileName); // Warm up
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            best = Math.min(best, time(fileName));
+        }
+        return best;
+    }
+
+    /**
+     * Returns the specified command-line argument as an int, or the specified
+     * default if there is no such argument.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @param i
+     *            index of the argument.
+     * @param defaultValue
+     *            the default.
+     * @return the value of the argument.
+     */
+
+    protected static int intArg(String[] args, int i, int defaultValue) {
+        return args.length > i ? Integer.parseInt(args[i]) : defaultValue;
+    }
+
+    /**
+     * Returns a temporary file for the inputs of the benchmark, deleted when
+     * the JVM exits.
+     *
+     * @return the file.
+     * @throws IOException
+     *             if the file cannot be created.
+     */
+
+    protected File inputFile() throws IOException {
+        File file = File.createTempFile(getClass().getSimpleName(), ".java");
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Writes a j-- class named Generated, with the specified members, to the
+     * specified file.
+     *
+     * @param file
+     *            the file.
+     * @param members
+     *            the source of the members of the class.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+
+    protected static void writeClass(File file, String members)
+            throws IOException {
+        writeSource(file, "public class Generated {\n" + members + "}\n");
+    }
+
+    /**
+     * Writes the specified j-- source to the specified file.
+     *
+     * @param file
+     *            the file.
+     * @param source
+     *            the source.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+
+    protected static void writeSource(File file, String source)
+            throws IOException {
+        Writer out = new FileWriter(file);
+        try {
+            out.write(source);
+        } finally {
+            out.close();
+        }
+    }
+
+}
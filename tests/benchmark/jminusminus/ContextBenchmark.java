@@ -0,0 +1,175 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import java.util.ArrayList;
+
+/**
+ * Times the analysis of generated methods whose blocks are nested to
+ * doubling depths, so that the cost of looking names up in the contexts
+ * (symbol tables) can be read off as the nesting deepens. Each block declares
+ * a variable from the parameter of the method, which is declared at the
+ * outermost level, and the variable of the enclosing block; the methods are
+ * many and shallow, or few and deep, so that every input has the same number
+ * of blocks. When a lookup does not depend on how deeply its scope is nested,
+ * the time per block stays flat as the depth doubles.
+ * <p>
+ * The analysis runs on a thread with a large stack (see {@link Benchmark}),
+ * since the nesting of the inputs is as deep as the blocks go.
+ * <p>
+ * Usage: {@code java jminusminus.ContextBenchmark [<depth> [<doublings>]]}
+ */
+
+public class ContextBenchmark extends Benchmark {
+
+    /** Default nesting depth of the shallowest methods. */
+    private static final int DEFAULT_DEPTH = 4;
+
+    /** Default number of times the depth is doubled. */
+    private static final int DEFAULT_DOUBLINGS = 9;
+
+    /** Number of blocks in each input. */
+    private static final int BLOCKS = 1 << 14;
+
+    /**
+     * Entry point.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @throws Exception
+     *             if an input cannot be written or analyzed.
+     */
+
+    public static void main(String[] args) throws Exception {
+        new ContextBenchmark().run(args);
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @throws IOException
+     *             if an input cannot be written.
+     */
+
+    protected void benchmark(String[] args) throws IOException {
+        int depth = intArg(args, 0, DEFAULT_DEPTH);
+        int doublings = intArg(args, 1, DEFAULT_DOUBLINGS);
+        File source = inputFile();
+        System.out.printf("%8s %8s %8s %10s %10s\n", "depth", "methods",
+                "blocks", "ms", "ns/block");
+        for (int n = depth, i = 0; i <= doublings; n *= 2, i++) {
+            int methods = Math.max(1, BLOCKS / n);
+            generate(source, n, methods);
+            String fileName = source.getPath();
+            if (!analyze(fileName)) {
+                System.out.printf("depth %d does not analyze\n", n);
+                System.exit(1);
+            }
+            long best = bestTime(fileName);
+            System.out.printf("%8d %8d %8d %10.2f %10.1f\n", n, methods,
+                    n * methods, best / 1e6, (double) best / (n * methods));
+        }
+    }
+
+    /**
+     * Parses the specified file and returns its compilation unit, in a list
+     * of one.
+     *
+     * @param fileName
+     *            the file.
+     * @return the compilation unit.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    private static ArrayList<JCompilationUnit> parse(String fileName)
+            throws FileNotFoundException {
+        Parser parser = new Parser(new LookaheadScanner(fileName));
+        ArrayList<JCompilationUnit> units = new ArrayList<JCompilationUnit>();
+        units.add(parser.compilationUnit());
+        return units;
+    }
+
+    /**
+     * Parses, pre-analyzes and analyzes the specified file.
+     *
+     * @param fileName
+     *            the file.
+     * @return {@code true} if it analyzed without error; {@code false}
+     *         otherwise.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    private static boolean analyze(String fileName)
+            throws FileNotFoundException {
+        CompilationSession session = new CompilationSession();
+        session.threads(1);
+        ArrayList<JCompilationUnit> units = parse(fileName);
+        session.preAnalyze(units);
+        session.analyze(units);
+        return !session.errorHasOccurred();
+    }
+
+    /**
+     * Returns the time taken to pre-analyze and analyze the specified file,
+     * which is parsed beforehand (and untimed).
+     *
+     * @param fileName
+     *            the file.
+     * @return the time, in nanoseconds.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    protected long time(String fileName) throws FileNotFoundException {
+        CompilationSession session = new CompilationSession();
+        session.threads(1);
+        ArrayList<JCompilationUnit> units = parse(fileName);
+        long start = System.nanoTime();
+        session.preAnalyze(units);
+        session.analyze(units);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Writes a j-- class, with the specified number of methods, each with
+     * blocks nested to the specified depth, to the specified file.
+     *
+     * @param file
+     *            the file.
+     * @param depth
+     *            the nesting depth of the blocks of each method.
+     * @param methods
+     *            the number of methods.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+
+    private static void generate(File file, int depth, int methods)
+            throws IOException {
+        // int v0 = p; { int v1 = p + v0; { int v2 = p + v1; ... } }
+        StringBuilder body = new StringBuilder();
+        body.append("int v0 = p;\n");
+        for (int i = 1; i <= depth; i++) {
+            body.append("{ int v" + i + " = p + v" + (i - 1) + ";\n");
+        }
+        for (int i = 1; i <= depth; i++) {
+            body.append("}\n");
+        }
+        StringBuilder members = new StringBuilder();
+        for (int m = 0; m < methods; m++) {
+            members.append("    public void method" + m + "(int p) {\n");
+            members.append(body);
+            members.append("    }\n");
+        }
+        writeClass(file, members.toString());
+    }
+
+}
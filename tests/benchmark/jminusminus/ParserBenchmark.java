@@ -0,0 +1,199 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Times the parser on generated inputs that are pathological for its
+ * lookahead predicates (deeply parenthesized expressions, chains of casts,
+ * long qualified names and array types at the start of statements), at
+ * doubling sizes, so that the growth of the parse time can be read off: for
+ * a linear-time parser, the time per token stays flat as the size doubles.
+ * <p>
+ * The parse runs on a thread with a large stack (see {@link Benchmark}),
+ * since the nesting of the inputs is as deep as they are long.
+ * <p>
+ * Usage: {@code java jminusminus.ParserBenchmark [<size> [<doublings>]]}
+ */
+
+public class ParserBenchmark extends Benchmark {
+
+    /** Default size of the smallest inputs. */
+    private static final int DEFAULT_SIZE = 500;
+
+    /** Default number of times the size is doubled. */
+    private static final int DEFAULT_DOUBLINGS = 5;
+
+    /** The shapes of input, by name. */
+    private static final String[] SHAPES = { "parentheses", "casts",
+            "qualified names", "array types" };
+
+    /**
+     * Entry point.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @throws Exception
+     *             if an input cannot be written or parsed.
+     */
+
+    public static void main(String[] args) throws Exception {
+        new ParserBenchmark().run(args);
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @throws IOException
+     *             if an input cannot be written.
+     */
+
+    protected void benchmark(String[] args) throws IOException {
+        int size = intArg(args, 0, DEFAULT_SIZE);
+        int doublings = intArg(args, 1, DEFAULT_DOUBLINGS);
+        File source = inputFile();
+        System.out.printf("%-16s %8s %8s %10s %10s\n", "input", "size",
+                "tokens", "ms", "ns/token");
+        for (int shape = 0; shape < SHAPES.length; shape++) {
+            for (int n = size, i = 0; i <= doublings; n *= 2, i++) {
+                generate(source, shape, n);
+                String fileName = source.getPath();
+                int tokens = tokens(fileName);
+                if (!parse(fileName)) {
+                    System.out.printf("%s (%d) does not parse\n",
+                            SHAPES[shape], n);
+                    System.exit(1);
+                }
+                long best = bestTime(fileName);
+                System.out.printf("%-16s %8d %8d %10.2f %10.1f\n",
+                        SHAPES[shape], n, tokens, best / 1e6, (double) best
+                                / tokens);
+            }
+        }
+    }
+
+    /**
+     * Parses the specified file.
+     *
+     * @param fileName
+     *            the file.
+     * @return {@code true} if it parsed without error; {@code false}
+     *         otherwise.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    private static boolean parse(String fileName)
+            throws FileNotFoundException {
+        LookaheadScanner scanner = new LookaheadScanner(fileName);
+        Parser parser = new Parser(scanner);
+        parser.compilationUnit();
+        return !parser.errorHasOccurred() && !scanner.errorHasOccured();
+    }
+
+    /**
+     * Returns the time taken to parse the specified file.
+     *
+     * @param fileName
+     *            the file.
+     * @return the time, in nanoseconds.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    protected long time(String fileName) throws FileNotFoundException {
+        long start = System.nanoTime();
+        parse(fileName);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the number of tokens in the specified file.
+     *
+     * @param fileName
+     *            the file.
+     * @return the number of tokens.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    private static int tokens(String fileName) throws FileNotFoundException {
+        Scanner scanner = new Scanner(fileName);
+        int tokens = 0;
+        while (scanner.getNextToken().kind() != TokenKind.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    /**
+     * Writes a j-- class, with a method whose body is an input of the
+     * specified shape and size, to the specified file.
+     *
+     * @param file
+     *            the file.
+     * @param shape
+     *            index of the shape in SHAPES.
+     * @param n
+     *            size of the input.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+
+    private static void generate(File file, int shape, int n)
+            throws IOException {
+        StringBuilder body = new StringBuilder();
+        switch (shape) {
+        case 0:
+            // x = ((((...(x + 1)...))));
+            body.append("x = ");
+            for (int i = 0; i < n; i++) {
+                body.append('(');
+            }
+            body.append("x + 1");
+            for (int i = 0; i < n; i++) {
+                body.append(')');
+            }
+            body.append(";\n");
+            break;
+        case 1:
+            // o = (a.b.Object) (a.b.Object) ... (int) (x + 1);
+            body.append("o = ");
+            for (int i = 0; i < n; i++) {
+                body.append("(a.b.Object) ");
+            }
+            body.append("(int) (x + 1);\n");
+            break;
+        case 2:
+            // a.a.a. ... .a = x; a.a.a. ... .a x;
+            for (int s = 0; s < 2; s++) {
+                body.append('a');
+                for (int i = 0; i < n; i++) {
+                    body.append(".a");
+                }
+                body.append(s == 0 ? " = x;\n" : " x;\n");
+            }
+            break;
+        default:
+            // int[][] ... [] x; x[0][0] ... [0] = x;
+            body.append("int");
+            for (int i = 0; i < n; i++) {
+                body.append("[]");
+            }
+            body.append(" x;\nx");
+            for (int i = 0; i < n; i++) {
+                body.append("[0]");
+            }
+            body.append(" = x;\n");
+            break;
+        }
+        writeClass(file, "    public void method(int x, Object o) {\n" + body
+                + "    }\n");
+    }
+
+}
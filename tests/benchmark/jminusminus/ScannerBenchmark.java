@@ -0,0 +1,222 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Compares the throughput of the hand-written {@link Scanner} and the
+ * table-driven {@link DFAScanner} on generated j-- source, after checking
+ * that the two produce the same tokens for it. This class is in the
+ * jminusminus package so that it can get at the (package-private) scanners
+ * directly, leaving the parser out of the measurements. It runs in the
+ * harness of {@link Benchmark}.
+ * <p>
+ * Usage: {@code java jminusminus.ScannerBenchmark [<methods> [<rounds>]]}
+ */
+
+public class ScannerBenchmark extends Benchmark {
+
+    /** Default number of methods in the generated source. */
+    private static final int DEFAULT_METHODS = 20000;
+
+    /** Default number of timed rounds per scanner. */
+    private static final int DEFAULT_ROUNDS = 10;
+
+    /** Whether the table-driven scanner is the one being timed. */
+    private boolean isTableDriven;
+
+    /**
+     * Entry point.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @throws Exception
+     *             if the generated source cannot be written.
+     */
+
+    public static void main(String[] args) throws Exception {
+        new ScannerBenchmark().run(args);
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @throws IOException
+     *             if the generated source cannot be written.
+     */
+
+    protected void benchmark(String[] args) throws IOException {
+        int methods = intArg(args, 0, DEFAULT_METHODS);
+        int rounds = intArg(args, 1, DEFAULT_ROUNDS);
+        File source = inputFile();
+        generate(source, methods);
+        String fileName = source.getPath();
+        System.out.printf("Source: %d methods, %d bytes\n", methods, source
+                .length());
+
+        if (!sameTokens(new Scanner(fileName), new DFAScanner(fileName))) {
+            System.out.println("The scanners disagree; no timings taken");
+            System.exit(1);
+        }
+
+        // Warm up both scanners before timing either
+        for (int i = 0; i < 3; i++) {
+            scan(new Scanner(fileName));
+            scan(new DFAScanner(fileName));
+        }
+        report("hand-written", fileName, source.length(), rounds, false);
+        report("table-driven", fileName, source.length(), rounds, true);
+    }
+
+    /**
+     * Times the scanning of the specified file, and reports the best time and
+     * the corresponding throughput.
+     *
+     * @param name
+     *            name of the scanner.
+     * @param fileName
+     *            the source file.
+     * @param bytes
+     *            size of the source file.
+     * @param rounds
+     *            number of timed rounds.
+     * @param isTableDriven
+     *            whether to time the table-driven scanner.
+     * @throws FileNotFoundException
+     *             if the source file cannot be read.
+     */
+
+    private void report(String name, String fileName, long bytes,
+            int rounds, boolean isTableDriven) throws FileNotFoundException {
+        this.isTableDriven = isTableDriven;
+        int tokens = scan(scanner(fileName));
+        long best = bestTime(fileName, rounds);
+        System.out.printf("%-13s %8d tokens %8.2f ms %8.1f MB/s\n", name,
+                tokens, best / 1e6, bytes / (best / 1e9) / (1 << 20));
+    }
+
+    /**
+     * Returns the time taken by the scanner being timed to scan the
+     * specified file.
+     *
+     * @param fileName
+     *            the file.
+     * @return the time, in nanoseconds.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    protected long time(String fileName) throws FileNotFoundException {
+        long start = System.nanoTime();
+        scan(scanner(fileName));
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns a scanner, of the kind being timed, for the specified file.
+     *
+     * @param fileName
+     *            the file.
+     * @return the scanner.
+     * @throws FileNotFoundException
+     *             if the file cannot be read.
+     */
+
+    private Scanner scanner(String fileName) throws FileNotFoundException {
+        return isTableDriven ? new DFAScanner(fileName) : new Scanner(
+                fileName);
+    }
+
+    /**
+     * Scans to the end of the input.
+     *
+     * @param scanner
+     *            the scanner.
+     * @return the number of tokens scanned.
+     */
+
+    private static int scan(Scanner scanner) {
+        int tokens = 0;
+        while (scanner.getNextToken().kind() != TokenKind.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns whether the specified scanners produce the same tokens (kinds,
+     * images, and lines), reporting the first difference, if any.
+     *
+     * @param expected
+     *            the reference scanner.
+     * @param actual
+     *            the scanner checked against it.
+     * @return {@code true} if the tokens are the same; {@code false}
+     *         otherwise.
+     */
+
+    private static boolean sameTokens(Scanner expected, Scanner actual) {
+        TokenInfo e, a;
+        do {
+            e = expected.getNextToken();
+            a = actual.getNextToken();
+            if (e.kind() != a.kind() || !e.image().equals(a.image())
+                    || e.line() != a.line()) {
+                System.out.printf("Expected %s (%s) at line %d; got %s (%s)"
+                        + " at line %d\n", e.tokenRep(), e.image(), e.line(),
+                        a.tokenRep(), a.image(), a.line());
+                return false;
+            }
+        } while (e.kind() != TokenKind.EOF);
+        return !expected.errorHasOccurred() && !actual.errorHasOccurred();
+    }
+
+    /**
+     * Writes a j-- class with the specified number of methods, which between
+     * them use every kind of token, to the specified file.
+     *
+     * @param file
+     *            the file.
+     * @param methods
+     *            number of methods.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+
+    private static void generate(File file, int methods) throws IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("package bench;\n\nimport java.lang.System;\n\n");
+        out.append("public class Generated extends Object {\n\n");
+        for (int i = 0; i < methods; i++) {
+            out.append("    // Method number " + i + ", with a comment\n");
+            out.append("    protected static int method" + i
+                    + "(int classy, boolean iffy, char[] chars) {\n");
+            out.append("        int x_" + i + " = " + i + " + classy * 42;\n");
+            out.append("        String s = \"string \\\"" + i
+                    + "\\\" with\\tescapes\\n\";\n");
+            out.append("        while (!(x_" + i + " <= 0) && iffy) {\n");
+            out.append("            x_" + i + " += -1;\n");
+            out.append("            x_" + i + "--;\n");
+            out.append("            chars[0] = '\\'';\n");
+            out.append("        }\n");
+            out.append("        if (this == null && s instanceof Object)"
+                    + " {\n");
+            out.append("            return new int[] { x_" + i
+                    + ", 0 }[0];\n");
+            out.append("        } else if (x_" + i + " > 1) {\n");
+            out.append("            return super.hashCode() - x_" + i
+                    + "++;\n");
+            out.append("        }\n");
+            out.append("        return iffy == true;\n");
+            out.append("    }\n\n");
+        }
+        out.append("}\n");
+        writeSource(file, out.toString());
+    }
+
+}
@@ -0,0 +1,19 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package fail;
+
+import java.lang.System;
+
+// This program has a type error in a branch that never runs, which is
+// still analyzed, and so it shouldn't compile.
+
+public class DeadBranchErrors {
+
+    public static void main(String[] args) {
+        if (false) {
+            int n = "dead";
+        }
+        System.out.println(1 + 2);
+    }
+
+}
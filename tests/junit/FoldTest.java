@@ -0,0 +1,43 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package junit;
+
+import junit.framework.TestCase;
+import pass.Fold;
+
+public class FoldTest extends TestCase {
+
+    public void testOverflow() {
+        assertEquals(Integer.MIN_VALUE, Fold.overflow());
+        assertEquals(65536 * 65536 + 46341 * 46341, Fold.product());
+    }
+
+    public void testNegatives() {
+        int[] negatives = Fold.negatives();
+        assertEquals(6, negatives.length);
+        assertEquals(-1, negatives[0]);
+        assertEquals(-128, negatives[1]);
+        assertEquals(-129, negatives[2]);
+        assertEquals(-32768, negatives[3]);
+        assertEquals(-32769, negatives[4]);
+        assertEquals(-99998, negatives[5]);
+    }
+
+    public void testConcatenation() {
+        assertEquals("a\nb\t'\\\"12", Fold.escapes());
+        assertEquals("3x7", Fold.sum());
+    }
+
+    public void testBranches() {
+        assertEquals(130, Fold.branches(5));
+        assertEquals(30, Fold.branches(0));
+    }
+
+    public void testSimplifications() {
+        assertEquals(21, Fold.identities(7));
+        assertEquals(-3, Fold.identities(-1));
+        assertEquals(1, Fold.shortCircuit(true));
+        assertEquals(11, Fold.shortCircuit(false));
+    }
+
+}
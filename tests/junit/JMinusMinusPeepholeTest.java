@@ -0,0 +1,181 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package junit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import junit.framework.TestCase;
+import jminusminus.Main;
+
+/**
+ * JUnit test case for running the j-- compiler, with and without the peephole
+ * optimizer, on the j-- test programs under the tests/pass folder. Each
+ * program is compiled both ways, and run both ways; the optimized program
+ * must print what the unoptimized one does, and each rule of the optimizer,
+ * as counted by -Ostats, must have applied somewhere.
+ */
+
+public class JMinusMinusPeepholeTest extends TestCase {
+
+    /** Command-line arguments for the programs that want them. */
+    private static final String[] PROGRAM_ARGS = { "12", "8", "5" };
+
+    /** Rules that the j-- code generator never gives occasion to apply. */
+    private static final String[] IDLE_RULES = { "nop" };
+
+    /**
+     * Construct a JMinusMinusPeepholeTest object.
+     */
+
+    public JMinusMinusPeepholeTest() {
+        super("JUnit test case for the j-- peephole optimizer");
+    }
+
+    /**
+     * Run the j-- compiler, with -Ostats (-O) -target 52 and without -O,
+     * against each pass-test file under the folder specified by
+     * PASS_TESTS_DIR property in the build.xml file, and compare what the
+     * programs print.
+     */
+
+    public void testPass() throws Exception {
+        File passTestsDir = new File(System.getProperty("PASS_TESTS_DIR"));
+        File genClassDir = new File(System.getProperty("GEN_CLASS_DIR"),
+                "peephole");
+        File plainDir = new File(genClassDir, "plain");
+        File optimizedDir = new File(genClassDir, "optimized");
+        File[] files = passTestsDir.listFiles();
+        HashMap<String, Integer> hits = new HashMap<String, Integer>();
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (files[i].toString().endsWith(".java")) {
+                System.out.printf("Running j-- (with and without "
+                        + "-O) on %s ...\n\n", files[i].toString());
+                Main.main(new String[] { "-d", plainDir.getAbsolutePath(),
+                        files[i].toString() });
+                assertFalse(Main.errorHasOccurred());
+                String statistics = capture(new String[] { "-Ostats",
+                        "-target", "52", "-d", optimizedDir.getAbsolutePath(),
+                        files[i].toString() });
+                assertFalse(Main.errorHasOccurred());
+                count(statistics, hits);
+
+                String name = files[i].getName();
+                String className = "pass."
+                        + name.substring(0, name.length() - ".java".length());
+                String expected = run(plainDir, className);
+                String actual = run(optimizedDir, className);
+                System.out.printf("%s\n", actual);
+                assertEquals(files[i].toString(), expected, actual);
+            }
+        }
+
+        // Every rule but the idle ones applied somewhere
+        for (String rule : hits.keySet()) {
+            boolean idle = false;
+            for (String idleRule : IDLE_RULES) {
+                idle |= rule.equals(idleRule);
+            }
+            System.out.printf("%-20s %8d\n", rule, hits.get(rule));
+            assertTrue(rule, idle || hits.get(rule) > 0);
+        }
+        assertFalse(hits.isEmpty());
+    }
+
+    /**
+     * Runs the j-- compiler with the specified arguments, and returns what it
+     * prints to STDOUT.
+     *
+     * @param args
+     *            the command-line arguments.
+     * @return what the compiler printed.
+     */
+
+    private static String capture(String[] args) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            Main.main(args);
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+
+    /**
+     * Adds the counts in the specified -Ostats output (a rule name and a count
+     * on each line) to the specified totals.
+     *
+     * @param statistics
+     *            the -Ostats output.
+     * @param hits
+     *            the totals, by rule name.
+     */
+
+    private static void count(String statistics,
+            HashMap<String, Integer> hits) {
+        for (String line : statistics.split("\n")) {
+            line = line.trim();
+            int space = line.lastIndexOf(' ');
+            if (space < 0) {
+                continue;
+            }
+            String rule = line.substring(0, space).trim();
+            int n = Integer.parseInt(line.substring(space + 1));
+            Integer total = hits.get(rule);
+            hits.put(rule, (total == null ? 0 : total) + n);
+        }
+    }
+
+    /**
+     * Runs the main method of the specified class, loaded (and verified) from
+     * the specified directory alone, and returns what it prints to STDOUT,
+     * followed by the exception it throws, if any. Identity hash codes, as in
+     * the default toString() of an object, are left out, since they differ
+     * from run to run.
+     *
+     * @param dir
+     *            the directory holding the class files.
+     * @param className
+     *            the name of the class.
+     * @return what the program printed.
+     * @throws Exception
+     *             if the class or its main method cannot be loaded.
+     */
+
+    private static String run(File dir, String className) throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[] { dir.toURI()
+                .toURL() }, null);
+        Method main = loader.loadClass(className).getMethod("main",
+                String[].class);
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            main.invoke(null, (Object) PROGRAM_ARGS.clone());
+        } catch (InvocationTargetException e) {
+            System.out.println(e.getCause());
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString().replaceAll("@[0-9a-f]+", "@");
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args
+     *            command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(JMinusMinusPeepholeTest.class);
+    }
+
+}
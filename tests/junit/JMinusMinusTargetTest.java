@@ -0,0 +1,185 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package junit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import junit.framework.TestCase;
+import jminusminus.Main;
+
+/**
+ * JUnit test case for running the j-- compiler, at the default class file
+ * version and at -target 50 and 52 (with StackMapTable frames), on the j--
+ * test programs under the tests/pass folder. The class files of each target
+ * must have its version, and must all load in a JVM run with -Xverify:all
+ * (see the build.xml file), so that the frames are checked; and each program
+ * must print what it does at the default version.
+ */
+
+public class JMinusMinusTargetTest extends TestCase {
+
+    /** The targets tested, besides the default. */
+    private static final int[] TARGETS = { 50, 52 };
+
+    /** Command-line arguments for the programs that want them. */
+    private static final String[] PROGRAM_ARGS = { "12", "8", "5" };
+
+    /**
+     * Construct a JMinusMinusTargetTest object.
+     */
+
+    public JMinusMinusTargetTest() {
+        super("JUnit test case for the j-- class file targets");
+    }
+
+    /**
+     * Run the j-- compiler, with and without -target, against each pass-test
+     * file under the folder specified by PASS_TESTS_DIR property in the
+     * build.xml file, and load and run the classes.
+     */
+
+    public void testPass() throws Exception {
+        File passTestsDir = new File(System.getProperty("PASS_TESTS_DIR"));
+        File genClassDir = new File(System.getProperty("GEN_CLASS_DIR"),
+                "target");
+        File defaultDir = new File(genClassDir, "default");
+        File[] files = passTestsDir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (!files[i].toString().endsWith(".java")) {
+                continue;
+            }
+            System.out.printf("Running j-- (at each target) on %s ...\n\n",
+                    files[i].toString());
+            Main.main(new String[] { "-d", defaultDir.getAbsolutePath(),
+                    files[i].toString() });
+            assertFalse(Main.errorHasOccurred());
+            String name = files[i].getName();
+            String className = "pass."
+                    + name.substring(0, name.length() - ".java".length());
+            String expected = run(defaultDir, className);
+            for (int target : TARGETS) {
+                File targetDir = new File(genClassDir, "" + target);
+                Main.main(new String[] { "-target", "" + target, "-d",
+                        targetDir.getAbsolutePath(), files[i].toString() });
+                assertFalse(Main.errorHasOccurred());
+                String actual = run(targetDir, className);
+                System.out.printf("-target %d: %s\n", target, actual);
+                assertEquals(files[i] + " -target " + target, expected,
+                        actual);
+            }
+        }
+        for (int target : TARGETS) {
+            File targetDir = new File(genClassDir, "" + target);
+            File[] classFiles = new File(targetDir, "pass").listFiles();
+            for (int i = 0; classFiles != null && i < classFiles.length; i++) {
+                assertEquals(classFiles[i].toString(), target,
+                        majorVersion(classFiles[i]));
+            }
+            load(targetDir);
+        }
+    }
+
+    /**
+     * Loads (and so verifies), and initializes, each class in the pass
+     * package under the specified directory, including those that the
+     * programs did not get to.
+     *
+     * @param dir
+     *            the directory holding the class files.
+     * @throws Exception
+     *             if a class cannot be loaded.
+     */
+
+    private static void load(File dir) throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[] { dir.toURI()
+                .toURL() }, null);
+        File[] classFiles = new File(dir, "pass").listFiles();
+        for (int i = 0; classFiles != null && i < classFiles.length; i++) {
+            String name = classFiles[i].getName();
+            if (name.endsWith(".class")) {
+                Class.forName("pass."
+                        + name.substring(0, name.length() - ".class".length()),
+                        true, loader);
+            }
+        }
+    }
+
+    /**
+     * Runs the main method of the specified class, loaded from the specified
+     * directory alone, and returns what it prints to STDOUT, followed by the
+     * exception it throws, if any. A class that fails verification fails the
+     * test. Identity hash codes, as in the default toString() of an object,
+     * are left out, since they differ from run to run.
+     *
+     * @param dir
+     *            the directory holding the class files.
+     * @param className
+     *            the name of the class.
+     * @return what the program printed.
+     * @throws Exception
+     *             if the class or its main method cannot be loaded.
+     */
+
+    private static String run(File dir, String className) throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[] { dir.toURI()
+                .toURL() }, null);
+        Method main = loader.loadClass(className).getMethod("main",
+                String[].class);
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            main.invoke(null, (Object) PROGRAM_ARGS.clone());
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof VerifyError) {
+                throw (VerifyError) e.getCause();
+            }
+            System.out.println(e.getCause());
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString().replaceAll("@[0-9a-f]+", "@");
+    }
+
+    /**
+     * Returns the major version of the specified class file.
+     *
+     * @param classFile
+     *            the class file.
+     * @return the major version.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+
+    private static int majorVersion(File classFile) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(
+                classFile));
+        try {
+            in.readInt(); // magic
+            in.readUnsignedShort(); // minor_version
+            return in.readUnsignedShort();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args
+     *            command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(JMinusMinusTargetTest.class);
+    }
+
+}
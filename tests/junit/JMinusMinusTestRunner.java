@@ -20,7 +20,8 @@ public class JMinusMinusTestRunner {
         suite.addTestSuite(FactorialTest.class);
         suite.addTestSuite(GCDTest.class);
         suite.addTestSuite(SeriesTest.class);
-        suite.addTestSuite(ClassesTest.class);
+        suite.addTestSuite(ClassesTest.class);
+        suite.addTestSuite(FoldTest.class);
         return suite;
     }
 
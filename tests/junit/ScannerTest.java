@@ -48,6 +48,33 @@ public class ScannerTest extends TestCase {
         assertFalse(errorHasOccurred);
     }
 
+    /**
+     * Run the table-driven (DFA) scanner against each pass-test file under the
+     * folder specified by PASS_TESTS_DIR property.
+     */
+
+    public void testPassDFA() {
+        File passTestsDir = new File(System.getProperty("PASS_TESTS_DIR"));
+        File[] files = passTestsDir.listFiles();
+        boolean errorHasOccurred = false;
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (files[i].toString().endsWith(".java")) {
+                String[] args = null;
+                System.out.printf("Running table-driven scanner on %s ...\n\n",
+                        files[i].toString());
+                args = new String[] { "-t", "-dfa", files[i].toString() };
+                Main.main(args);
+                System.out.printf("\n\n");
+
+                // true even if a single test fails
+                errorHasOccurred |= Main.errorHasOccurred();
+            }
+        }
+
+        // We want all tests to pass
+        assertFalse(errorHasOccurred);
+    }
+
     /**
      * Entry point.
      * 
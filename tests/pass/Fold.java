@@ -0,0 +1,95 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package pass;
+
+import java.lang.System;
+
+// Constant expressions, which j-- folds as it analyzes them, and
+// expressions that it simplifies; each must mean what it does in Java.
+
+public class Fold {
+
+    // Number of calls to call().
+    private static int calls;
+
+    // The int arithmetic wraps around.
+    public static int overflow() {
+        return 2147483647 + 1;
+    }
+
+    public static int product() {
+        return 65536 * 65536 + 46341 * 46341;
+    }
+
+    // Negative literals, loaded by ICONST_M1, BIPUSH, SIPUSH, and LDC.
+    public static int[] negatives() {
+        return new int[] { 0 - 1, -128, -129, -32768, -32769, 2 - 100000 };
+    }
+
+    // Escapes survive the concatenation of literals.
+    public static String escapes() {
+        return "a" + '\n' + "b" + '\t' + '\'' + '\\' + "\"" + 1 + 2;
+    }
+
+    public static String sum() {
+        return 1 + 2 + "x" + (3 + 4);
+    }
+
+    // Tests that fold to true or false leave only the branch that runs.
+    public static int branches(int x) {
+        if (false) {
+            x = x + 1;
+        } else {
+            x = x * 2;
+        }
+        if (1 == 1) {
+            x = x + 3;
+        }
+        while (2 + 2 == 5) {
+            x = x - 1;
+        }
+        if (!(3 > 4) && 5 <= 5) {
+            x = x * 10;
+        }
+        return x;
+    }
+
+    // x + 0, 0 + x, x - 0 and x * 1 are x.
+    public static int identities(int x) {
+        return (x + 0) * 1 + (0 + x) + 1 * (x - 0);
+    }
+
+    // An operand dropped by the simplification of && is never evaluated;
+    // one that is kept is evaluated once.
+    public static int shortCircuit(boolean b) {
+        calls = 0;
+        boolean r = false && call();
+        boolean s = true && call();
+        boolean t = !!b && true;
+        if (t) {
+            return calls;
+        } else {
+            return calls + 10;
+        }
+    }
+
+    private static boolean call() {
+        calls = calls + 1;
+        return true;
+    }
+
+    // Entry point; prints the results of the methods above.
+    public static void main(String[] args) {
+        System.out.println(overflow());
+        System.out.println(product());
+        int[] a = negatives();
+        System.out.println(a[0] + " " + a[1] + " " + a[2] + " " + a[3] + " "
+                + a[4] + " " + a[5]);
+        System.out.println(escapes());
+        System.out.println(sum());
+        System.out.println(branches(5));
+        System.out.println(identities(7));
+        System.out.println(shortCircuit(true) + " " + shortCircuit(false));
+    }
+
+}
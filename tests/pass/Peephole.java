@@ -0,0 +1,103 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package pass;
+
+import java.lang.System;
+
+// Exercises each rule of the peephole optimizer (-O) that the j-- code
+// generator gives it occasion to apply, and prints
+//
+// 1
+// 10
+// 321
+// 55
+// 1110
+
+public class Peephole {
+
+    // A GOTO after a then part that ends in a return is unreachable.
+
+    public static int sign(int x) {
+        if (x > 0) {
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+
+    // The GOTO after the inner then part jumps to the GOTO after the
+    // outer one.
+
+    public static int nested(int a, int b) {
+        int x = 0;
+        if (a > 0) {
+            if (b > 0) {
+                x = 1;
+            } else {
+                x = 2;
+            }
+        } else {
+            x = 3;
+        }
+        return x;
+    }
+
+    // The GOTO after the then part jumps to the return.
+
+    public static void clear(int[] a, int i) {
+        if (i > 0) {
+            a[i] = 0;
+        } else {
+            a[0] = 0;
+        }
+    }
+
+    // The additions to locals become IINCs.
+
+    public static int sum(int n) {
+        int s = 0;
+        int i = 1;
+        while (i <= n && 0 <= s) {
+            s += i;
+            i = i + 1;
+        }
+        return s;
+    }
+
+    // Empty then and else parts make jumps to the next instruction and
+    // branches over jumps; the test of b, dropped, leaves a load that is
+    // popped; and z is loaded right after it is stored.
+
+    public static int empty(int x) {
+        int y = 0;
+        if (x > 0) {
+            y = 1;
+        } else {
+        }
+        if (x > 1) {
+        } else {
+            y = y + 10;
+        }
+        boolean b = x > 2;
+        y = y + 1000;
+        if (b) {
+        }
+        y += 100;
+        int z = y;
+        return z;
+    }
+
+    // Entry point; prints the results of the methods above.
+
+    public static void main(String[] args) {
+        int[] a = { 1, 2 };
+        clear(a, 1);
+        System.out.println(sign(5) + sign(-5) + a[1]);
+        System.out.println(nested(1, 0) * 5);
+        System.out.println(nested(1, 1) + nested(1, 0) * 10 + nested(0, 0)
+                * 100);
+        System.out.println(sum(10));
+        System.out.println(empty(0));
+    }
+
+}
@@ -0,0 +1,32 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+import spim.SPIM;
+
+// A test to check that constants folded out of the short range, which
+// are loaded with ldc, are translated correctly. The output is
+//
+// 90001
+// 65536
+// -40000
+
+public class Constants {
+
+    // Return x plus a constant folded to 90000.
+
+    public static int big(int x) {
+        return x + 300 * 300;
+    }
+
+    // Entry point; prints big(1), and constants folded just past either
+    // end of the short range.
+
+    public static void main(String[] args) {
+        SPIM.printInt(Constants.big(1));
+        SPIM.printChar('\n');
+        SPIM.printInt(256 * 256);
+        SPIM.printChar('\n');
+        SPIM.printInt(-200 * 200);
+        SPIM.printChar('\n');
+    }
+
+}
@@ -0,0 +1,155 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+import spim.SPIM;
+
+// A test to check that the optimizations of the HIR (-O, and -Ono-<name>
+// to leave one out) keep the meaning of the program. Each method gives
+// one of them (sccp, gvn, licm, dce) something to do, as -Ostats shows.
+// The output, with and without any of them, and with the linear or graph
+// register allocator, is
+//
+// 528
+// 15
+// 10
+// 96
+// 24
+// 2170
+// 864
+// 5236
+// 243
+//
+// (The naive allocator gets common() wrong, optimized or not.)
+
+public class Optimizations {
+
+    // sccp: the constants fold into the return expression.
+
+    public static int poly(int x) {
+        int a = 3;
+        int b = a * 4;
+        int c = b - a;
+        return c * x * x + b * x + a;
+    }
+
+    // sccp: the test has a known outcome, so the else part is dead.
+
+    public static int branchy(int x) {
+        int k = 5;
+        int y = 0;
+        if (k > 3) {
+            y = x + k;
+        } else {
+            y = x - k;
+        }
+        return y * 1;
+    }
+
+    // sccp and dce: the loop is never entered, and goes away.
+
+    public static int deadLoop(int x) {
+        int t = 0;
+        while (t > 0) {
+            x = x * 2;
+        }
+        return x;
+    }
+
+    // gvn: i * 4 + j and j * j are each computed once.
+
+    public static int common(int i, int j) {
+        int a = i * 4 + j;
+        int b = 4 * i + j;
+        int c = 0;
+        if (a > 10) {
+            c = i * 4 + j * j;
+        } else {
+            c = j * j + i * 4;
+        }
+        return a + b + c + j * j;
+    }
+
+    // gvn and licm: n * 2 is computed once, outside the loop.
+
+    public static int invariant(int n) {
+        int s = 0;
+        int i = 0;
+        while (n > i) {
+            s += i * 3 + n * 2;
+            s += n * 2;
+            ++i;
+        }
+        return s;
+    }
+
+    // licm: k * 7 leaves both loops, and i * 3 the inner one.
+
+    public static int nest(int n, int k) {
+        int s = 0;
+        int i = 0;
+        while (n > i) {
+            int j = 0;
+            while (n > j) {
+                s += k * 7 + i * 3 + j;
+                ++j;
+            }
+            ++i;
+        }
+        return s;
+    }
+
+    // licm and sccp: w * j - 2 * 2 has an invariant part, folded.
+
+    public static int triangle(int n) {
+        int total = 0;
+        int i = 0;
+        int w = 4;
+        while (i <= n) {
+            int j = 0;
+            while (j <= i) {
+                total = total + w * j - 2 * 2;
+                j = j + 1;
+            }
+            i = i + 1;
+        }
+        return total;
+    }
+
+    // sccp and dce: the test of debug is always false, so the call goes.
+
+    public static int flag(int n) {
+        int debug = 0;
+        int acc = 1;
+        while (n > 0) {
+            if (debug == 1) {
+                SPIM.printInt(acc);
+            }
+            acc = acc * 3;
+            n = n - 1;
+        }
+        return acc;
+    }
+
+    // Entry point; prints the results of the methods above.
+
+    public static void main(String[] args) {
+        SPIM.printInt(Optimizations.poly(7));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.branchy(10));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.deadLoop(10));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.common(3, 5));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.common(1, 2));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.invariant(20));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.nest(6, 2));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.triangle(20));
+        SPIM.printChar('\n');
+        SPIM.printInt(Optimizations.flag(5));
+        SPIM.printChar('\n');
+    }
+
+}